@@ -70,6 +70,11 @@ document.addEventListener("DOMContentLoaded", () => {
         eventSource.onmessage = (event) => {
             try {
                 const data = JSON.parse(event.data);
+                // 重連時遺漏的事件已無法補送，重新載入完整清單
+                if (data.action === "RESYNC") {
+                    loadInitialOrders();
+                    return;
+                }
                 // 呼叫原本的邏輯處理畫面更新
                 handleKdsMessage(data.action, data.payload);
             } catch (e) {
@@ -303,6 +303,11 @@ document.addEventListener("DOMContentLoaded", () => {
         eventSource.onmessage = (event) => {
             try {
                 const data = JSON.parse(event.data);
+                // 重連時遺漏的事件已無法補送，重新載入完整清單
+                if (data.action === "RESYNC") {
+                    loadPickupOrders();
+                    return;
+                }
                 handlePosSseMessage(data.action, data.payload);
             } catch (e) {
                 console.error("POS SSE 訊息解析失敗:", e);
@@ -0,0 +1,82 @@
+package tw.niels.beverage_api_project.common.util;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * 以 long 為鍵的唯讀 Map (排序 long[] + 二分搜尋)。
+ * <p>
+ * 1. 建立後不可變，可在多執行緒間安全共享 (無需鎖)。
+ * 2. 鍵以原生型別存放，查詢時不需 Long 裝箱，適合熱路徑 (如結帳計價) 的查表。
+ * </p>
+ */
+public final class LongKeyedMap<V> {
+
+    private static final LongKeyedMap<?> EMPTY = new LongKeyedMap<>(new long[0], new Object[0]);
+
+    private final long[] keys;
+    private final Object[] values;
+
+    private LongKeyedMap(long[] keys, Object[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> LongKeyedMap<V> empty() {
+        return (LongKeyedMap<V>) EMPTY;
+    }
+
+    /**
+     * 由一般 Map 建立 (null 鍵會被略過)
+     */
+    public static <V> LongKeyedMap<V> copyOf(Map<Long, ? extends V> source) {
+        if (source.isEmpty()) {
+            return empty();
+        }
+        long[] sortedKeys = new long[source.size()];
+        int n = 0;
+        for (Long key : source.keySet()) {
+            if (key != null) {
+                sortedKeys[n++] = key;
+            }
+        }
+        sortedKeys = Arrays.copyOf(sortedKeys, n);
+        Arrays.sort(sortedKeys);
+
+        Object[] sortedValues = new Object[n];
+        for (int i = 0; i < n; i++) {
+            sortedValues[i] = source.get(sortedKeys[i]);
+        }
+        return new LongKeyedMap<>(sortedKeys, sortedValues);
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int idx = Arrays.binarySearch(keys, key);
+        return idx >= 0 ? (V) values[idx] : null;
+    }
+
+    public boolean containsKey(long key) {
+        return Arrays.binarySearch(keys, key) >= 0;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public boolean isEmpty() {
+        return keys.length == 0;
+    }
+
+    /**
+     * 依鍵值遞增順序走訪
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(BiConsumer<Long, ? super V> action) {
+        for (int i = 0; i < keys.length; i++) {
+            action.accept(keys[i], (V) values[i]);
+        }
+    }
+}
@@ -36,6 +36,17 @@ public class TsidUtil {
         return FACTORY.create().toLong();
     }
 
+    /**
+     * 一次產生多個 ID (依產生順序遞增)，供批次 INSERT 以陣列參數傳入
+     */
+    public static long[] nextIds(int count) {
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = FACTORY.create().toLong();
+        }
+        return ids;
+    }
+
     public static String nextIdString() {
         return FACTORY.create().toString();
     }
@@ -1,14 +1,19 @@
 package tw.niels.beverage_api_project.config;
 
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Configuration
@@ -17,6 +22,16 @@ public class RabbitConfig {
     // KDS 廣播用
     public static final String KDS_EXCHANGE = "kds.exchange";
 
+    // 商品目錄快照失效廣播用
+    public static final String CATALOG_EXCHANGE = "catalog.exchange";
+
+    // 非同步訂單任務狀態廣播用
+    public static final String ORDER_TASK_STATUS_EXCHANGE = "order.task.status.exchange";
+    public static final String PROMOTION_EXCHANGE = "promotion.exchange";
+
+    // 報表分析快取重新載入廣播用
+    public static final String REPORT_CACHE_EXCHANGE = "report.cache.exchange";
+
     // 死信佇列設定
     public static final String DLQ_EXCHANGE = "dlq.exchange";
     public static final String DLQ_QUEUE = "dlq.queue";
@@ -27,6 +42,18 @@ public class RabbitConfig {
     public static final String ONLINE_ORDER_QUEUE = "online.order.queue";
     public static final String ONLINE_ORDER_ROUTING_KEY = "create.order";
 
+    // 線上訂單分區佇列 (依 storeId 分配，每個分區一個佇列)
+    public static final String ONLINE_ORDER_PARTITION_QUEUE_PREFIX = "online.order.queue.p";
+    public static final String ONLINE_ORDER_PARTITION_ROUTING_KEY_PREFIX = "create.order.p";
+
+    public static String onlineOrderPartitionQueue(int partition) {
+        return ONLINE_ORDER_PARTITION_QUEUE_PREFIX + partition;
+    }
+
+    public static String onlineOrderPartitionRoutingKey(int partition) {
+        return ONLINE_ORDER_PARTITION_ROUTING_KEY_PREFIX + partition;
+    }
+
     /**
      * 使用 JSON 序列化訊息，而非預設的 Java Serialization
      */
@@ -88,6 +115,88 @@ public class RabbitConfig {
         return BindingBuilder.bind(kdsAnonymousQueue).to(kdsExchange);
     }
 
+    // --- 2.1 商品目錄快照失效廣播 ---
+
+    /**
+     * 商品異動時通知所有實例重建本機的目錄快照 (CatalogSnapshotService)
+     * 與 KDS 相同，使用 Fanout + 每個實例一個匿名佇列
+     */
+    @Bean
+    public FanoutExchange catalogExchange() {
+        return new FanoutExchange(CATALOG_EXCHANGE);
+    }
+
+    @Bean
+    public Queue catalogAnonymousQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding catalogBinding(FanoutExchange catalogExchange, Queue catalogAnonymousQueue) {
+        return BindingBuilder.bind(catalogAnonymousQueue).to(catalogExchange);
+    }
+
+    // --- 2.2 非同步訂單任務狀態廣播 ---
+
+    /**
+     * 訂單任務完成時通知所有實例 (OrderTaskStatusService)，
+     * 由持有該使用者 STOMP 連線 / 長輪詢請求的實例負責回應
+     */
+    @Bean
+    public FanoutExchange orderTaskStatusExchange() {
+        return new FanoutExchange(ORDER_TASK_STATUS_EXCHANGE);
+    }
+
+    @Bean
+    public Queue orderTaskStatusAnonymousQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding orderTaskStatusBinding(FanoutExchange orderTaskStatusExchange, Queue orderTaskStatusAnonymousQueue) {
+        return BindingBuilder.bind(orderTaskStatusAnonymousQueue).to(orderTaskStatusExchange);
+    }
+
+    // --- 2.3 促銷活動快取失效廣播 ---
+
+    /**
+     * 促銷活動異動時通知所有實例清除本機的評估計畫 (PromotionPlanService)
+     */
+    @Bean
+    public FanoutExchange promotionExchange() {
+        return new FanoutExchange(PROMOTION_EXCHANGE);
+    }
+
+    @Bean
+    public Queue promotionAnonymousQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding promotionBinding(FanoutExchange promotionExchange, Queue promotionAnonymousQueue) {
+        return BindingBuilder.bind(promotionAnonymousQueue).to(promotionExchange);
+    }
+
+    // --- 2.4 報表分析快取重新載入廣播 ---
+
+    /**
+     * 日結 (或補跑) 完成時通知所有實例重新載入該日期 (ReportAnalyticsCache)
+     */
+    @Bean
+    public FanoutExchange reportCacheExchange() {
+        return new FanoutExchange(REPORT_CACHE_EXCHANGE);
+    }
+
+    @Bean
+    public Queue reportCacheAnonymousQueue() {
+        return new AnonymousQueue();
+    }
+
+    @Bean
+    public Binding reportCacheBinding(FanoutExchange reportCacheExchange, Queue reportCacheAnonymousQueue) {
+        return BindingBuilder.bind(reportCacheAnonymousQueue).to(reportCacheExchange);
+    }
+
     // --- 3. 線上訂單佇列設定 ---
 
     @Bean
@@ -101,6 +210,12 @@ public class RabbitConfig {
      */
     @Bean
     public Queue onlineOrderQueue() {
+        return QueueBuilder.durable(ONLINE_ORDER_QUEUE)
+                .withArguments(onlineOrderQueueArguments())
+                .build();
+    }
+
+    private Map<String, Object> onlineOrderQueueArguments() {
         Map<String, Object> args = new HashMap<>();
         // 設定死信交換機
         args.put("x-dead-letter-exchange", DLQ_EXCHANGE);
@@ -108,10 +223,7 @@ public class RabbitConfig {
         args.put("x-dead-letter-routing-key", DLQ_ROUTING_KEY);
         // 設定 TTL (可選，例如訂單在 Queue 中超過 30 分鐘未處理則過期)
         // args.put("x-message-ttl", 1800000);
-
-        return QueueBuilder.durable(ONLINE_ORDER_QUEUE)
-                .withArguments(args)
-                .build();
+        return args;
     }
 
     @Bean
@@ -120,4 +232,58 @@ public class RabbitConfig {
                 .to(onlineOrderExchange())
                 .with(ONLINE_ORDER_ROUTING_KEY);
     }
+
+    /**
+     * 線上訂單批次消費用的 Container Factory (OnlineOrderBatchConsumer)
+     * 一次收集最多 batchSize 筆訊息交給 Listener，由 Listener 自行 ack / nack (MANUAL)
+     */
+    @Bean
+    public SimpleRabbitListenerContainerFactory onlineOrderBatchContainerFactory(
+            ConnectionFactory connectionFactory,
+            @Value("${app.order.online.batch.size:50}") int batchSize,
+            @Value("${app.order.online.batch.receive-timeout-ms:200}") long receiveTimeoutMs) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter());
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        // 預取數量至少要能湊滿一個批次
+        factory.setPrefetchCount(batchSize);
+        // 佇列中沒有新訊息超過此時間時，不等湊滿就先送出目前的批次
+        factory.setReceiveTimeout(receiveTimeoutMs);
+        factory.setAcknowledgeMode(AcknowledgeMode.MANUAL);
+
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("online-order-batch-");
+        executor.setVirtualThreads(true);
+        factory.setTaskExecutor(executor);
+        return factory;
+    }
+
+    // --- 3.1 線上訂單分區佇列 ---
+
+    /**
+     * 分區模式：以 storeId 雜湊到 N 個分區佇列 (online.order.queue.p0 ~ pN-1)，
+     * 同一店家的訂單永遠進入同一個佇列，單一店家的尖峰只會佔用自己的分區。
+     * 使用一般的 Direct Exchange + Routing Key，不需要額外安裝 consistent-hash 外掛。
+     */
+    @Bean
+    public Declarables onlineOrderPartitionDeclarables(
+            @Value("${app.order.online.partition.enabled:false}") boolean enabled,
+            @Value("${app.order.online.partition.count:4}") int partitionCount) {
+        List<Declarable> declarables = new ArrayList<>();
+        if (!enabled) {
+            return new Declarables(declarables);
+        }
+        for (int i = 0; i < partitionCount; i++) {
+            Queue queue = QueueBuilder.durable(onlineOrderPartitionQueue(i))
+                    .withArguments(onlineOrderQueueArguments())
+                    .build();
+            declarables.add(queue);
+            declarables.add(BindingBuilder.bind(queue)
+                    .to(onlineOrderExchange())
+                    .with(onlineOrderPartitionRoutingKey(i)));
+        }
+        return new Declarables(declarables);
+    }
 }
\ No newline at end of file
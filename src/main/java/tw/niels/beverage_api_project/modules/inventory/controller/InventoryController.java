@@ -3,9 +3,11 @@ package tw.niels.beverage_api_project.modules.inventory.controller;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
 import tw.niels.beverage_api_project.common.annotation.Audit;
 import tw.niels.beverage_api_project.common.constants.ApiPaths;
 import tw.niels.beverage_api_project.common.exception.BadRequestException;
@@ -14,11 +16,15 @@ import tw.niels.beverage_api_project.common.service.ControllerHelperService;
 import tw.niels.beverage_api_project.modules.inventory.dto.AddShipmentRequestDto;
 import tw.niels.beverage_api_project.modules.inventory.dto.InventoryAuditItemResponseDto;
 import tw.niels.beverage_api_project.modules.inventory.dto.InventoryAuditRequestDto;
+import tw.niels.beverage_api_project.modules.inventory.dto.ShipmentImportResultDto;
 import tw.niels.beverage_api_project.modules.inventory.service.InventoryService;
+import tw.niels.beverage_api_project.modules.inventory.service.InventoryShipmentImportService;
 import tw.niels.beverage_api_project.modules.store.entity.Store;
 import tw.niels.beverage_api_project.modules.user.entity.User;
 import tw.niels.beverage_api_project.modules.user.repository.UserRepository;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigDecimal;
 import java.util.List;
 import java.util.Map;
@@ -29,13 +35,16 @@ import java.util.Map;
 public class InventoryController {
 
     private final InventoryService inventoryService;
+    private final InventoryShipmentImportService shipmentImportService;
     private final ControllerHelperService helperService;
     private final UserRepository userRepository;
 
     public InventoryController(InventoryService inventoryService,
+                               InventoryShipmentImportService shipmentImportService,
                                ControllerHelperService helperService,
                                UserRepository userRepository) {
         this.inventoryService = inventoryService;
+        this.shipmentImportService = shipmentImportService;
         this.helperService = helperService;
         this.userRepository = userRepository;
     }
@@ -80,6 +89,27 @@ public class InventoryController {
         return ResponseEntity.ok(Map.of("message", "進貨成功"));
     }
 
+    /**
+     * 大量進貨匯入 (供應商發票 CSV)
+     * 格式：inventory_item_id,quantity,expiry_date，第一行可為標題列
+     */
+    @PostMapping(value = "/shipments/import", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasAnyRole('MANAGER', 'STAFF')")
+    @Operation(summary = "大量進貨匯入", description = "上傳 CSV 進貨明細，以 COPY 串流寫入後一次合併為 FIFO 批次")
+    @Audit(action = "INVENTORY_IMPORT_SHIPMENT")
+    public ResponseEntity<ShipmentImportResultDto> importShipment(@RequestParam("file") MultipartFile file,
+                                                                  @RequestParam(required = false) String supplier,
+                                                                  @RequestParam(required = false) String invoiceNo,
+                                                                  @RequestParam(required = false) String notes) throws IOException {
+        Store store = getSafeCurrentUserStore();
+        Long brandId = helperService.getCurrentBrandId();
+
+        try (InputStream csv = file.getInputStream()) {
+            return ResponseEntity.ok(shipmentImportService.importShipment(
+                    brandId, store.getId(), supplier, invoiceNo, notes, csv));
+        }
+    }
+
     @GetMapping("/{itemId}")
     @PreAuthorize("hasAnyRole('BRAND_ADMIN', 'MANAGER', 'STAFF')")
     @Operation(summary = "查詢庫存量", description = "查詢特定原物料的當前總庫存")
@@ -2,6 +2,7 @@ package tw.niels.beverage_api_project.modules.inventory.dao;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 庫存批次 DAO 介面
@@ -14,6 +15,15 @@ public interface InventoryBatchDAO {
      */
     void batchUpdateQuantities(List<BatchUpdateTuple> updates);
 
+    /**
+     * 以單一 SQL 依 FIFO (到期日、批次 ID) 扣減分店多個原物料的可用批次
+     * 鎖定相關批次後，以累計和 (window function) 計算每個批次的新數量並一次 UPDATE。
+     *
+     * @param deductions Map<原物料 ID, 扣減量>
+     * @return Map<原物料 ID, 短缺量> (只包含可用批次不足的原物料；可用的部分仍已扣減)
+     */
+    Map<Long, BigDecimal> deductFifo(Long storeId, Map<Long, BigDecimal> deductions);
+
     /**
      * 資料載體 DTO (定義在介面中方便引用)
      */
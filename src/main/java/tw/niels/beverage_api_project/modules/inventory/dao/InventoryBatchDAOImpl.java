@@ -5,9 +5,12 @@ import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 庫存批次 DAO 實作
@@ -44,4 +47,65 @@ public class InventoryBatchDAOImpl implements tw.niels.beverage_api_project.modu
             }
         });
     }
-}
\ No newline at end of file
+
+    @Override
+    public Map<Long, BigDecimal> deductFifo(Long storeId, Map<Long, BigDecimal> deductions) {
+        Map<Long, BigDecimal> shortfalls = new HashMap<>();
+        if (deductions == null || deductions.isEmpty()) {
+            return shortfalls;
+        }
+
+        // 1. requested：本次各原物料的扣減量 (以陣列參數傳入)
+        // 2. locked：鎖定相關的可用批次
+        // 3. ranked：依 FIFO 順序計算累計量，扣減後的數量 = LEAST(本批數量, GREATEST(累計量 - 扣減量, 0))
+        // 4. 只更新有被扣到的批次 (累計量扣除本批後仍小於扣減量)
+        // 5. 主查詢回傳可用總量不足的原物料與短缺量
+        String sql = "WITH requested AS ( " +
+                "    SELECT r.inventory_item_id, r.quantity " +
+                "    FROM unnest(?::bigint[], ?::numeric[]) AS r(inventory_item_id, quantity) " +
+                "), locked AS ( " +
+                "    SELECT b.batch_id, b.inventory_item_id, b.current_quantity, b.expiry_date " +
+                "    FROM inventory_batches b " +
+                "    WHERE b.store_id = ? AND b.current_quantity > 0 " +
+                "      AND b.inventory_item_id IN (SELECT inventory_item_id FROM requested) " +
+                "    ORDER BY b.batch_id " +
+                "    FOR UPDATE " +
+                "), ranked AS ( " +
+                "    SELECT l.batch_id, l.current_quantity, r.quantity AS requested_quantity, " +
+                "           SUM(l.current_quantity) OVER (PARTITION BY l.inventory_item_id " +
+                "                                         ORDER BY l.expiry_date, l.batch_id) AS running_quantity " +
+                "    FROM locked l JOIN requested r ON r.inventory_item_id = l.inventory_item_id " +
+                "), updated AS ( " +
+                "    UPDATE inventory_batches b " +
+                "    SET current_quantity = LEAST(k.current_quantity, GREATEST(k.running_quantity - k.requested_quantity, 0)) " +
+                "    FROM ranked k " +
+                "    WHERE b.batch_id = k.batch_id " +
+                "      AND k.running_quantity - k.current_quantity < k.requested_quantity " +
+                "    RETURNING b.batch_id " +
+                ") " +
+                "SELECT r.inventory_item_id, r.quantity - COALESCE(SUM(l.current_quantity), 0) AS shortfall " +
+                "FROM requested r LEFT JOIN locked l ON l.inventory_item_id = r.inventory_item_id " +
+                "GROUP BY r.inventory_item_id, r.quantity " +
+                "HAVING r.quantity > COALESCE(SUM(l.current_quantity), 0)";
+
+        Long[] itemIds = new Long[deductions.size()];
+        BigDecimal[] quantities = new BigDecimal[deductions.size()];
+        int i = 0;
+        for (Map.Entry<Long, BigDecimal> entry : deductions.entrySet()) {
+            itemIds[i] = entry.getKey();
+            quantities[i] = entry.getValue();
+            i++;
+        }
+
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("bigint", itemIds));
+            ps.setArray(2, con.createArrayOf("numeric", quantities));
+            ps.setLong(3, storeId);
+            return ps;
+        }, rs -> {
+            shortfalls.put(rs.getLong("inventory_item_id"), rs.getBigDecimal("shortfall"));
+        });
+        return shortfalls;
+    }
+}
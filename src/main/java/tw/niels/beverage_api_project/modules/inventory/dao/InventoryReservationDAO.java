@@ -0,0 +1,28 @@
+package tw.niels.beverage_api_project.modules.inventory.dao;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 庫存預留帳本 DAO 介面
+ * 供 InventoryReservationLedger 使用：啟動時一次載入各分店的可用量，並以 JDBC 批次寫回累積的扣減。
+ */
+public interface InventoryReservationDAO {
+
+    /**
+     * 依 (分店, 原物料) 加總目前所有批次的剩餘量
+     * 只回傳有剩餘量的組合
+     */
+    List<AvailableStockTuple> loadAvailableStocks();
+
+    /**
+     * 以相對 UPDATE 批次扣減 inventory_items.total_quantity (需在交易中呼叫，扣減後不低於 0)
+     * 呼叫端應依原物料 ID 排序，避免與其他交易互相等待造成死結
+     */
+    void batchDecreaseTotalQuantities(List<ItemDeductionTuple> deductions);
+
+    record AvailableStockTuple(Long storeId, Long inventoryItemId, Long brandId, String itemName,
+                               BigDecimal quantity) {}
+
+    record ItemDeductionTuple(Long inventoryItemId, BigDecimal quantity) {}
+}
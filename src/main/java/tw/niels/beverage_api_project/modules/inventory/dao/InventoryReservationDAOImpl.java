@@ -0,0 +1,65 @@
+package tw.niels.beverage_api_project.modules.inventory.dao;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * 庫存預留帳本 DAO 實作
+ * 使用 JdbcTemplate 執行實際的 SQL 操作。
+ */
+@Repository
+public class InventoryReservationDAOImpl implements InventoryReservationDAO {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InventoryReservationDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public List<AvailableStockTuple> loadAvailableStocks() {
+        String sql = "SELECT b.store_id, b.inventory_item_id, i.brand_id, i.name, SUM(b.current_quantity) AS quantity " +
+                "FROM inventory_batches b " +
+                "JOIN inventory_items i ON i.inventory_item_id = b.inventory_item_id " +
+                "WHERE b.current_quantity > 0 " +
+                "GROUP BY b.store_id, b.inventory_item_id, i.brand_id, i.name";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new AvailableStockTuple(
+                rs.getLong("store_id"),
+                rs.getLong("inventory_item_id"),
+                rs.getLong("brand_id"),
+                rs.getString("name"),
+                rs.getBigDecimal("quantity")));
+    }
+
+    @Override
+    public void batchDecreaseTotalQuantities(List<ItemDeductionTuple> deductions) {
+        if (deductions == null || deductions.isEmpty()) {
+            return;
+        }
+
+        // 相對更新：不需先讀取 (也不需鎖定) 原物料列
+        // 總量與其他分店共用，歷史資料可能與批次總和不一致；不低於 0，避免違反 CHECK 使整個分店的寫回回滾
+        String sql = "UPDATE inventory_items SET total_quantity = GREATEST(total_quantity - ?, 0) WHERE inventory_item_id = ?";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                ItemDeductionTuple tuple = deductions.get(i);
+                ps.setBigDecimal(1, tuple.quantity());
+                ps.setLong(2, tuple.inventoryItemId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deductions.size();
+            }
+        });
+    }
+}
@@ -0,0 +1,49 @@
+package tw.niels.beverage_api_project.modules.inventory.dao;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * 大量進貨匯入 DAO 介面
+ * 以 PostgreSQL COPY 將進貨明細寫入暫存表，再以集合式 SQL 合併到批次、快照與異動紀錄。
+ * 所有方法都必須在同一個交易中呼叫 (暫存表於交易結束時刪除)。
+ */
+public interface InventoryShipmentImportDAO {
+
+    /**
+     * 建立本交易專用的暫存表 (ON COMMIT DROP)
+     */
+    void createStagingTable();
+
+    /**
+     * 以 COPY 串流寫入暫存表
+     *
+     * @return 寫入的筆數
+     */
+    long copyToStaging(Iterator<StagingLine> lines);
+
+    /**
+     * 找出暫存表中不存在或不屬於該品牌的原物料 ID (沒有則回傳 null)
+     */
+    Long findForeignItemId(Long brandId);
+
+    /**
+     * 將暫存表合併到 inventory_batches、inventory_transactions、inventory_snapshots，並累加 inventory_items.total_quantity
+     */
+    void mergeStaging(Long shipmentId, Long storeId, Long operatorId, String note);
+
+    /**
+     * 暫存表各原物料的進貨量合計
+     *
+     * @return Map<原物料 ID, 數量>
+     */
+    Map<Long, BigDecimal> sumStagedQuantities();
+
+    /**
+     * 暫存表的一列 (各 ID 由應用程式預先產生 TSID)
+     */
+    record StagingLine(int lineNo, long batchId, long transactionId, long snapshotId,
+                       long inventoryItemId, BigDecimal quantity, LocalDate expiryDate) {}
+}
@@ -0,0 +1,144 @@
+package tw.niels.beverage_api_project.modules.inventory.dao;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 大量進貨匯入 DAO 實作
+ * COPY 使用目前交易的連線 (透過 JdbcTemplate 取得)，暫存表與合併都在同一個交易內。
+ */
+@Repository
+public class InventoryShipmentImportDAOImpl implements InventoryShipmentImportDAO {
+
+    private static final String STAGING_TABLE = "shipment_import_staging";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public InventoryShipmentImportDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void createStagingTable() {
+        jdbcTemplate.execute("CREATE TEMP TABLE " + STAGING_TABLE + " (" +
+                "line_no integer NOT NULL, " +
+                "batch_id bigint NOT NULL, " +
+                "transaction_id bigint NOT NULL, " +
+                "snapshot_id bigint NOT NULL, " +
+                "inventory_item_id bigint NOT NULL, " +
+                "quantity numeric(10, 2) NOT NULL, " +
+                "expiry_date date NOT NULL" +
+                ") ON COMMIT DROP");
+    }
+
+    @Override
+    public long copyToStaging(Iterator<StagingLine> lines) {
+        String sql = "COPY " + STAGING_TABLE +
+                " (line_no, batch_id, transaction_id, snapshot_id, inventory_item_id, quantity, expiry_date)" +
+                " FROM STDIN WITH (FORMAT csv)";
+
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            PGCopyOutputStream out = new PGCopyOutputStream(con.unwrap(PGConnection.class), sql, COPY_BUFFER_SIZE);
+            try {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), COPY_BUFFER_SIZE);
+                while (lines.hasNext()) {
+                    StagingLine line = lines.next();
+                    writer.write(Integer.toString(line.lineNo()));
+                    writer.write(',');
+                    writer.write(Long.toString(line.batchId()));
+                    writer.write(',');
+                    writer.write(Long.toString(line.transactionId()));
+                    writer.write(',');
+                    writer.write(Long.toString(line.snapshotId()));
+                    writer.write(',');
+                    writer.write(Long.toString(line.inventoryItemId()));
+                    writer.write(',');
+                    writer.write(line.quantity().toPlainString());
+                    writer.write(',');
+                    writer.write(line.expiryDate().toString());
+                    writer.write('\n');
+                }
+                writer.flush();
+                return out.endCopy();
+            } catch (IOException e) {
+                throw new DataAccessResourceFailureException("進貨明細 COPY 失敗", e);
+            } finally {
+                // 解析失敗等例外中斷時取消 COPY，讓連線回到可用狀態 (交易隨後回滾)
+                if (out.isActive()) {
+                    out.cancelCopy();
+                }
+            }
+        });
+        return copied != null ? copied : 0L;
+    }
+
+    @Override
+    public Long findForeignItemId(Long brandId) {
+        String sql = "SELECT s.inventory_item_id FROM " + STAGING_TABLE + " s " +
+                "LEFT JOIN inventory_items i ON i.inventory_item_id = s.inventory_item_id AND i.brand_id = ? " +
+                "WHERE i.inventory_item_id IS NULL LIMIT 1";
+
+        List<Long> ids = jdbcTemplate.queryForList(sql, Long.class, brandId);
+        return ids.isEmpty() ? null : ids.getFirst();
+    }
+
+    @Override
+    public void mergeStaging(Long shipmentId, Long storeId, Long operatorId, String note) {
+        // 1. 每列一個批次
+        jdbcTemplate.update("INSERT INTO inventory_batches " +
+                        "(batch_id, shipment_id, store_id, inventory_item_id, quantity_received, current_quantity, expiry_date) " +
+                        "SELECT s.batch_id, ?, ?, s.inventory_item_id, s.quantity, s.quantity, s.expiry_date " +
+                        "FROM " + STAGING_TABLE + " s",
+                shipmentId, storeId);
+
+        // 2. 每列一筆異動紀錄：異動後餘額 = 原快照數量 + 依檔案順序的累計進貨量 (需在更新快照前執行)
+        jdbcTemplate.update("INSERT INTO inventory_transactions " +
+                        "(transaction_id, inventory_item_id, store_id, change_amount, reason_type, operator_id, note, created_at, balance_after) " +
+                        "SELECT s.transaction_id, s.inventory_item_id, ?, s.quantity, 'RESTOCK', ?, ?, CURRENT_TIMESTAMP, " +
+                        "       COALESCE(snap.quantity, 0) + SUM(s.quantity) OVER (PARTITION BY s.inventory_item_id ORDER BY s.line_no) " +
+                        "FROM " + STAGING_TABLE + " s " +
+                        "LEFT JOIN inventory_snapshots snap ON snap.store_id = ? AND snap.inventory_item_id = s.inventory_item_id",
+                storeId, operatorId, note, storeId);
+
+        // 3. 每個原物料一筆快照：不存在則新增，存在則累加
+        jdbcTemplate.update("INSERT INTO inventory_snapshots (snapshot_id, store_id, inventory_item_id, quantity) " +
+                        "SELECT MIN(s.snapshot_id), ?, s.inventory_item_id, SUM(s.quantity) " +
+                        "FROM " + STAGING_TABLE + " s GROUP BY s.inventory_item_id " +
+                        "ON CONFLICT (store_id, inventory_item_id) DO UPDATE " +
+                        "SET quantity = inventory_snapshots.quantity + EXCLUDED.quantity",
+                storeId);
+
+        // 4. 原物料總量 (品牌層級，與所有分店的批次總和一致)：每個原物料一筆相對更新
+        jdbcTemplate.update("UPDATE inventory_items i SET total_quantity = i.total_quantity + s.quantity " +
+                "FROM (SELECT inventory_item_id, SUM(quantity) AS quantity FROM " + STAGING_TABLE +
+                "      GROUP BY inventory_item_id) s " +
+                "WHERE i.inventory_item_id = s.inventory_item_id");
+    }
+
+    @Override
+    public Map<Long, BigDecimal> sumStagedQuantities() {
+        Map<Long, BigDecimal> quantities = new HashMap<>();
+        jdbcTemplate.query("SELECT inventory_item_id, SUM(quantity) AS quantity FROM " + STAGING_TABLE +
+                " GROUP BY inventory_item_id", rs -> {
+            quantities.put(rs.getLong("inventory_item_id"), rs.getBigDecimal("quantity"));
+        });
+        return quantities;
+    }
+}
@@ -0,0 +1,58 @@
+package tw.niels.beverage_api_project.modules.inventory.dao;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 理論消耗 DAO 介面
+ * 供 InventoryDepletionService 讀取已結案訂單的品項並累加寫入 inventory_theoretical_usage，
+ * 以及庫存差異報表讀取區間用量。
+ */
+public interface InventoryUsageDAO {
+
+    /**
+     * 查詢所有配方 (規格配方 variantId 有值，加料配方 optionId 有值)
+     */
+    List<RecipeTuple> findAllRecipes();
+
+    /**
+     * 查詢已結案訂單的品項 (每個選項一列；沒有選項的品項 optionId 為 null)
+     */
+    List<OrderLineTuple> findClosedOrderLines(Collection<Long> orderIds);
+
+    /**
+     * 批次累加用量 (INSERT ... ON CONFLICT DO UPDATE，需在交易中呼叫)
+     */
+    void batchUpsertUsage(List<UsageDeltaTuple> deltas);
+
+    /**
+     * 以已結案訂單重算 [from, to] 之間的用量 (先刪除再寫入，可重複執行，需在交易中呼叫)
+     *
+     * @return 寫入的列數
+     */
+    int rebuildUsage(LocalDate from, LocalDate to);
+
+    /**
+     * 查詢累計表完整涵蓋的起始日 (尚未啟用過即時消耗時為 null)
+     */
+    LocalDate findLiveFrom();
+
+    /**
+     * 尚未有涵蓋起始日時寫入指定日期，回傳目前的起始日
+     */
+    LocalDate initLiveFrom(LocalDate liveFrom);
+
+    /**
+     * 涵蓋起始日往前移到指定日期 (晚於目前的起始日時不變動)
+     */
+    void lowerLiveFrom(LocalDate liveFrom);
+
+    record RecipeTuple(Long variantId, Long optionId, Long inventoryItemId, BigDecimal quantity) {}
+
+    record OrderLineTuple(Long orderItemId, Long storeId, LocalDate usageDate,
+                          Long variantId, Integer quantity, Long optionId) {}
+
+    record UsageDeltaTuple(Long storeId, Long inventoryItemId, LocalDate usageDate, BigDecimal quantity) {}
+}
@@ -0,0 +1,159 @@
+package tw.niels.beverage_api_project.modules.inventory.dao;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 理論消耗 DAO 實作
+ * 使用 JdbcTemplate 執行實際的 SQL 操作。
+ */
+@Repository
+public class InventoryUsageDAOImpl implements InventoryUsageDAO {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public InventoryUsageDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public List<RecipeTuple> findAllRecipes() {
+        String sql = "SELECT variant_id, option_id, inventory_item_id, quantity FROM recipes";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> {
+            long variantId = rs.getLong("variant_id");
+            Long variant = rs.wasNull() ? null : variantId;
+            long optionId = rs.getLong("option_id");
+            Long option = rs.wasNull() ? null : optionId;
+            return new RecipeTuple(variant, option, rs.getLong("inventory_item_id"), rs.getBigDecimal("quantity"));
+        });
+    }
+
+    @Override
+    public List<OrderLineTuple> findClosedOrderLines(Collection<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return List.of();
+        }
+
+        // 日期與 V17 回填相同，以 completed_time::date 在資料庫切日 (連線時區由 JDBC 驅動設為 JVM 時區，與報表一致)
+        String sql = "SELECT oi.order_item_id, o.store_id, o.completed_time::date AS usage_date, " +
+                "       oi.variant_id, oi.quantity, oio.option_id " +
+                "FROM orders o " +
+                "JOIN order_items oi ON oi.order_id = o.order_id " +
+                "LEFT JOIN order_item_options oio ON oio.order_item_id = oi.order_item_id " +
+                "WHERE o.order_id IN (:ids) AND o.status_code = 'CLOSED' AND o.completed_time IS NOT NULL";
+
+        return namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("ids", orderIds),
+                (rs, rowNum) -> {
+                    long variantId = rs.getLong("variant_id");
+                    Long variant = rs.wasNull() ? null : variantId;
+                    long optionId = rs.getLong("option_id");
+                    Long option = rs.wasNull() ? null : optionId;
+                    return new OrderLineTuple(
+                            rs.getLong("order_item_id"),
+                            rs.getLong("store_id"),
+                            rs.getObject("usage_date", LocalDate.class),
+                            variant,
+                            rs.getInt("quantity"),
+                            option);
+                });
+    }
+
+    @Override
+    public void batchUpsertUsage(List<UsageDeltaTuple> deltas) {
+        if (deltas == null || deltas.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO inventory_theoretical_usage (store_id, inventory_item_id, usage_date, quantity, updated_at) " +
+                "VALUES (?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT (store_id, inventory_item_id, usage_date) DO UPDATE " +
+                "SET quantity = inventory_theoretical_usage.quantity + EXCLUDED.quantity, updated_at = CURRENT_TIMESTAMP";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                UsageDeltaTuple tuple = deltas.get(i);
+                ps.setLong(1, tuple.storeId());
+                ps.setLong(2, tuple.inventoryItemId());
+                ps.setDate(3, Date.valueOf(tuple.usageDate()));
+                ps.setBigDecimal(4, tuple.quantity());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    @Override
+    public int rebuildUsage(LocalDate from, LocalDate to) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", Date.valueOf(from))
+                .addValue("to", Date.valueOf(to));
+
+        namedParameterJdbcTemplate.update("DELETE FROM inventory_theoretical_usage " +
+                "WHERE usage_date BETWEEN :from AND :to", params);
+
+        // 與 V17 回填相同的口徑；日期範圍以連線時區換算，與 completed_time::date 一致
+        String sql = "INSERT INTO inventory_theoretical_usage (store_id, inventory_item_id, usage_date, quantity) " +
+                "SELECT u.store_id, u.inventory_item_id, u.usage_date, SUM(u.quantity) " +
+                "FROM ( " +
+                "    SELECT o.store_id, r.inventory_item_id, o.completed_time::date AS usage_date, " +
+                "           r.quantity * oi.quantity AS quantity " +
+                "    FROM orders o " +
+                "    JOIN order_items oi ON oi.order_id = o.order_id " +
+                "    JOIN recipes r ON r.variant_id = oi.variant_id " +
+                "    WHERE o.status_code = 'CLOSED' " +
+                "      AND o.completed_time >= CAST(:from AS date) AND o.completed_time < CAST(:to AS date) + 1 " +
+                "    UNION ALL " +
+                "    SELECT o.store_id, r.inventory_item_id, o.completed_time::date AS usage_date, " +
+                "           r.quantity * oi.quantity AS quantity " +
+                "    FROM orders o " +
+                "    JOIN order_items oi ON oi.order_id = o.order_id " +
+                "    JOIN order_item_options oio ON oio.order_item_id = oi.order_item_id " +
+                "    JOIN recipes r ON r.option_id = oio.option_id " +
+                "    WHERE o.status_code = 'CLOSED' " +
+                "      AND o.completed_time >= CAST(:from AS date) AND o.completed_time < CAST(:to AS date) + 1 " +
+                ") u " +
+                "GROUP BY u.store_id, u.inventory_item_id, u.usage_date " +
+                "ON CONFLICT (store_id, inventory_item_id, usage_date) DO UPDATE " +
+                "SET quantity = EXCLUDED.quantity, updated_at = CURRENT_TIMESTAMP";
+        return namedParameterJdbcTemplate.update(sql, params);
+    }
+
+    @Override
+    public LocalDate findLiveFrom() {
+        List<LocalDate> rows = jdbcTemplate.query("SELECT live_from FROM inventory_usage_watermark WHERE id = 1",
+                (rs, rowNum) -> rs.getObject("live_from", LocalDate.class));
+        return rows.isEmpty() ? null : rows.getFirst();
+    }
+
+    @Override
+    public LocalDate initLiveFrom(LocalDate liveFrom) {
+        jdbcTemplate.update("INSERT INTO inventory_usage_watermark (id, live_from) VALUES (1, ?) " +
+                "ON CONFLICT (id) DO NOTHING", Date.valueOf(liveFrom));
+        return findLiveFrom();
+    }
+
+    @Override
+    public void lowerLiveFrom(LocalDate liveFrom) {
+        jdbcTemplate.update("UPDATE inventory_usage_watermark SET live_from = ?, updated_at = CURRENT_TIMESTAMP " +
+                "WHERE id = 1 AND live_from > ?", Date.valueOf(liveFrom), Date.valueOf(liveFrom));
+    }
+}
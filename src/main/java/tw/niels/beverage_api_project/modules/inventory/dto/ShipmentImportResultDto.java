@@ -0,0 +1,12 @@
+package tw.niels.beverage_api_project.modules.inventory.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+
+@Schema(description = "大量進貨匯入結果 (回應)")
+public record ShipmentImportResultDto(
+        @Schema(description = "進貨單 ID")
+        Long shipmentId,
+
+        @Schema(description = "匯入的批次筆數")
+        long lineCount
+) {}
@@ -34,9 +34,10 @@ public interface InventoryBatchRepository extends JpaRepository<InventoryBatch,
     List<InventoryBatch> findAvailableBatchesForUpdate(@Param("storeId") Long storeId,
                                                        @Param("itemId") Long itemId);
 
-    // 批次查詢多個 Item 的可用批次 (用於 performAudit)
-    @Query("SELECT b FROM InventoryBatch b WHERE b.store.id = :storeId AND b.inventoryItem.id IN :itemIds AND b.currentQuantity > 0 ORDER BY b.expiryDate ASC")
-    List<InventoryBatch> findAvailableBatchesForItems(@Param("storeId") Long storeId, @Param("itemIds") Set<Long> itemIds);
+    // 批次鎖定多個 Item 的可用批次 (用於預留帳本寫回)
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT b FROM InventoryBatch b WHERE b.store.id = :storeId AND b.inventoryItem.id IN :itemIds AND b.currentQuantity > 0 ORDER BY b.expiryDate ASC, b.id ASC")
+    List<InventoryBatch> findAvailableBatchesForItemsForUpdate(@Param("storeId") Long storeId, @Param("itemIds") Set<Long> itemIds);
 
 
     /**
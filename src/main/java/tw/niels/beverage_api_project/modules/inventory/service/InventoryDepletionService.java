@@ -0,0 +1,293 @@
+package tw.niels.beverage_api_project.modules.inventory.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryUsageDAO;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 依配方即時計算原物料理論消耗 (不在結帳路徑上)
+ * <p>
+ * 1. 訂單結案 (CLOSED) 的交易提交後，只把訂單 ID 放進記憶體佇列，請求路徑不做任何資料庫操作。
+ * 2. 排程批次讀取佇列中訂單的品項，透過快取的配方表拆解成原物料用量，依 (分店, 原物料, 日期) 合併。
+ * 3. 合併後的用量以批次 upsert 累加到 inventory_theoretical_usage；寫入失敗時保留在記憶體，下次排程重試。
+ * 4. 庫存差異報表直接讀取累計表，不再於報表時重播訂單與配方。
+ * </p>
+ * 用量日期與 V17 回填相同，以 completed_time::date 在資料庫切日 (連線時區即 JVM 時區)。
+ * 累計表只從涵蓋起始日 (inventory_usage_watermark.live_from，首次啟用日的隔天) 起是完整的；
+ * 報表區間早於起始日時改為重播訂單，不會少算 V17 回填之後到啟用之前的用量。
+ * 注意：佇列屬於單一實例，實例在提交後、寫入前當機時，該批訂單的用量會遺失，可以 rebuild 重算當天以前的日期修正；
+ * 因此預設關閉 (app.inventory.depletion.enabled)，關閉時庫存差異報表改為重播訂單。
+ * 停用一段時間後重新啟用，需以 rebuild 重算停用期間的日期，否則該期間的報表會少算。
+ */
+@Service
+public class InventoryDepletionService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryDepletionService.class);
+
+    // IN 查詢一次帶入的訂單數上限
+    private static final int QUERY_CHUNK_SIZE = 1000;
+
+    private final Queue<Long> closedOrderIds = new ConcurrentLinkedQueue<>();
+
+    // 已拆解、尚未寫入的用量 (只在 flush 中存取；排序後寫入，各實例以相同順序鎖定資料列)
+    private final Map<UsageKey, BigDecimal> pendingUsage = new TreeMap<>();
+
+    private final InventoryUsageDAO usageDAO;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter ordersCounter;
+    private final Counter skippedLinesCounter;
+    private final Counter flushFailureCounter;
+
+    private RecipeBook recipeBook;
+
+    // 累計表完整涵蓋的起始日 (null 代表尚未讀取；其他實例 rebuild 後往前移，本實例最多晚一次讀取才得知，只會多用重播)
+    private volatile LocalDate liveFrom;
+
+    @Value("${app.inventory.depletion.enabled:false}")
+    private boolean enabled;
+
+    // 配方快取的重新載入間隔 (秒)
+    @Value("${app.inventory.depletion.recipe-refresh-seconds:300}")
+    private long recipeRefreshSeconds;
+
+    public InventoryDepletionService(InventoryUsageDAO usageDAO,
+                                     PlatformTransactionManager transactionManager,
+                                     MeterRegistry meterRegistry) {
+        this.usageDAO = usageDAO;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ordersCounter = Counter.builder("inventory.depletion.orders")
+                .description("已計算理論消耗的結案訂單數")
+                .register(meterRegistry);
+        this.skippedLinesCounter = Counter.builder("inventory.depletion.skipped.lines")
+                .description("缺少規格資訊而略過的訂單品項數")
+                .register(meterRegistry);
+        this.flushFailureCounter = Counter.builder("inventory.depletion.flush.failures")
+                .description("理論消耗寫入失敗次數")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 啟動完成後登記涵蓋起始日 (首次啟用時為明天；已登記過則沿用)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            liveFrom = usageDAO.initLiveFrom(LocalDate.now().plusDays(1));
+            logger.info("即時理論消耗已啟用，累計表涵蓋 {} 起的用量", liveFrom);
+        } catch (RuntimeException e) {
+            // 讀取失敗時報表一律重播訂單，查詢時再重試
+            logger.warn("無法登記理論消耗的涵蓋起始日", e);
+        }
+    }
+
+    /**
+     * 累計表是否完整涵蓋自指定日期起的用量 (未啟用或早於涵蓋起始日時為 false，報表需重播訂單)
+     */
+    public boolean coversFrom(LocalDate startDate) {
+        if (!enabled) {
+            return false;
+        }
+        LocalDate from = liveFrom;
+        if (from == null) {
+            from = usageDAO.findLiveFrom();
+            liveFrom = from;
+        }
+        return from != null && !startDate.isBefore(from);
+    }
+
+    /**
+     * 以已結案訂單重算 [from, to] 的用量 (可重複執行；只能重算今天以前的日期)
+     * <p>
+     * 用於補回當機遺失的用量、停用期間的用量，或在啟用前回填較早的日期；
+     * 重算範圍與涵蓋起始日相連時，起始日往前移到 from。
+     * </p>
+     *
+     * @return 寫入的列數
+     */
+    public int rebuild(LocalDate from, LocalDate to) {
+        if (from.isAfter(to) || !to.isBefore(LocalDate.now())) {
+            throw new BadRequestException("重算範圍需在今天以前，且起始日不可晚於結束日");
+        }
+        Integer rows = transactionTemplate.execute(status -> {
+            int written = usageDAO.rebuildUsage(from, to);
+            LocalDate current = usageDAO.findLiveFrom();
+            if (current != null && from.isBefore(current) && !to.isBefore(current.minusDays(1))) {
+                usageDAO.lowerLiveFrom(from);
+            }
+            return written;
+        });
+        liveFrom = null;
+        logger.info("理論消耗重算完成 ({} ~ {})，寫入 {} 筆", from, to, rows);
+        return rows != null ? rows : 0;
+    }
+
+    /**
+     * 訂單結案提交後加入佇列 (只記錄 ID)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderStateChanged(OrderStateChangedEvent event) {
+        if (!enabled || event.newStatus() != OrderStatus.CLOSED || event.order().getId() == null) {
+            return;
+        }
+        closedOrderIds.add(event.order().getId());
+    }
+
+    /**
+     * 拆解佇列中的訂單並寫入累計表 (單一交易)
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.depletion.flush-interval-ms:2000}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        List<Long> orderIds = new ArrayList<>();
+        Long orderId;
+        while ((orderId = closedOrderIds.poll()) != null) {
+            orderIds.add(orderId);
+        }
+
+        if (!orderIds.isEmpty()) {
+            try {
+                explode(orderIds);
+            } catch (RuntimeException e) {
+                // 讀取失敗：訂單放回佇列，下次排程重試
+                closedOrderIds.addAll(orderIds);
+                flushFailureCounter.increment();
+                logger.error("讀取結案訂單品項失敗，將於下次排程重試 ({} 筆訂單)", orderIds.size(), e);
+                return;
+            }
+        }
+        if (pendingUsage.isEmpty()) {
+            return;
+        }
+
+        List<InventoryUsageDAO.UsageDeltaTuple> deltas = new ArrayList<>(pendingUsage.size());
+        pendingUsage.forEach((key, quantity) -> deltas.add(
+                new InventoryUsageDAO.UsageDeltaTuple(key.storeId(), key.itemId(), key.usageDate(), quantity)));
+        try {
+            transactionTemplate.executeWithoutResult(status -> usageDAO.batchUpsertUsage(deltas));
+            pendingUsage.clear();
+        } catch (RuntimeException e) {
+            flushFailureCounter.increment();
+            logger.error("理論消耗寫入失敗，將於下次排程重試 ({} 筆)", deltas.size(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void explode(List<Long> orderIds) {
+        RecipeBook recipes = recipeBook();
+        Map<UsageKey, BigDecimal> exploded = new HashMap<>();
+        Set<Long> explodedVariantLines = new HashSet<>();
+
+        for (int from = 0; from < orderIds.size(); from += QUERY_CHUNK_SIZE) {
+            List<Long> chunk = orderIds.subList(from, Math.min(from + QUERY_CHUNK_SIZE, orderIds.size()));
+            for (InventoryUsageDAO.OrderLineTuple line : usageDAO.findClosedOrderLines(chunk)) {
+                BigDecimal qty = BigDecimal.valueOf(line.quantity());
+
+                // A. 飲品規格配方：品項有多個選項時會出現多列，只計算一次
+                if (explodedVariantLines.add(line.orderItemId())) {
+                    if (line.variantId() == null) {
+                        skippedLinesCounter.increment();
+                        logger.warn("訂單品項 {} 缺少規格(Variant)資訊，略過配方消耗", line.orderItemId());
+                    } else {
+                        accumulate(exploded, line, recipes.byVariant().get(line.variantId()), qty);
+                    }
+                }
+
+                // B. 加料選項配方
+                if (line.optionId() != null) {
+                    accumulate(exploded, line, recipes.byOption().get(line.optionId()), qty);
+                }
+            }
+        }
+
+        // 全部拆解成功才併入待寫入量，失敗時整批重試不會重複計算
+        exploded.forEach((key, quantity) -> pendingUsage.merge(key, quantity, BigDecimal::add));
+        ordersCounter.increment(orderIds.size());
+    }
+
+    private static void accumulate(Map<UsageKey, BigDecimal> usage, InventoryUsageDAO.OrderLineTuple line,
+                                   List<InventoryUsageDAO.RecipeTuple> recipes, BigDecimal qty) {
+        if (recipes == null) {
+            return;
+        }
+        for (InventoryUsageDAO.RecipeTuple recipe : recipes) {
+            usage.merge(new UsageKey(line.storeId(), recipe.inventoryItemId(), line.usageDate()),
+                    recipe.quantity().multiply(qty), BigDecimal::add);
+        }
+    }
+
+    /**
+     * 配方快取 (超過重新載入間隔才重新查詢)
+     */
+    private RecipeBook recipeBook() {
+        long now = System.currentTimeMillis();
+        if (recipeBook == null || now - recipeBook.loadedAt() > recipeRefreshSeconds * 1_000L) {
+            Map<Long, List<InventoryUsageDAO.RecipeTuple>> byVariant = new HashMap<>();
+            Map<Long, List<InventoryUsageDAO.RecipeTuple>> byOption = new HashMap<>();
+            for (InventoryUsageDAO.RecipeTuple recipe : usageDAO.findAllRecipes()) {
+                if (recipe.variantId() != null) {
+                    byVariant.computeIfAbsent(recipe.variantId(), k -> new ArrayList<>()).add(recipe);
+                }
+                if (recipe.optionId() != null) {
+                    byOption.computeIfAbsent(recipe.optionId(), k -> new ArrayList<>()).add(recipe);
+                }
+            }
+            recipeBook = new RecipeBook(byVariant, byOption, now);
+        }
+        return recipeBook;
+    }
+
+    private record RecipeBook(Map<Long, List<InventoryUsageDAO.RecipeTuple>> byVariant,
+                              Map<Long, List<InventoryUsageDAO.RecipeTuple>> byOption,
+                              long loadedAt) {}
+
+    private record UsageKey(long storeId, long itemId, LocalDate usageDate) implements Comparable<UsageKey> {
+        @Override
+        public int compareTo(UsageKey other) {
+            int result = Long.compare(storeId, other.storeId);
+            if (result == 0) result = Long.compare(itemId, other.itemId);
+            return result != 0 ? result : usageDate.compareTo(other.usageDate);
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package tw.niels.beverage_api_project.modules.inventory.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.common.exception.ResourceNotFoundException;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryBatchDAO;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryReservationDAO;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryBatch;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryItem;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryBatchRepository;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryItemRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 記憶體內的庫存預留帳本 (預留模式，app.inventory.reservation.enabled)
+ * <p>
+ * 1. 每個 (分店, 原物料) 一筆可用量，以 CAS 檢查並預留，扣減不需鎖定 inventory_items / inventory_batches 的資料列。
+ * 2. 交易提交後才把預留量計入待寫回量；交易回滾時歸還可用量。
+ * 3. 排程定期把待寫回量依分店寫回 (每家分店一個交易)：批次依 FIFO 扣減，
+ *    inventory_items.total_quantity 以實際從批次扣下的量做相對更新，與批次總和保持一致。
+ *    單一分店寫回失敗只保留該分店的待寫回量，不影響其他分店。
+ * 4. 啟動時從資料庫重建帳本；之後未載入的組合在第一次使用時才載入。
+ * </p>
+ * 注意：帳本屬於單一實例。啟用前須確保同一分店的扣減都由同一個實例處理 (例如分店黏著的負載平衡)，
+ * 否則各實例的可用量互不知情，可能在一次寫回間隔內超賣。
+ * 待寫回量只存在記憶體中：正常關閉時會先寫回，但實例當機時，尚未寫回的預留 (最多一個寫回間隔) 會遺失，
+ * 資料庫的批次數量會高於實際，需以盤點修正。
+ * 數量以 2 位小數 (與 current_quantity 相同) 的整數計算。
+ */
+@Service
+public class InventoryReservationLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryReservationLedger.class);
+
+    private static final int SCALE = 2;
+
+    private final Map<StockKey, Entry> entries = new ConcurrentHashMap<>();
+
+    private final InventoryItemRepository itemRepository;
+    private final InventoryBatchRepository batchRepository;
+    private final InventoryBatchDAO inventoryBatchDAO;
+    private final InventoryReservationDAO reservationDAO;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter reservedCounter;
+    private final Counter rejectedCounter;
+    private final Counter shortageCounter;
+
+    @Value("${app.inventory.reservation.enabled:false}")
+    private boolean enabled;
+
+    public InventoryReservationLedger(InventoryItemRepository itemRepository,
+                                      InventoryBatchRepository batchRepository,
+                                      InventoryBatchDAO inventoryBatchDAO,
+                                      InventoryReservationDAO reservationDAO,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry) {
+        this.itemRepository = itemRepository;
+        this.batchRepository = batchRepository;
+        this.inventoryBatchDAO = inventoryBatchDAO;
+        this.reservationDAO = reservationDAO;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.reservedCounter = Counter.builder("inventory.reservation.requests")
+                .description("庫存預留次數")
+                .tag("result", "reserved")
+                .register(meterRegistry);
+        this.rejectedCounter = Counter.builder("inventory.reservation.requests")
+                .description("庫存預留次數")
+                .tag("result", "rejected")
+                .register(meterRegistry);
+        this.shortageCounter = Counter.builder("inventory.reservation.flush.shortages")
+                .description("寫回時批次剩餘量不足的次數 (帳本與資料庫不一致)")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 啟動時從資料庫重建帳本
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        if (!enabled) {
+            return;
+        }
+        List<InventoryReservationDAO.AvailableStockTuple> stocks = reservationDAO.loadAvailableStocks();
+        for (InventoryReservationDAO.AvailableStockTuple stock : stocks) {
+            entries.putIfAbsent(new StockKey(stock.storeId(), stock.inventoryItemId()),
+                    new Entry(stock.brandId(), stock.itemName(), toMinor(stock.quantity())));
+        }
+        logger.info("庫存預留帳本已重建 ({} 筆分店原物料)", stocks.size());
+    }
+
+    /**
+     * 檢查並預留庫存 (不需資料列鎖)
+     * 在交易中呼叫時，提交後才計入待寫回量，回滾時歸還
+     *
+     * @throws BadRequestException 可用量不足 (error.inventory.insufficient)
+     */
+    public void reserve(Long brandId, Long storeId, Long itemId, BigDecimal quantity) {
+        Entry entry = entryOf(brandId, storeId, itemId);
+        long requested = toMinor(quantity);
+
+        long current;
+        do {
+            current = entry.available.get();
+            if (current < requested) {
+                rejectedCounter.increment();
+                throw new BadRequestException(
+                        "error.inventory.insufficient",
+                        entry.itemName,
+                        toAmount(current),
+                        quantity
+                );
+            }
+        } while (!entry.available.compareAndSet(current, current - requested));
+        reservedCounter.increment();
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        entry.pending.addAndGet(requested);
+                    } else {
+                        entry.available.addAndGet(requested);
+                    }
+                }
+            });
+        } else {
+            entry.pending.addAndGet(requested);
+        }
+    }
+
+    /**
+     * 其他途徑 (進貨、盤點) 直接改變批次數量時，同步調整已載入的可用量
+     * 在交易中呼叫時於提交後才調整；尚未載入的組合不需處理 (之後載入時會讀到最新值)
+     */
+    public void adjust(Long storeId, Long itemId, BigDecimal delta) {
+        if (!enabled) {
+            return;
+        }
+        long minor = toMinor(delta);
+        Runnable apply = () -> {
+            Entry entry = entries.get(new StockKey(storeId, itemId));
+            if (entry != null) {
+                entry.available.addAndGet(minor);
+            }
+        };
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply.run();
+                }
+            });
+        } else {
+            apply.run();
+        }
+    }
+
+    /**
+     * 目前的可用量 (未載入時回傳 null)
+     */
+    public BigDecimal availableQuantity(Long storeId, Long itemId) {
+        Entry entry = entries.get(new StockKey(storeId, itemId));
+        return entry != null ? toAmount(entry.available.get()) : null;
+    }
+
+    /**
+     * 將累積的預留量寫回資料庫 (每家分店一個交易)
+     * 寫回失敗的分店，其待寫回量放回帳本，下次排程重試
+     */
+    @Scheduled(fixedDelayString = "${app.inventory.reservation.flush-interval-ms:500}")
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        // 依分店、原物料排序，與其他交易以相同順序上鎖
+        Map<Long, Map<Long, Long>> drained = new TreeMap<>();
+        entries.forEach((key, entry) -> {
+            long pending = entry.pending.getAndSet(0);
+            if (pending > 0) {
+                drained.computeIfAbsent(key.storeId(), k -> new TreeMap<>()).put(key.itemId(), pending);
+            }
+        });
+
+        drained.forEach((storeId, pendingByItem) -> {
+            try {
+                transactionTemplate.executeWithoutResult(status -> writeBack(storeId, pendingByItem));
+            } catch (RuntimeException e) {
+                pendingByItem.forEach((itemId, pending) ->
+                        entries.get(new StockKey(storeId, itemId)).pending.addAndGet(pending));
+                logger.error("庫存預留寫回失敗 (Store: {}, {} 筆)，將於下次排程重試", storeId, pendingByItem.size(), e);
+            }
+        });
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    private void writeBack(Long storeId, Map<Long, Long> pendingByItem) {
+        // 1. 鎖定該分店的可用批次，依 FIFO 扣減
+        List<InventoryBatch> batches = batchRepository.findAvailableBatchesForItemsForUpdate(
+                storeId, pendingByItem.keySet());
+        Map<Long, List<InventoryBatch>> batchesByItem = batches.stream()
+                .collect(Collectors.groupingBy(b -> b.getInventoryItem().getId()));
+
+        List<InventoryBatchDAO.BatchUpdateTuple> batchUpdates = new ArrayList<>();
+        List<InventoryReservationDAO.ItemDeductionTuple> itemDeductions = new ArrayList<>();
+        pendingByItem.forEach((itemId, pending) -> {
+            long remaining = pending;
+            for (InventoryBatch batch : batchesByItem.getOrDefault(itemId, List.of())) {
+                if (remaining <= 0) break;
+                long current = toMinor(batch.getCurrentQuantity());
+                long taken = Math.min(current, remaining);
+                remaining -= taken;
+                batchUpdates.add(new InventoryBatchDAO.BatchUpdateTuple(batch.getId(), toAmount(current - taken)));
+            }
+            if (remaining > 0) {
+                // 已經賣出，無法再拒絕；留下紀錄並以盤點修正
+                shortageCounter.increment();
+                logger.warn("預留寫回時批次剩餘量不足 (Store: {}, Item: {}, 短缺: {})",
+                        storeId, itemId, toAmount(remaining));
+            }
+            // 2. 原物料總量只扣減實際從批次扣下的量，與批次總和保持一致
+            if (pending > remaining) {
+                itemDeductions.add(new InventoryReservationDAO.ItemDeductionTuple(itemId, toAmount(pending - remaining)));
+            }
+        });
+
+        reservationDAO.batchDecreaseTotalQuantities(itemDeductions);
+        inventoryBatchDAO.batchUpdateQuantities(batchUpdates);
+    }
+
+    private Entry entryOf(Long brandId, Long storeId, Long itemId) {
+        StockKey key = new StockKey(storeId, itemId);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            entry = load(brandId, storeId, itemId);
+            Entry existing = entries.putIfAbsent(key, entry);
+            if (existing != null) {
+                entry = existing;
+            }
+        }
+        if (!entry.brandId.equals(brandId)) {
+            throw new ResourceNotFoundException("error.resource.not_found", "Item ID: " + itemId);
+        }
+        return entry;
+    }
+
+    /**
+     * 載入單一組合 (在資料庫查詢期間不持有任何鎖；同時載入時以先放入帳本者為準)
+     */
+    private Entry load(Long brandId, Long storeId, Long itemId) {
+        InventoryItem item = itemRepository.findByBrand_IdAndId(brandId, itemId)
+                .orElseThrow(() -> new ResourceNotFoundException("error.resource.not_found", "Item ID: " + itemId));
+        BigDecimal available = batchRepository.sumQuantityByStoreAndItem(storeId, itemId).orElse(BigDecimal.ZERO);
+        return new Entry(brandId, item.getName(), toMinor(available));
+    }
+
+    private static long toMinor(BigDecimal quantity) {
+        return quantity.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal toAmount(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+
+    private record StockKey(long storeId, long itemId) implements Comparable<StockKey> {
+        @Override
+        public int compareTo(StockKey other) {
+            int byStore = Long.compare(storeId, other.storeId);
+            return byStore != 0 ? byStore : Long.compare(itemId, other.itemId);
+        }
+    }
+
+    private static final class Entry {
+        private final Long brandId;
+        private final String itemName;
+        // 可預留的數量 (已扣除所有預留，包含尚未寫回的)
+        private final AtomicLong available;
+        // 已提交、尚未寫回資料庫的預留量
+        private final AtomicLong pending = new AtomicLong();
+
+        private Entry(Long brandId, String itemName, long available) {
+            this.brandId = brandId;
+            this.itemName = itemName;
+            this.available = new AtomicLong(available);
+        }
+    }
+}
@@ -37,6 +37,7 @@ public class InventoryService {
     private final InventoryBatchDAO inventoryBatchDAO;
     private final InventorySnapshotRepository snapshotRepository;
     private final InventoryTransactionRepository transactionRepository;
+    private final InventoryReservationLedger reservationLedger;
 
     public InventoryService(InventoryItemRepository itemRepository,
                             InventoryBatchRepository batchRepository,
@@ -46,7 +47,8 @@ public class InventoryService {
                             UserRepository userRepository,
                             ControllerHelperService helperService,
                             InventorySnapshotRepository snapshotRepository,
-                            InventoryTransactionRepository transactionRepository) {
+                            InventoryTransactionRepository transactionRepository,
+                            InventoryReservationLedger reservationLedger) {
         this.itemRepository = itemRepository;
         this.batchRepository = batchRepository;
         this.inventoryBatchDAO = inventoryBatchDAO;
@@ -56,6 +58,7 @@ public class InventoryService {
         this.helperService = helperService;
         this.snapshotRepository = snapshotRepository;
         this.transactionRepository = transactionRepository;
+        this.reservationLedger = reservationLedger;
     }
 
     /**
@@ -153,6 +156,18 @@ public class InventoryService {
         snapshotRepository.saveAll(snapshotMap.values()); // 寫入所有更新後的 Snapshot
         transactionRepository.saveAll(transactionsToSave);
 
+        // 7. 原物料總量與批次總和保持一致 (扣減時以總量做快速檢查，預留模式寫回時也會扣減)
+        Map<Long, BigDecimal> receivedByItem = new TreeMap<>();
+        for (InventoryBatch batch : batchesToSave) {
+            receivedByItem.merge(batch.getInventoryItem().getId(), batch.getQuantityReceived(), BigDecimal::add);
+        }
+        receivedByItem.forEach(itemRepository::increaseTotalQuantity);
+
+        // 8. 預留模式：提交後同步帳本的可用量
+        for (InventoryBatch batch : batchesToSave) {
+            reservationLedger.adjust(storeId, batch.getInventoryItem().getId(), batch.getCurrentQuantity());
+        }
+
         return shipment;
 
     }
@@ -162,6 +177,7 @@ public class InventoryService {
      * 【混合架構優化】：
      * 1. 使用 JPA Repository 查詢可用批次 (Read)。
      * 2. 使用 JDBC DAO 進行批次更新 (Write)，提升效能。
+     * 預留模式下改由 InventoryReservationLedger 在記憶體內檢查並預留，定期批次寫回，不鎖定資料列。
      */
     @Transactional
     public void deductInventory(Long brandId, Long storeId, Long itemId, BigDecimal quantityToDeduct) {
@@ -169,6 +185,11 @@ public class InventoryService {
             throw new BadRequestException("扣減數量必須大於 0");
         }
 
+        if (reservationLedger.isEnabled()) {
+            reservationLedger.reserve(brandId, storeId, itemId, quantityToDeduct);
+            return;
+        }
+
         // 1. 鎖定原物料 (Item Level Lock)
         InventoryItem item = itemRepository.findByBrandIdAndIdForUpdate(brandId, itemId)
                 .orElseThrow(() -> new ResourceNotFoundException("error.resource.not_found", "Item ID: " + itemId));
@@ -301,10 +322,12 @@ public class InventoryService {
             if (diff.compareTo(BigDecimal.ZERO) > 0) {
                 // 盤盈 (Gain): 立即建立新批次
                 handleInventoryGain(store, item, diff, itemDto.getGainedItemExpiryDate());
+                reservationLedger.adjust(storeId, itemId, diff);
             } else if (diff.compareTo(BigDecimal.ZERO) < 0) {
                 // 盤損 (Loss): 收集起來，稍後批次扣減
                 // diff 為負數，取絕對值為需扣減量
                 pendingDeductions.put(itemId, diff.abs());
+                reservationLedger.adjust(storeId, itemId, diff);
             }
         }
 
@@ -321,6 +344,7 @@ public class InventoryService {
     /**
      * [新增] 批次處理庫存扣減 (Batch Deduct)
      * 取代迴圈內的 deductInventory，大幅減少 DB 交互次數
+     * 批次層級的 FIFO 扣減在資料庫內以單一 SQL 完成 (InventoryBatchDAO.deductFifo)
      */
     private void processBatchDeductions(Long brandId, Long storeId, Map<Long, BigDecimal> deductionMap) {
         Set<Long> itemIds = deductionMap.keySet();
@@ -354,49 +378,14 @@ public class InventoryService {
         }
         itemRepository.saveAll(itemsToUpdate); // 批次更新總量
 
-        // C. 批次查詢所有相關的可用 Batches (Batch Level Update)
-        List<InventoryBatch> allBatches = batchRepository.findAvailableBatchesForItems(storeId, itemIds);
-
-        // 將 Batches 依照 Item 分組
-        Map<Long, List<InventoryBatch>> batchesByItem = allBatches.stream()
-                .collect(Collectors.groupingBy(b -> b.getInventoryItem().getId()));
-
-        // 準備 JDBC Batch Update 列表
-        List<InventoryBatchDAO.BatchUpdateTuple> batchUpdates = new ArrayList<>();
+        // C. 批次 FIFO 扣減 (Batch Level Update)
+        // 由資料庫以單一 SQL 鎖定批次、計算累計量並更新，不需載入批次實體
+        Map<Long, BigDecimal> shortfalls = inventoryBatchDAO.deductFifo(storeId, deductionMap);
 
-        // D. 記憶體內計算 FIFO 扣減
-        for (Long itemId : itemIds) {
-            BigDecimal remainingToDeduct = deductionMap.get(itemId);
-            List<InventoryBatch> itemBatches = batchesByItem.getOrDefault(itemId, Collections.emptyList());
-
-            for (InventoryBatch batch : itemBatches) {
-                if (remainingToDeduct.compareTo(BigDecimal.ZERO) <= 0) break;
-
-                BigDecimal currentQty = batch.getCurrentQuantity();
-                BigDecimal newQty;
-
-                if (currentQty.compareTo(remainingToDeduct) >= 0) {
-                    // 此批次足夠
-                    newQty = currentQty.subtract(remainingToDeduct);
-                    remainingToDeduct = BigDecimal.ZERO;
-                } else {
-                    // 此批次不足，扣光
-                    newQty = BigDecimal.ZERO;
-                    remainingToDeduct = remainingToDeduct.subtract(currentQty);
-                }
-
-                batchUpdates.add(new InventoryBatchDAO.BatchUpdateTuple(batch.getId(), newQty));
-            }
-
-            // 二次檢查：如果跑完所有批次還是不夠扣 (理論上前面 Item Total Check 應該攔截了，但為了資料一致性再次確認)
-            if (remainingToDeduct.compareTo(BigDecimal.ZERO) > 0) {
-                throw new IllegalStateException("庫存資料不一致：Item總量檢查通過，但實際批次總和不足。Item ID: " + itemId + ", 短缺: " + remainingToDeduct);
-            }
-        }
-
-        // E. 執行 JDBC 批次更新
-        if (!batchUpdates.isEmpty()) {
-            inventoryBatchDAO.batchUpdateQuantities(batchUpdates);
+        // 二次檢查：如果跑完所有批次還是不夠扣 (理論上前面 Item Total Check 應該攔截了，但為了資料一致性再次確認)
+        if (!shortfalls.isEmpty()) {
+            Map.Entry<Long, BigDecimal> shortfall = shortfalls.entrySet().iterator().next();
+            throw new IllegalStateException("庫存資料不一致：Item總量檢查通過，但實際批次總和不足。Item ID: " + shortfall.getKey() + ", 短缺: " + shortfall.getValue());
         }
     }
 
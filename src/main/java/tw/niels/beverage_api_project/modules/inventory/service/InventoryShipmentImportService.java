@@ -0,0 +1,196 @@
+package tw.niels.beverage_api_project.modules.inventory.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.common.exception.ResourceNotFoundException;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryShipmentImportDAO;
+import tw.niels.beverage_api_project.modules.inventory.dto.ShipmentImportResultDto;
+import tw.niels.beverage_api_project.modules.inventory.entity.PurchaseShipment;
+import tw.niels.beverage_api_project.modules.inventory.repository.PurchaseShipmentRepository;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+import tw.niels.beverage_api_project.modules.user.entity.User;
+import tw.niels.beverage_api_project.modules.user.repository.UserRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 大量進貨匯入 (供應商發票 CSV)
+ * <p>
+ * 1. 逐行解析 CSV 並以 COPY 串流寫入暫存表，不建立任何實體，也不把整份檔案載入記憶體。
+ * 2. 以集合式 SQL 合併到批次、異動紀錄與快照 (每個資料表一個 SQL)，整份進貨單在同一個交易中完成。
+ * 3. 結果與逐筆呼叫 InventoryService.addShipment 相同：每列一個批次與一筆 RESTOCK 異動紀錄，快照累加。
+ * </p>
+ * CSV 格式：inventory_item_id,quantity,expiry_date (yyyy-MM-dd)，第一行可為標題列。
+ */
+@Service
+public class InventoryShipmentImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryShipmentImportService.class);
+
+    private final InventoryShipmentImportDAO importDAO;
+    private final PurchaseShipmentRepository shipmentRepository;
+    private final StoreRepository storeRepository;
+    private final UserRepository userRepository;
+    private final ControllerHelperService helperService;
+    private final InventoryReservationLedger reservationLedger;
+
+    // 單次匯入的最大行數 (每行約 30 位元組，預設值可在 multipart 預設的 1MB 上限內)
+    @Value("${app.inventory.shipment-import.max-lines:20000}")
+    private int maxLines;
+
+    public InventoryShipmentImportService(InventoryShipmentImportDAO importDAO,
+                                          PurchaseShipmentRepository shipmentRepository,
+                                          StoreRepository storeRepository,
+                                          UserRepository userRepository,
+                                          ControllerHelperService helperService,
+                                          InventoryReservationLedger reservationLedger) {
+        this.importDAO = importDAO;
+        this.shipmentRepository = shipmentRepository;
+        this.storeRepository = storeRepository;
+        this.userRepository = userRepository;
+        this.helperService = helperService;
+        this.reservationLedger = reservationLedger;
+    }
+
+    @Transactional
+    public ShipmentImportResultDto importShipment(Long brandId, Long storeId, String supplier, String invoiceNo,
+                                                  String notes, InputStream csv) {
+        Store store = storeRepository.findByBrand_IdAndId(brandId, storeId)
+                .orElseThrow(() -> new ResourceNotFoundException("Store not found: " + storeId));
+
+        Long userId = helperService.getCurrentUserId();
+        User staff = userRepository.findByBrand_IdAndId(brandId, userId)
+                .orElseThrow(() -> new ResourceNotFoundException("Staff not found: " + userId));
+
+        // 1. 建立進貨單主檔 (立即 flush，之後的 JDBC INSERT 需參照它)
+        PurchaseShipment shipment = new PurchaseShipment();
+        shipment.setStore(store);
+        shipment.setStaff(staff);
+        shipment.setShipmentDate(LocalDateTime.now());
+        shipment.setSupplier(supplier);
+        shipment.setInvoiceNo(invoiceNo);
+        shipment.setNotes(notes);
+        shipment = shipmentRepository.saveAndFlush(shipment);
+
+        // 2. 串流寫入暫存表
+        long start = System.nanoTime();
+        importDAO.createStagingTable();
+        long lineCount = importDAO.copyToStaging(
+                new CsvLineIterator(new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8)), maxLines));
+        if (lineCount == 0) {
+            throw new BadRequestException("進貨品項不可為空");
+        }
+
+        Long foreignItemId = importDAO.findForeignItemId(brandId);
+        if (foreignItemId != null) {
+            throw new ResourceNotFoundException("部分原物料 ID 不存在或不屬於該品牌: " + foreignItemId);
+        }
+
+        // 3. 合併到正式資料表
+        importDAO.mergeStaging(shipment.getId(), storeId, staff.getId(), "進貨單號: " + shipment.getId());
+
+        // 4. 預留模式：提交後同步帳本的可用量
+        if (reservationLedger.isEnabled()) {
+            importDAO.sumStagedQuantities().forEach((itemId, quantity) ->
+                    reservationLedger.adjust(storeId, itemId, quantity));
+        }
+
+        logger.info("大量進貨匯入完成 (Store: {}, Shipment: {}, {} 筆, {} ms)",
+                storeId, shipment.getId(), lineCount, (System.nanoTime() - start) / 1_000_000);
+        return new ShipmentImportResultDto(shipment.getId(), lineCount);
+    }
+
+    /**
+     * 逐行解析 CSV，並為每列預先產生批次、異動紀錄與快照的 TSID
+     */
+    private static final class CsvLineIterator implements Iterator<InventoryShipmentImportDAO.StagingLine> {
+
+        private final BufferedReader reader;
+        private final int maxLines;
+        private int lineNo;
+        private int dataLines;
+        private InventoryShipmentImportDAO.StagingLine next;
+
+        private CsvLineIterator(BufferedReader reader, int maxLines) {
+            this.reader = reader;
+            this.maxLines = maxLines;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = readNext();
+            }
+            return next != null;
+        }
+
+        @Override
+        public InventoryShipmentImportDAO.StagingLine next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            InventoryShipmentImportDAO.StagingLine line = next;
+            next = null;
+            return line;
+        }
+
+        private InventoryShipmentImportDAO.StagingLine readNext() {
+            String raw;
+            try {
+                while ((raw = reader.readLine()) != null) {
+                    lineNo++;
+                    // Excel 匯出的 UTF-8 檔案可能帶有 BOM
+                    String text = (lineNo == 1 && raw.startsWith("\uFEFF") ? raw.substring(1) : raw).strip();
+                    // 略過空行；第一行若不是數字開頭視為標題列
+                    if (text.isEmpty() || (lineNo == 1 && !Character.isDigit(text.charAt(0)))) {
+                        continue;
+                    }
+                    if (++dataLines > maxLines) {
+                        throw new BadRequestException("進貨明細超過上限 " + maxLines + " 筆");
+                    }
+                    return parse(text);
+                }
+                return null;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private InventoryShipmentImportDAO.StagingLine parse(String text) {
+            String[] columns = text.split(",", -1);
+            if (columns.length != 3) {
+                throw new BadRequestException("第 " + lineNo + " 行格式錯誤，應為 inventory_item_id,quantity,expiry_date");
+            }
+            try {
+                long itemId = Long.parseLong(columns[0].strip());
+                BigDecimal quantity = new BigDecimal(columns[1].strip());
+                LocalDate expiryDate = LocalDate.parse(columns[2].strip());
+                if (quantity.compareTo(new BigDecimal("0.01")) < 0 || quantity.scale() > 2) {
+                    throw new BadRequestException("第 " + lineNo + " 行數量必須大於 0 且最多 2 位小數");
+                }
+                return new InventoryShipmentImportDAO.StagingLine(lineNo,
+                        TsidUtil.nextId(), TsidUtil.nextId(), TsidUtil.nextId(), itemId, quantity, expiryDate);
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new BadRequestException("第 " + lineNo + " 行格式錯誤: " + e.getMessage());
+            }
+        }
+    }
+}
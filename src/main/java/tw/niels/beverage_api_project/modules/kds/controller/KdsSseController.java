@@ -21,14 +21,29 @@ public class KdsSseController {
         this.controllerHelperService = controllerHelperService;
     }
 
-    @Operation(summary = "訂閱訂單即時更新 (SSE)", description = "建立 SSE 長連線，當訂單狀態改變時，Server 會主動推播事件。前端需使用 EventSource 連線。")
+    @Operation(summary = "訂閱訂單即時更新 (SSE)", description = "建立 SSE 長連線，當訂單狀態改變時，Server 會主動推播事件。前端需使用 EventSource 連線。" +
+            "重連時帶入 Last-Event-ID (EventSource 會自動帶入) 只補送遺漏的事件；遺漏過多時推送 RESYNC，前端需重新載入訂單清單。")
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public SseEmitter streamOrders(@RequestParam(required = false) String token) {
+    public SseEmitter streamOrders(@RequestParam(required = false) String token,
+                                   @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+                                   @RequestParam(required = false) String lastEventId) {
         // 1. 取得當前操作人員所屬的分店 ID
         // (假設 ControllerHelperService 會從 SecurityContext 或 Token 解析)
         Long storeId = controllerHelperService.getCurrentStoreId();
 
-        // 2. 訂閱 SSE
-        return kdsService.subscribe(storeId);
+        // 2. 訂閱 SSE (Header 優先，Query 參數供手動重建 EventSource 時使用)
+        return kdsService.subscribe(storeId, parseEventId(lastEventIdHeader != null ? lastEventIdHeader : lastEventId));
+    }
+
+    // 格式不正確的 ID 視為首次連線
+    private static Long parseEventId(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
     }
 }
\ No newline at end of file
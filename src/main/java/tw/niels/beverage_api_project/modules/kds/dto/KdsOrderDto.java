@@ -5,6 +5,8 @@ import lombok.NoArgsConstructor;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
 import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.vo.OptionSnapshot;
+import tw.niels.beverage_api_project.modules.order.vo.ProductSnapshot;
 import tw.niels.beverage_api_project.modules.product.entity.ProductOption;
 
 import java.util.Date;
@@ -58,12 +60,21 @@ public class KdsOrderDto {
 
         public KdsOrderItemDto(OrderItem item) {
             this.orderItemId = item.getId();
-            this.productName = item.getProduct().getName();
+            // 優先使用下單時的快照，避免觸發 Lazy Loading
+            ProductSnapshot snapshot = item.getProductSnapshot();
+            this.productName = snapshot != null && snapshot.name() != null
+                    ? snapshot.name() : item.getProduct().getName();
             this.quantity = item.getQuantity();
             this.notes = item.getNotes();
-            this.options = item.getOptions().stream()
-                    .map(KdsOrderOptionDto::fromEntity)
-                    .collect(Collectors.toList());
+            if (snapshot != null && snapshot.options() != null) {
+                this.options = snapshot.options().stream()
+                        .map(KdsOrderOptionDto::fromSnapshot)
+                        .collect(Collectors.toList());
+            } else {
+                this.options = item.getOptions().stream()
+                        .map(KdsOrderOptionDto::fromEntity)
+                        .collect(Collectors.toList());
+            }
         }
 
         public static KdsOrderItemDto fromEntity(OrderItem item) {
@@ -85,5 +96,11 @@ public class KdsOrderDto {
         public static KdsOrderOptionDto fromEntity(ProductOption option) {
             return new KdsOrderOptionDto(option);
         }
+
+        public static KdsOrderOptionDto fromSnapshot(OptionSnapshot option) {
+            KdsOrderOptionDto dto = new KdsOrderOptionDto();
+            dto.setOptionName(option.name());
+            return dto;
+        }
     }
 }
\ No newline at end of file
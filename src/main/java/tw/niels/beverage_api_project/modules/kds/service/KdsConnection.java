@@ -0,0 +1,201 @@
+package tw.niels.beverage_api_project.modules.kds.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 單一 KDS / POS 畫面的 SSE 連線
+ * <p>
+ * 每個連線有自己的待送佇列與寫入執行緒 (Virtual Thread)，RabbitMQ Listener 只負責放入佇列，
+ * 不會因為某台網路不穩的平板而卡住其他連線。
+ * KDS 的動作是增量而非快照 (前端只在 NEW_ORDER / MOVE_TO_PICKUP 建立卡片)，因此只有較新的訊框完全取代舊訊框時
+ * 才合併 (見 {@link #supersedes})：同一張訂單最後一個尚未送出的訊框被取代，新訊框移到佇列尾端，送出順序與事件 ID 順序一致；
+ * 其餘情況依序保留。佇列過長或落後過久的連線會被踢除。
+ * </p>
+ * 使用 ReentrantLock 而非 synchronized，避免 Virtual Thread 在等待時佔住載體執行緒。
+ */
+class KdsConnection {
+
+    private static final Logger logger = LoggerFactory.getLogger(KdsConnection.class);
+
+    enum OfferResult {
+        QUEUED,    // 已放入佇列
+        COALESCED, // 取代了同一張訂單尚未送出的舊訊框
+        REJECTED   // 佇列已滿或落後過久，連線應被踢除
+    }
+
+    private final Long storeId;
+    private final SseEmitter emitter;
+    private final int maxPending;
+    private final long maxLagMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    // 每個訊框一個獨立的 Key，依放入順序送出
+    private final LinkedHashMap<Object, Pending> pending = new LinkedHashMap<>();
+    // 訂單 ID -> 該訂單最後一個尚未送出的訊框 Key (合併時只與最後一個比較)
+    private final Map<Long, Object> latestByOrder = new HashMap<>();
+    private boolean closed;
+
+    KdsConnection(Long storeId, SseEmitter emitter, int maxPending, long maxLagMs) {
+        this.storeId = storeId;
+        this.emitter = emitter;
+        this.maxPending = maxPending;
+        this.maxLagMs = maxLagMs;
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    /**
+     * 放入待送訊框 (不會阻塞呼叫端)
+     *
+     * @param orderId 訂單 ID (沒有訂單 ID 的訊框不參與合併)
+     * @param action  前端動作 (未知時為 null，不參與合併)
+     */
+    OfferResult offer(Long orderId, String action, byte[] frame, long nowMillis) {
+        lock.lock();
+        try {
+            if (closed) {
+                return OfferResult.REJECTED;
+            }
+            Object key = new Object();
+            Object previousKey = orderId != null ? latestByOrder.get(orderId) : null;
+            Pending previous = previousKey != null ? pending.get(previousKey) : null;
+            if (previous != null && supersedes(previous.action(), action)) {
+                // 移到尾端 (排在較早放入的其他訂單之後)；保留原本的排隊時間，合併不會讓落後時間重新計算
+                pending.remove(previousKey);
+                pending.put(key, new Pending(orderId, action, frame, previous.enqueuedAt()));
+                latestByOrder.put(orderId, key);
+                return OfferResult.COALESCED;
+            }
+            if (pending.size() >= maxPending || lagMillis(nowMillis) > maxLagMs) {
+                return OfferResult.REJECTED;
+            }
+            pending.put(key, new Pending(orderId, action, frame, nowMillis));
+            if (orderId != null) {
+                latestByOrder.put(orderId, key);
+            }
+            notEmpty.signal();
+            return OfferResult.QUEUED;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 較新的動作送出後，是否與「先送舊動作再送新動作」的畫面結果相同 (可以丟棄舊訊框)
+     * <ul>
+     *   <li>MOVE_TO_PICKUP / REMOVE_FROM_PICKUP：移除舊卡片後重建或直接移除，與之前的動作無關</li>
+     *   <li>舊動作為 UPDATE_ORDER：前端不處理，可以被任何動作取代</li>
+     *   <li>相同的動作：只需送出較新的內容</li>
+     * </ul>
+     * 不會以 UPDATE_ORDER / CANCEL_ORDER 取代尚未送出的 NEW_ORDER (前端不會為它們建立卡片，新訂單會消失)。
+     */
+    static boolean supersedes(String previousAction, String action) {
+        if (action == null) {
+            return false;
+        }
+        return switch (action) {
+            case "MOVE_TO_PICKUP", "REMOVE_FROM_PICKUP" -> true;
+            default -> "UPDATE_ORDER".equals(previousAction) || action.equals(previousAction);
+        };
+    }
+
+    int pendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 關閉連線，回傳尚未送出而被丟棄的訊框數
+     * 實際的 emitter.complete() 由寫入執行緒執行，避免呼叫端被卡在緩慢的 send() 上
+     */
+    int close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return 0;
+            }
+            closed = true;
+            int dropped = pending.size();
+            pending.clear();
+            latestByOrder.clear();
+            notEmpty.signal();
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 寫入執行緒主迴圈
+     */
+    void runWriter() {
+        while (true) {
+            byte[] frame;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && !closed) {
+                    notEmpty.await();
+                }
+                if (closed) {
+                    break;
+                }
+                Iterator<Map.Entry<Object, Pending>> it = pending.entrySet().iterator();
+                Map.Entry<Object, Pending> head = it.next();
+                frame = head.getValue().frame();
+                it.remove();
+                if (head.getValue().orderId() != null) {
+                    latestByOrder.remove(head.getValue().orderId(), head.getKey());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(frame, MediaType.TEXT_PLAIN)));
+            } catch (Exception e) {
+                logger.debug("店家 {} 的 SSE 連線寫入失敗，關閉連線", storeId);
+                close();
+                break;
+            }
+        }
+
+        try {
+            emitter.complete();
+        } catch (Exception ignored) {
+            // 連線可能已經中斷
+        }
+    }
+
+    private long lagMillis(long nowMillis) {
+        // 合併過的訊框會移到尾端，最舊的排隊時間不一定在佇列開頭
+        long oldest = nowMillis;
+        for (Pending p : pending.values()) {
+            oldest = Math.min(oldest, p.enqueuedAt());
+        }
+        return nowMillis - oldest;
+    }
+
+    private record Pending(Long orderId, String action, byte[] frame, long enqueuedAt) {}
+}
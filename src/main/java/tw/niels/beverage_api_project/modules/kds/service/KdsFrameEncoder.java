@@ -0,0 +1,79 @@
+package tw.niels.beverage_api_project.modules.kds.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+import tw.niels.beverage_api_project.modules.kds.dto.KdsOrderDto;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * KDS SSE 訊框編碼器
+ * 每個事件只在發布端序列化一次，產生完整的 SSE 訊框 (data:{json}\n\n) 位元組，
+ * 經由 kds.exchange 傳送後，接收端直接把同一份位元組寫給該店家的所有 SseEmitter。
+ * 取得店家事件 ID 後，再以 withEventId 在訊框前加上 id 欄位，供斷線重連時的 Last-Event-ID 補送使用。
+ */
+@Component
+public class KdsFrameEncoder {
+
+    // 通知前端遺漏的事件已無法補送，需重新載入完整的訂單清單
+    public static final String RESYNC_ACTION = "RESYNC";
+
+    private static final byte[] ID_PREFIX = "id:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DATA_PREFIX = "data:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FRAME_SUFFIX = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    private final ObjectMapper objectMapper;
+
+    public KdsFrameEncoder(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 編碼為完整的 SSE 訊框 (內容與 SseEmitter.event().data(payload) 產生的相同)
+     */
+    public byte[] encode(String action, KdsOrderDto order) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(new SseEventPayload(action, order));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("KDS 訊息序列化失敗", e);
+        }
+
+        byte[] frame = new byte[DATA_PREFIX.length + json.length + FRAME_SUFFIX.length];
+        System.arraycopy(DATA_PREFIX, 0, frame, 0, DATA_PREFIX.length);
+        System.arraycopy(json, 0, frame, DATA_PREFIX.length, json.length);
+        System.arraycopy(FRAME_SUFFIX, 0, frame, DATA_PREFIX.length + json.length, FRAME_SUFFIX.length);
+        return frame;
+    }
+
+    /**
+     * 在已編碼的訊框前加上 SSE 事件 ID (id:{eventId}\n)
+     */
+    public byte[] withEventId(long eventId, byte[] frame) {
+        byte[] id = Long.toString(eventId).getBytes(StandardCharsets.UTF_8);
+        byte[] result = new byte[ID_PREFIX.length + id.length + 1 + frame.length];
+        System.arraycopy(ID_PREFIX, 0, result, 0, ID_PREFIX.length);
+        System.arraycopy(id, 0, result, ID_PREFIX.length, id.length);
+        result[ID_PREFIX.length + id.length] = '\n';
+        System.arraycopy(frame, 0, result, ID_PREFIX.length + id.length + 1, frame.length);
+        return result;
+    }
+
+    /**
+     * 要求前端重新載入完整快照的訊框 (payload 為 null)
+     */
+    public byte[] encodeResync() {
+        return encode(RESYNC_ACTION, null);
+    }
+
+    // 用於 SSE 輸出的封裝 (根據 pos.js 的解析邏輯)
+    private static class SseEventPayload {
+        public String action;
+        public Object payload;
+        public SseEventPayload(String action, Object payload) {
+            this.action = action;
+            this.payload = payload;
+        }
+    }
+}
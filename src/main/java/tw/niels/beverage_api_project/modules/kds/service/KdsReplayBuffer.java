@@ -0,0 +1,81 @@
+package tw.niels.beverage_api_project.modules.kds.service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 單一店家最近的 KDS 事件 (環狀緩衝，超過容量時捨棄最舊的事件)
+ * 斷線重連時依 Last-Event-ID 補送遺漏的事件；遺漏的範圍已不在緩衝內時，由呼叫端改送完整快照。
+ * 非執行緒安全，呼叫端需以此物件本身作為鎖 (同時保護該店家的推播與重連補送順序)。
+ */
+class KdsReplayBuffer {
+
+    record Event(long eventId, Long orderId, String action, byte[] frame) {}
+
+    private final int capacity;
+    private final ArrayDeque<Event> events;
+
+    KdsReplayBuffer(int capacity) {
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(capacity);
+    }
+
+    void append(Event event) {
+        if (capacity <= 0) {
+            return;
+        }
+        if (events.size() >= capacity) {
+            events.pollFirst();
+        }
+        events.addLast(event);
+    }
+
+    /**
+     * 最後一筆事件 ID (沒有事件時為 -1)
+     */
+    long latestEventId() {
+        return events.isEmpty() ? -1 : events.peekLast().eventId();
+    }
+
+    /**
+     * 取得 lastEventId 之後的事件 (依事件 ID 排序)
+     *
+     * @param latestEventId 叢集目前最新的事件 ID
+     * @return 緩衝內已包含所有遺漏的事件時回傳事件清單 (可能為空)；否則回傳 empty，需改送完整快照
+     */
+    Optional<List<Event>> eventsAfter(long lastEventId, long latestEventId) {
+        if (latestEventId == lastEventId) {
+            return Optional.of(List.of());
+        }
+        if (latestEventId < lastEventId || events.isEmpty() || events.peekFirst().eventId() > lastEventId + 1) {
+            return Optional.empty();
+        }
+
+        List<Event> missed = new ArrayList<>();
+        Iterator<Event> it = events.iterator();
+        while (it.hasNext()) {
+            Event event = it.next();
+            if (event.eventId() > lastEventId) {
+                missed.add(event);
+            }
+        }
+        // 不同節點發布的事件抵達順序可能與 ID 順序不同
+        missed.sort((a, b) -> Long.compare(a.eventId(), b.eventId()));
+
+        // 中間有尚未抵達本節點的事件時，無法保證補送完整
+        long expected = lastEventId + 1;
+        for (Event event : missed) {
+            if (event.eventId() != expected) {
+                return Optional.empty();
+            }
+            expected++;
+        }
+        if (expected - 1 < latestEventId) {
+            return Optional.empty();
+        }
+        return Optional.of(missed);
+    }
+}
@@ -1,15 +1,26 @@
 package tw.niels.beverage_api_project.modules.kds.service;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.event.TransactionPhase;
-import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import tw.niels.beverage_api_project.config.RabbitConfig;
 import tw.niels.beverage_api_project.modules.kds.dto.KdsOrderDto;
@@ -18,79 +29,233 @@ import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
 import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
 
-import java.io.IOException;
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class KdsService {
 
     private static final Logger logger = LoggerFactory.getLogger(KdsService.class);
 
+    // 廣播訊息中標示店家 ID / 訂單 ID 的 Header
+    static final String STORE_ID_HEADER = "kds-store-id";
+    static final String ORDER_ID_HEADER = "kds-order-id";
+    static final String EVENT_ID_HEADER = "kds-event-id";
+    static final String ACTION_HEADER = "kds-action";
+
+    // 店家事件 ID 序號 (不設過期，重設序號會讓前端帶著較大的 Last-Event-ID 重連，此時一律改送完整快照)
+    private static final String EVENT_SEQ_KEY_PREFIX = "kds_event_seq:store:";
+
     private final RabbitTemplate rabbitTemplate;
+    private final KdsFrameEncoder frameEncoder;
+    private final Executor taskExecutor;
+    private final StringRedisTemplate redisTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // SSE 連線管理 Map<StoreId, List<Connection>>
+    private final Map<Long, List<KdsConnection>> storeEmitters = new ConcurrentHashMap<>();
+
+    // 各店家的廣播鎖 Map<StoreId, Lock>：取得事件 ID 與發布在同一把鎖內，本節點同一店家的事件依 ID 順序發布
+    private final Map<Long, ReentrantLock> publishLocks = new ConcurrentHashMap<>();
+
+    // 各店家最近的事件 Cache<StoreId, Buffer>
+    // Fanout 會把所有店家的事件送到每個節點，因此每個節點都保有所有店家的緩衝，重連到任一節點都能補送
+    // 閒置 (沒有新事件也沒有重連) 超過 idle-expiry 的店家緩衝會被移除，已打烊或停用的店家不會一直佔用記憶體；
+    // 之後重連時緩衝內沒有遺漏的事件，會改送 RESYNC (沒有遺漏時照常連線)
+    private Cache<Long, KdsReplayBuffer> replayBuffers;
 
-    // SSE 連線管理 Map<StoreId, List<Emitter>>
-    private final Map<Long, List<SseEmitter>> storeEmitters = new ConcurrentHashMap<>();
+    private final Counter coalescedCounter;
+    private final Counter droppedCounter;
+    private final Counter evictedCounter;
+    private final Counter replayedCounter;
+    private final Counter resyncCounter;
+
+    // 每個連線最多累積的待送訊框數
+    @Value("${app.kds.fanout.max-pending:64}")
+    private int maxPending;
+
+    // 最舊的待送訊框超過此時間仍未送出，視為慢速連線並踢除 (前端 EventSource 會自動重連)
+    @Value("${app.kds.fanout.max-lag-ms:10000}")
+    private long maxLagMs;
+
+    // 每個店家保留的最近事件數，斷線期間的事件數超過此值時改送完整快照
+    @Value("${app.kds.replay.buffer-size:256}")
+    private int replayBufferSize;
+
+    // 店家緩衝的閒置保留時間 (超過此時間沒有新事件也沒有重連即移除)
+    @Value("${app.kds.replay.idle-expiry:PT30M}")
+    private Duration replayIdleExpiry;
 
     // 保留策略模式，用於處理特定狀態的複雜邏輯 (如果有的話)
     private final Map<OrderStatus, KdsEventStrategy> strategyMap = new EnumMap<>(OrderStatus.class);
 
     public KdsService(List<KdsEventStrategy> strategies,
-                      RabbitTemplate rabbitTemplate) {
+                      RabbitTemplate rabbitTemplate,
+                      KdsFrameEncoder frameEncoder,
+                      Executor taskExecutor,
+                      StringRedisTemplate redisTemplate,
+                      MeterRegistry meterRegistry) {
         this.rabbitTemplate = rabbitTemplate;
+        this.frameEncoder = frameEncoder;
+        this.taskExecutor = taskExecutor;
+        this.redisTemplate = redisTemplate;
+        this.meterRegistry = meterRegistry;
+        this.coalescedCounter = Counter.builder("kds.events.coalesced")
+                .description("被同一張訂單較新的訊框取代而未送出的訊框數")
+                .register(meterRegistry);
+        this.droppedCounter = Counter.builder("kds.events.dropped")
+                .description("因連線關閉或被踢除而丟棄的訊框數")
+                .register(meterRegistry);
+        this.evictedCounter = Counter.builder("kds.connections.evicted")
+                .description("因佇列過長或落後過久而被踢除的連線數")
+                .register(meterRegistry);
+        this.replayedCounter = Counter.builder("kds.replay.events")
+                .description("重連時依 Last-Event-ID 補送的訊框數")
+                .register(meterRegistry);
+        this.resyncCounter = Counter.builder("kds.replay.resyncs")
+                .description("遺漏的事件已不在緩衝內，改要求前端重新載入快照的次數")
+                .register(meterRegistry);
         for (KdsEventStrategy strategy : strategies) {
             strategyMap.put(strategy.getHandledStatus(), strategy);
         }
     }
 
+    @PostConstruct
+    void init() {
+        // 只依閒置時間過期 (不設數量上限)：取得緩衝的當下即更新存取時間，持有中的緩衝不會在使用途中被移除
+        replayBuffers = Caffeine.newBuilder()
+                .expireAfterAccess(replayIdleExpiry)
+                .build();
+        Gauge.builder("kds.replay.stores", replayBuffers, Cache::estimatedSize)
+                .description("本節點保有重連緩衝的店家數")
+                .register(meterRegistry);
+    }
+
     /**
      * 前端建立 SSE 連線時呼叫此方法
      */
     public SseEmitter subscribe(Long storeId) {
+        return subscribe(storeId, null);
+    }
+
+    /**
+     * 前端建立 (或重新建立) SSE 連線時呼叫此方法
+     *
+     * @param lastEventId 前端最後收到的事件 ID (EventSource 重連時的 Last-Event-ID)，首次連線為 null
+     */
+    public SseEmitter subscribe(Long storeId, Long lastEventId) {
         SseEmitter emitter = new SseEmitter(30 * 60 * 1000L); // 30分鐘
-        addEmitter(storeId, emitter);
+        addEmitter(storeId, emitter, lastEventId);
         return emitter;
     }
 
     public void addEmitter(Long storeId, SseEmitter emitter) {
-        storeEmitters.computeIfAbsent(storeId, k -> new CopyOnWriteArrayList<>()).add(emitter);
+        addEmitter(storeId, emitter, null);
+    }
+
+    public void addEmitter(Long storeId, SseEmitter emitter, Long lastEventId) {
+        KdsConnection connection = new KdsConnection(storeId, emitter, maxPending, maxLagMs);
+        // 在取得鎖之前先查詢叢集目前的事件 ID，避免持鎖等待 Redis
+        Long latestEventId = lastEventId != null ? currentEventId(storeId) : null;
+
+        KdsReplayBuffer buffer = replayBufferOf(storeId);
+        // 補送與加入連線清單在同一把鎖內完成，補送期間抵達的新事件會排在補送的事件之後，不會遺漏或重複
+        synchronized (buffer) {
+            if (lastEventId != null) {
+                replay(storeId, connection, buffer, lastEventId, latestEventId);
+            }
+            storeEmitters.computeIfAbsent(storeId, this::createStoreConnections).add(connection);
+        }
         logger.debug("店家 {} 新增 SSE 連線。目前連線數: {}", storeId, storeEmitters.get(storeId).size());
 
-        emitter.onCompletion(() -> removeEmitter(storeId, emitter));
-        emitter.onTimeout(() -> removeEmitter(storeId, emitter));
-        emitter.onError((e) -> removeEmitter(storeId, emitter));
+        emitter.onCompletion(() -> removeEmitter(storeId, connection));
+        emitter.onTimeout(() -> removeEmitter(storeId, connection));
+        emitter.onError((e) -> removeEmitter(storeId, connection));
+
+        // 每個連線一個寫入執行緒，慢速連線只會卡住自己
+        Thread.ofVirtual().name("kds-writer-" + storeId).start(connection::runWriter);
+    }
+
+    /**
+     * 將 lastEventId 之後遺漏的事件放入新連線的佇列 (呼叫端需持有 buffer 的鎖)
+     * 遺漏的事件已不在緩衝內、或多到超過單一連線的佇列上限時，改送 RESYNC 讓前端重新載入完整快照
+     */
+    private void replay(Long storeId, KdsConnection connection, KdsReplayBuffer buffer,
+                        long lastEventId, Long latestEventId) {
+        // 查詢 Redis 之後才抵達本節點的事件也已在緩衝內，取兩者較大的值
+        long latest = Math.max(latestEventId != null ? latestEventId : -1, buffer.latestEventId());
+        Optional<List<KdsReplayBuffer.Event>> missed = buffer.eventsAfter(lastEventId, latest);
+
+        long now = System.currentTimeMillis();
+        if (missed.isPresent() && missed.get().size() <= maxPending) {
+            for (KdsReplayBuffer.Event event : missed.get()) {
+                connection.offer(event.orderId(), event.action(), event.frame(), now);
+            }
+            replayedCounter.increment(missed.get().size());
+            return;
+        }
+
+        logger.info("店家 {} 的 SSE 重連遺漏過多事件 (Last-Event-ID: {}, 最新: {})，要求重新載入", storeId, lastEventId, latest);
+        byte[] resync = frameEncoder.encodeResync();
+        connection.offer(null, "RESYNC", latest > 0 ? frameEncoder.withEventId(latest, resync) : resync, now);
+        resyncCounter.increment();
     }
 
-    private void removeEmitter(Long storeId, SseEmitter emitter) {
-        List<SseEmitter> emitters = storeEmitters.get(storeId);
-        if (emitters != null) {
-            emitters.remove(emitter);
+    private KdsReplayBuffer replayBufferOf(Long storeId) {
+        return replayBuffers.get(storeId, id -> new KdsReplayBuffer(replayBufferSize));
+    }
+
+    /**
+     * 第一次有連線時建立店家的連線清單，並註冊該店家的連線數 / 佇列深度指標
+     */
+    private List<KdsConnection> createStoreConnections(Long storeId) {
+        List<KdsConnection> connections = new CopyOnWriteArrayList<>();
+        Gauge.builder("kds.connections", connections, List::size)
+                .description("店家目前的 SSE 連線數")
+                .tag("store", String.valueOf(storeId))
+                .register(meterRegistry);
+        Gauge.builder("kds.queue.depth", connections,
+                        list -> list.stream().mapToInt(KdsConnection::pendingCount).sum())
+                .description("店家所有連線尚未送出的訊框總數")
+                .tag("store", String.valueOf(storeId))
+                .register(meterRegistry);
+        return connections;
+    }
+
+    private void removeEmitter(Long storeId, KdsConnection connection) {
+        List<KdsConnection> connections = storeEmitters.get(storeId);
+        if (connections != null) {
+            connections.remove(connection);
         }
+        droppedCounter.increment(connection.close());
     }
 
     /**
      * 【第一步】監聽本地事件 (Local Event Listener)
      * 觸發來源：OrderMessageConsumer, OrderService 等
-     * 動作：決定 Action 並「廣播」到 RabbitMQ
-     * Update: 改用 @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
-     * 確保只有在 DB 事務提交成功後，才發送通知，避免 Race Condition。
+     * 動作：決定 Action、在發布端編碼 SSE 訊框，並於交易提交後「廣播」到 RabbitMQ
+     * <p>
+     * 同步執行於發布事件的執行緒 (交易與 Session 仍有效)，KdsOrderDto 不會在非同步執行緒上觸發延遲載入。
+     * 有交易時，廣播延後到 DB 事務提交成功後才送出 (避免 Race Condition)；
+     * 實際的 RabbitMQ 發送交給 taskExecutor，不佔用請求執行緒。
+     * </p>
      */
-    @Async
-    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    @EventListener
     public void handleOrderStateChange(OrderStateChangedEvent event) {
         Order order = event.order();
         if (order.getStore() == null) return;
 
         Long storeId = order.getStore().getId();
 
-        // 1. 轉換 DTO
-        KdsOrderDto orderDto = KdsOrderDto.fromEntity(order);
-
-        // 2. 決定前端動作 (Action)
+        // 1. 決定前端動作 (Action)
         // 優先使用我們自定義的邏輯，涵蓋 NEW_ORDER
         String action = determineAction(event);
 
@@ -98,28 +263,111 @@ public class KdsService {
         // KdsEventStrategy strategy = strategyMap.get(event.newStatus());
         // if (strategy != null) { ... }
 
-        // 3. 封裝訊息
-        KdsMessage message = new KdsMessage(action, orderDto);
-        KdsBroadcastMessage broadcastMsg = new KdsBroadcastMessage(storeId, message);
+        // 2. 轉換 DTO 並編碼為 SSE 訊框 (整個叢集只序列化這一次)
+        byte[] frame;
+        try {
+            frame = frameEncoder.encode(action, KdsOrderDto.fromEntity(order));
+        } catch (Exception e) {
+            logger.error("KDS 訊息編碼失敗 (Order: {})", order.getId(), e);
+            return;
+        }
+
+        // 3. 交易提交後才廣播；沒有交易時直接廣播
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    taskExecutor.execute(() -> broadcast(storeId, order.getId(), action, frame));
+                }
+            });
+        } else {
+            taskExecutor.execute(() -> broadcast(storeId, order.getId(), action, frame));
+        }
+    }
+
+    /**
+     * 取得事件 ID 並發布 (在 taskExecutor 上執行)
+     * taskExecutor 會並行執行多筆廣播，因此同一店家的「取號 + 發布」以店家的廣播鎖串行化，
+     * 避免較大的事件 ID 先發布。不同節點之間仍可能交錯，由重連補送依事件 ID 排序處理。
+     */
+    private void broadcast(Long storeId, Long orderId, String action, byte[] frame) {
+        MessageProperties properties = new MessageProperties();
+        properties.setHeader(STORE_ID_HEADER, storeId);
+        properties.setHeader(ORDER_ID_HEADER, orderId);
+        properties.setHeader(ACTION_HEADER, action);
+        properties.setContentType(MediaType.TEXT_EVENT_STREAM_VALUE);
 
+        ReentrantLock lock = publishLocks.computeIfAbsent(storeId, id -> new ReentrantLock());
+        lock.lock();
         try {
+            // 取得店家事件 ID (整個叢集共用一個序號)；Redis 失敗時照常推送，只是這筆事件無法補送
+            Long eventId = nextEventId(storeId);
+            if (eventId != null) {
+                frame = frameEncoder.withEventId(eventId, frame);
+                properties.setHeader(EVENT_ID_HEADER, eventId);
+            }
+
             // 4. 發布到 RabbitMQ Fanout Exchange -> 所有 Server 實例都會收到
-            rabbitTemplate.convertAndSend(RabbitConfig.KDS_EXCHANGE, "", broadcastMsg);
+            // 直接傳送已編碼的位元組，不經過 MessageConverter
+            rabbitTemplate.send(RabbitConfig.KDS_EXCHANGE, "", new Message(frame, properties));
             logger.debug("已廣播 RabbitMQ 訊息: {} (Store: {})", action, storeId);
         } catch (Exception e) {
             logger.error("RabbitMQ 發送失敗", e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Long nextEventId(Long storeId) {
+        try {
+            return redisTemplate.opsForValue().increment(EVENT_SEQ_KEY_PREFIX + storeId);
+        } catch (Exception e) {
+            logger.warn("取得店家 {} 的 KDS 事件 ID 失敗，本次推送不帶事件 ID", storeId, e);
+            return null;
+        }
+    }
+
+    /**
+     * 叢集目前最新的事件 ID (尚無事件時為 0，Redis 失敗時為 null)
+     */
+    private Long currentEventId(Long storeId) {
+        try {
+            String value = redisTemplate.opsForValue().get(EVENT_SEQ_KEY_PREFIX + storeId);
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (Exception e) {
+            logger.warn("查詢店家 {} 的 KDS 事件 ID 失敗", storeId, e);
+            return null;
         }
     }
 
     /**
      * 【第二步】監聽 RabbitMQ 訊息 (Distributed Listener)
      * 每個 Server 實例都有自己的匿名 Queue 綁定到 KDS Exchange
-     * 動作：檢查自己有沒有該店家的連線，有的話就推送 SSE
+     * 動作：記錄到該店家的重連緩衝，並檢查自己有沒有該店家的連線，有的話就推送 SSE
      */
     @RabbitListener(queues = "#{kdsAnonymousQueue.name}")
-    public void handleRabbitMessage(KdsBroadcastMessage msg) {
+    public void handleRabbitMessage(Message message) {
         try {
-            sendToStore(msg.getStoreId(), msg.getKdsMessage());
+            Object storeIdHeader = message.getMessageProperties().getHeader(STORE_ID_HEADER);
+            if (!(storeIdHeader instanceof Number number)) {
+                logger.warn("KDS 廣播訊息缺少店家 ID，略過");
+                return;
+            }
+            Object orderIdHeader = message.getMessageProperties().getHeader(ORDER_ID_HEADER);
+            Object eventIdHeader = message.getMessageProperties().getHeader(EVENT_ID_HEADER);
+            Object actionHeader = message.getMessageProperties().getHeader(ACTION_HEADER);
+            Long storeId = number.longValue();
+            Long orderId = orderIdHeader instanceof Number n ? n.longValue() : null;
+            String action = actionHeader != null ? actionHeader.toString() : null;
+            byte[] frame = message.getBody();
+
+            KdsReplayBuffer buffer = replayBufferOf(storeId);
+            synchronized (buffer) {
+                if (eventIdHeader instanceof Number eventId) {
+                    buffer.append(new KdsReplayBuffer.Event(eventId.longValue(), orderId, action, frame));
+                }
+                sendToStore(storeId, orderId, action, frame);
+            }
         } catch (Exception e) {
             logger.error("處理 RabbitMQ 訊息失敗", e);
         }
@@ -127,21 +375,26 @@ public class KdsService {
 
     /**
      * 實際執行 SSE 推送
+     * 所有連線共用同一份已編碼的訊框；這裡只放入各連線的佇列，由各自的寫入執行緒送出，不會阻塞 Listener
      */
-    private void sendToStore(Long storeId, KdsMessage message) {
-        List<SseEmitter> emitters = storeEmitters.get(storeId);
-        if (emitters == null || emitters.isEmpty()) {
+    void sendToStore(Long storeId, Long orderId, String action, byte[] frame) {
+        List<KdsConnection> connections = storeEmitters.get(storeId);
+        if (connections == null || connections.isEmpty()) {
             return;
         }
 
-        // 封裝成前端需要的格式
-        SseEventPayload payload = new SseEventPayload(message.getAction(), message.getPayload());
-
-        for (SseEmitter emitter : emitters) {
-            try {
-                emitter.send(SseEmitter.event().data(payload));
-            } catch (IOException e) {
-                removeEmitter(storeId, emitter);
+        long now = System.currentTimeMillis();
+        for (KdsConnection connection : connections) {
+            switch (connection.offer(orderId, action, frame, now)) {
+                case COALESCED -> coalescedCounter.increment();
+                case REJECTED -> {
+                    // 慢速連線：踢除後前端會重新連線，不讓它拖慢同店家其他畫面
+                    logger.warn("店家 {} 的 SSE 連線落後過多，踢除連線", storeId);
+                    evictedCounter.increment();
+                    droppedCounter.increment();
+                    removeEmitter(storeId, connection);
+                }
+                case QUEUED -> { }
             }
         }
     }
@@ -175,25 +428,4 @@ public class KdsService {
         }
     }
 
-    @Getter
-    @Setter
-    public static class KdsBroadcastMessage implements Serializable {
-        private Long storeId;
-        private KdsMessage kdsMessage;
-        public KdsBroadcastMessage() {}
-        public KdsBroadcastMessage(Long storeId, KdsMessage kdsMessage) {
-            this.storeId = storeId;
-            this.kdsMessage = kdsMessage;
-        }
-    }
-
-    // 用於 SSE 輸出的封裝 (根據 pos.js 的解析邏輯)
-    private static class SseEventPayload {
-        public String action;
-        public Object payload;
-        public SseEventPayload(String action, Object payload) {
-            this.action = action;
-            this.payload = payload;
-        }
-    }
 }
\ No newline at end of file
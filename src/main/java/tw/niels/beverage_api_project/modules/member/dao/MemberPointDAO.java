@@ -0,0 +1,34 @@
+package tw.niels.beverage_api_project.modules.member.dao;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 會員點數 DAO 介面
+ * 供批次結帳使用：一次鎖定多位會員的點數列，並以 JDBC 批次寫回餘額與點數紀錄。
+ */
+public interface MemberPointDAO {
+
+    /**
+     * 以 SELECT ... FOR UPDATE 鎖定會員點數列 (需在交易中呼叫)
+     *
+     * @return Map<會員 User ID, 目前點數> (非會員不會出現在結果中)
+     */
+    Map<Long, Long> lockPointBalances(Collection<Long> memberUserIds);
+
+    /**
+     * 批次寫回會員點數餘額 (呼叫前須先以 lockPointBalances 鎖定)
+     */
+    void batchUpdateBalances(List<BalanceTuple> balances);
+
+    /**
+     * 批次新增點數異動紀錄
+     */
+    void batchInsertLogs(List<PointLogTuple> logs);
+
+    record BalanceTuple(Long memberUserId, Long totalPoints) {}
+
+    record PointLogTuple(Long logId, Long memberUserId, Long orderId,
+                         Long pointsChange, Long balanceAfter, String reason) {}
+}
@@ -0,0 +1,112 @@
+package tw.niels.beverage_api_project.modules.member.dao;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 會員點數 DAO 實作
+ * 使用 JdbcTemplate 執行實際的 SQL 操作。
+ */
+@Repository
+public class MemberPointDAOImpl implements MemberPointDAO {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public MemberPointDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public Map<Long, Long> lockPointBalances(Collection<Long> memberUserIds) {
+        Map<Long, Long> balances = new HashMap<>();
+        if (memberUserIds == null || memberUserIds.isEmpty()) {
+            return balances;
+        }
+
+        // 依 user_id 排序後上鎖，避免多個批次互相等待造成死結
+        String sql = "SELECT user_id, total_points FROM member_profiles " +
+                "WHERE user_id IN (:ids) AND is_deleted = false " +
+                "ORDER BY user_id FOR UPDATE";
+
+        namedParameterJdbcTemplate.query(sql, new MapSqlParameterSource("ids", memberUserIds),
+                rs -> {
+                    balances.put(rs.getLong("user_id"), rs.getLong("total_points"));
+                });
+        return balances;
+    }
+
+    @Override
+    public void batchUpdateBalances(List<BalanceTuple> balances) {
+        if (balances == null || balances.isEmpty()) {
+            return;
+        }
+
+        // version 同步遞增，讓 JPA 的樂觀鎖 (@Version) 能察覺這次的變更
+        String sql = "UPDATE member_profiles SET total_points = ?, version = version + 1 WHERE user_id = ?";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                BalanceTuple tuple = balances.get(i);
+                ps.setLong(1, tuple.totalPoints());
+                ps.setLong(2, tuple.memberUserId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return balances.size();
+            }
+        });
+    }
+
+    @Override
+    public void batchInsertLogs(List<PointLogTuple> logs) {
+        if (logs == null || logs.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO member_points_log " +
+                "(log_id, member_user_id, order_id, points_change, balance_after, reason, created_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        Timestamp now = Timestamp.from(Instant.now());
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                PointLogTuple tuple = logs.get(i);
+                ps.setLong(1, tuple.logId());
+                ps.setLong(2, tuple.memberUserId());
+                if (tuple.orderId() != null) {
+                    ps.setLong(3, tuple.orderId());
+                } else {
+                    ps.setNull(3, Types.BIGINT);
+                }
+                ps.setLong(4, tuple.pointsChange());
+                ps.setLong(5, tuple.balanceAfter());
+                ps.setString(6, tuple.reason());
+                ps.setTimestamp(7, now);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return logs.size();
+            }
+        });
+    }
+}
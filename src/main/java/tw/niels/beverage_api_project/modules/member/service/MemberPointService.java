@@ -37,6 +37,7 @@ public class MemberPointService {
 
     /**
      * 計算使用點數可折抵的金額
+     * 只依品牌規則計算，不寫入任何資料，可用於尚未存檔 (transient) 的訂單
      * 
      * @param pointsToUse 要使用的點數
      * @return 可折抵的金額
@@ -121,6 +122,7 @@ public class MemberPointService {
 
     /**
      * 使用點數 (在創建訂單時呼叫)
+     * 點數紀錄會參照訂單，請在訂單存檔 (persist) 之後呼叫，flush 時紀錄才會排在訂單 INSERT 之後
      * 
      * @param member      會員 User 實體
      * @param order       相關訂單
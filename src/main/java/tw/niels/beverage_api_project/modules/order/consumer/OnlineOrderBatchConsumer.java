@@ -0,0 +1,244 @@
+package tw.niels.beverage_api_project.modules.order.consumer;
+
+import com.rabbitmq.client.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.common.exception.ResourceNotFoundException;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.order.dao.OrderBatchDAO;
+import tw.niels.beverage_api_project.modules.order.dto.AsyncOrderTaskDto;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
+import tw.niels.beverage_api_project.modules.order.service.OrderItemProcessorService;
+import tw.niels.beverage_api_project.modules.order.service.OrderService;
+import tw.niels.beverage_api_project.modules.order.service.OrderTaskStatusService;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+import tw.niels.beverage_api_project.modules.user.entity.User;
+import tw.niels.beverage_api_project.modules.user.repository.UserRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 線上訂單批次消費者
+ * <p>
+ * 1. 一次收到最多 N 筆訂單任務 (app.order.online.batch.size)。
+ * 2. 以少量查詢載入整批需要的分店與使用者，逐筆在記憶體中組裝訂單。
+ * 3. 整批訂單以 JDBC 批次在單一交易中寫入，提交後以 multiple-ack 一次確認。
+ * 4. 無法處理的訊息 (格式錯誤、驗證失敗) 逐筆 nack 到 dlq.exchange，不影響其他訂單提交。
+ * 5. 若整批寫入失敗，改為逐筆走原本的 createOrder，找出真正有問題的訊息。
+ * </p>
+ * 預設關閉，透過 app.order.online.batch.enabled 開啟 (開啟後單筆 Listener 不會啟動)。
+ */
+@Component
+public class OnlineOrderBatchConsumer {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnlineOrderBatchConsumer.class);
+
+    private final OrderService orderService;
+    private final OrderItemProcessorService orderItemProcessorService;
+    private final OrderBatchDAO orderBatchDAO;
+    private final StoreRepository storeRepository;
+    private final UserRepository userRepository;
+    private final OrderMessageConsumer orderMessageConsumer;
+    private final MessageConverter messageConverter;
+    private final ApplicationEventPublisher eventPublisher;
+    private final OrderTaskStatusService orderTaskStatusService;
+    private final TransactionTemplate transactionTemplate;
+
+    public OnlineOrderBatchConsumer(OrderService orderService,
+                                    OrderItemProcessorService orderItemProcessorService,
+                                    OrderBatchDAO orderBatchDAO,
+                                    StoreRepository storeRepository,
+                                    UserRepository userRepository,
+                                    OrderMessageConsumer orderMessageConsumer,
+                                    MessageConverter messageConverter,
+                                    ApplicationEventPublisher eventPublisher,
+                                    OrderTaskStatusService orderTaskStatusService,
+                                    PlatformTransactionManager transactionManager) {
+        this.orderService = orderService;
+        this.orderItemProcessorService = orderItemProcessorService;
+        this.orderBatchDAO = orderBatchDAO;
+        this.storeRepository = storeRepository;
+        this.userRepository = userRepository;
+        this.orderMessageConsumer = orderMessageConsumer;
+        this.messageConverter = messageConverter;
+        this.eventPublisher = eventPublisher;
+        this.orderTaskStatusService = orderTaskStatusService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @RabbitListener(id = "online-order-batch", queues = RabbitConfig.ONLINE_ORDER_QUEUE,
+            containerFactory = "onlineOrderBatchContainerFactory",
+            autoStartup = "${app.order.online.batch.enabled:false}")
+    public void handleOrderBatch(List<Message> messages, Channel channel) throws IOException {
+        List<Task> tasks = new ArrayList<>(messages.size());
+        List<Long> failedTags = new ArrayList<>();
+
+        for (Message message : messages) {
+            long tag = message.getMessageProperties().getDeliveryTag();
+            try {
+                message.getMessageProperties().setInferredArgumentType(AsyncOrderTaskDto.class);
+                tasks.add(new Task(tag, (AsyncOrderTaskDto) messageConverter.fromMessage(message)));
+            } catch (RuntimeException e) {
+                logger.error("【BatchConsumer】訊息無法解析，轉送 DLQ (DeliveryTag: {})", tag, e);
+                failedTags.add(tag);
+            }
+        }
+
+        List<Long> succeededTags = processTasks(tasks, failedTags);
+
+        // 先逐筆 nack 失敗的訊息 (不重新排隊 → 依佇列設定轉入 dlq.exchange)，
+        // 再以 multiple-ack 一次確認其餘訊息；已 nack 的訊息不會被 multiple-ack 重複確認
+        for (Long tag : failedTags) {
+            channel.basicNack(tag, false, false);
+        }
+        if (!succeededTags.isEmpty()) {
+            channel.basicAck(succeededTags.stream().mapToLong(Long::longValue).max().getAsLong(), true);
+        }
+        logger.debug("【BatchConsumer】批次處理完成：成功 {} / 失敗 {}", succeededTags.size(), failedTags.size());
+    }
+
+    /**
+     * 處理整批任務，回傳成功的 DeliveryTag；失敗的 DeliveryTag 加入 failedTags
+     */
+    private List<Long> processTasks(List<Task> tasks, List<Long> failedTags) {
+        if (tasks.isEmpty()) {
+            return List.of();
+        }
+
+        List<Prepared> prepared;
+        List<Prepared> invalid = new ArrayList<>();
+        try {
+            prepared = transactionTemplate.execute(status -> prepareAndPersist(tasks, invalid));
+        } catch (Exception e) {
+            // 整批寫入失敗 (例如資料庫錯誤)：逐筆處理，只有真正失敗的訊息進入 DLQ
+            logger.warn("【BatchConsumer】批次寫入失敗，改為逐筆處理 ({} 筆)", tasks.size(), e);
+            return processIndividually(tasks, failedTags);
+        }
+
+        // 交易已提交，更新任務狀態供用戶端查詢 / 推播
+        for (Prepared p : invalid) {
+            orderTaskStatusService.markFailed(p.task().dto(), p.error());
+            failedTags.add(p.task().deliveryTag());
+        }
+        List<Long> succeededTags = new ArrayList<>();
+        if (prepared != null) {
+            for (Prepared p : prepared) {
+                orderTaskStatusService.markCreated(p.task().dto(), p.order());
+                succeededTags.add(p.task().deliveryTag());
+            }
+        }
+        return succeededTags;
+    }
+
+    private List<Long> processIndividually(List<Task> tasks, List<Long> failedTags) {
+        List<Long> succeededTags = new ArrayList<>();
+        for (Task task : tasks) {
+            try {
+                orderMessageConsumer.processTask(task.dto());
+                succeededTags.add(task.deliveryTag());
+            } catch (Exception e) {
+                failedTags.add(task.deliveryTag());
+            }
+        }
+        return succeededTags;
+    }
+
+    /**
+     * 在單一交易中組裝並寫入整批訂單 (由 TransactionTemplate 呼叫)
+     */
+    private List<Prepared> prepareAndPersist(List<Task> tasks, List<Prepared> invalid) {
+        Map<Long, Map<Long, Store>> stores = new HashMap<>();
+        Map<Long, Map<Long, User>> users = new HashMap<>();
+        loadContext(tasks, stores, users);
+
+        List<Prepared> prepared = new ArrayList<>(tasks.size());
+        for (Task task : tasks) {
+            try {
+                prepared.add(new Prepared(task, buildOrder(task.dto(), stores, users), null));
+            } catch (RuntimeException e) {
+                // 單筆驗證失敗：只有該訊息進入 DLQ，不影響同批其他訂單
+                logger.error("【BatchConsumer】訂單處理失敗 (RequestId: {}): {}", task.dto().getRequestId(), e.getMessage());
+                invalid.add(new Prepared(task, null, e.getMessage()));
+            }
+        }
+
+        orderBatchDAO.batchInsertOrders(prepared.stream().map(Prepared::order).toList());
+
+        // 交易提交後才會送出 (KdsService 於提交後才廣播)
+        for (Prepared p : prepared) {
+            eventPublisher.publishEvent(new OrderStateChangedEvent(p.order(), null, p.order().getStatus()));
+        }
+        return prepared;
+    }
+
+    /**
+     * 一次載入整批需要的分店與使用者 (依品牌分組，確保資料隔離)
+     */
+    private void loadContext(List<Task> tasks, Map<Long, Map<Long, Store>> stores, Map<Long, Map<Long, User>> users) {
+        Map<Long, Set<Long>> storeIdsByBrand = new HashMap<>();
+        Map<Long, Set<Long>> userIdsByBrand = new HashMap<>();
+        for (Task task : tasks) {
+            AsyncOrderTaskDto dto = task.dto();
+            storeIdsByBrand.computeIfAbsent(dto.getBrandId(), k -> new HashSet<>()).add(dto.getStoreId());
+            userIdsByBrand.computeIfAbsent(dto.getBrandId(), k -> new HashSet<>()).add(dto.getUserId());
+        }
+
+        storeIdsByBrand.forEach((brandId, ids) -> {
+            Map<Long, Store> byId = new HashMap<>();
+            storeRepository.findByBrand_IdAndIdIn(brandId, ids).forEach(s -> byId.put(s.getId(), s));
+            stores.put(brandId, byId);
+        });
+        userIdsByBrand.forEach((brandId, ids) -> {
+            Map<Long, User> byId = new HashMap<>();
+            userRepository.findByBrand_IdAndIdIn(brandId, ids).forEach(u -> byId.put(u.getUserId(), u));
+            users.put(brandId, byId);
+        });
+    }
+
+    /**
+     * 組裝單筆訂單 (與 OrderProcessFacade.createOrder 相同的規則，但不寫入資料庫)
+     */
+    private Order buildOrder(AsyncOrderTaskDto dto, Map<Long, Map<Long, Store>> stores,
+                             Map<Long, Map<Long, User>> users) {
+        Store store = stores.getOrDefault(dto.getBrandId(), Map.of()).get(dto.getStoreId());
+        if (store == null) {
+            throw new ResourceNotFoundException("找不到店家");
+        }
+        User staff = users.getOrDefault(dto.getBrandId(), Map.of()).get(dto.getUserId());
+        if (staff == null) {
+            throw new ResourceNotFoundException("找不到員工");
+        }
+        if (dto.getOrderRequest() == null || dto.getOrderRequest().getStatus() == null) {
+            throw new BadRequestException("訂單狀態不可為空");
+        }
+
+        Order order = orderService.initOrder(staff, store);
+        order.setStatus(dto.getOrderRequest().getStatus());
+
+        var result = orderItemProcessorService.processOrderItems(order, dto.getOrderRequest().getItems(), dto.getBrandId());
+        order.setItems(result.orderItems());
+        order.setTotalAmount(result.totalAmount());
+        order.setFinalAmount(result.totalAmount()); // 暫無折扣
+        return order;
+    }
+
+    private record Task(long deliveryTag, AsyncOrderTaskDto dto) {}
+
+    private record Prepared(Task task, Order order, String error) {}
+}
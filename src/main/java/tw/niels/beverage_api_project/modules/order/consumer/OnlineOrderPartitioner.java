@@ -0,0 +1,42 @@
+package tw.niels.beverage_api_project.modules.order.consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+
+/**
+ * 線上訂單分區規則
+ * 依 storeId 決定訂單進入哪一個分區佇列，同一店家永遠落在同一分區，以保證店內訂單的處理順序。
+ * 發送端 (OnlineOrderController) 與消費端 (PartitionedOrderListenerConfigurer) 共用此規則。
+ */
+@Component
+public class OnlineOrderPartitioner {
+
+    @Value("${app.order.online.partition.enabled:false}")
+    private boolean enabled;
+
+    @Value("${app.order.online.partition.count:4}")
+    private int partitionCount;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    public int partitionOf(Long storeId) {
+        return Math.floorMod(Long.hashCode(storeId), partitionCount);
+    }
+
+    /**
+     * 取得發送訂單時使用的 Routing Key (未啟用分區時沿用原本的單一佇列)
+     */
+    public String routingKeyFor(Long storeId) {
+        if (!enabled) {
+            return RabbitConfig.ONLINE_ORDER_ROUTING_KEY;
+        }
+        return RabbitConfig.onlineOrderPartitionRoutingKey(partitionOf(storeId));
+    }
+}
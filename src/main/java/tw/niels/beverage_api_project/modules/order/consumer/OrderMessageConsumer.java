@@ -4,6 +4,7 @@ package tw.niels.beverage_api_project.modules.order.consumer;
 import com.rabbitmq.client.Channel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.amqp.support.AmqpHeaders;
 import org.springframework.context.ApplicationEventPublisher;
@@ -14,6 +15,7 @@ import tw.niels.beverage_api_project.modules.order.dto.AsyncOrderTaskDto;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
 import tw.niels.beverage_api_project.modules.order.facade.OrderProcessFacade;
+import tw.niels.beverage_api_project.modules.order.service.OrderTaskStatusService;
 
 @Component
 public class OrderMessageConsumer {
@@ -22,18 +24,32 @@ public class OrderMessageConsumer {
 
     private final OrderProcessFacade orderProcessFacade;
     private final ApplicationEventPublisher eventPublisher;
+    private final OrderTaskStatusService orderTaskStatusService;
 
     public OrderMessageConsumer(OrderProcessFacade orderProcessFacade,
-                                ApplicationEventPublisher eventPublisher) {
+                                ApplicationEventPublisher eventPublisher,
+                                OrderTaskStatusService orderTaskStatusService) {
         this.orderProcessFacade = orderProcessFacade;
         this.eventPublisher = eventPublisher;
+        this.orderTaskStatusService = orderTaskStatusService;
     }
 
-    @RabbitListener(queues = RabbitConfig.ONLINE_ORDER_QUEUE)
+    // 啟用批次消費 (OnlineOrderBatchConsumer) 時，改由批次 Listener 消費同一個佇列
+    @RabbitListener(id = "online-order-single", queues = RabbitConfig.ONLINE_ORDER_QUEUE,
+            autoStartup = "#{!${app.order.online.batch.enabled:false}}")
     public void handleOrderMessage(AsyncOrderTaskDto task,
                                    Channel channel,
                                    @Header(AmqpHeaders.DELIVERY_TAG) long tag) throws Exception {
 
+        processTask(task);
+    }
+
+    /**
+     * 處理單筆線上訂單任務 (單一佇列與分區佇列共用)
+     * 失敗時任務狀態已標記為 FAILED (最終狀態)，訊息一律不重新排回佇列 (轉入 DLQ)，
+     * 避免重新投遞後建立成功，使狀態從 FAILED 變回 CREATED。
+     */
+    public void processTask(AsyncOrderTaskDto task) {
         logger.info("【Consumer】收到訂單任務，RequestId: {}", task.getRequestId());
 
         try {
@@ -47,6 +63,7 @@ public class OrderMessageConsumer {
 
             logger.info("【Consumer】訂單建立成功: {} (RequestId: {})",
                     createdOrder.getOrderNumber(), task.getRequestId());
+            orderTaskStatusService.markCreated(task, createdOrder);
 
             // 2. 發布領域事件 (解耦通知機制)
             // 讓 KdsService 監聽此事件並透過 SSE 推播
@@ -59,8 +76,8 @@ public class OrderMessageConsumer {
 
         } catch (Exception e) {
             logger.error("【Consumer】訂單處理失敗 (RequestId: {}): {}", task.getRequestId(), e.getMessage());
-            // TODO 實際專案中建議將失敗訊息轉發至死信佇列 (DLQ) 或發送失敗通知
-            throw e;
+            orderTaskStatusService.markFailed(task, e.getMessage());
+            throw new AmqpRejectAndDontRequeueException("訂單處理失敗 (RequestId: " + task.getRequestId() + ")", e);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package tw.niels.beverage_api_project.modules.order.consumer;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.core.AmqpAdmin;
+import org.springframework.amqp.core.QueueInformation;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.order.dto.AsyncOrderTaskDto;
+
+/**
+ * 線上訂單分區消費者
+ * <p>
+ * 啟用分區模式後，為每個分區佇列註冊一個獨立的 Listener Container：
+ * 每個分區預設只有一個消費者，因此同一店家的訂單依序處理；不同分區之間互不影響，
+ * 單一店家的尖峰只會造成自己分區的積壓。Listener 執行在 Virtual Thread 上。
+ * </p>
+ */
+@Component
+public class PartitionedOrderListenerConfigurer implements RabbitListenerConfigurer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PartitionedOrderListenerConfigurer.class);
+
+    private final OnlineOrderPartitioner partitioner;
+    private final OrderMessageConsumer orderMessageConsumer;
+    private final ConnectionFactory connectionFactory;
+    private final MessageConverter messageConverter;
+    private final AmqpAdmin amqpAdmin;
+    private final MeterRegistry meterRegistry;
+
+    // 每個分區的消費者數量；大於 1 時可提高吞吐，但同一店家的訂單不再保證依序處理
+    @Value("${app.order.online.partition.consumers:1}")
+    private int consumersPerPartition;
+
+    // 每個消費者一次預取的訊息數
+    @Value("${app.order.online.partition.prefetch:10}")
+    private int prefetch;
+
+    public PartitionedOrderListenerConfigurer(OnlineOrderPartitioner partitioner,
+                                              OrderMessageConsumer orderMessageConsumer,
+                                              ConnectionFactory connectionFactory,
+                                              MessageConverter messageConverter,
+                                              AmqpAdmin amqpAdmin,
+                                              MeterRegistry meterRegistry) {
+        this.partitioner = partitioner;
+        this.orderMessageConsumer = orderMessageConsumer;
+        this.connectionFactory = connectionFactory;
+        this.messageConverter = messageConverter;
+        this.amqpAdmin = amqpAdmin;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+        if (!partitioner.isEnabled()) {
+            return;
+        }
+        if (consumersPerPartition > 1) {
+            logger.warn("每個分區有 {} 個消費者，同一店家的訂單將不保證依序處理", consumersPerPartition);
+        }
+
+        SimpleRabbitListenerContainerFactory factory = createContainerFactory();
+        for (int i = 0; i < partitioner.getPartitionCount(); i++) {
+            String queueName = RabbitConfig.onlineOrderPartitionQueue(i);
+
+            SimpleRabbitListenerEndpoint endpoint = new SimpleRabbitListenerEndpoint();
+            endpoint.setId("online-order-partition-" + i);
+            endpoint.setQueueNames(queueName);
+            endpoint.setMessageListener(message -> {
+                // 與 @RabbitListener 相同，依參數型別 (而非 __TypeId__ 標頭) 反序列化
+                message.getMessageProperties().setInferredArgumentType(AsyncOrderTaskDto.class);
+                orderMessageConsumer.processTask((AsyncOrderTaskDto) messageConverter.fromMessage(message));
+            });
+            registrar.registerEndpoint(endpoint, factory);
+
+            registerBacklogGauge(i, queueName);
+        }
+        logger.info("線上訂單分區消費已啟用 (partitions={}, consumers={}, prefetch={})",
+                partitioner.getPartitionCount(), consumersPerPartition, prefetch);
+    }
+
+    private SimpleRabbitListenerContainerFactory createContainerFactory() {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setConcurrentConsumers(consumersPerPartition);
+        factory.setMaxConcurrentConsumers(consumersPerPartition);
+        factory.setPrefetchCount(prefetch);
+
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("online-order-");
+        executor.setVirtualThreads(true);
+        factory.setTaskExecutor(executor);
+
+        // 失敗的訊息不重新排回佇列，直接轉入 DLQ，避免卡住整個分區的後續訂單
+        factory.setDefaultRequeueRejected(false);
+        return factory;
+    }
+
+    /**
+     * 各分區佇列的積壓數量 (每次抓取指標時向 RabbitMQ 查詢)
+     */
+    private void registerBacklogGauge(int partition, String queueName) {
+        Gauge.builder("order.online.partition.backlog", () -> {
+                    try {
+                        QueueInformation info = amqpAdmin.getQueueInfo(queueName);
+                        return info != null ? info.getMessageCount() : Double.NaN;
+                    } catch (RuntimeException e) {
+                        return Double.NaN;
+                    }
+                })
+                .description("線上訂單分區佇列中尚未處理的訊息數")
+                .tag("partition", String.valueOf(partition))
+                .register(meterRegistry);
+    }
+}
@@ -6,22 +6,33 @@ import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
 import tw.niels.beverage_api_project.common.annotation.Idempotent;
 import tw.niels.beverage_api_project.common.constants.ApiPaths;
 import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.common.exception.ResourceNotFoundException;
 import tw.niels.beverage_api_project.common.service.ControllerHelperService;
 import tw.niels.beverage_api_project.common.util.TsidUtil;
 import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.order.consumer.OnlineOrderPartitioner;
 import tw.niels.beverage_api_project.modules.order.dto.AsyncOrderTaskDto;
 import tw.niels.beverage_api_project.modules.order.dto.CreateOrderRequestDto;
+import tw.niels.beverage_api_project.modules.order.dto.OrderTaskStatusDto;
+import tw.niels.beverage_api_project.modules.order.service.OrderTaskStatusService;
+import tw.niels.beverage_api_project.modules.order.vo.OrderTaskStatus;
 
+import java.time.Duration;
 import java.util.Map;
 
 @RestController
@@ -33,10 +44,20 @@ public class OnlineOrderController {
 
     private final RabbitTemplate rabbitTemplate;
     private final ControllerHelperService helperService;
+    private final OnlineOrderPartitioner onlineOrderPartitioner;
+    private final OrderTaskStatusService orderTaskStatusService;
 
-    public OnlineOrderController(RabbitTemplate rabbitTemplate, ControllerHelperService helperService) {
+    // 長輪詢最多等待的時間
+    @Value("${app.order.task-status.max-wait-ms:30000}")
+    private long maxWaitMs;
+
+    public OnlineOrderController(RabbitTemplate rabbitTemplate, ControllerHelperService helperService,
+                                 OnlineOrderPartitioner onlineOrderPartitioner,
+                                 OrderTaskStatusService orderTaskStatusService) {
         this.rabbitTemplate = rabbitTemplate;
         this.helperService = helperService;
+        this.onlineOrderPartitioner = onlineOrderPartitioner;
+        this.orderTaskStatusService = orderTaskStatusService;
     }
 
     @PostMapping
@@ -74,20 +95,24 @@ public class OnlineOrderController {
                 requestDto
         );
 
-        // 4. 發送到 RabbitMQ
+        // 4. 記錄任務狀態 (PENDING)，之後由 Consumer 更新
+        orderTaskStatusService.markPending(task);
+
+        // 5. 發送到 RabbitMQ (啟用分區時依 storeId 送往對應的分區佇列)
         try {
             rabbitTemplate.convertAndSend(
                     RabbitConfig.ONLINE_ORDER_EXCHANGE,
-                    RabbitConfig.ONLINE_ORDER_ROUTING_KEY,
+                    onlineOrderPartitioner.routingKeyFor(storeId),
                     task
             );
             logger.info("線上訂單請求已發送至佇列，Ticket ID: {}", ticketId);
         } catch (Exception e) {
             logger.error("發送 RabbitMQ 失敗", e);
+            orderTaskStatusService.markFailed(task, "系統繁忙，請稍後再試");
             throw new RuntimeException("系統繁忙，請稍後再試");
         }
 
-        // 5. 立即回傳 202 Accepted
+        // 6. 立即回傳 202 Accepted
         return ResponseEntity.accepted()
                 .body(Map.of(
                         "message", "訂單處理中",
@@ -95,4 +120,23 @@ public class OnlineOrderController {
                         "status", "QUEUED"
                 ));
     }
+
+    @GetMapping("/{ticketId}/status")
+    @PreAuthorize("hasAnyRole('MEMBER', 'STAFF', 'MANAGER', 'BRAND_ADMIN')")
+    @Operation(summary = "查詢線上訂單處理狀態",
+            description = "只讀取 Redis 中的任務狀態，不查詢訂單資料表；帶入 waitMs 時為長輪詢，狀態完成或逾時才回應。" +
+                    "也可訂閱 STOMP /user/queue/orders 接收推播")
+    public DeferredResult<OrderTaskStatusDto> getOrderTaskStatus(
+            @PathVariable String ticketId,
+            @RequestParam(defaultValue = "0") long waitMs) {
+
+        // 只有下單者本人可以查詢，其他人一律視為不存在
+        Long userId = helperService.getCurrentUserId();
+        OrderTaskStatus status = orderTaskStatusService.getStatus(ticketId)
+                .filter(s -> s.userId() != null && s.userId().equals(userId))
+                .orElseThrow(() -> new ResourceNotFoundException("找不到訂單任務 (Ticket ID: " + ticketId + ")"));
+
+        long timeout = Math.min(Math.max(waitMs, 0), maxWaitMs);
+        return orderTaskStatusService.awaitStatus(status, Duration.ofMillis(timeout));
+    }
 }
\ No newline at end of file
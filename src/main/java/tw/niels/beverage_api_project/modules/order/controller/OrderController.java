@@ -17,6 +17,7 @@ import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
 import tw.niels.beverage_api_project.modules.order.facade.OrderProcessFacade;
 import tw.niels.beverage_api_project.modules.order.service.OrderService;
+import tw.niels.beverage_api_project.modules.order.service.PosCheckoutPipeline;
 
 import java.util.List;
 import java.util.stream.Collectors;
@@ -27,13 +28,16 @@ import java.util.stream.Collectors;
 public class OrderController {
     private final OrderService orderService;
     private final OrderProcessFacade orderProcessFacade; // 注入 Facade
+    private final PosCheckoutPipeline posCheckoutPipeline;
     private final ControllerHelperService helperService;
 
     public OrderController(OrderService orderService,
                            OrderProcessFacade orderProcessFacade,
+                           PosCheckoutPipeline posCheckoutPipeline,
                            ControllerHelperService helperService) {
         this.orderService = orderService;
         this.orderProcessFacade = orderProcessFacade;
+        this.posCheckoutPipeline = posCheckoutPipeline;
         this.helperService = helperService;
     }
 
@@ -78,8 +82,10 @@ public class OrderController {
             throw new BadRequestException("此帳號未綁定店家，無法建立訂單。");
         }
 
-        // 改用 Facade 呼叫
-        Order newOrder = orderProcessFacade.processPosCheckout(brandId, storeId, userId, requestDto);
+        // 開啟批次結帳時交由管線合併提交，否則每筆獨立交易
+        Order newOrder = posCheckoutPipeline.isEnabled()
+                ? posCheckoutPipeline.checkout(brandId, storeId, userId, requestDto)
+                : orderProcessFacade.processPosCheckout(brandId, storeId, userId, requestDto);
         return new ResponseEntity<>(OrderResponseDto.fromEntity(newOrder), HttpStatus.CREATED);
     }
 
@@ -0,0 +1,19 @@
+package tw.niels.beverage_api_project.modules.order.dao;
+
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+
+import java.util.List;
+
+/**
+ * 訂單批次寫入 DAO 介面
+ * 以多列 JDBC 批次一次寫入 orders / order_items / order_item_options，
+ * 供批次結帳 (PosCheckoutPipeline) 使用，繞過 JPA 的逐筆 INSERT。
+ */
+public interface OrderBatchDAO {
+
+    /**
+     * 批次寫入訂單及其品項、品項選項 (需在交易中呼叫)
+     * 訂單與品項的 ID 已由 TSID 在應用程式端產生。
+     */
+    void batchInsertOrders(List<Order> orders);
+}
@@ -0,0 +1,176 @@
+package tw.niels.beverage_api_project.modules.order.dao;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.product.entity.ProductOption;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 訂單批次寫入 DAO 實作
+ * 使用 JdbcTemplate 執行實際的 SQL 操作。
+ * 搭配 reWriteBatchedInserts=true 時，PgJDBC 會將同一批次改寫為多列 INSERT。
+ */
+@Repository
+public class OrderBatchDAOImpl implements OrderBatchDAO {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+
+    public OrderBatchDAOImpl(JdbcTemplate jdbcTemplate, ObjectMapper objectMapper) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    public void batchInsertOrders(List<Order> orders) {
+        if (orders == null || orders.isEmpty()) {
+            return;
+        }
+
+        List<OrderItem> items = new ArrayList<>();
+        List<long[]> itemOptions = new ArrayList<>();
+        for (Order order : orders) {
+            for (OrderItem item : order.getItems()) {
+                items.add(item);
+                // 選項為代理物件，getId() 不會觸發初始化
+                for (ProductOption option : item.getOptions()) {
+                    itemOptions.add(new long[]{item.getId(), option.getId()});
+                }
+            }
+        }
+
+        insertOrders(orders);
+        insertItems(items);
+        insertItemOptions(itemOptions);
+    }
+
+    private void insertOrders(List<Order> orders) {
+        String sql = "INSERT INTO orders (order_id, brand_id, store_id, member_user_id, staff_user_id, " +
+                "order_number, status_code, total_amount, discount_amount, final_amount, " +
+                "points_used, points_earned, customer_note, order_time, completed_time, " +
+                "payment_method_id, member_snapshot) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                Order order = orders.get(i);
+                ps.setLong(1, order.getId());
+                ps.setLong(2, order.getBrand().getId());
+                ps.setLong(3, order.getStore().getId());
+                setNullableLong(ps, 4, order.getMember() != null ? order.getMember().getUserId() : null);
+                setNullableLong(ps, 5, order.getStaff() != null ? order.getStaff().getUserId() : null);
+                ps.setString(6, order.getOrderNumber());
+                ps.setString(7, order.getStatus().name());
+                ps.setBigDecimal(8, order.getTotalAmount());
+                ps.setBigDecimal(9, order.getDiscountAmount());
+                ps.setBigDecimal(10, order.getFinalAmount());
+                ps.setLong(11, order.getPointsUsed());
+                ps.setLong(12, order.getPointsEarned());
+                ps.setString(13, order.getCustomerNote());
+                ps.setTimestamp(14, toTimestamp(order.getOrderTime()));
+                ps.setTimestamp(15, toTimestamp(order.getCompletedTime()));
+                if (order.getPaymentMethod() != null) {
+                    ps.setInt(16, order.getPaymentMethod().getPaymentMethodId());
+                } else {
+                    ps.setNull(16, Types.INTEGER);
+                }
+                ps.setObject(17, toJson(order.getMemberSnapshot()), Types.OTHER);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return orders.size();
+            }
+        });
+    }
+
+    private void insertItems(List<OrderItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO order_items (order_item_id, order_id, product_id, variant_id, " +
+                "quantity, unit_price, subtotal, notes, product_snapshot) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                OrderItem item = items.get(i);
+                ps.setLong(1, item.getId());
+                ps.setLong(2, item.getOrder().getId());
+                ps.setLong(3, item.getProduct().getId());
+                ps.setLong(4, item.getProductVariant().getId());
+                ps.setInt(5, item.getQuantity());
+                ps.setBigDecimal(6, item.getUnitPrice());
+                ps.setBigDecimal(7, item.getSubtotal());
+                ps.setString(8, item.getNotes());
+                ps.setObject(9, toJson(item.getProductSnapshot()), Types.OTHER);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return items.size();
+            }
+        });
+    }
+
+    private void insertItemOptions(List<long[]> itemOptions) {
+        if (itemOptions.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO order_item_options (order_item_id, option_id) VALUES (?, ?)";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                long[] pair = itemOptions.get(i);
+                ps.setLong(1, pair[0]);
+                ps.setLong(2, pair[1]);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return itemOptions.size();
+            }
+        });
+    }
+
+    private static void setNullableLong(PreparedStatement ps, int index, Long value) throws SQLException {
+        if (value != null) {
+            ps.setLong(index, value);
+        } else {
+            ps.setNull(index, Types.BIGINT);
+        }
+    }
+
+    private static Timestamp toTimestamp(Date date) {
+        return date != null ? new Timestamp(date.getTime()) : null;
+    }
+
+    private String toJson(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("快照序列化失敗", e);
+        }
+    }
+}
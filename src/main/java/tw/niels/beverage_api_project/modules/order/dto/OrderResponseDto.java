@@ -5,6 +5,7 @@ import lombok.Data;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.order.entity.PaymentMethodEntity;
 import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.vo.ProductSnapshot;
 
 import java.math.BigDecimal;
 import java.util.Date;
@@ -152,19 +153,33 @@ public class OrderResponseDto {
             OrderItemResponseDto itemDto = new OrderItemResponseDto();
             itemDto.setOrderItemId(item.getId());
             itemDto.setProductId(item.getProduct().getId());
-            itemDto.setProductName(item.getProduct().getName());
+            // 優先使用下單時的快照 (不需載入 Product / ProductOption 實體)，舊資料才回退到關聯
+            ProductSnapshot snapshot = item.getProductSnapshot();
+            itemDto.setProductName(snapshot != null && snapshot.name() != null
+                    ? snapshot.name() : item.getProduct().getName());
             itemDto.setQuantity(item.getQuantity());
             itemDto.setUnitPrice(item.getUnitPrice());
             itemDto.setSubtotal(item.getSubtotal());
             itemDto.setNotes(item.getNotes());
 
-            List<OptionResponseDto> optionDtos = item.getOptions().stream().map(option -> {
-                OptionResponseDto optionDto = new OptionResponseDto();
-                optionDto.setOptionId(option.getId());
-                optionDto.setOptionName(option.getOptionName());
-                optionDto.setPriceAdjustment(option.getPriceAdjustment());
-                return optionDto;
-            }).collect(Collectors.toList());
+            List<OptionResponseDto> optionDtos;
+            if (snapshot != null && snapshot.options() != null) {
+                optionDtos = snapshot.options().stream().map(option -> {
+                    OptionResponseDto optionDto = new OptionResponseDto();
+                    optionDto.setOptionId(option.optionId());
+                    optionDto.setOptionName(option.name());
+                    optionDto.setPriceAdjustment(option.priceAdjustment());
+                    return optionDto;
+                }).collect(Collectors.toList());
+            } else {
+                optionDtos = item.getOptions().stream().map(option -> {
+                    OptionResponseDto optionDto = new OptionResponseDto();
+                    optionDto.setOptionId(option.getId());
+                    optionDto.setOptionName(option.getOptionName());
+                    optionDto.setPriceAdjustment(option.getPriceAdjustment());
+                    return optionDto;
+                }).collect(Collectors.toList());
+            }
             itemDto.setOptions(optionDtos);
             return itemDto;
         }).collect(Collectors.toList());
@@ -0,0 +1,24 @@
+package tw.niels.beverage_api_project.modules.order.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import tw.niels.beverage_api_project.modules.order.enums.OrderTaskState;
+import tw.niels.beverage_api_project.modules.order.vo.OrderTaskStatus;
+
+@Schema(description = "非同步線上訂單處理狀態")
+public record OrderTaskStatusDto(
+        @Schema(description = "下單時回傳的 Ticket ID", example = "0HZXYWB3Q5TEM")
+        String requestId,
+        @Schema(description = "處理狀態 (PENDING / CREATED / FAILED)")
+        OrderTaskState state,
+        @Schema(description = "訂單 ID (CREATED 時才有值)")
+        Long orderId,
+        @Schema(description = "訂單編號 (CREATED 時才有值)", example = "1-20251105-0001")
+        String orderNumber,
+        @Schema(description = "失敗原因 (FAILED 時才有值)")
+        String message
+) {
+    public static OrderTaskStatusDto fromStatus(OrderTaskStatus status) {
+        return new OrderTaskStatusDto(status.requestId(), status.state(), status.orderId(),
+                status.orderNumber(), status.message());
+    }
+}
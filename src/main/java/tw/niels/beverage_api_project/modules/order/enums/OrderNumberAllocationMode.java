@@ -0,0 +1,9 @@
+package tw.niels.beverage_api_project.modules.order.enums;
+
+/**
+ * 店家每日訂單流水號的配號模式
+ */
+public enum OrderNumberAllocationMode {
+    GAP_FREE, // 每張訂單向 Redis INCR 一次，號碼連續不跳號
+    BLOCK     // 每個節點以 INCRBY 預先租用一段號碼在本機發放，節點重啟或跨日時會留下少量空號
+}
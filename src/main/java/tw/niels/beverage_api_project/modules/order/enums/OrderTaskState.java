@@ -0,0 +1,10 @@
+package tw.niels.beverage_api_project.modules.order.enums;
+
+/**
+ * 非同步線上訂單任務的處理狀態
+ */
+public enum OrderTaskState {
+    PENDING, // 已送入佇列，尚未處理
+    CREATED, // 訂單建立成功
+    FAILED   // 訂單建立失敗
+}
@@ -61,7 +61,11 @@ public class OrderProcessFacade {
 
     /**
      * 處理 POS 的「一步到位」結帳。
-     * 包含：建立訂單 -> 計算金額 -> 扣點數 -> 促銷計算 -> 存檔 -> 發送 KDS 事件
+     * 包含：建立訂單 -> 計算金額 -> 促銷計算 -> 存檔 -> 扣點數 -> 發送 KDS 事件
+     * <p>
+     * 訂單 ID 由 TSID 在應用程式端產生，因此所有欄位都在記憶體中 (transient) 計算完成後才存檔一次，
+     * 訂單與品項只會產生一批 INSERT，不會再有「先存檔、再 UPDATE」的情況。
+     * </p>
      */
     @Transactional
     public Order processPosCheckout(Long brandId, Long storeId, Long staffUserId, PosCheckoutRequestDto requestDto) {
@@ -75,7 +79,7 @@ public class OrderProcessFacade {
         PaymentMethodEntity paymentMethod = paymentMethodRepository.findByCode(requestDto.getPaymentMethod())
                 .orElseThrow(() -> new BadRequestException("無效的支付方式代碼：" + requestDto.getPaymentMethod()));
 
-        // 2. 初始化訂單 (委派給 OrderService 建立空殼)
+        // 2. 初始化訂單 (委派給 OrderService 建立空殼，此時尚未存檔)
         Order order = orderService.initOrder(staff, store);
 
         // 3. 處理訂單品項與金額 (委派給 Processor)
@@ -83,16 +87,15 @@ public class OrderProcessFacade {
         order.setItems(itemResult.orderItems());
         order.setTotalAmount(itemResult.totalAmount());
 
-        // 在這裡先存檔一次！讓 Order 變成 Persistent 狀態 (有 ID)
-        order = orderService.saveOrder(order);
-
         // 4. 庫存管理模式是 「週期性盤點 (Periodic Review)」，不進行實時扣減。
 
-        // 5. 處理會員與點數
+        // 5. 處理會員與點數 (只計算折抵，實際扣點在訂單存檔後執行)
         BigDecimal pointDiscount = BigDecimal.ZERO;
+        User member = null;
+        Long pointsToUse = requestDto.getPointsToUse();
 
         if (requestDto.getMemberId() != null) {
-            User member = userRepository.findByBrand_IdAndId(brandId, requestDto.getMemberId())
+            member = userRepository.findByBrand_IdAndId(brandId, requestDto.getMemberId())
                     .filter(u -> u.getMemberProfile() != null)
                     .orElseThrow(() -> new ResourceNotFoundException("找不到會員，ID：" + requestDto.getMemberId()));
 
@@ -100,14 +103,13 @@ public class OrderProcessFacade {
             // 建立會員快照
             orderService.snapshotMember(order, member);
 
-            if (requestDto.getPointsToUse() > 0) {
-                pointDiscount = memberPointService.calculateDiscountAmount(requestDto.getPointsToUse(), order);
-                memberPointService.usePoints(member, order, requestDto.getPointsToUse());
-                order.setPointsUsed(requestDto.getPointsToUse());
+            if (pointsToUse != null && pointsToUse > 0) {
+                pointDiscount = memberPointService.calculateDiscountAmount(pointsToUse, order);
+                order.setPointsUsed(pointsToUse);
             }
         }
 
-        // 6. 計算最佳促銷折扣 (委派給 PromotionService)
+        // 6. 計算最佳促銷折扣 (委派給 PromotionService，作用於尚未存檔的訂單)
         BigDecimal promoDiscount = promotionService.calculateBestDiscount(order);
 
         // 7. 結算最終金額
@@ -118,13 +120,19 @@ public class OrderProcessFacade {
         order.setFinalAmount(finalAmount.max(BigDecimal.ZERO));
         order.setPaymentMethod(paymentMethod);
 
-        // 8. 設定狀態並存檔
+        // 8. 設定狀態並存檔 (唯一一次存檔)
         order.setStatus(OrderStatus.PREPARING); // POS 直接結帳視為進入製作中
         order.setPointsEarned(0L); // 點數在 CLOSED 狀態才賺取
 
         Order savedOrder = orderService.saveOrder(order);
 
-        // 9. 發布領域事件 (通知 KDS)
+        // 9. 扣除點數：點數紀錄參照訂單，需在訂單存檔 (persist) 之後建立，flush 時才會排在訂單 INSERT 之後
+        //    點數不足會拋出例外，整筆交易 (含訂單) 一併回滾
+        if (member != null && savedOrder.getPointsUsed() > 0) {
+            memberPointService.usePoints(member, savedOrder, savedOrder.getPointsUsed());
+        }
+
+        // 10. 發布領域事件 (通知 KDS)
         eventPublisher.publishEvent(new OrderStateChangedEvent(savedOrder, null, OrderStatus.PREPARING));
 
         return savedOrder;
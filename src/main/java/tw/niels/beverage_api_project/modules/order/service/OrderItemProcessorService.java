@@ -8,30 +8,38 @@ import tw.niels.beverage_api_project.common.exception.ResourceNotFoundException;
 import tw.niels.beverage_api_project.modules.order.dto.OrderItemDto;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.order.vo.OptionSnapshot;
 import tw.niels.beverage_api_project.modules.order.vo.ProductSnapshot;
-import tw.niels.beverage_api_project.modules.product.entity.Category;
-import tw.niels.beverage_api_project.modules.product.entity.Product;
 import tw.niels.beverage_api_project.modules.product.entity.ProductOption;
-import tw.niels.beverage_api_project.modules.product.entity.ProductVariant;
 import tw.niels.beverage_api_project.modules.product.repository.ProductOptionRepository;
 import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
-import tw.niels.beverage_api_project.modules.product.repository.ProductVariantRepository; // 新增
+import tw.niels.beverage_api_project.modules.product.repository.ProductVariantRepository;
+import tw.niels.beverage_api_project.modules.product.service.CatalogSnapshotService;
+import tw.niels.beverage_api_project.modules.product.vo.CatalogSnapshot;
 
 import java.math.BigDecimal;
 import java.util.*;
-import java.util.function.Function;
-import java.util.stream.Collectors;
 
+/**
+ * 訂單品項處理：驗證商品 / 規格 / 選項並計價。
+ * <p>
+ * 驗證與計價全部使用記憶體中的目錄快照 (CatalogSnapshotService)，熱路徑不發出 SQL；
+ * 關聯欄位以 getReferenceById 設定 (只需 ID 的代理物件)，寫入時也不會額外查詢。
+ * </p>
+ */
 @Service
 public class OrderItemProcessorService {
 
+    private final CatalogSnapshotService catalogSnapshotService;
     private final ProductRepository productRepository;
     private final ProductOptionRepository productOptionRepository;
-    private final ProductVariantRepository productVariantRepository; // 新增注入
+    private final ProductVariantRepository productVariantRepository;
 
-    public OrderItemProcessorService(ProductRepository productRepository,
+    public OrderItemProcessorService(CatalogSnapshotService catalogSnapshotService,
+                                     ProductRepository productRepository,
                                      ProductOptionRepository productOptionRepository,
                                      ProductVariantRepository productVariantRepository) {
+        this.catalogSnapshotService = catalogSnapshotService;
         this.productRepository = productRepository;
         this.productOptionRepository = productOptionRepository;
         this.productVariantRepository = productVariantRepository;
@@ -46,46 +54,20 @@ public class OrderItemProcessorService {
             return new ProcessResult(new HashSet<>(), BigDecimal.ZERO);
         }
 
-        // 1. 收集 ID (Product, Variant, Option)
-        Set<Long> productIds = new HashSet<>();
-        Set<Long> variantIds = new HashSet<>(); // 新增：收集規格 ID
-        Set<Long> allOptionIds = new HashSet<>();
-
-        for (OrderItemDto dto : itemDtos) {
-            if (dto.productId() != null) productIds.add(dto.productId());
-            if (dto.variantId() != null) variantIds.add(dto.variantId());
-            if (dto.optionIds() != null) allOptionIds.addAll(dto.optionIds());
-        }
-
-        // 2. 批次查詢 Product
-        Map<Long, Product> productMap = productRepository.findByBrand_IdAndIdIn(brandId, productIds)
-                .stream()
-                .collect(Collectors.toMap(Product::getId, Function.identity()));
-
-        // 3. 批次查詢 ProductVariant (新增步驟)
-        // 需在 Repository 實作 findByProduct_Brand_IdAndIdInAndIsDeletedFalse
-        Map<Long, ProductVariant> variantMap = new HashMap<>();
-        if (!variantIds.isEmpty()) {
-            // 假設您在 Repository 加了這個方法，或是用 findByIdIn 配合 filter
-            variantMap = productVariantRepository.findByProduct_Brand_IdAndIdInAndIsDeletedFalse(brandId, variantIds)
-                    .stream()
-                    .collect(Collectors.toMap(ProductVariant::getId, Function.identity()));
-        }
-
-        // 4. 批次查詢 Option
-        Map<Long, ProductOption> optionMap = new HashMap<>();
-        if (!allOptionIds.isEmpty()) {
-            optionMap = productOptionRepository.findByOptionGroup_Brand_IdAndIdIn(brandId, allOptionIds)
-                    .stream()
-                    .collect(Collectors.toMap(ProductOption::getId, Function.identity()));
+        // 1. 取得品牌目錄快照 (已載入時為純記憶體存取)
+        CatalogSnapshot catalog = catalogSnapshotService.getSnapshot(brandId);
+        if (!containsAll(catalog, itemDtos)) {
+            // 可能是其他實例剛新增的商品，補載一次後再驗證
+            catalog = catalogSnapshotService.reloadOnMiss(catalog);
         }
 
         Set<OrderItem> orderItems = new HashSet<>();
         BigDecimal totalAmount = BigDecimal.ZERO;
 
-        // 5. 處理每個 Item
+        // 2. 處理每個 Item
         for (OrderItemDto itemDto : itemDtos) {
-            Product product = productMap.get(itemDto.productId());
+            CatalogSnapshot.ProductEntry product = itemDto.productId() != null
+                    ? catalog.product(itemDto.productId()) : null;
             if (product == null) {
                 throw new ResourceNotFoundException("商品不存在或已下架，ID: " + itemDto.productId());
             }
@@ -94,20 +76,20 @@ public class OrderItemProcessorService {
             if (itemDto.variantId() == null) {
                 throw new BadRequestException("必須選擇商品規格 (Variant ID)");
             }
-            ProductVariant variant = variantMap.get(itemDto.variantId());
+            CatalogSnapshot.VariantEntry variant = catalog.variant(itemDto.variantId());
             if (variant == null) {
                 throw new BadRequestException("規格無效或已刪除，ID: " + itemDto.variantId());
             }
             // 安全性檢查：確保規格真的屬於該商品
-            if (variant.getProduct().getId() != null && !variant.getProduct().getId().equals(product.getId())) {
+            if (variant.productId() != product.productId()) {
                 throw new BadRequestException("規格 ID 與商品 ID 不匹配");
             }
 
-            // 建立 OrderItem
+            // 建立 OrderItem (關聯只需 ID，使用代理物件避免查詢)
             OrderItem orderItem = new OrderItem();
             orderItem.setOrder(order);
-            orderItem.setProduct(product);
-            orderItem.setProductVariant(variant); // 【關鍵修正】設定規格關聯
+            orderItem.setProduct(productRepository.getReferenceById(product.productId()));
+            orderItem.setProductVariant(productVariantRepository.getReferenceById(variant.variantId()));
             orderItem.setQuantity(itemDto.quantity());
 
             // XSS
@@ -115,38 +97,37 @@ public class OrderItemProcessorService {
             if (notes != null) notes = Jsoup.clean(notes, Safelist.none());
             orderItem.setNotes(notes);
 
-            // 快照 (需包含規格名稱，例如 "紅茶 - 大杯")
-            String categoryName = product.getCategories().stream()
-                    .findFirst()
-                    .map(Category::getName)
-                    .orElse("Uncategorized");
-
-            ProductSnapshot snapshot = new ProductSnapshot(
-                    product.getId(),
-                    product.getName(), // 這裡其實可以考慮加上 variant.getName()，但通常前端分開顯示
-                    variant.getPrice(), // 使用規格價格，而非商品底價
-                    categoryName,
-                    variant.getName()   // 在 ProductSnapshot 中新增 variantName 欄位
-            );
-            // 若 ProductSnapshot 尚未支援 variantName，暫時只能存在 Name 裡，或先不改
-            // 建議修改 ProductSnapshot record 結構
-            orderItem.setProductSnapshot(snapshot);
-
             // 選項處理
             BigDecimal optionsPrice = BigDecimal.ZERO;
+            Map<Long, OptionSnapshot> selectedOptions = new LinkedHashMap<>();
             if (itemDto.optionIds() != null) {
-                Set<ProductOption> selectedOptions = new HashSet<>();
+                // 代理物件的 hashCode 會觸發初始化，這裡用 identity set (同一 Session 內同 ID 的代理為同一實例)
+                // 實際載入延後到 flush 時，由 ProductOption 的 @BatchSize 合併為一次查詢
+                Set<ProductOption> optionRefs = Collections.newSetFromMap(new IdentityHashMap<>());
                 for (Long optionId : itemDto.optionIds()) {
-                    ProductOption option = optionMap.get(optionId);
+                    CatalogSnapshot.OptionEntry option = optionId != null ? catalog.option(optionId) : null;
                     if (option == null) throw new BadRequestException("無效選項: " + optionId);
-                    selectedOptions.add(option);
-                    optionsPrice = optionsPrice.add(option.getPriceAdjustment());
+                    optionRefs.add(productOptionRepository.getReferenceById(option.optionId()));
+                    selectedOptions.putIfAbsent(option.optionId(),
+                            new OptionSnapshot(option.optionId(), option.optionName(), option.priceAdjustment()));
+                    optionsPrice = optionsPrice.add(option.priceAdjustment());
                 }
-                orderItem.setOptions(selectedOptions);
+                orderItem.setOptions(optionRefs);
             }
 
+            // 快照 (商品、規格、選項名稱皆來自目錄快照，後續顯示不需再載入實體)
+            ProductSnapshot snapshot = new ProductSnapshot(
+                    product.productId(),
+                    product.name(),
+                    variant.price(), // 使用規格價格，而非商品底價
+                    product.categoryName(),
+                    variant.name(),
+                    List.copyOf(selectedOptions.values())
+            );
+            orderItem.setProductSnapshot(snapshot);
+
             // 計算金額 (使用 variant price)
-            BigDecimal unitPrice = variant.getPrice().add(optionsPrice); // 【關鍵修正】
+            BigDecimal unitPrice = variant.price().add(optionsPrice);
             orderItem.setUnitPrice(unitPrice);
 
             BigDecimal subtotal = unitPrice.multiply(new BigDecimal(itemDto.quantity()));
@@ -158,4 +139,20 @@ public class OrderItemProcessorService {
 
         return new ProcessResult(orderItems, totalAmount);
     }
-}
\ No newline at end of file
+
+    /**
+     * 檢查請求中的所有 ID 是否都存在於快照中 (只用於決定是否需要補載)
+     */
+    private boolean containsAll(CatalogSnapshot catalog, List<OrderItemDto> itemDtos) {
+        for (OrderItemDto dto : itemDtos) {
+            if (dto.productId() != null && catalog.product(dto.productId()) == null) return false;
+            if (dto.variantId() != null && catalog.variant(dto.variantId()) == null) return false;
+            if (dto.optionIds() != null) {
+                for (Long optionId : dto.optionIds()) {
+                    if (optionId != null && catalog.option(optionId) == null) return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -1,25 +1,93 @@
 package tw.niels.beverage_api_project.modules.order.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+import tw.niels.beverage_api_project.modules.order.enums.OrderNumberAllocationMode;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class OrderNumberService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OrderNumberService.class);
+
     private final StringRedisTemplate redisTemplate;
     // 定義日期格式，用於產生 Redis Key
     private static final DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyyMMdd");
 
-    public OrderNumberService(StringRedisTemplate redisTemplate) {
+    // 每個 (店家, 日期) 在本節點持有的號碼租約
+    private final ConcurrentMap<String, SequenceLease> leases = new ConcurrentHashMap<>();
+    private final ExecutorService prefetchExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter syncRefillCounter;
+    private final Counter prefetchRefillCounter;
+    private final Counter prefetchFailureCounter;
+    private final Timer refillWaitTimer;
+
+    @Value("${app.order.number.mode:BLOCK}")
+    private OrderNumberAllocationMode mode = OrderNumberAllocationMode.BLOCK;
+
+    // 每次向 Redis 租用的號碼數量
+    @Value("${app.order.number.block-size:20}")
+    private int blockSize = 20;
+
+    // 目前區塊剩餘號碼數降到此值時，於背景預先租用下一個區塊
+    @Value("${app.order.number.prefetch-remaining:5}")
+    private int prefetchRemaining = 5;
+
+    public OrderNumberService(StringRedisTemplate redisTemplate, MeterRegistry meterRegistry) {
         this.redisTemplate = redisTemplate;
+        this.syncRefillCounter = Counter.builder("order.number.block.refills")
+                .description("訂單流水號區塊租用次數")
+                .tag("source", "sync")
+                .register(meterRegistry);
+        this.prefetchRefillCounter = Counter.builder("order.number.block.refills")
+                .description("訂單流水號區塊租用次數")
+                .tag("source", "prefetch")
+                .register(meterRegistry);
+        this.prefetchFailureCounter = Counter.builder("order.number.block.prefetch.failures")
+                .description("背景預取區塊失敗次數 (之後改為同步租用)")
+                .register(meterRegistry);
+        this.refillWaitTimer = Timer.builder("order.number.block.wait")
+                .description("目前區塊用完時，結帳執行緒等待下一個區塊的時間")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void validate() {
+        if (blockSize < 1) {
+            throw new IllegalStateException("app.order.number.block-size 必須大於 0");
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        prefetchExecutor.shutdownNow();
     }
 
     /**
      * 獲取指定店家當天的下一個訂單序號
-     * * @param storeId 店家 ID
+     * <p>
+     * BLOCK 模式下號碼在各節點間不重複，但不保證依時間遞增，也可能留下空號；
+     * 需要連續號碼時請改用 GAP_FREE 模式。
+     * </p>
+     * @param storeId 店家 ID
      * @return 當天的訂單流水號 (例如 1, 2, 3...)
      */
     public long getNextStoreDailySequence(Long storeId) {
@@ -28,18 +96,117 @@ public class OrderNumberService {
         String dateString = LocalDate.now().format(dateFormatter);
         String redisKey = String.format("order_counter:store_id:%d:date:%s", storeId, dateString);
 
-        // 2. 使用 INCR 指令。
-        // 如果 Key 不存在，Redis 會自動建立它並設為 1
-        // 如果 Key 已存在，Redis 會將其值 +1
-        Long sequence = redisTemplate.opsForValue().increment(redisKey);
+        if (mode == OrderNumberAllocationMode.GAP_FREE) {
+            return incrementBy(redisKey, 1);
+        }
+
+        SequenceLease lease = leases.get(redisKey);
+        if (lease == null) {
+            // 跨日後舊日期的租約不再使用，剩餘號碼直接捨棄
+            leases.keySet().removeIf(key -> !key.endsWith(dateString));
+            lease = leases.computeIfAbsent(redisKey, SequenceLease::new);
+        }
+        return lease.next();
+    }
 
-        // 3. (重要) 為這個 Key 設定過期時間 (TTL)，例如 2 天 (48 小時)
+    /**
+     * 以 INCRBY 向 Redis 取得 count 個號碼，回傳其中最後一個號碼
+     */
+    private long incrementBy(String redisKey, int count) {
+        // 如果 Key 不存在，Redis 會自動建立它並從 0 開始累加
+        Long end = redisTemplate.opsForValue().increment(redisKey, count);
+        if (end == null) {
+            throw new IllegalStateException("無法取得訂單流水號 (Redis Key: " + redisKey + ")");
+        }
+
+        // (重要) 為這個 Key 設定過期時間 (TTL)，例如 2 天 (48 小時)
         // 這樣可以自動清除舊的計數器，節省 Upstash 記憶體
-        // 只有在 sequence 為 1 (即 Key 剛被建立) 時才需要設定
-        if (sequence != null && sequence == 1) {
-            // 設定 48 小時後過期
+        // 只有在 Key 剛被建立時才需要設定
+        if (end == count) {
             redisTemplate.expire(redisKey, 48, TimeUnit.HOURS);
         }
+        return end;
+    }
 
-        return sequence != null ? sequence : -1; // -1 表示出錯
-    }}
+    /**
+     * 一段已向 Redis 租用的號碼 [next, end]
+     */
+    private record Block(AtomicLong next, long end) {
+        static Block of(long start, long end) {
+            return new Block(new AtomicLong(start), end);
+        }
+    }
+
+    /**
+     * 單一 (店家, 日期) 的號碼租約
+     * 一般情況下只以 AtomicLong 在本機發號，不需要等待 Redis；
+     * 剩餘號碼不足時於背景預取下一個區塊，用完時才切換。
+     */
+    private final class SequenceLease {
+
+        private final String redisKey;
+        private volatile Block current;
+        // 受 this 保護
+        private CompletableFuture<Block> prefetch;
+
+        SequenceLease(String redisKey) {
+            this.redisKey = redisKey;
+        }
+
+        long next() {
+            while (true) {
+                Block block = current;
+                if (block != null) {
+                    long value = block.next().getAndIncrement();
+                    if (value <= block.end()) {
+                        // 每個區塊只會有一個執行緒剛好拿到這個號碼，因此預取只會觸發一次
+                        if (block.end() - value == Math.min(prefetchRemaining, blockSize - 1)) {
+                            startPrefetch();
+                        }
+                        return value;
+                    }
+                }
+                refill(block);
+            }
+        }
+
+        private synchronized void startPrefetch() {
+            if (prefetch == null) {
+                prefetch = CompletableFuture.supplyAsync(this::lease, prefetchExecutor);
+            }
+        }
+
+        private synchronized void refill(Block exhausted) {
+            if (current != exhausted) {
+                return; // 其他執行緒已經換上新區塊
+            }
+
+            long startNanos = System.nanoTime();
+            CompletableFuture<Block> pending = prefetch;
+            prefetch = null;
+
+            Block next = null;
+            if (pending != null) {
+                try {
+                    next = pending.join();
+                    prefetchRefillCounter.increment();
+                } catch (RuntimeException e) {
+                    prefetchFailureCounter.increment();
+                    logger.warn("預取訂單流水號區塊失敗，改為同步租用 (Key: {})", redisKey, e);
+                }
+            }
+            if (next == null) {
+                next = lease();
+                syncRefillCounter.increment();
+            }
+
+            refillWaitTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+            current = next;
+        }
+
+        private Block lease() {
+            long end = incrementBy(redisKey, blockSize);
+            return Block.of(end - blockSize + 1, end);
+        }
+    }
+}
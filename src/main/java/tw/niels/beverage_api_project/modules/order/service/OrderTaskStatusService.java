@@ -0,0 +1,163 @@
+package tw.niels.beverage_api_project.modules.order.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.order.dto.AsyncOrderTaskDto;
+import tw.niels.beverage_api_project.modules.order.dto.OrderTaskStatusDto;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.enums.OrderTaskState;
+import tw.niels.beverage_api_project.modules.order.vo.OrderTaskStatus;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 非同步線上訂單任務狀態
+ * <p>
+ * 1. 下單時寫入 PENDING，消費者處理完成後改為 CREATED (附訂單 ID / 編號) 或 FAILED。
+ * 2. 狀態以 requestId 為 Key 存於 Redis (有 TTL)，查詢時只讀 Redis，不會查詢 orders 資料表。
+ * 3. 狀態完成時透過 RabbitMQ Fanout 廣播給所有實例，
+ *    由各實例喚醒本機的長輪詢請求，並推播到使用者的 STOMP 目的地 /user/queue/orders。
+ * </p>
+ */
+@Service
+public class OrderTaskStatusService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderTaskStatusService.class);
+    private static final String REDIS_KEY_PREFIX = "order_task:";
+    public static final String USER_DESTINATION = "/queue/orders";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final RabbitTemplate rabbitTemplate;
+    private final SimpMessagingTemplate messagingTemplate;
+
+    // 本機等待中的長輪詢請求 (requestId -> 等待者)
+    private final ConcurrentMap<String, Queue<DeferredResult<OrderTaskStatusDto>>> waiters = new ConcurrentHashMap<>();
+
+    @Value("${app.order.task-status.ttl-minutes:30}")
+    private long ttlMinutes;
+
+    public OrderTaskStatusService(StringRedisTemplate redisTemplate,
+                                  ObjectMapper objectMapper,
+                                  RabbitTemplate rabbitTemplate,
+                                  SimpMessagingTemplate messagingTemplate) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.rabbitTemplate = rabbitTemplate;
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * 任務送入佇列前呼叫
+     */
+    public void markPending(AsyncOrderTaskDto task) {
+        save(new OrderTaskStatus(task.getRequestId(), OrderTaskState.PENDING, task.getUserId(), task.getUserPhone(),
+                null, null, null, System.currentTimeMillis()));
+    }
+
+    /**
+     * 訂單交易提交後呼叫
+     */
+    public void markCreated(AsyncOrderTaskDto task, Order order) {
+        finish(new OrderTaskStatus(task.getRequestId(), OrderTaskState.CREATED, task.getUserId(), task.getUserPhone(),
+                order.getId(), order.getOrderNumber(), null, System.currentTimeMillis()));
+    }
+
+    public void markFailed(AsyncOrderTaskDto task, String message) {
+        finish(new OrderTaskStatus(task.getRequestId(), OrderTaskState.FAILED, task.getUserId(), task.getUserPhone(),
+                null, null, message, System.currentTimeMillis()));
+    }
+
+    public Optional<OrderTaskStatus> getStatus(String requestId) {
+        String json = redisTemplate.opsForValue().get(REDIS_KEY_PREFIX + requestId);
+        if (json == null) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(json, OrderTaskStatus.class));
+        } catch (JsonProcessingException e) {
+            logger.warn("訂單任務狀態格式錯誤 (RequestId: {})", requestId, e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 長輪詢：狀態已完成時立即回應，否則等到狀態完成或逾時 (逾時回傳目前狀態)
+     */
+    public DeferredResult<OrderTaskStatusDto> awaitStatus(OrderTaskStatus current, Duration timeout) {
+        OrderTaskStatusDto currentDto = OrderTaskStatusDto.fromStatus(current);
+        DeferredResult<OrderTaskStatusDto> result = new DeferredResult<>(timeout.toMillis(), currentDto);
+        // 注意：Servlet 的逾時 0 代表「永不逾時」，因此不等待時必須直接回應
+        if (current.isFinished() || timeout.isZero()) {
+            result.setResult(currentDto);
+            return result;
+        }
+
+        String requestId = current.requestId();
+        Queue<DeferredResult<OrderTaskStatusDto>> queue =
+                waiters.computeIfAbsent(requestId, k -> new ConcurrentLinkedQueue<>());
+        queue.add(result);
+        result.onCompletion(() -> {
+            queue.remove(result);
+            waiters.computeIfPresent(requestId, (k, q) -> q.isEmpty() ? null : q);
+        });
+
+        // 註冊後再讀一次，避免在讀取與註冊之間完成的狀態被漏掉
+        getStatus(requestId).filter(OrderTaskStatus::isFinished)
+                .ifPresent(status -> result.setResult(OrderTaskStatusDto.fromStatus(status)));
+        return result;
+    }
+
+    /**
+     * 接收其他實例 (包含自己) 廣播的完成狀態
+     */
+    @RabbitListener(queues = "#{orderTaskStatusAnonymousQueue.name}")
+    public void handleStatusBroadcast(OrderTaskStatus status) {
+        OrderTaskStatusDto dto = OrderTaskStatusDto.fromStatus(status);
+        Queue<DeferredResult<OrderTaskStatusDto>> queue = waiters.remove(status.requestId());
+        if (queue != null) {
+            queue.forEach(result -> result.setResult(dto));
+        }
+        // 使用者未連線到本實例時，SimpleBroker 會直接略過
+        if (status.userPhone() != null) {
+            messagingTemplate.convertAndSendToUser(status.userPhone(), USER_DESTINATION, dto);
+        }
+    }
+
+    /**
+     * 寫入完成狀態並廣播
+     * 此時訂單交易已提交，狀態寫入或廣播失敗都不能讓訊息重新投遞，因此只記錄警告
+     */
+    private void finish(OrderTaskStatus status) {
+        try {
+            save(status);
+            rabbitTemplate.convertAndSend(RabbitConfig.ORDER_TASK_STATUS_EXCHANGE, "", status);
+        } catch (Exception e) {
+            logger.warn("訂單任務狀態更新失敗 (RequestId: {}, State: {})", status.requestId(), status.state(), e);
+        }
+    }
+
+    private void save(OrderTaskStatus status) {
+        try {
+            redisTemplate.opsForValue().set(REDIS_KEY_PREFIX + status.requestId(),
+                    objectMapper.writeValueAsString(status), Duration.ofMinutes(ttlMinutes));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("訂單任務狀態序列化失敗", e);
+        }
+    }
+}
@@ -0,0 +1,384 @@
+package tw.niels.beverage_api_project.modules.order.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.common.exception.ResourceNotFoundException;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.modules.member.dao.MemberPointDAO;
+import tw.niels.beverage_api_project.modules.member.service.MemberPointService;
+import tw.niels.beverage_api_project.modules.order.dao.OrderBatchDAO;
+import tw.niels.beverage_api_project.modules.order.dto.PosCheckoutRequestDto;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.PaymentMethodEntity;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
+import tw.niels.beverage_api_project.modules.order.facade.OrderProcessFacade;
+import tw.niels.beverage_api_project.modules.order.repository.PaymentMethodRepository;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionService;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+import tw.niels.beverage_api_project.modules.user.entity.User;
+import tw.niels.beverage_api_project.modules.user.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * POS 批次結帳管線 (Group Commit)
+ * <p>
+ * 1. 收集數毫秒內同時送達的結帳請求，合併為一個批次。
+ * 2. 以少量查詢一次載入整批需要的分店、員工 / 會員、付款方式，並鎖定相關會員的點數列。
+ * 3. 逐筆在記憶體中組裝訂單 (計價、促銷、點數)，單筆驗證失敗只影響該請求。
+ * 4. 訂單、品項、點數紀錄以多列 JDBC 批次寫入，整批只提交一次。
+ * 5. 若整批寫入失敗，改為逐筆走原本的 processPosCheckout，確保互不影響。
+ * </p>
+ * 預設關閉，透過 app.order.checkout.pipeline.enabled 開啟。
+ */
+@Service
+public class PosCheckoutPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(PosCheckoutPipeline.class);
+
+    private final OrderService orderService;
+    private final OrderItemProcessorService orderItemProcessorService;
+    private final PromotionService promotionService;
+    private final MemberPointService memberPointService;
+    private final MemberPointDAO memberPointDAO;
+    private final OrderBatchDAO orderBatchDAO;
+    private final StoreRepository storeRepository;
+    private final UserRepository userRepository;
+    private final PaymentMethodRepository paymentMethodRepository;
+    private final OrderProcessFacade orderProcessFacade;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+
+    private final BlockingQueue<CheckoutRequest> queue = new LinkedBlockingQueue<>();
+    private final List<Thread> workers = new ArrayList<>();
+    private volatile boolean running;
+
+    @Value("${app.order.checkout.pipeline.enabled:false}")
+    private boolean enabled;
+
+    // 收集視窗：第一筆請求到達後最多再等待多久
+    @Value("${app.order.checkout.pipeline.window-ms:5}")
+    private long windowMs;
+
+    @Value("${app.order.checkout.pipeline.max-batch-size:64}")
+    private int maxBatchSize;
+
+    // 同時進行的批次數 (= 最多佔用的資料庫連線數)
+    @Value("${app.order.checkout.pipeline.workers:2}")
+    private int workerCount;
+
+    public PosCheckoutPipeline(OrderService orderService,
+                               OrderItemProcessorService orderItemProcessorService,
+                               PromotionService promotionService,
+                               MemberPointService memberPointService,
+                               MemberPointDAO memberPointDAO,
+                               OrderBatchDAO orderBatchDAO,
+                               StoreRepository storeRepository,
+                               UserRepository userRepository,
+                               PaymentMethodRepository paymentMethodRepository,
+                               OrderProcessFacade orderProcessFacade,
+                               ApplicationEventPublisher eventPublisher,
+                               PlatformTransactionManager transactionManager) {
+        this.orderService = orderService;
+        this.orderItemProcessorService = orderItemProcessorService;
+        this.promotionService = promotionService;
+        this.memberPointService = memberPointService;
+        this.memberPointDAO = memberPointDAO;
+        this.orderBatchDAO = orderBatchDAO;
+        this.storeRepository = storeRepository;
+        this.userRepository = userRepository;
+        this.paymentMethodRepository = paymentMethodRepository;
+        this.orderProcessFacade = orderProcessFacade;
+        this.eventPublisher = eventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        for (int i = 0; i < workerCount; i++) {
+            workers.add(Thread.ofVirtual().name("pos-checkout-" + i).start(this::runWorker));
+        }
+        logger.info("POS 批次結帳管線已啟動 (workers={}, window={}ms, maxBatch={})", workerCount, windowMs, maxBatchSize);
+    }
+
+    @PreDestroy
+    void stop() {
+        running = false;
+        workers.forEach(Thread::interrupt);
+        // 尚未處理的請求改走一般流程，避免呼叫端永遠等待
+        List<CheckoutRequest> remaining = new ArrayList<>();
+        queue.drainTo(remaining);
+        remaining.forEach(this::checkoutIndividually);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 送出結帳請求並等待所屬批次提交 (呼叫端語意與 processPosCheckout 相同)
+     */
+    public Order checkout(Long brandId, Long storeId, Long staffUserId, PosCheckoutRequestDto requestDto) {
+        CheckoutRequest request = new CheckoutRequest(brandId, storeId, staffUserId, requestDto, new CompletableFuture<>());
+        if (!running) {
+            return orderProcessFacade.processPosCheckout(brandId, storeId, staffUserId, requestDto);
+        }
+        queue.add(request);
+        try {
+            return request.result().get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("結帳處理失敗", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("結帳處理被中斷", e);
+        }
+    }
+
+    private void runWorker() {
+        while (running) {
+            try {
+                CheckoutRequest first = queue.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                List<CheckoutRequest> batch = new ArrayList<>(maxBatchSize);
+                batch.add(first);
+
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(windowMs);
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    CheckoutRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+
+                processBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // processBatch 已自行處理例外，這裡只是保護 worker 不因意外終止
+                logger.error("POS 批次結帳 worker 發生未預期錯誤", e);
+            }
+        }
+    }
+
+    private void processBatch(List<CheckoutRequest> batch) {
+        List<Prepared> committed;
+        try {
+            committed = transactionTemplate.execute(status -> prepareAndPersist(batch));
+        } catch (Exception e) {
+            // 整批寫入失敗 (例如資料庫錯誤)：尚未回應的請求改為逐筆處理
+            logger.warn("POS 批次結帳寫入失敗，改為逐筆處理 ({} 筆)", batch.size(), e);
+            for (CheckoutRequest request : batch) {
+                if (!request.result().isDone()) {
+                    checkoutIndividually(request);
+                }
+            }
+            return;
+        }
+
+        if (committed != null) {
+            committed.forEach(p -> p.request().result().complete(p.order()));
+            logger.debug("POS 批次結帳完成：成功 {} / 總數 {}", committed.size(), batch.size());
+        }
+    }
+
+    private void checkoutIndividually(CheckoutRequest request) {
+        try {
+            request.result().complete(orderProcessFacade.processPosCheckout(
+                    request.brandId(), request.storeId(), request.staffUserId(), request.requestDto()));
+        } catch (Exception e) {
+            request.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 在單一交易中組裝並寫入整批訂單 (由 TransactionTemplate 呼叫)
+     */
+    private List<Prepared> prepareAndPersist(List<CheckoutRequest> batch) {
+        BatchContext ctx = loadContext(batch);
+
+        List<Prepared> prepared = new ArrayList<>(batch.size());
+        List<MemberPointDAO.PointLogTuple> pointLogs = new ArrayList<>();
+        Set<Long> touchedMembers = new HashSet<>();
+
+        for (CheckoutRequest request : batch) {
+            try {
+                Order order = buildOrder(request, ctx);
+                if (order.getPointsUsed() > 0) {
+                    Long memberId = order.getMember().getUserId();
+                    long balanceAfter = ctx.pointBalances().merge(memberId, -order.getPointsUsed(), Long::sum);
+                    touchedMembers.add(memberId);
+                    pointLogs.add(new MemberPointDAO.PointLogTuple(
+                            TsidUtil.nextId(), memberId, order.getId(), -order.getPointsUsed(), balanceAfter,
+                            "訂單折抵 (單號: " + order.getOrderNumber() + ")"));
+                }
+                prepared.add(new Prepared(request, order));
+            } catch (RuntimeException e) {
+                // 單筆驗證失敗：只回應該請求，不影響同批其他訂單
+                request.result().completeExceptionally(e);
+            }
+        }
+
+        if (prepared.isEmpty()) {
+            return prepared;
+        }
+
+        orderBatchDAO.batchInsertOrders(prepared.stream().map(Prepared::order).toList());
+        memberPointDAO.batchUpdateBalances(touchedMembers.stream()
+                .map(id -> new MemberPointDAO.BalanceTuple(id, ctx.pointBalances().get(id)))
+                .toList());
+        memberPointDAO.batchInsertLogs(pointLogs);
+
+        // 交易提交後才會送出 (KdsService 於提交後才廣播)
+        for (Prepared p : prepared) {
+            eventPublisher.publishEvent(new OrderStateChangedEvent(p.order(), null, OrderStatus.PREPARING));
+        }
+        return prepared;
+    }
+
+    /**
+     * 一次載入整批需要的基礎資料 (依品牌分組，確保資料隔離)
+     */
+    private BatchContext loadContext(List<CheckoutRequest> batch) {
+        Map<String, PaymentMethodEntity> paymentMethods = new HashMap<>();
+        for (PaymentMethodEntity method : paymentMethodRepository.findAll()) {
+            paymentMethods.put(method.getCode(), method);
+        }
+
+        Map<Long, Set<Long>> storeIdsByBrand = new HashMap<>();
+        Map<Long, Set<Long>> userIdsByBrand = new HashMap<>();
+        Set<Long> pointMemberIds = new HashSet<>();
+        for (CheckoutRequest request : batch) {
+            storeIdsByBrand.computeIfAbsent(request.brandId(), k -> new HashSet<>()).add(request.storeId());
+            Set<Long> userIds = userIdsByBrand.computeIfAbsent(request.brandId(), k -> new HashSet<>());
+            userIds.add(request.staffUserId());
+            Long memberId = request.requestDto().getMemberId();
+            if (memberId != null) {
+                userIds.add(memberId);
+                if (request.requestDto().getPointsToUse() != null && request.requestDto().getPointsToUse() > 0) {
+                    pointMemberIds.add(memberId);
+                }
+            }
+        }
+
+        Map<Long, Map<Long, Store>> stores = new HashMap<>();
+        storeIdsByBrand.forEach((brandId, ids) -> {
+            Map<Long, Store> byId = new HashMap<>();
+            storeRepository.findByBrand_IdAndIdIn(brandId, ids).forEach(s -> byId.put(s.getId(), s));
+            stores.put(brandId, byId);
+        });
+
+        Map<Long, Map<Long, User>> users = new HashMap<>();
+        userIdsByBrand.forEach((brandId, ids) -> {
+            Map<Long, User> byId = new HashMap<>();
+            userRepository.findByBrand_IdAndIdIn(brandId, ids).forEach(u -> byId.put(u.getUserId(), u));
+            users.put(brandId, byId);
+        });
+
+        // 鎖定本批會用到點數的會員，之後在記憶體中依序扣點
+        Map<Long, Long> pointBalances = memberPointDAO.lockPointBalances(pointMemberIds);
+
+        return new BatchContext(paymentMethods, stores, users, pointBalances);
+    }
+
+    /**
+     * 組裝單筆訂單 (與 OrderProcessFacade.processPosCheckout 相同的規則，但不寫入資料庫)
+     */
+    private Order buildOrder(CheckoutRequest request, BatchContext ctx) {
+        PosCheckoutRequestDto dto = request.requestDto();
+
+        Store store = ctx.stores().getOrDefault(request.brandId(), Map.of()).get(request.storeId());
+        if (store == null) {
+            throw new ResourceNotFoundException("找不到店家 (ID: " + request.storeId() + ")");
+        }
+        Map<Long, User> brandUsers = ctx.users().getOrDefault(request.brandId(), Map.of());
+        User staff = brandUsers.get(request.staffUserId());
+        if (staff == null) {
+            throw new ResourceNotFoundException("找不到員工 (ID: " + request.staffUserId() + ")");
+        }
+        PaymentMethodEntity paymentMethod = ctx.paymentMethods().get(dto.getPaymentMethod());
+        if (paymentMethod == null) {
+            throw new BadRequestException("無效的支付方式代碼：" + dto.getPaymentMethod());
+        }
+
+        Order order = orderService.initOrder(staff, store);
+        order.setOrderTime(new Date()); // JDBC 寫入不會觸發 @CreationTimestamp
+
+        var itemResult = orderItemProcessorService.processOrderItems(order, dto.getItems(), request.brandId());
+        order.setItems(itemResult.orderItems());
+        order.setTotalAmount(itemResult.totalAmount());
+
+        BigDecimal pointDiscount = BigDecimal.ZERO;
+        if (dto.getMemberId() != null) {
+            User member = brandUsers.get(dto.getMemberId());
+            if (member == null || member.getMemberProfile() == null) {
+                throw new ResourceNotFoundException("找不到會員，ID：" + dto.getMemberId());
+            }
+            order.setMember(member);
+            orderService.snapshotMember(order, member);
+
+            Long pointsToUse = dto.getPointsToUse();
+            if (pointsToUse != null && pointsToUse > 0) {
+                Long balance = ctx.pointBalances().get(member.getUserId());
+                if (balance == null) {
+                    throw new BadRequestException("使用者 ID " + member.getUserId() + " 不是會員");
+                }
+                if (balance < pointsToUse) {
+                    throw new BadRequestException("會員點數不足，目前點數：" + balance);
+                }
+                pointDiscount = memberPointService.calculateDiscountAmount(pointsToUse, order);
+                order.setPointsUsed(pointsToUse);
+            }
+        }
+
+        BigDecimal promoDiscount = promotionService.calculateBestDiscount(order);
+
+        BigDecimal totalDiscount = pointDiscount.add(promoDiscount);
+        order.setDiscountAmount(totalDiscount);
+        order.setFinalAmount(order.getTotalAmount().subtract(totalDiscount).max(BigDecimal.ZERO));
+        order.setPaymentMethod(paymentMethod);
+
+        order.setStatus(OrderStatus.PREPARING);
+        order.setPointsEarned(0L);
+        return order;
+    }
+
+    // --- 內部資料結構 ---
+
+    private record CheckoutRequest(Long brandId, Long storeId, Long staffUserId,
+                                   PosCheckoutRequestDto requestDto, CompletableFuture<Order> result) {}
+
+    private record Prepared(CheckoutRequest request, Order order) {}
+
+    private record BatchContext(Map<String, PaymentMethodEntity> paymentMethods,
+                                Map<Long, Map<Long, Store>> stores,
+                                Map<Long, Map<Long, User>> users,
+                                Map<Long, Long> pointBalances) {}
+}
@@ -0,0 +1,13 @@
+package tw.niels.beverage_api_project.modules.order.vo;
+
+import java.math.BigDecimal;
+
+/**
+ * 訂單品項選項快照 (存於 ProductSnapshot 內)
+ * 讓訂單回應 / KDS 推播不需再載入 ProductOption 實體
+ */
+public record OptionSnapshot(
+        Long optionId,
+        String name,
+        BigDecimal priceAdjustment
+) {}
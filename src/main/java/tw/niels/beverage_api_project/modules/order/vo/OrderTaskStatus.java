@@ -0,0 +1,22 @@
+package tw.niels.beverage_api_project.modules.order.vo;
+
+import tw.niels.beverage_api_project.modules.order.enums.OrderTaskState;
+
+/**
+ * 非同步線上訂單任務狀態 (以 requestId 為 Key 存於 Redis)
+ * 查詢狀態只讀這份資料，不會查詢 orders 資料表
+ */
+public record OrderTaskStatus(
+        String requestId,
+        OrderTaskState state,
+        Long userId,      // 下單者，只有本人可以查詢
+        String userPhone, // STOMP 推播對象 (Principal 名稱)
+        Long orderId,
+        String orderNumber,
+        String message,
+        long updatedAt
+) {
+    public boolean isFinished() {
+        return state != OrderTaskState.PENDING;
+    }
+}
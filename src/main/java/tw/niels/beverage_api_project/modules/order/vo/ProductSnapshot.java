@@ -1,11 +1,14 @@
 package tw.niels.beverage_api_project.modules.order.vo;
 
 import java.math.BigDecimal;
+import java.util.List;
 
 public record ProductSnapshot(
         Long productId,
         String name,
         BigDecimal basePrice,
         String categoryName,
-        String variantName
-) {}
\ No newline at end of file
+        String variantName,
+        // 下單當下的選項名稱與加價 (舊資料沒有此欄位時為 null)
+        List<OptionSnapshot> options
+) {}
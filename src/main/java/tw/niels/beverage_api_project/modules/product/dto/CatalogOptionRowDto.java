@@ -0,0 +1,12 @@
+package tw.niels.beverage_api_project.modules.product.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 目錄快照載入用的選項投影
+ */
+public record CatalogOptionRowDto(
+        Long optionId,
+        String optionName,
+        BigDecimal priceAdjustment
+) {}
@@ -0,0 +1,11 @@
+package tw.niels.beverage_api_project.modules.product.dto;
+
+/**
+ * 目錄快照載入用的商品投影 (商品 ID、名稱、分類名稱)
+ * 一個商品對應多個分類時會有多筆，categoryName 可能為 null
+ */
+public record CatalogProductRowDto(
+        Long productId,
+        String name,
+        String categoryName
+) {}
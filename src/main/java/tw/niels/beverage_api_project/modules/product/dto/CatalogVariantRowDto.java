@@ -0,0 +1,13 @@
+package tw.niels.beverage_api_project.modules.product.dto;
+
+import java.math.BigDecimal;
+
+/**
+ * 目錄快照載入用的規格投影 (僅包含未刪除的規格)
+ */
+public record CatalogVariantRowDto(
+        Long variantId,
+        Long productId,
+        String name,
+        BigDecimal price
+) {}
@@ -5,6 +5,7 @@ import java.math.BigDecimal;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 import tw.niels.beverage_api_project.common.entity.BaseTsidEntity;
 
 @Entity
@@ -12,6 +13,7 @@ import tw.niels.beverage_api_project.common.entity.BaseTsidEntity;
 @Setter
 @Table(name = "product_options")
 @AttributeOverride(name = "id", column = @Column(name = "option_id"))
+@BatchSize(size = 50) // 訂單品項以代理物件引用選項，flush 時合併初始化
 public class ProductOption extends BaseTsidEntity {
 
     public ProductOption() {
@@ -0,0 +1,10 @@
+package tw.niels.beverage_api_project.modules.product.event;
+
+/**
+ * 商品目錄異動事件 (商品 / 規格 / 選項的新增、修改、刪除)
+ * 由 ProductService、OptionGroupService 發布，CatalogSnapshotService 監聽後重建快照
+ *
+ * @param brandId 發生異動的品牌
+ */
+public record CatalogChangedEvent(Long brandId) {
+}
@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 
+import tw.niels.beverage_api_project.modules.product.dto.CatalogOptionRowDto;
 import tw.niels.beverage_api_project.modules.product.entity.ProductOption;
 
 @Repository
@@ -38,6 +39,15 @@ public interface ProductOptionRepository extends JpaRepository<ProductOption, Lo
     // 修正：使用 Brand_Id
     Optional<ProductOption> findByOptionGroup_Brand_IdAndId(Long brandId, Long id);
 
+    /**
+     * 目錄快照載入：品牌下所有選項的扁平投影
+     */
+    @Query("SELECT new tw.niels.beverage_api_project.modules.product.dto.CatalogOptionRowDto(" +
+            "po.id, po.optionName, po.priceAdjustment) " +
+            "FROM ProductOption po " +
+            "WHERE po.optionGroup.brand.id = :brandId")
+    List<CatalogOptionRowDto> findCatalogRowsByBrandId(@Param("brandId") Long brandId);
+
     // --- 安全防護 ---
 
     @Deprecated
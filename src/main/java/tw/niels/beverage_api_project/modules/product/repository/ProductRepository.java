@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
 
+import tw.niels.beverage_api_project.modules.product.dto.CatalogProductRowDto;
 import tw.niels.beverage_api_project.modules.product.entity.Product;
 import tw.niels.beverage_api_project.modules.product.enums.ProductStatus;
 
@@ -51,6 +52,17 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
             "WHERE p.brand.id = :brandId AND p.id IN :ids")
     List<Product> findByBrand_IdAndIdIn(@Param("brandId") Long brandId, @Param("ids") Collection<Long> ids);
 
+    /**
+     * 目錄快照載入：品牌下所有商品 (含分類名稱) 的扁平投影，不建立 Entity
+     * 依分類排序，讓快照取「第一個分類」時結果穩定
+     */
+    @Query("SELECT new tw.niels.beverage_api_project.modules.product.dto.CatalogProductRowDto(" +
+            "p.id, p.name, c.name) " +
+            "FROM Product p LEFT JOIN p.categories c " +
+            "WHERE p.brand.id = :brandId " +
+            "ORDER BY p.id, c.sortOrder, c.id")
+    List<CatalogProductRowDto> findCatalogRowsByBrandId(@Param("brandId") Long brandId);
+
 
     /**
      * 禁用預設的 findById，強迫使用 findByBrand_BrandIdAndProductId()。
@@ -1,8 +1,11 @@
 package tw.niels.beverage_api_project.modules.product.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.lang.NonNull;
 import org.springframework.stereotype.Repository;
+import tw.niels.beverage_api_project.modules.product.dto.CatalogVariantRowDto;
 import tw.niels.beverage_api_project.modules.product.entity.ProductVariant;
 
 import java.util.Collection;
@@ -34,6 +37,15 @@ public interface ProductVariantRepository extends JpaRepository<ProductVariant,
      */
     List<ProductVariant> findByProduct_Brand_IdAndIsDeletedFalse(Long brandId);
 
+    /**
+     * 目錄快照載入：品牌下所有「未刪除」規格的扁平投影
+     */
+    @Query("SELECT new tw.niels.beverage_api_project.modules.product.dto.CatalogVariantRowDto(" +
+            "v.id, v.product.id, v.name, v.price) " +
+            "FROM ProductVariant v " +
+            "WHERE v.product.brand.id = :brandId AND v.isDeleted = false")
+    List<CatalogVariantRowDto> findCatalogRowsByBrandId(@Param("brandId") Long brandId);
+
     // ==========================================
     // 管理/內部/Seeder 用 (包含已刪除)
     // ==========================================
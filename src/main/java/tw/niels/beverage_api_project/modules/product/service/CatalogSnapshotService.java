@@ -0,0 +1,185 @@
+package tw.niels.beverage_api_project.modules.product.service;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tw.niels.beverage_api_project.common.util.LongKeyedMap;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.product.dto.CatalogOptionRowDto;
+import tw.niels.beverage_api_project.modules.product.dto.CatalogProductRowDto;
+import tw.niels.beverage_api_project.modules.product.dto.CatalogVariantRowDto;
+import tw.niels.beverage_api_project.modules.product.event.CatalogChangedEvent;
+import tw.niels.beverage_api_project.modules.product.repository.ProductOptionRepository;
+import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
+import tw.niels.beverage_api_project.modules.product.repository.ProductVariantRepository;
+import tw.niels.beverage_api_project.modules.product.vo.CatalogSnapshot;
+import tw.niels.beverage_api_project.modules.product.vo.CatalogSnapshot.OptionEntry;
+import tw.niels.beverage_api_project.modules.product.vo.CatalogSnapshot.ProductEntry;
+import tw.niels.beverage_api_project.modules.product.vo.CatalogSnapshot.VariantEntry;
+
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 商品目錄快照服務 (每個品牌一份，存放於 JVM 記憶體)
+ * <p>
+ * 1. 第一次使用時延遲載入 (3 次扁平投影查詢，不建立 Entity)。
+ * 2. 商品異動 (CatalogChangedEvent) 於交易提交後整份重建，並以版本號確保「較舊的載入結果」不會覆蓋較新的快照。
+ * 3. 透過 RabbitMQ Fanout 通知其他實例一併重建。
+ * 4. 查無資料時 (例如其他實例剛新增商品、廣播尚未抵達)，在最小間隔限制下補載一次，避免誤判為無效商品。
+ * </p>
+ */
+@Service
+public class CatalogSnapshotService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogSnapshotService.class);
+
+    // 用來辨識廣播是否由自己送出 (自己已在本地重建過，不需重複)
+    private final String instanceId = TsidUtil.nextIdString();
+
+    private final Map<Long, CatalogSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> versions = new ConcurrentHashMap<>();
+
+    private final ProductRepository productRepository;
+    private final ProductVariantRepository productVariantRepository;
+    private final ProductOptionRepository productOptionRepository;
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${app.catalog.snapshot.miss-reload-interval-ms:1000}")
+    private long missReloadIntervalMs;
+
+    public CatalogSnapshotService(ProductRepository productRepository,
+                                  ProductVariantRepository productVariantRepository,
+                                  ProductOptionRepository productOptionRepository,
+                                  RabbitTemplate rabbitTemplate) {
+        this.productRepository = productRepository;
+        this.productVariantRepository = productVariantRepository;
+        this.productOptionRepository = productOptionRepository;
+        this.rabbitTemplate = rabbitTemplate;
+    }
+
+    /**
+     * 取得品牌目前的快照 (熱路徑：已載入時不會有任何 SQL)
+     */
+    public CatalogSnapshot getSnapshot(Long brandId) {
+        CatalogSnapshot snapshot = snapshots.get(brandId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        return rebuild(brandId);
+    }
+
+    /**
+     * 熱路徑查無資料時呼叫：若快照已超過最小間隔則重新載入，否則直接回傳原快照
+     */
+    public CatalogSnapshot reloadOnMiss(CatalogSnapshot current) {
+        Duration age = Duration.between(current.builtAt(), Instant.now());
+        if (age.toMillis() < missReloadIntervalMs) {
+            return current;
+        }
+        logger.debug("品牌 {} 目錄快照查無資料，重新載入 (快照年齡 {} ms)", current.brandId(), age.toMillis());
+        return rebuild(current.brandId());
+    }
+
+    /**
+     * 監聽本地的商品異動事件 (交易提交後才重建，確保讀到已提交的資料)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handleCatalogChanged(CatalogChangedEvent event) {
+        rebuild(event.brandId());
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.CATALOG_EXCHANGE, "",
+                    new CatalogBroadcastMessage(event.brandId(), instanceId));
+        } catch (Exception e) {
+            // 廣播失敗時，其他實例仍可透過 reloadOnMiss 補載新資料，但價格變動需等下一次異動
+            logger.error("商品目錄失效廣播失敗 (Brand: {})", event.brandId(), e);
+        }
+    }
+
+    /**
+     * 監聽其他實例送出的失效廣播
+     */
+    @RabbitListener(queues = "#{catalogAnonymousQueue.name}")
+    public void handleRabbitMessage(CatalogBroadcastMessage msg) {
+        if (instanceId.equals(msg.getOriginId())) {
+            return;
+        }
+        // 尚未載入過的品牌不需要處理，下次使用時自然會載入最新資料
+        if (snapshots.containsKey(msg.getBrandId())) {
+            rebuild(msg.getBrandId());
+        }
+    }
+
+    /**
+     * 重新載入並原子替換；若載入期間已有更新的重建開始，則放棄本次結果
+     */
+    private CatalogSnapshot rebuild(Long brandId) {
+        AtomicLong version = versions.computeIfAbsent(brandId, k -> new AtomicLong());
+        long expected = version.incrementAndGet();
+
+        CatalogSnapshot loaded = load(brandId);
+
+        CatalogSnapshot installed = snapshots.compute(brandId,
+                (k, old) -> (old == null || version.get() == expected) ? loaded : old);
+        logger.debug("品牌 {} 目錄快照已重建：商品 {}、規格 {}、選項 {}",
+                brandId, loaded.products().size(), loaded.variants().size(), loaded.options().size());
+        return installed;
+    }
+
+    private CatalogSnapshot load(Long brandId) {
+        Map<Long, ProductEntry> products = new HashMap<>();
+        for (CatalogProductRowDto row : productRepository.findCatalogRowsByBrandId(brandId)) {
+            // 查詢已依分類排序，第一筆即為「第一個分類」
+            products.putIfAbsent(row.productId(), new ProductEntry(
+                    row.productId(),
+                    row.name(),
+                    row.categoryName() != null ? row.categoryName() : CatalogSnapshot.UNCATEGORIZED));
+        }
+
+        Map<Long, VariantEntry> variants = new HashMap<>();
+        for (CatalogVariantRowDto row : productVariantRepository.findCatalogRowsByBrandId(brandId)) {
+            variants.put(row.variantId(), new VariantEntry(row.variantId(), row.productId(), row.name(), row.price()));
+        }
+
+        Map<Long, OptionEntry> options = new HashMap<>();
+        for (CatalogOptionRowDto row : productOptionRepository.findCatalogRowsByBrandId(brandId)) {
+            options.put(row.optionId(), new OptionEntry(row.optionId(), row.optionName(), row.priceAdjustment()));
+        }
+
+        return new CatalogSnapshot(
+                brandId,
+                LongKeyedMap.copyOf(products),
+                LongKeyedMap.copyOf(variants),
+                LongKeyedMap.copyOf(options),
+                Instant.now());
+    }
+
+    // --- DTOs ---
+
+    @Getter
+    @Setter
+    public static class CatalogBroadcastMessage implements Serializable {
+        private Long brandId;
+        private String originId;
+
+        public CatalogBroadcastMessage() {}
+
+        public CatalogBroadcastMessage(Long brandId, String originId) {
+            this.brandId = brandId;
+            this.originId = originId;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package tw.niels.beverage_api_project.modules.product.service;
 
 import java.util.List;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,6 +13,7 @@ import tw.niels.beverage_api_project.modules.product.dto.CreateOptionGroupReques
 import tw.niels.beverage_api_project.modules.product.dto.CreateProductOptionRequestDto;
 import tw.niels.beverage_api_project.modules.product.entity.OptionGroup;
 import tw.niels.beverage_api_project.modules.product.entity.ProductOption;
+import tw.niels.beverage_api_project.modules.product.event.CatalogChangedEvent;
 import tw.niels.beverage_api_project.modules.product.repository.OptionGroupRepository;
 import tw.niels.beverage_api_project.modules.product.repository.ProductOptionRepository;
 
@@ -21,13 +23,16 @@ public class OptionGroupService {
     private final OptionGroupRepository optionGroupRepository;
     private final ProductOptionRepository productOptionRepository;
     private final BrandRepository brandRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public OptionGroupService(OptionGroupRepository optionGroupRepository,
             ProductOptionRepository productOptionRepository,
-            BrandRepository brandRepository) {
+            BrandRepository brandRepository,
+            ApplicationEventPublisher eventPublisher) {
         this.optionGroupRepository = optionGroupRepository;
         this.productOptionRepository = productOptionRepository;
         this.brandRepository = brandRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     @Transactional
@@ -55,7 +60,11 @@ public class OptionGroupService {
         productOption.setPriceAdjustment(requestDto.getPriceAdjustment());
         productOption.setDefault(requestDto.isDefault());
 
-        return productOptionRepository.save(productOption);
+        ProductOption saved = productOptionRepository.save(productOption);
+
+        // 選項加價屬於結帳計價資料，需通知目錄快照重建
+        eventPublisher.publishEvent(new CatalogChangedEvent(brandId));
+        return saved;
     }
 
     @Transactional(readOnly = true)
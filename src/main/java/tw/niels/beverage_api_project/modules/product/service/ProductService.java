@@ -7,6 +7,7 @@ import java.util.Set;
 import java.util.stream.Collectors;
 
 import org.springframework.cache.annotation.CacheEvict; // 新增
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.cache.annotation.Cacheable; // 新增
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -21,6 +22,7 @@ import tw.niels.beverage_api_project.modules.product.entity.OptionGroup;
 import tw.niels.beverage_api_project.modules.product.entity.Product;
 import tw.niels.beverage_api_project.modules.product.entity.ProductVariant;
 import tw.niels.beverage_api_project.modules.product.enums.ProductStatus;
+import tw.niels.beverage_api_project.modules.product.event.CatalogChangedEvent;
 import tw.niels.beverage_api_project.modules.product.repository.CategoryRepository;
 import tw.niels.beverage_api_project.modules.product.repository.OptionGroupRepository;
 import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
@@ -33,17 +35,20 @@ public class ProductService {
     private final CategoryRepository categoryRepository;
     private final OptionGroupRepository optionGroupRepository;
     private final ProductVariantRepository productVariantRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     public ProductService(ProductRepository productRepository,
                           BrandRepository brandRepository,
                           CategoryRepository categoryRepository,
                           OptionGroupRepository optionGroupRepository,
-                          ProductVariantRepository productVariantRepository) {
+                          ProductVariantRepository productVariantRepository,
+                          ApplicationEventPublisher eventPublisher) {
         this.productRepository = productRepository;
         this.brandRepository = brandRepository;
         this.categoryRepository = categoryRepository;
         this.optionGroupRepository = optionGroupRepository;
         this.productVariantRepository = productVariantRepository;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
@@ -123,6 +128,9 @@ public class ProductService {
         // 4. 儲存 (Cascade 會一併儲存 Variants)
         Product savedProduct = productRepository.save(newProduct);
 
+        // 通知目錄快照重建 (交易提交後執行)
+        eventPublisher.publishEvent(new CatalogChangedEvent(brandId));
+
         return convertToDto(savedProduct);
     }
 
@@ -142,7 +150,10 @@ public class ProductService {
                 .collect(Collectors.toSet());
 
         product.setOptionGroups(groupsToLink);
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(brandId));
+        return saved;
     }
 
     /**
@@ -199,6 +210,8 @@ public class ProductService {
 
         productRepository.save(product); // 會 Cascade save variant
 
+        eventPublisher.publishEvent(new CatalogChangedEvent(brandId));
+
         return ProductResponseDto.fromEntity(product);
     }
 
@@ -229,6 +242,8 @@ public class ProductService {
         if (priceChanged) {
             recalculateProductBasePrice(variant.getProduct());
         }
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(brandId));
     }
 
     /**
@@ -256,6 +271,8 @@ public class ProductService {
 
         // 重新計算該商品的 BasePrice (因為刪除的可能是最低價規格)
         recalculateProductBasePrice(variant.getProduct());
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(brandId));
     }
 
     // --- Private Helper Methods ---
@@ -0,0 +1,42 @@
+package tw.niels.beverage_api_project.modules.product.vo;
+
+import tw.niels.beverage_api_project.common.util.LongKeyedMap;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * 單一品牌的「目錄計價快照」(不可變)。
+ * <p>
+ * 結帳熱路徑只需要：商品名稱 / 第一個分類、規格價格與所屬商品、選項加價。
+ * 這些資料在商品異動時整份重建後原子替換，讀取端不需任何 SQL 也不需加鎖。
+ * </p>
+ */
+public record CatalogSnapshot(
+        Long brandId,
+        LongKeyedMap<ProductEntry> products,
+        LongKeyedMap<VariantEntry> variants,
+        LongKeyedMap<OptionEntry> options,
+        Instant builtAt
+) {
+
+    public static final String UNCATEGORIZED = "Uncategorized";
+
+    public ProductEntry product(long productId) {
+        return products.get(productId);
+    }
+
+    public VariantEntry variant(long variantId) {
+        return variants.get(variantId);
+    }
+
+    public OptionEntry option(long optionId) {
+        return options.get(optionId);
+    }
+
+    public record ProductEntry(long productId, String name, String categoryName) {}
+
+    public record VariantEntry(long variantId, long productId, String name, BigDecimal price) {}
+
+    public record OptionEntry(long optionId, String optionName, BigDecimal priceAdjustment) {}
+}
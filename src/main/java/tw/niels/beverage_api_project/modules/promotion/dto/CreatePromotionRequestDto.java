@@ -5,6 +5,7 @@ import jakarta.validation.constraints.DecimalMin;
 import jakarta.validation.constraints.Future;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
 import lombok.Data;
 import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
 
@@ -47,4 +48,11 @@ public class CreatePromotionRequestDto {
 
     @Schema(description = "適用商品 ID 列表 (空列表代表適用全館商品)", example = "[101, 102]")
     private Set<Long> applicableProductIds;
+
+    @Schema(description = "是否可與其他可疊加的活動同時使用 (預設否)", example = "true")
+    private Boolean stackable;
+
+    @Size(max = 50)
+    @Schema(description = "互斥群組 (同一群組的活動在同一張訂單最多使用一個)", example = "DRINK_DEAL")
+    private String stackGroup;
 }
\ No newline at end of file
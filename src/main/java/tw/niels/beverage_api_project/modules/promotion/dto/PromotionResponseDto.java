@@ -24,6 +24,8 @@ public class PromotionResponseDto {
     private LocalDateTime startDate;
     private LocalDateTime endDate;
     private boolean isActive;
+    private boolean stackable;
+    private String stackGroup;
 
     // 使用 Set 確保不重複 (對應 Entity 的 ManyToMany Set)
     private Set<ProductSummaryDto> applicableProducts;
@@ -41,6 +43,8 @@ public class PromotionResponseDto {
         dto.setStartDate(entity.getStartDate());
         dto.setEndDate(entity.getEndDate());
         dto.setActive(entity.getIsActive());
+        dto.setStackable(Boolean.TRUE.equals(entity.getIsStackable()));
+        dto.setStackGroup(entity.getStackGroup());
 
         // 【修正 2】改用明確的 Lambda 表達式，並確保 null check
         if (entity.getApplicableProducts() != null) {
@@ -51,6 +51,14 @@ public class Promotion extends BaseTsidEntity {
     @Column(name = "is_active", nullable = false)
     private Boolean isActive = true;
 
+    // 是否可與其他可疊加的活動同時使用
+    @Column(name = "is_stackable", nullable = false)
+    private Boolean isStackable = false;
+
+    // 互斥群組：同一群組的活動在同一張訂單最多只能使用一個 (null 代表不屬於任何群組)
+    @Column(name = "stack_group", length = 50)
+    private String stackGroup;
+
     // 適用商品 (多對多)
     // 對應 V1 SQL 中的 promotion_products 表
     @ManyToMany(fetch = FetchType.LAZY)
@@ -0,0 +1,10 @@
+package tw.niels.beverage_api_project.modules.promotion.event;
+
+/**
+ * 促銷活動異動事件 (新增、停用)
+ * 由 PromotionService 發布，PromotionPlanService 於交易提交後清除兩層快取並通知其他實例
+ *
+ * @param brandId 發生異動的品牌
+ */
+public record PromotionChangedEvent(Long brandId) {
+}
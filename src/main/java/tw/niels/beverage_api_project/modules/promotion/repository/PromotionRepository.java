@@ -21,6 +21,15 @@ public interface PromotionRepository extends JpaRepository<Promotion, Long> {
     List<Promotion> findActivePromotionsByBrand(@Param("brandId") Long brandId,
                                                 @Param("now") LocalDateTime now);
 
+    // 查詢該品牌在 [now, until] 期間內任何時間點有效的活動 (含即將開始的活動)，一併載入適用商品
+    @Query("SELECT DISTINCT p FROM Promotion p LEFT JOIN FETCH p.applicableProducts " +
+            "WHERE p.brand.id = :brandId " +
+            "AND p.isActive = true " +
+            "AND p.startDate <= :until AND p.endDate >= :now")
+    List<Promotion> findPromotionWindowByBrand(@Param("brandId") Long brandId,
+                                               @Param("now") LocalDateTime now,
+                                               @Param("until") LocalDateTime until);
+
     // 管理後台列表用
     List<Promotion> findByBrand_Id(Long brandId);
 
@@ -0,0 +1,45 @@
+package tw.niels.beverage_api_project.modules.promotion.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * 促銷活動快取單一層級的命中指標
+ * promotion.cache.requests{tier, result=hit|miss} 與 promotion.cache.hit.ratio{tier}
+ */
+class PromotionCacheMetrics {
+
+    private final Counter hits;
+    private final Counter misses;
+
+    PromotionCacheMetrics(MeterRegistry meterRegistry, String tier) {
+        this.hits = Counter.builder("promotion.cache.requests")
+                .description("促銷活動快取查詢次數")
+                .tag("tier", tier)
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("promotion.cache.requests")
+                .description("促銷活動快取查詢次數")
+                .tag("tier", tier)
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("promotion.cache.hit.ratio", this, PromotionCacheMetrics::hitRatio)
+                .description("促銷活動快取命中率 (啟動以來累計)")
+                .tag("tier", tier)
+                .register(meterRegistry);
+    }
+
+    void hit() {
+        hits.increment();
+    }
+
+    void miss() {
+        misses.increment();
+    }
+
+    double hitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+}
@@ -1,33 +1,110 @@
 package tw.niels.beverage_api_project.modules.promotion.service;
 
-import org.springframework.cache.annotation.Cacheable;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
 import tw.niels.beverage_api_project.modules.promotion.repository.PromotionRepository;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionSnapshot;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionWindow;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.List;
 
 /**
- * 促銷活動快取服務
- * 將快取邏輯分離，避免在主 Service 中發生 Self-Invocation 問題。
+ * 促銷活動快取服務 (第二層：Redis，所有實例共用)
+ * <p>
+ * 1. 以精簡的 PromotionSnapshot 存放「進行中或即將開始」的活動，不序列化 Entity。
+ * 2. 每個品牌有一個版本號，活動異動時遞增；快取內容的版本與目前版本不同即視為失效，
+ *    避免「異動前讀到舊資料的實例在異動後才寫回快取」造成長時間的舊資料。
+ * 3. 版本號與快取內容以一次 MGET 取得。Redis 失敗時直接查詢 DB，不寫回快取。
+ * </p>
  */
 @Service
 public class PromotionCacheService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PromotionCacheService.class);
+
+    private static final String WINDOW_KEY_PREFIX = "promotion_window:brand:";
+    private static final String VERSION_KEY_PREFIX = "promotion_window_version:brand:";
+
     private final PromotionRepository promotionRepository;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final PromotionCacheMetrics metrics;
+
+    // Redis 快取的存活時間，同時也是預先載入「即將開始」活動的時間範圍
+    @Value("${app.promotion.cache.redis-ttl-minutes:10}")
+    private long redisTtlMinutes;
 
-    public PromotionCacheService(PromotionRepository promotionRepository) {
+    public PromotionCacheService(PromotionRepository promotionRepository,
+                                 StringRedisTemplate redisTemplate,
+                                 ObjectMapper objectMapper,
+                                 MeterRegistry meterRegistry) {
         this.promotionRepository = promotionRepository;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.metrics = new PromotionCacheMetrics(meterRegistry, "redis");
     }
 
     /**
-     * 查詢有效活動並快取
+     * 取得品牌目前及接下來一段時間內有效的活動
      */
-    @Cacheable(value = "promotions", key = "#brandId")
-    @Transactional(readOnly = true)
-    public List<Promotion> getActivePromotions(Long brandId) {
-        return promotionRepository.findActivePromotionsByBrand(brandId, LocalDateTime.now());
+    public PromotionWindow getPromotionWindow(Long brandId) {
+        LocalDateTime now = LocalDateTime.now();
+        String windowKey = WINDOW_KEY_PREFIX + brandId;
+
+        String version;
+        try {
+            List<String> values = redisTemplate.opsForValue().multiGet(List.of(windowKey, VERSION_KEY_PREFIX + brandId));
+            String json = values != null ? values.get(0) : null;
+            version = values != null && values.get(1) != null ? values.get(1) : "0";
+            if (json != null) {
+                PromotionWindow window = objectMapper.readValue(json, PromotionWindow.class);
+                if (version.equals(window.version()) && !now.isAfter(window.coveredUntil())) {
+                    metrics.hit();
+                    return window;
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("讀取品牌 {} 的促銷活動快取失敗，改查詢資料庫", brandId, e);
+            metrics.miss();
+            return load(brandId, null, now);
+        }
+
+        metrics.miss();
+        PromotionWindow window = load(brandId, version, now);
+        try {
+            redisTemplate.opsForValue().set(windowKey, objectMapper.writeValueAsString(window),
+                    Duration.ofMinutes(redisTtlMinutes));
+        } catch (Exception e) {
+            logger.warn("寫入品牌 {} 的促銷活動快取失敗", brandId, e);
+        }
+        return window;
+    }
+
+    /**
+     * 使品牌的 Redis 快取失效 (遞增版本號，舊內容即使被晚到的寫入覆蓋也不會再被採用)
+     */
+    public void invalidate(Long brandId) {
+        try {
+            redisTemplate.opsForValue().increment(VERSION_KEY_PREFIX + brandId);
+            redisTemplate.delete(WINDOW_KEY_PREFIX + brandId);
+        } catch (Exception e) {
+            logger.error("清除品牌 {} 的促銷活動快取失敗，最晚 {} 分鐘後過期", brandId, redisTtlMinutes, e);
+        }
+    }
+
+    private PromotionWindow load(Long brandId, String version, LocalDateTime now) {
+        LocalDateTime coveredUntil = now.plusMinutes(redisTtlMinutes);
+        List<PromotionSnapshot> promotions = promotionRepository.findPromotionWindowByBrand(brandId, now, coveredUntil)
+                .stream()
+                .map(PromotionSnapshot::from)
+                .toList();
+        return new PromotionWindow(version, now, coveredUntil, promotions);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,237 @@
+package tw.niels.beverage_api_project.modules.promotion.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.Setter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.event.PromotionChangedEvent;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionStrategyFactory;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionPlan;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionSnapshot;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionWindow;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 促銷活動評估計畫服務 (第一層：每個實例的本機快取，位於 Redis 快取之前)
+ * <p>
+ * 1. 將品牌的有效活動編譯為 PromotionPlan：預先決定計算器、排序適用商品 ID、建立商品反向索引。
+ * 2. 不支援的活動類型 (例如尚未實作的滿額贈禮) 與永遠不會成立的活動在編譯時就排除，並記錄一次警告。
+ * 3. 計畫存放於有上限的 Caffeine 快取，在下一個活動開始 / 結束的時間點過期，活動準時生效，不必等 TTL。
+ * 4. 活動異動於交易提交後使 Redis 快取失效，並透過 RabbitMQ Fanout 通知所有實例清除本機計畫。
+ * </p>
+ */
+@Service
+public class PromotionPlanService {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromotionPlanService.class);
+
+    // 用來辨識廣播是否由自己送出 (自己已在本地清除過，不需重複)
+    private final String instanceId = TsidUtil.nextIdString();
+
+    // 每個品牌的失效次數；載入期間若有失效通知，載入結果不放入快取
+    private final Map<Long, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    private final PromotionCacheService promotionCacheService;
+    private final PromotionStrategyFactory strategyFactory;
+    private final RabbitTemplate rabbitTemplate;
+    private final PromotionCacheMetrics metrics;
+
+    private Cache<Long, PromotionPlan> plans;
+
+    // 計畫最長的存活時間 (失效廣播遺失時的保險)
+    @Value("${app.promotion.plan.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // 本機最多快取的品牌數
+    @Value("${app.promotion.plan.max-brands:1000}")
+    private long maxBrands;
+
+    public PromotionPlanService(PromotionCacheService promotionCacheService,
+                                PromotionStrategyFactory strategyFactory,
+                                RabbitTemplate rabbitTemplate,
+                                MeterRegistry meterRegistry) {
+        this.promotionCacheService = promotionCacheService;
+        this.strategyFactory = strategyFactory;
+        this.rabbitTemplate = rabbitTemplate;
+        this.metrics = new PromotionCacheMetrics(meterRegistry, "local");
+    }
+
+    @PostConstruct
+    public void init() {
+        Duration maxTtl = Duration.ofSeconds(ttlSeconds);
+        plans = Caffeine.newBuilder()
+                .maximumSize(maxBrands)
+                .expireAfter(Expiry.creating((Long brandId, PromotionPlan plan) -> timeToLive(plan, maxTtl)))
+                .build();
+    }
+
+    /**
+     * 取得品牌目前的評估計畫 (熱路徑：本機命中時不需任何網路呼叫)
+     */
+    public PromotionPlan getPlan(Long brandId) {
+        PromotionPlan plan = plans.getIfPresent(brandId);
+        if (plan != null) {
+            metrics.hit();
+            return plan;
+        }
+
+        metrics.miss();
+        long generation = generationOf(brandId).get();
+        // 同一品牌同時只載入一次，其他執行緒等待結果
+        PromotionPlan loaded = plans.get(brandId, id ->
+                compile(id, promotionCacheService.getPromotionWindow(id), LocalDateTime.now()));
+        if (generationOf(brandId).get() != generation) {
+            plans.asMap().remove(brandId, loaded);
+        }
+        return loaded;
+    }
+
+    /**
+     * 監聽本地的活動異動事件 (交易提交後才清除，避免在提交前以舊資料重新載入)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void handlePromotionChanged(PromotionChangedEvent event) {
+        promotionCacheService.invalidate(event.brandId());
+        invalidateLocal(event.brandId());
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.PROMOTION_EXCHANGE, "",
+                    new PromotionBroadcastMessage(event.brandId(), instanceId));
+        } catch (Exception e) {
+            // 廣播失敗時，其他實例的計畫最晚在 TTL 後重新載入
+            logger.error("促銷活動失效廣播失敗 (Brand: {})", event.brandId(), e);
+        }
+    }
+
+    /**
+     * 監聽其他實例送出的失效廣播
+     */
+    @RabbitListener(queues = "#{promotionAnonymousQueue.name}")
+    public void handleRabbitMessage(PromotionBroadcastMessage msg) {
+        if (instanceId.equals(msg.getOriginId())) {
+            return;
+        }
+        invalidateLocal(msg.getBrandId());
+    }
+
+    private void invalidateLocal(Long brandId) {
+        generationOf(brandId).incrementAndGet();
+        plans.invalidate(brandId);
+    }
+
+    private AtomicLong generationOf(Long brandId) {
+        return generations.computeIfAbsent(brandId, id -> new AtomicLong());
+    }
+
+    PromotionPlan compile(Long brandId, PromotionWindow window, LocalDateTime now) {
+        List<CompiledPromotion> compiled = new ArrayList<>(window.promotions().size());
+        // 下一個活動開始的時間點 (或快取內容涵蓋的最後時間點)，屆時需重新編譯
+        LocalDateTime refreshAt = window.coveredUntil();
+
+        for (PromotionSnapshot snapshot : window.promotions()) {
+            if (snapshot.endDate() != null && now.isAfter(snapshot.endDate())) {
+                continue;
+            }
+            if (snapshot.startDate() != null && snapshot.startDate().isAfter(now)) {
+                if (refreshAt == null || snapshot.startDate().isBefore(refreshAt)) {
+                    refreshAt = snapshot.startDate();
+                }
+                continue;
+            }
+
+            Promotion promotion = snapshot.toPromotion();
+            PromotionCalculator calculator;
+            try {
+                calculator = strategyFactory.getCalculator(promotion.getType());
+            } catch (IllegalArgumentException e) {
+                logger.warn("品牌 {} 的促銷活動 {} 類型 {} 尚未支援，略過", brandId, promotion.getId(), promotion.getType());
+                continue;
+            }
+
+            long[] productIds = snapshot.productIds() == null ? new long[0] : snapshot.productIds().stream()
+                    .mapToLong(Long::longValue)
+                    .sorted()
+                    .distinct()
+                    .toArray();
+            boolean requiresAllProducts = promotion.getType() == PromotionType.BUNDLE_DISCOUNT;
+            if (requiresAllProducts && productIds.length == 0) {
+                logger.warn("品牌 {} 的組合優惠 {} 未指定商品，略過", brandId, promotion.getId());
+                continue;
+            }
+
+            compiled.add(new CompiledPromotion(promotion, calculator, productIds,
+                    spendThreshold(promotion), requiresAllProducts, promotion.getEndDate(),
+                    promotion.getIsStackable(), promotion.getStackGroup()));
+        }
+
+        PromotionPlan plan = PromotionPlan.of(brandId, compiled, refreshAt);
+        logger.debug("品牌 {} 的促銷評估計畫已編譯，活動數: {}，有效至: {}", brandId, plan.size(), plan.getValidUntil());
+        return plan;
+    }
+
+    /**
+     * 計畫在本機快取的存活時間：到下一個活動邊界為止，且不超過 TTL
+     */
+    private static Duration timeToLive(PromotionPlan plan, Duration maxTtl) {
+        if (plan.getValidUntil() == null) {
+            return maxTtl;
+        }
+        Duration untilBoundary = Duration.between(LocalDateTime.now(), plan.getValidUntil());
+        if (untilBoundary.isNegative()) {
+            return Duration.ZERO;
+        }
+        return untilBoundary.compareTo(maxTtl) < 0 ? untilBoundary : maxTtl;
+    }
+
+    /**
+     * 只有以訂單金額為門檻的活動才能提前以 minSpend 排除 (買 X 送 Y 的 minSpend 代表件數)
+     */
+    private static BigDecimal spendThreshold(Promotion promotion) {
+        return switch (promotion.getType()) {
+            case FIXED_AMOUNT, PERCENTAGE -> promotion.getMinSpend();
+            default -> null;
+        };
+    }
+
+    // --- DTOs ---
+
+    @Getter
+    @Setter
+    public static class PromotionBroadcastMessage implements Serializable {
+        private Long brandId;
+        private String originId;
+
+        public PromotionBroadcastMessage() {
+        }
+
+        public PromotionBroadcastMessage(Long brandId, String originId) {
+            this.brandId = brandId;
+            this.originId = originId;
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package tw.niels.beverage_api_project.modules.promotion.service;
 
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -14,12 +15,14 @@ import tw.niels.beverage_api_project.modules.product.entity.Product;
 import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
 import tw.niels.beverage_api_project.modules.promotion.dto.CreatePromotionRequestDto;
 import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.event.PromotionChangedEvent;
 import tw.niels.beverage_api_project.modules.promotion.repository.PromotionRepository;
-import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionCalculator;
-import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionStrategyFactory;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionPlan;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -27,68 +30,69 @@ import java.util.Set;
 @Service
 public class PromotionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(PromotionService.class);
+
     private final PromotionRepository promotionRepository;
-    private final PromotionStrategyFactory strategyFactory;
     private final BrandRepository brandRepository;
     private final ProductRepository productRepository;
-    private final PromotionCacheService promotionCacheService;
+    private final PromotionPlanService promotionPlanService;
+    private final PromotionStackOptimizer promotionStackOptimizer;
+    private final ApplicationEventPublisher eventPublisher;
 
     public PromotionService(PromotionRepository promotionRepository,
-                            PromotionStrategyFactory strategyFactory,
                             BrandRepository brandRepository,
                             ProductRepository productRepository,
-                            PromotionCacheService promotionCacheService) {
+                            PromotionPlanService promotionPlanService,
+                            PromotionStackOptimizer promotionStackOptimizer,
+                            ApplicationEventPublisher eventPublisher) {
         this.promotionRepository = promotionRepository;
-        this.strategyFactory = strategyFactory;
         this.brandRepository = brandRepository;
         this.productRepository = productRepository;
-        this.promotionCacheService = promotionCacheService;
-    }
-
-    /**
-     * 查詢有效活動並快取
-     * Key 為 brandId，當該品牌的活動有變更時清除。
-     * 注意：必須是 public 方法，且由外部或其他 Bean (如 self) 呼叫才能觸發快取。
-     */
-    @Cacheable(value = "promotions", key = "#brandId")
-    @Transactional(readOnly = true)
-    public List<Promotion> getActivePromotions(Long brandId) {
-        return promotionRepository.findActivePromotionsByBrand(brandId, LocalDateTime.now());
+        this.promotionPlanService = promotionPlanService;
+        this.promotionStackOptimizer = promotionStackOptimizer;
+        this.eventPublisher = eventPublisher;
     }
 
     /**
      * 計算訂單的最佳促銷折扣
+     * 只讀取品牌、品項與金額，不需要訂單 ID，可用於尚未存檔 (transient) 的訂單
+     * 透過品牌的評估計畫只計算「門檻已達到且訂單包含其商品」的活動
+     * 有兩個以上可疊加的候選活動時，再以 PromotionStackOptimizer 尋找較佳的組合
      */
     public BigDecimal calculateBestDiscount(Order order) {
         if (order.getBrand() == null) return BigDecimal.ZERO;
 
         Long brandId = order.getBrand().getId();
-
-        // 改為呼叫外部 Cache Service，無需 Self-Injection
-        List<Promotion> activePromotions = promotionCacheService.getActivePromotions(brandId);
+        PromotionPlan plan = promotionPlanService.getPlan(brandId);
 
         BigDecimal maxDiscount = BigDecimal.ZERO;
+        List<CompiledPromotion> stackable = new ArrayList<>();
 
-        for (Promotion promotion : activePromotions) {
+        for (CompiledPromotion promotion : plan.candidates(order, LocalDateTime.now())) {
+            if (promotion.stackable()) {
+                stackable.add(promotion);
+            }
             try {
-                PromotionCalculator calculator = strategyFactory.getCalculator(promotion.getType());
-                BigDecimal discount = calculator.calculateDiscount(order, promotion);
+                BigDecimal discount = promotion.calculator().calculateDiscount(order, promotion);
 
-                if (discount.compareTo(maxDiscount) > 0) {
+                if (discount != null && discount.compareTo(maxDiscount) > 0) {
                     maxDiscount = discount;
                 }
             } catch (Exception e) {
-                // 忽略不支援或計算錯誤的活動
+                // 單一活動計算失敗不影響結帳，但需留下紀錄以便修正活動設定
+                logger.warn("促銷活動 {} 計算失敗，略過 (Brand: {})", promotion.promotion().getId(), brandId, e);
             }
         }
 
+        if (stackable.size() >= 2) {
+            maxDiscount = promotionStackOptimizer.optimize(order, stackable, maxDiscount);
+        }
         return maxDiscount;
     }
 
     /**
      * 建立新促銷活動
      */
-    @CacheEvict(value = "promotions", key = "#brandId") // 【新增】清除快取
     @Transactional
     public Promotion createPromotion(Long brandId, CreatePromotionRequestDto request) {
         Brand brand = brandRepository.findById(brandId)
@@ -108,6 +112,9 @@ public class PromotionService {
         promotion.setStartDate(request.getStartDate());
         promotion.setEndDate(request.getEndDate());
         promotion.setIsActive(true);
+        promotion.setIsStackable(Boolean.TRUE.equals(request.getStackable()));
+        promotion.setStackGroup(request.getStackGroup() != null && !request.getStackGroup().isBlank()
+                ? request.getStackGroup().trim() : null);
 
         if (request.getApplicableProductIds() != null && !request.getApplicableProductIds().isEmpty()) {
             Set<Product> products = new HashSet<>();
@@ -119,7 +126,10 @@ public class PromotionService {
             promotion.setApplicableProducts(products);
         }
 
-        return promotionRepository.save(promotion);
+        Promotion saved = promotionRepository.save(promotion);
+        // 交易提交後清除兩層快取並通知其他實例
+        eventPublisher.publishEvent(new PromotionChangedEvent(brandId));
+        return saved;
     }
 
     /**
@@ -134,7 +144,6 @@ public class PromotionService {
     /**
      * 關閉/刪除活動
      */
-    @CacheEvict(value = "promotions", key = "#brandId") // 【新增】清除快取
     @Transactional
     public void deactivatePromotion(Long brandId, Long promotionId) {
         Promotion promotion = promotionRepository.findByBrand_IdAndId(brandId, promotionId)
@@ -142,5 +151,6 @@ public class PromotionService {
 
         promotion.setIsActive(false);
         promotionRepository.save(promotion);
+        eventPublisher.publishEvent(new PromotionChangedEvent(brandId));
     }
 }
\ No newline at end of file
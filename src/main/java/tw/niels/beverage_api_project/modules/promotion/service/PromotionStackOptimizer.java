@@ -0,0 +1,259 @@
+package tw.niels.beverage_api_project.modules.promotion.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionCalculator;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+import tw.niels.beverage_api_project.modules.promotion.vo.ItemPool;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 促銷活動疊加最佳化 (分支定界)
+ * <p>
+ * 1. 只考慮可疊加 (stackable) 的活動；同一互斥群組 (stackGroup) 的活動最多選一個。
+ * 2. 套用順序固定為：品項層級活動 (占用品項，同一件商品不重複折扣) → 百分比折扣 → 固定金額折扣；
+ *    訂單層級活動以扣除前面折扣後的金額判斷門檻與計算。
+ * 3. 依序對每個活動做「選 / 不選」的深度優先搜尋，以剩餘活動折扣上限的總和剪枝。
+ * 4. 搜尋有時間預算，超過預算即放棄搜尋，改用單一最佳活動 (與疊加前的行為相同)，結帳延遲不受活動數量影響。
+ * </p>
+ */
+@Service
+public class PromotionStackOptimizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(PromotionStackOptimizer.class);
+
+    // 互斥群組以 long 位元遮罩記錄，參與搜尋的活動數也以此為上限
+    private static final int MAX_CANDIDATES = 63;
+
+    // 每走訪多少個節點檢查一次時間 (從第一個節點開始；避免每個節點都呼叫 System.nanoTime)
+    private static final int DEADLINE_CHECK_MASK = 0xFF;
+
+    private final Timer latencyTimer;
+    private final Counter singleCounter;
+    private final Counter improvedCounter;
+    private final Counter timeoutCounter;
+
+    // 單次搜尋的時間預算 (微秒)
+    @Value("${app.promotion.optimizer.budget-micros:1000}")
+    private long budgetMicros;
+
+    public PromotionStackOptimizer(MeterRegistry meterRegistry) {
+        this.latencyTimer = Timer.builder("promotion.optimizer.latency")
+                .description("促銷疊加最佳化的搜尋時間")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.singleCounter = outcomeCounter(meterRegistry, "single");
+        this.improvedCounter = outcomeCounter(meterRegistry, "improved");
+        this.timeoutCounter = outcomeCounter(meterRegistry, "timeout");
+    }
+
+    private static Counter outcomeCounter(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("promotion.optimizer.outcomes")
+                .description("促銷疊加最佳化結果 (single: 單一活動最佳, improved: 疊加較佳, timeout: 超過預算改用單一活動)")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    /**
+     * 找出可疊加活動的最佳組合
+     * @param stackable  可疊加的候選活動 (已通過評估計畫的篩選)
+     * @param singleBest 單一最佳活動的折扣 (作為搜尋的下限，也是超過預算時的結果)
+     * @return 最佳折扣 (不低於 singleBest，不超過訂單金額)
+     */
+    public BigDecimal optimize(Order order, List<CompiledPromotion> stackable, BigDecimal singleBest) {
+        long start = System.nanoTime();
+        try {
+            Search search = Search.prepare(order, stackable, singleBest, start + budgetMicros * 1_000L);
+            if (search == null) {
+                singleCounter.increment();
+                return singleBest;
+            }
+
+            search.run(0, search.pool, 0, 0L);
+            if (search.aborted) {
+                timeoutCounter.increment();
+                return singleBest;
+            }
+            if (search.best > search.singleBestMinor) {
+                improvedCounter.increment();
+                return search.pool.toAmount(search.best);
+            }
+            singleCounter.increment();
+            return singleBest;
+        } finally {
+            latencyTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 單次搜尋的狀態 (只在單一執行緒內使用)
+     */
+    private static final class Search {
+
+        private final Order order;
+        private final ItemPool pool;
+        private final CompiledPromotion[] candidates;
+        private final boolean[] itemLevel;
+        private final long[] groupMasks;
+        // suffixBounds[i]：第 i 個 (含) 之後所有活動的折扣上限總和
+        private final long[] suffixBounds;
+        private final long totalMinor;
+        private final long singleBestMinor;
+        private final long deadline;
+
+        private long best;
+        private long nodes;
+        private boolean aborted;
+
+        private Search(Order order, ItemPool pool, CompiledPromotion[] candidates, boolean[] itemLevel,
+                       long[] groupMasks, long[] suffixBounds, long totalMinor, long singleBestMinor, long deadline) {
+            this.order = order;
+            this.pool = pool;
+            this.candidates = candidates;
+            this.itemLevel = itemLevel;
+            this.groupMasks = groupMasks;
+            this.suffixBounds = suffixBounds;
+            this.totalMinor = totalMinor;
+            this.singleBestMinor = singleBestMinor;
+            this.deadline = deadline;
+            this.best = singleBestMinor;
+        }
+
+        /**
+         * 計算每個活動的折扣上限並排序；沒有任何組合可能勝過單一最佳時回傳 null
+         */
+        static Search prepare(Order order, List<CompiledPromotion> stackable, BigDecimal singleBest, long deadline) {
+            if (order.getTotalAmount() == null || stackable.size() < 2) {
+                return null;
+            }
+            ItemPool pool = ItemPool.of(order);
+            long totalMinor = pool.toMinor(order.getTotalAmount());
+            long singleBestMinor = pool.toMinor(singleBest);
+            if (singleBestMinor >= totalMinor) {
+                return null;
+            }
+
+            List<Ranked> ranked = new ArrayList<>(stackable.size());
+            for (CompiledPromotion promotion : stackable) {
+                long bound = bound(order, pool, promotion);
+                if (bound > 0) {
+                    ranked.add(new Ranked(promotion, rank(promotion), bound));
+                }
+            }
+            if (ranked.size() < 2) {
+                return null;
+            }
+
+            // 依套用順序排列；同一順位中上限高的先搜尋，較早找到好的下限
+            ranked.sort(Comparator.comparingInt(Ranked::rank)
+                    .thenComparing(Comparator.comparingLong(Ranked::bound).reversed()));
+            if (ranked.size() > MAX_CANDIDATES) {
+                logger.warn("可疊加的候選活動數 {} 超過上限 {}，只搜尋前 {} 個 (Brand: {})",
+                        ranked.size(), MAX_CANDIDATES, MAX_CANDIDATES, order.getBrand().getId());
+                ranked = ranked.subList(0, MAX_CANDIDATES);
+            }
+
+            int n = ranked.size();
+            CompiledPromotion[] candidates = new CompiledPromotion[n];
+            boolean[] itemLevel = new boolean[n];
+            long[] groupMasks = new long[n];
+            long[] suffixBounds = new long[n + 1];
+            Map<String, Long> groupBits = new HashMap<>();
+            for (int i = 0; i < n; i++) {
+                CompiledPromotion promotion = ranked.get(i).promotion();
+                candidates[i] = promotion;
+                itemLevel[i] = promotion.calculator().isItemLevel();
+                if (promotion.stackGroup() != null) {
+                    groupMasks[i] = groupBits.computeIfAbsent(promotion.stackGroup(), g -> 1L << groupBits.size());
+                }
+            }
+            for (int i = n - 1; i >= 0; i--) {
+                suffixBounds[i] = suffixBounds[i + 1] + ranked.get(i).bound();
+            }
+            return new Search(order, pool, candidates, itemLevel, groupMasks, suffixBounds,
+                    totalMinor, singleBestMinor, deadline);
+        }
+
+        void run(int index, ItemPool current, long discount, long usedGroups) {
+            if ((nodes++ & DEADLINE_CHECK_MASK) == 0 && System.nanoTime() > deadline) {
+                aborted = true;
+            }
+            if (aborted) {
+                return;
+            }
+
+            // 之後的活動都不選，也是一個合法組合
+            if (discount > best) {
+                best = discount;
+            }
+            if (index == candidates.length || best >= totalMinor
+                    || Math.min(discount + suffixBounds[index], totalMinor) <= best) {
+                return;
+            }
+
+            CompiledPromotion promotion = candidates[index];
+            if ((groupMasks[index] & usedGroups) == 0) {
+                try {
+                    if (itemLevel[index]) {
+                        ItemPool next = current.copy();
+                        long gained = promotion.calculator().applyToItems(next, promotion);
+                        if (gained > 0) {
+                            run(index + 1, next, Math.min(discount + gained, totalMinor),
+                                    usedGroups | groupMasks[index]);
+                        }
+                    } else {
+                        BigDecimal remaining = current.toAmount(totalMinor - discount);
+                        long gained = current.toMinor(promotion.calculator().applyToOrder(order, remaining, promotion));
+                        if (gained > 0) {
+                            run(index + 1, current, Math.min(discount + gained, totalMinor),
+                                    usedGroups | groupMasks[index]);
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    logger.warn("促銷活動 {} 疊加計算失敗，略過", promotion.promotion().getId(), e);
+                }
+            }
+            run(index + 1, current, discount, usedGroups);
+        }
+
+        /**
+         * 活動在任何組合中能得到的折扣上限 (最小單位)
+         */
+        private static long bound(Order order, ItemPool pool, CompiledPromotion promotion) {
+            try {
+                PromotionCalculator calculator = promotion.calculator();
+                if (calculator.isItemLevel()) {
+                    return calculator.maxItemDiscount(pool, promotion);
+                }
+                // 訂單層級活動的折扣隨剩餘金額遞增，以原始金額計算即為上限
+                return pool.toMinor(calculator.applyToOrder(order, order.getTotalAmount(), promotion));
+            } catch (RuntimeException e) {
+                logger.warn("促銷活動 {} 疊加計算失敗，略過", promotion.promotion().getId(), e);
+                return 0;
+            }
+        }
+
+        private static int rank(CompiledPromotion promotion) {
+            if (promotion.calculator().isItemLevel()) {
+                return 0;
+            }
+            return promotion.promotion().getType() == PromotionType.PERCENTAGE ? 1 : 2;
+        }
+    }
+
+    private record Ranked(CompiledPromotion promotion, int rank, long bound) {}
+}
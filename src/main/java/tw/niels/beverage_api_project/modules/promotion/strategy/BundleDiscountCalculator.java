@@ -6,12 +6,12 @@ import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
 import tw.niels.beverage_api_project.modules.product.entity.Product;
 import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
 import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+import tw.niels.beverage_api_project.modules.promotion.vo.ItemPool;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.stream.Collectors;
 
 @Component
 public class BundleDiscountCalculator implements PromotionCalculator {
@@ -23,11 +23,20 @@ public class BundleDiscountCalculator implements PromotionCalculator {
 
     @Override
     public BigDecimal calculateDiscount(Order order, Promotion promotion) {
-        Set<Long> requiredProductIds = promotion.getApplicableProducts().stream()
-                .map(Product::getId)
-                .collect(Collectors.toSet());
+        long[] requiredProductIds = promotion.getApplicableProducts().stream()
+                .mapToLong(Product::getId)
+                .distinct()
+                .toArray();
+        return calculateDiscount(order, promotion, requiredProductIds);
+    }
+
+    @Override
+    public BigDecimal calculateDiscount(Order order, CompiledPromotion promotion) {
+        return calculateDiscount(order, promotion.promotion(), promotion.productIds());
+    }
 
-        if (requiredProductIds.isEmpty()) return BigDecimal.ZERO;
+    private BigDecimal calculateDiscount(Order order, Promotion promotion, long[] requiredProductIds) {
+        if (requiredProductIds.length == 0) return BigDecimal.ZERO;
 
         // 統計訂單中各商品的數量與單價
         Map<Long, Integer> cartCounts = new HashMap<>();
@@ -44,7 +53,7 @@ public class BundleDiscountCalculator implements PromotionCalculator {
         int possibleSets = Integer.MAX_VALUE;
         BigDecimal originalBundlePrice = BigDecimal.ZERO;
 
-        for (Long pid : requiredProductIds) {
+        for (long pid : requiredProductIds) {
             int count = cartCounts.getOrDefault(pid, 0);
             if (count == 0) return BigDecimal.ZERO; // 缺件，無法組成
             possibleSets = Math.min(possibleSets, count);
@@ -62,4 +71,47 @@ public class BundleDiscountCalculator implements PromotionCalculator {
 
         return bundleDiscount.multiply(new BigDecimal(possibleSets));
     }
-}
\ No newline at end of file
+
+    @Override
+    public boolean isItemLevel() {
+        return true;
+    }
+
+    /**
+     * 疊加計算：每組從池中各取一件組合商品 (取剩餘最貴的一件)，直到缺件或單組折扣不再為正
+     * 品項越少，每組取到的單價只會越低，因此預設的 maxItemDiscount 即為上限
+     */
+    @Override
+    public long applyToItems(ItemPool pool, CompiledPromotion compiled) {
+        long[] requiredProductIds = compiled.productIds();
+        if (requiredProductIds.length == 0) return 0;
+
+        long bundlePrice = pool.toMinor(compiled.promotion().getValue());
+        int[] picks = new int[requiredProductIds.length];
+        long discount = 0;
+        while (true) {
+            long originalPrice = 0;
+            for (int r = 0; r < requiredProductIds.length; r++) {
+                int pick = -1;
+                // 品項池依單價遞增排列，由後往前找到的第一件即為最貴的一件
+                for (int i = pool.size() - 1; i >= 0; i--) {
+                    if (pool.productId(i) == requiredProductIds[r] && pool.remaining(i) > 0) {
+                        pick = i;
+                        break;
+                    }
+                }
+                if (pick < 0) return discount; // 缺件，無法再組成
+                picks[r] = pick;
+                originalPrice += pool.unitPrice(pick);
+            }
+
+            long setDiscount = originalPrice - bundlePrice;
+            if (setDiscount <= 0) return discount;
+
+            for (int pick : picks) {
+                pool.consume(pick, 1);
+            }
+            discount += setDiscount;
+        }
+    }
+}
@@ -6,13 +6,11 @@ import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
 import tw.niels.beverage_api_project.modules.product.entity.Product;
 import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
 import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+import tw.niels.beverage_api_project.modules.promotion.vo.ItemPool;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.Arrays;
 
 @Component
 public class BuyXGetYCalculator implements PromotionCalculator {
@@ -24,80 +22,217 @@ public class BuyXGetYCalculator implements PromotionCalculator {
 
     @Override
     public BigDecimal calculateDiscount(Order order, Promotion promotion) {
+        return calculateDiscount(order, promotion, sortedProductIds(promotion));
+    }
+
+    @Override
+    public BigDecimal calculateDiscount(Order order, CompiledPromotion promotion) {
+        return calculateDiscount(order, promotion.promotion(), promotion.productIds());
+    }
+
+    private BigDecimal calculateDiscount(Order order, Promotion promotion, long[] applicableProductIds) {
         // 1. 解析 X (需購買數) 和 Y (贈送數)
         int buyCount = promotion.getMinSpend() != null ? promotion.getMinSpend().intValue() : 1;
         int freeCount = promotion.getValue() != null ? promotion.getValue().intValue() : 1;
         int groupSize = buyCount + freeCount;
 
-        if (groupSize <= 0) return BigDecimal.ZERO;
+        // 設定不合理 (負的 X 或不送) 時不折抵
+        if (groupSize <= 0 || buyCount < 0 || freeCount <= 0) return BigDecimal.ZERO;
 
-        // 2. 取得符合資格的商品單價列表 (已抽離方法)
-        List<BigDecimal> eligibleItemPrices = collectEligibleItemPrices(order, promotion);
+        // 2. 取得符合資格的品項 (單價, 數量)，不依數量展開
+        PriceRuns runs = collectEligibleRuns(order, applicableProductIds);
 
         // 3. 計算折扣
-        return calculateGroupDiscount(eligibleItemPrices, groupSize, freeCount);
+        return calculateGroupDiscount(runs, groupSize, freeCount);
     }
 
     /**
-     * 從訂單中篩選出適用於此活動的商品，並將每個數量展開為獨立的單價
-     * @param order     訂單
-     * @param promotion 促銷活動設定
-     * @return 符合資格的單價列表 (未排序)
+     * 從訂單中篩選出適用於此活動的品項，以 (單價, 數量) 的形式記錄
+     * 單價轉換為共同小數位數下的整數 (例如 2 位小數時 50.00 -> 5000)，計算過程不需建立 BigDecimal
+     * @param order                訂單
+     * @param applicableProductIds 適用此活動的 Product IDs (已排序)
+     * @return 符合資格的品項 (未排序)
      */
-    private List<BigDecimal> collectEligibleItemPrices(Order order, Promotion promotion) {
-        // 找出適用此活動的 Product IDs
-        Set<Long> applicableProductIds = promotion.getApplicableProducts().stream()
-                .map(Product::getId)
-                .collect(Collectors.toSet());
-
-        List<BigDecimal> prices = new ArrayList<>();
+    private PriceRuns collectEligibleRuns(Order order, long[] applicableProductIds) {
+        // 第一輪：統計符合資格的品項數與最大小數位數
+        int count = 0;
+        int scale = 0;
+        for (OrderItem item : order.getItems()) {
+            if (isEligible(item, applicableProductIds)) {
+                count++;
+                scale = Math.max(scale, item.getUnitPrice().scale());
+            }
+        }
 
+        // 第二輪：記錄單價與數量
+        long[] unitPrices = new long[count];
+        long[] quantities = new long[count];
+        int n = 0;
         for (OrderItem item : order.getItems()) {
-            // 如果活動沒指定商品 (全館適用) 或者 商品在適用列表中
-            // 注意：這裡假設活動是綁定 Product 層級，若是綁定 Variant 層級需修改此處邏輯
-            boolean isApplicable = applicableProductIds.isEmpty() ||
-                    applicableProductIds.contains(item.getProduct().getId());
-
-            if (isApplicable) {
-                // 將每個單品 (考慮數量) 的單價加入列表
-                // 例如：珍珠奶茶 x 3 (單價 50)，則加入 [50, 50, 50]
+            if (isEligible(item, applicableProductIds)) {
                 // 這裡的 getUnitPrice() 應該已經包含了 Variant 的價格邏輯
-                for (int i = 0; i < item.getQuantity(); i++) {
-                    prices.add(item.getUnitPrice());
-                }
+                unitPrices[n] = item.getUnitPrice().setScale(scale).unscaledValue().longValueExact();
+                quantities[n] = item.getQuantity();
+                n++;
             }
         }
-        return prices;
+        return new PriceRuns(unitPrices, quantities, scale);
+    }
+
+    /**
+     * 如果活動沒指定商品 (全館適用) 或者 商品在適用列表中
+     * 注意：這裡假設活動是綁定 Product 層級，若是綁定 Variant 層級需修改此處邏輯
+     */
+    private static boolean isEligible(OrderItem item, long[] applicableProductIds) {
+        if (item.getQuantity() <= 0) {
+            return false;
+        }
+        return applicableProductIds.length == 0 ||
+                Arrays.binarySearch(applicableProductIds, item.getProduct().getId()) >= 0;
     }
 
     /**
      * 計算分組優惠折扣 (買 X 送 Y 核心邏輯)
-     * @param prices    符合資格的商品價格列表
+     * 結果與「將每個單品展開為單價列表、由低到高排序、取前 (組數 * Y) 個加總」相同，
+     * 但只排序品項，再由最便宜的品項依數量貪婪地扣除贈送件數。
+     * @param runs      符合資格的品項 (單價, 數量)
      * @param groupSize 每組大小 (X + Y)
      * @param freeCount 每組贈送數量 (Y)
      * @return 總折扣金額
      */
-    private BigDecimal calculateGroupDiscount(List<BigDecimal> prices, int groupSize, int freeCount) {
-        if (prices.isEmpty()) {
+    private BigDecimal calculateGroupDiscount(PriceRuns runs, int groupSize, int freeCount) {
+        long totalItems = 0;
+        for (long quantity : runs.quantities()) {
+            totalItems += quantity;
+        }
+        if (totalItems == 0) {
             return BigDecimal.ZERO;
         }
 
-        // 1. 排序：由低到高 (因為通常是送最低價的)
-        prices.sort(Comparator.naturalOrder());
+        // 1. 可以湊成幾組，以及需贈送的件數
+        long sets = totalItems / groupSize;
+        long freeItemsCount = sets * freeCount;
+        if (freeItemsCount == 0) {
+            return BigDecimal.ZERO;
+        }
 
-        BigDecimal totalDiscount = BigDecimal.ZERO;
-        int totalItems = prices.size();
+        // 2. 排序：由低到高 (因為通常是送最低價的)
+        runs.sortByUnitPrice();
+
+        // 3. 從最低價的品項開始扣除贈送件數
+        long discount = 0;
+        long remaining = freeItemsCount;
+        long[] unitPrices = runs.unitPrices();
+        long[] quantities = runs.quantities();
+        for (int i = 0; i < unitPrices.length && remaining > 0; i++) {
+            long taken = Math.min(quantities[i], remaining);
+            discount = Math.addExact(discount, Math.multiplyExact(unitPrices[i], taken));
+            remaining -= taken;
+        }
 
-        // 2. 計算可以湊成幾組
-        int sets = totalItems / groupSize;
+        return BigDecimal.valueOf(discount, runs.scale());
+    }
 
-        // 3. 取前 (sets * freeCount) 個最低價的商品總和作為折扣
-        int freeItemsCount = sets * freeCount;
+    @Override
+    public boolean isItemLevel() {
+        return true;
+    }
 
-        for (int i = 0; i < freeItemsCount; i++) {
-            totalDiscount = totalDiscount.add(prices.get(i));
+    /**
+     * 疊加計算：占用最便宜的 (組數 * (X + Y)) 件適用品項，其中最便宜的 (組數 * Y) 件為贈品
+     * 贈送的件數與金額與單獨計算相同，較貴的零頭留給其他活動使用
+     */
+    @Override
+    public long applyToItems(ItemPool pool, CompiledPromotion compiled) {
+        Promotion promotion = compiled.promotion();
+        int buyCount = promotion.getMinSpend() != null ? promotion.getMinSpend().intValue() : 1;
+        int freeCount = promotion.getValue() != null ? promotion.getValue().intValue() : 1;
+        int groupSize = buyCount + freeCount;
+        if (groupSize <= 0 || buyCount < 0 || freeCount <= 0) return 0;
+
+        long totalItems = 0;
+        for (int i = 0; i < pool.size(); i++) {
+            if (compiled.containsProduct(pool.productId(i))) {
+                totalItems += pool.remaining(i);
+            }
         }
+        long sets = totalItems / groupSize;
+        if (sets == 0) return 0;
+
+        // 品項池已依單價遞增排列
+        long toConsume = sets * groupSize;
+        long freeRemaining = sets * freeCount;
+        long discount = 0;
+        for (int i = 0; i < pool.size() && toConsume > 0; i++) {
+            if (!compiled.containsProduct(pool.productId(i))) continue;
+            long taken = Math.min(pool.remaining(i), toConsume);
+            long free = Math.min(taken, freeRemaining);
+            discount = Math.addExact(discount, Math.multiplyExact(pool.unitPrice(i), free));
+            freeRemaining -= free;
+            toConsume -= taken;
+            pool.consume(i, taken);
+        }
+        return discount;
+    }
+
+    /**
+     * 品項減少時贈品可能改由較貴的品項擔任，單獨計算的結果不是上限；
+     * 改以「可贈送件數」乘上最貴的品項估計
+     */
+    @Override
+    public long maxItemDiscount(ItemPool pool, CompiledPromotion compiled) {
+        Promotion promotion = compiled.promotion();
+        int buyCount = promotion.getMinSpend() != null ? promotion.getMinSpend().intValue() : 1;
+        int freeCount = promotion.getValue() != null ? promotion.getValue().intValue() : 1;
+        int groupSize = buyCount + freeCount;
+        if (groupSize <= 0 || buyCount < 0 || freeCount <= 0) return 0;
 
-        return totalDiscount;
+        long totalItems = 0;
+        for (int i = 0; i < pool.size(); i++) {
+            if (compiled.containsProduct(pool.productId(i))) {
+                totalItems += pool.remaining(i);
+            }
+        }
+        long freeRemaining = (totalItems / groupSize) * freeCount;
+        long bound = 0;
+        for (int i = pool.size() - 1; i >= 0 && freeRemaining > 0; i--) {
+            if (!compiled.containsProduct(pool.productId(i))) continue;
+            long free = Math.min(pool.remaining(i), freeRemaining);
+            bound = Math.addExact(bound, Math.multiplyExact(pool.unitPrice(i), free));
+            freeRemaining -= free;
+        }
+        return bound;
+    }
+
+    private static long[] sortedProductIds(Promotion promotion) {
+        return promotion.getApplicableProducts().stream()
+                .mapToLong(Product::getId)
+                .sorted()
+                .distinct()
+                .toArray();
+    }
+
+    /**
+     * 符合資格的品項 (單價為 scale 位小數下的整數)
+     */
+    private record PriceRuns(long[] unitPrices, long[] quantities, int scale) {
+
+        /**
+         * 依單價遞增排序 (插入排序：訂單品項數通常很少，不需額外配置)
+         */
+        void sortByUnitPrice() {
+            for (int i = 1; i < unitPrices.length; i++) {
+                long price = unitPrices[i];
+                long quantity = quantities[i];
+                int j = i - 1;
+                while (j >= 0 && unitPrices[j] > price) {
+                    unitPrices[j + 1] = unitPrices[j];
+                    quantities[j + 1] = quantities[j];
+                    j--;
+                }
+                unitPrices[j + 1] = price;
+                quantities[j + 1] = quantity;
+            }
+        }
     }
-}
\ No newline at end of file
+}
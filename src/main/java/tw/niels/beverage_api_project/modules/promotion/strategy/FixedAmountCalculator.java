@@ -4,6 +4,7 @@ import org.springframework.stereotype.Component;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
 import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
 
 import java.math.BigDecimal;
 
@@ -28,4 +29,16 @@ public class FixedAmountCalculator implements PromotionCalculator {
         // 回傳設定的固定金額 (例如 20 元)
         return promotion.getValue();
     }
-}
\ No newline at end of file
+
+    @Override
+    public BigDecimal applyToOrder(Order order, BigDecimal remaining, CompiledPromotion compiled) {
+        Promotion promotion = compiled.promotion();
+        BigDecimal minSpend = promotion.getMinSpend();
+
+        // 疊加時以折扣後的金額判斷門檻，且折抵不超過剩餘金額
+        if (minSpend != null && remaining.compareTo(minSpend) < 0) {
+            return BigDecimal.ZERO;
+        }
+        return promotion.getValue().max(BigDecimal.ZERO).min(remaining);
+    }
+}
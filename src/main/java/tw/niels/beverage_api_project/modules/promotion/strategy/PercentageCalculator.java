@@ -4,6 +4,7 @@ import org.springframework.stereotype.Component;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
 import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -35,4 +36,20 @@ public class PercentageCalculator implements PromotionCalculator {
 
         return orderTotal.multiply(discountRate).setScale(2, RoundingMode.HALF_UP);
     }
-}
\ No newline at end of file
+
+    @Override
+    public BigDecimal applyToOrder(Order order, BigDecimal remaining, CompiledPromotion compiled) {
+        Promotion promotion = compiled.promotion();
+        BigDecimal minSpend = promotion.getMinSpend();
+
+        // 疊加時以折扣後的金額判斷門檻，折數也套用在折扣後的金額上
+        if (minSpend != null && remaining.compareTo(minSpend) < 0) {
+            return BigDecimal.ZERO;
+        }
+
+        BigDecimal discountRate = BigDecimal.ONE.subtract(promotion.getValue());
+        if (discountRate.compareTo(BigDecimal.ZERO) < 0) return BigDecimal.ZERO;
+
+        return remaining.multiply(discountRate).setScale(2, RoundingMode.HALF_UP).min(remaining);
+    }
+}
@@ -3,6 +3,8 @@ package tw.niels.beverage_api_project.modules.promotion.strategy;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
 import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
 import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+import tw.niels.beverage_api_project.modules.promotion.vo.ItemPool;
 
 import java.math.BigDecimal;
 
@@ -17,4 +19,47 @@ public interface PromotionCalculator {
      * @return 折扣金額 (必須 >= 0)
      */
     BigDecimal calculateDiscount(Order order, Promotion promotion);
-}
\ No newline at end of file
+
+    /**
+     * 以編譯後的活動計算折扣 (可直接使用預先排序的適用商品 ID，不需再走訪 applicableProducts)
+     * 預設委派給 calculateDiscount(Order, Promotion)
+     */
+    default BigDecimal calculateDiscount(Order order, CompiledPromotion promotion) {
+        return calculateDiscount(order, promotion.promotion());
+    }
+
+    // --- 疊加計算 (PromotionStackOptimizer) ---
+
+    /**
+     * 是否為品項層級的活動 (會占用品項；疊加時同一件商品不可被兩個活動重複折扣)
+     */
+    default boolean isItemLevel() {
+        return false;
+    }
+
+    /**
+     * 在品項池上套用活動：從池中占用用到的件數，回傳折扣 (池的最小單位)
+     * 只有品項層級的活動需要實作
+     */
+    default long applyToItems(ItemPool pool, CompiledPromotion promotion) {
+        return 0;
+    }
+
+    /**
+     * 此活動在品項池任意子集合上能得到的折扣上限 (最小單位)，供分支定界剪枝
+     * 預設為在完整池的副本上套用一次；若折扣不隨品項減少而遞減，實作必須覆寫
+     */
+    default long maxItemDiscount(ItemPool pool, CompiledPromotion promotion) {
+        return applyToItems(pool.copy(), promotion);
+    }
+
+    /**
+     * 訂單層級活動在疊加時的折扣
+     * @param remaining 扣除先前已套用的折扣後的訂單金額 (門檻以此金額判斷)
+     * @return 折扣金額 (不超過 remaining)
+     */
+    default BigDecimal applyToOrder(Order order, BigDecimal remaining, CompiledPromotion promotion) {
+        BigDecimal discount = calculateDiscount(order, promotion);
+        return discount == null ? BigDecimal.ZERO : discount.min(remaining);
+    }
+}
@@ -0,0 +1,43 @@
+package tw.niels.beverage_api_project.modules.promotion.vo;
+
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionCalculator;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * 編譯後的單一促銷活動 (不可變)
+ * 計算器與適用商品 ID 在編譯時就決定好，結帳時不需再查詢策略工廠或走訪 applicableProducts。
+ *
+ * @param productIds          適用商品 ID (已排序；空陣列代表全館適用)
+ * @param minSpend            訂單金額門檻 (只有以金額為門檻的活動才有值，供提前排除)
+ * @param requiresAllProducts 是否需要訂單同時包含所有適用商品 (組合優惠)
+ * @param endDate             活動結束時間 (null 代表不限)
+ * @param stackable           是否可與其他可疊加的活動同時使用
+ * @param stackGroup          互斥群組 (null 代表不屬於任何群組)
+ */
+public record CompiledPromotion(
+        Promotion promotion,
+        PromotionCalculator calculator,
+        long[] productIds,
+        BigDecimal minSpend,
+        boolean requiresAllProducts,
+        LocalDateTime endDate,
+        boolean stackable,
+        String stackGroup
+) {
+
+    public boolean appliesToAllProducts() {
+        return productIds.length == 0;
+    }
+
+    public boolean containsProduct(long productId) {
+        return productIds.length == 0 || Arrays.binarySearch(productIds, productId) >= 0;
+    }
+
+    public boolean isExpired(LocalDateTime now) {
+        return endDate != null && now.isAfter(endDate);
+    }
+}
@@ -0,0 +1,123 @@
+package tw.niels.beverage_api_project.modules.promotion.vo;
+
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+
+/**
+ * 促銷疊加計算用的品項池
+ * <p>
+ * 訂單品項依 (商品, 單價) 合併後，依單價由低到高排列；金額以 scale 位小數下的整數 (最小單位) 表示。
+ * 品項層級的活動 (買 X 送 Y、組合優惠) 會從池中「占用」數量，同一件商品不會被兩個活動重複折扣。
+ * 搜尋時每個分支各自複製一份 (copy)，複製只涉及剩餘數量陣列。
+ * </p>
+ */
+public final class ItemPool {
+
+    private final long[] productIds;
+    private final long[] unitPrices;
+    private final long[] remaining;
+    private final int scale;
+
+    private ItemPool(long[] productIds, long[] unitPrices, long[] remaining, int scale) {
+        this.productIds = productIds;
+        this.unitPrices = unitPrices;
+        this.remaining = remaining;
+        this.scale = scale;
+    }
+
+    public static ItemPool of(Order order) {
+        int count = order.getItems() != null ? order.getItems().size() : 0;
+        int scale = 2;
+        if (count > 0) {
+            for (OrderItem item : order.getItems()) {
+                scale = Math.max(scale, item.getUnitPrice().scale());
+            }
+        }
+
+        long[] productIds = new long[count];
+        long[] unitPrices = new long[count];
+        long[] quantities = new long[count];
+        int n = 0;
+        if (count > 0) {
+            for (OrderItem item : order.getItems()) {
+                if (item.getProduct() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                    continue;
+                }
+                long productId = item.getProduct().getId();
+                long unitPrice = item.getUnitPrice().setScale(scale).unscaledValue().longValueExact();
+                // 插入排序 (依單價遞增)，同商品同單價的品項合併
+                int pos = n;
+                boolean merged = false;
+                for (int i = 0; i < n; i++) {
+                    if (productIds[i] == productId && unitPrices[i] == unitPrice) {
+                        quantities[i] += item.getQuantity();
+                        merged = true;
+                        break;
+                    }
+                }
+                if (merged) {
+                    continue;
+                }
+                while (pos > 0 && unitPrices[pos - 1] > unitPrice) {
+                    productIds[pos] = productIds[pos - 1];
+                    unitPrices[pos] = unitPrices[pos - 1];
+                    quantities[pos] = quantities[pos - 1];
+                    pos--;
+                }
+                productIds[pos] = productId;
+                unitPrices[pos] = unitPrice;
+                quantities[pos] = item.getQuantity();
+                n++;
+            }
+        }
+        return new ItemPool(Arrays.copyOf(productIds, n), Arrays.copyOf(unitPrices, n),
+                Arrays.copyOf(quantities, n), scale);
+    }
+
+    public ItemPool copy() {
+        // 商品與單價不會變動，只需複製剩餘數量
+        return new ItemPool(productIds, unitPrices, remaining.clone(), scale);
+    }
+
+    /**
+     * 品項數 (依單價遞增，索引 0 為最便宜的品項)
+     */
+    public int size() {
+        return productIds.length;
+    }
+
+    public long productId(int index) {
+        return productIds[index];
+    }
+
+    public long unitPrice(int index) {
+        return unitPrices[index];
+    }
+
+    public long remaining(int index) {
+        return remaining[index];
+    }
+
+    public void consume(int index, long quantity) {
+        if (quantity > remaining[index]) {
+            throw new IllegalStateException("品項剩餘數量不足");
+        }
+        remaining[index] -= quantity;
+    }
+
+    public int scale() {
+        return scale;
+    }
+
+    public long toMinor(BigDecimal amount) {
+        return amount.setScale(scale, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public BigDecimal toAmount(long minor) {
+        return BigDecimal.valueOf(minor, scale);
+    }
+}
@@ -0,0 +1,184 @@
+package tw.niels.beverage_api_project.modules.promotion.vo;
+
+import tw.niels.beverage_api_project.common.util.LongKeyedMap;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 單一品牌的促銷活動評估計畫 (不可變)
+ * <p>
+ * 1. 全單活動 (滿額折抵、百分比折扣、全館買 X 送 Y) 依金額門檻由低到高排列，未達門檻時直接截斷。
+ * 2. 指定商品的活動建立「商品 ID -> 活動」的反向索引，只有訂單包含其商品的活動才會被評估。
+ * 3. 組合優惠需訂單包含所有指定商品，命中數不足時不評估。
+ * 4. 計畫只包含編譯當下有效的活動，在最早結束或最早開始的活動時間點失效 (validUntil)。
+ * </p>
+ */
+public final class PromotionPlan {
+
+    private static final int[] NO_CANDIDATES = new int[0];
+
+    private final Long brandId;
+    private final CompiledPromotion[] promotions;
+    // 全單活動的索引 (依 minSpend 遞增，沒有門檻的排在最前面)
+    private final int[] orderWide;
+    // 商品 ID -> 指定該商品的活動索引
+    private final LongKeyedMap<int[]> productIndex;
+    private final Instant builtAt;
+    // 最早結束 / 最早開始的活動時間點，過了之後需重新編譯
+    private final LocalDateTime validUntil;
+
+    private PromotionPlan(Long brandId, CompiledPromotion[] promotions, int[] orderWide,
+                          LongKeyedMap<int[]> productIndex, Instant builtAt, LocalDateTime validUntil) {
+        this.brandId = brandId;
+        this.promotions = promotions;
+        this.orderWide = orderWide;
+        this.productIndex = productIndex;
+        this.builtAt = builtAt;
+        this.validUntil = validUntil;
+    }
+
+    /**
+     * @param refreshAt 即使沒有活動結束也需重新編譯的時間點 (例如下一個活動的開始時間)，null 代表不限
+     */
+    public static PromotionPlan of(Long brandId, List<CompiledPromotion> compiled, LocalDateTime refreshAt) {
+        CompiledPromotion[] promotions = compiled.toArray(new CompiledPromotion[0]);
+
+        List<Integer> orderWideList = new ArrayList<>();
+        Map<Long, List<Integer>> index = new HashMap<>();
+        LocalDateTime validUntil = refreshAt;
+
+        for (int i = 0; i < promotions.length; i++) {
+            CompiledPromotion promotion = promotions[i];
+            if (promotion.appliesToAllProducts()) {
+                orderWideList.add(i);
+            } else {
+                for (long productId : promotion.productIds()) {
+                    index.computeIfAbsent(productId, k -> new ArrayList<>()).add(i);
+                }
+            }
+            if (promotion.endDate() != null && (validUntil == null || promotion.endDate().isBefore(validUntil))) {
+                validUntil = promotion.endDate();
+            }
+        }
+
+        orderWideList.sort(Comparator.comparing(i -> promotions[i].minSpend(),
+                Comparator.nullsFirst(Comparator.naturalOrder())));
+        int[] orderWide = orderWideList.stream().mapToInt(Integer::intValue).toArray();
+
+        Map<Long, int[]> productIndex = new HashMap<>();
+        index.forEach((productId, list) -> productIndex.put(productId, list.stream().mapToInt(Integer::intValue).toArray()));
+
+        return new PromotionPlan(brandId, promotions, orderWide, LongKeyedMap.copyOf(productIndex),
+                Instant.now(), validUntil);
+    }
+
+    /**
+     * 找出可能適用於此訂單的活動 (只做門檻與商品的快速篩選，實際折扣仍由計算器決定)
+     */
+    public List<CompiledPromotion> candidates(Order order, LocalDateTime now) {
+        List<CompiledPromotion> result = new ArrayList<>();
+        BigDecimal total = order.getTotalAmount() != null ? order.getTotalAmount() : BigDecimal.ZERO;
+
+        // 1. 全單活動：依門檻排序，第一個未達門檻的活動之後全部略過
+        for (int idx : orderWide) {
+            CompiledPromotion promotion = promotions[idx];
+            if (promotion.minSpend() != null && total.compareTo(promotion.minSpend()) < 0) {
+                break;
+            }
+            if (!promotion.isExpired(now)) {
+                result.add(promotion);
+            }
+        }
+
+        if (productIndex.isEmpty()) {
+            return result;
+        }
+
+        // 2. 指定商品的活動：依訂單中的商品查反向索引，統計每個活動命中的商品數
+        long[] productIds = distinctProductIds(order);
+        int[] hits = null;
+        for (long productId : productIds) {
+            int[] candidates = productIndex.get(productId);
+            if (candidates == null) {
+                continue;
+            }
+            if (hits == null) {
+                hits = new int[promotions.length];
+            }
+            for (int idx : candidates) {
+                hits[idx]++;
+            }
+        }
+        if (hits == null) {
+            return result;
+        }
+
+        for (int idx = 0; idx < hits.length; idx++) {
+            if (hits[idx] == 0) {
+                continue;
+            }
+            CompiledPromotion promotion = promotions[idx];
+            if (promotion.requiresAllProducts() && hits[idx] < promotion.productIds().length) {
+                continue;
+            }
+            if (promotion.minSpend() != null && total.compareTo(promotion.minSpend()) < 0) {
+                continue;
+            }
+            if (!promotion.isExpired(now)) {
+                result.add(promotion);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 計畫的有效期限 (null 代表不限)
+     */
+    public LocalDateTime getValidUntil() {
+        return validUntil;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    public Long getBrandId() {
+        return brandId;
+    }
+
+    public int size() {
+        return promotions.length;
+    }
+
+    private static long[] distinctProductIds(Order order) {
+        Collection<OrderItem> items = order.getItems() != null ? order.getItems() : List.of();
+        long[] ids = new long[items.size()];
+        int n = 0;
+        for (OrderItem item : items) {
+            // Product 可能是代理物件，getId() 不會觸發初始化
+            if (item.getProduct() != null && item.getProduct().getId() != null) {
+                ids[n++] = item.getProduct().getId();
+            }
+        }
+        Arrays.sort(ids, 0, n);
+
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || ids[distinct - 1] != ids[i]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return distinct == ids.length ? ids : Arrays.copyOf(ids, distinct);
+    }
+}
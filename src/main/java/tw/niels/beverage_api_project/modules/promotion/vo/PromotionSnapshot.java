@@ -0,0 +1,68 @@
+package tw.niels.beverage_api_project.modules.promotion.vo;
+
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 促銷活動快照 (存放於 Redis 的精簡格式)
+ * 只保留計算折扣需要的欄位與適用商品 ID，不序列化 Brand / Product 等關聯 Entity。
+ */
+public record PromotionSnapshot(
+        Long promotionId,
+        PromotionType type,
+        BigDecimal value,
+        BigDecimal minSpend,
+        LocalDateTime startDate,
+        LocalDateTime endDate,
+        List<Long> productIds,
+        Boolean stackable,
+        String stackGroup
+) {
+
+    /**
+     * 由 Entity 建立快照 (applicableProducts 需已載入)
+     */
+    public static PromotionSnapshot from(Promotion promotion) {
+        List<Long> productIds = promotion.getApplicableProducts().stream()
+                .map(Product::getId)
+                .sorted()
+                .toList();
+        return new PromotionSnapshot(promotion.getId(), promotion.getType(), promotion.getValue(),
+                promotion.getMinSpend(), promotion.getStartDate(), promotion.getEndDate(), productIds,
+                promotion.getIsStackable(), promotion.getStackGroup());
+    }
+
+    /**
+     * 還原為未受 JPA 管理的 Promotion，供計算器使用 (適用商品只帶有 ID)
+     */
+    public Promotion toPromotion() {
+        Promotion promotion = new Promotion();
+        promotion.setId(promotionId);
+        promotion.setType(type);
+        promotion.setValue(value);
+        promotion.setMinSpend(minSpend);
+        promotion.setStartDate(startDate);
+        promotion.setEndDate(endDate);
+        promotion.setIsActive(true);
+        promotion.setIsStackable(Boolean.TRUE.equals(stackable));
+        promotion.setStackGroup(stackGroup);
+
+        Set<Product> products = new HashSet<>();
+        if (productIds != null) {
+            for (Long productId : productIds) {
+                Product product = new Product();
+                product.setId(productId);
+                products.add(product);
+            }
+        }
+        promotion.setApplicableProducts(products);
+        return promotion;
+    }
+}
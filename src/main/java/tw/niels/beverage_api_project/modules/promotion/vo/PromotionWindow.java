@@ -0,0 +1,23 @@
+package tw.niels.beverage_api_project.modules.promotion.vo;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 品牌在一段時間內「進行中或即將開始」的促銷活動
+ * <p>
+ * 涵蓋 [loadedAt, coveredUntil] 期間內任何時間點有效的活動，
+ * 使用端依當下時間篩選，活動在 startDate / endDate 邊界準時生效或失效，不必等快取過期。
+ * </p>
+ *
+ * @param version      載入時的快取版本 (與 Redis 版本號不同時視為已失效)
+ * @param loadedAt     載入時間
+ * @param coveredUntil 涵蓋的最後時間點，超過後需重新載入
+ */
+public record PromotionWindow(
+        String version,
+        LocalDateTime loadedAt,
+        LocalDateTime coveredUntil,
+        List<PromotionSnapshot> promotions
+) {
+}
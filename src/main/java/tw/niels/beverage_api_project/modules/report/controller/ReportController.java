@@ -9,14 +9,17 @@ import org.springframework.web.bind.annotation.*;
 import tw.niels.beverage_api_project.common.constants.ApiPaths;
 import tw.niels.beverage_api_project.common.service.ControllerHelperService;
 import tw.niels.beverage_api_project.modules.report.dto.BrandSalesSummaryDto;
+import tw.niels.beverage_api_project.modules.report.dto.IntradayStoreSalesDto;
 import tw.niels.beverage_api_project.modules.report.dto.InventoryVarianceReportDto;
 import tw.niels.beverage_api_project.modules.report.dto.ProductSalesStatsDto;
 import tw.niels.beverage_api_project.modules.report.dto.StoreRankingDto;
 import tw.niels.beverage_api_project.modules.report.entity.DailyStoreStats;
 import tw.niels.beverage_api_project.modules.report.repository.DailyProductStatsRepository;
 import tw.niels.beverage_api_project.modules.report.repository.DailyStoreStatsRepository;
+import tw.niels.beverage_api_project.modules.report.service.IntradaySalesRollupService;
 import tw.niels.beverage_api_project.modules.report.service.InventoryReportService;
 import tw.niels.beverage_api_project.modules.report.service.ReportAggregationService;
+import tw.niels.beverage_api_project.modules.report.service.ReportAnalyticsCache;
 import tw.niels.beverage_api_project.modules.store.entity.Store;
 import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
 
@@ -37,19 +40,76 @@ public class ReportController {
     private final ControllerHelperService helperService;
     private final StoreRepository storeRepository;
     private final InventoryReportService inventoryReportService;
+    private final IntradaySalesRollupService intradaySalesRollupService;
+    private final ReportAnalyticsCache reportAnalyticsCache;
 
     public ReportController(DailyStoreStatsRepository dailyStoreStatsRepository,
                             DailyProductStatsRepository dailyProductStatsRepository,
                             ReportAggregationService reportAggregationService,
                             ControllerHelperService helperService,
                             StoreRepository storeRepository,
-                            InventoryReportService inventoryReportService) {
+                            InventoryReportService inventoryReportService,
+                            IntradaySalesRollupService intradaySalesRollupService,
+                            ReportAnalyticsCache reportAnalyticsCache) {
         this.dailyStoreStatsRepository = dailyStoreStatsRepository;
         this.dailyProductStatsRepository = dailyProductStatsRepository;
         this.reportAggregationService = reportAggregationService;
         this.helperService = helperService;
         this.storeRepository = storeRepository;
         this.inventoryReportService = inventoryReportService;
+        this.intradaySalesRollupService = intradaySalesRollupService;
+        this.reportAnalyticsCache = reportAnalyticsCache;
+    }
+
+    /**
+     * 【分店端】查詢分店今日至今的營收 (即時彙總)
+     * 用途：營業中查看今天的營收與熱銷商品，不需等待凌晨日結，也不掃描訂單資料表
+     * URL: GET /api/v1/reports/store-today?storeId=1
+     */
+    @GetMapping("/store-today")
+    @PreAuthorize("hasAnyRole('BRAND_ADMIN', 'MANAGER', 'STAFF')")
+    @Operation(
+            summary = "查詢分店今日至今營收",
+            description = "取得指定分店今日至今的營收統計與商品銷售排行，資料約有數秒延遲 (權限: 該分店員工或品牌管理員)"
+    )
+    public ResponseEntity<IntradayStoreSalesDto> getStoreTodaySales(@RequestParam Long storeId) {
+
+        helperService.validateStoreAccess(storeId);
+        Long brandId = helperService.getCurrentBrandId();
+
+        return ResponseEntity.ok(intradaySalesRollupService.getTodayStoreSales(brandId, storeId));
+    }
+
+    /**
+     * 【品牌端】查詢各分店今日至今的營收 (即時彙總)
+     * 用途：老闆在營業中查看各分店今天的業績
+     * URL: GET /api/v1/reports/brand-today
+     */
+    @GetMapping("/brand-today")
+    @PreAuthorize("hasAnyRole('BRAND_ADMIN')")
+    @Operation(
+            summary = "查詢各分店今日至今營收",
+            description = "取得品牌下各分店今日至今的營收統計，依實收金額排序，資料約有數秒延遲 (權限: 品牌管理員)"
+    )
+    public ResponseEntity<List<IntradayStoreSalesDto>> getBrandTodaySales() {
+
+        Long brandId = helperService.getCurrentBrandId();
+
+        List<IntradayStoreSalesDto> sales = intradaySalesRollupService.getTodayBrandSales(brandId);
+
+        Set<Long> storeIds = sales.stream()
+                .map(IntradayStoreSalesDto::getStoreId)
+                .collect(Collectors.toSet());
+
+        if (!storeIds.isEmpty()) {
+            Map<Long, String> storeNameMap = storeRepository.findByBrand_IdAndIdIn(brandId, storeIds).stream()
+                    .collect(Collectors.toMap(Store::getId, Store::getName));
+
+            sales.forEach(dto -> dto.setStoreName(
+                    storeNameMap.getOrDefault(dto.getStoreId(), "未知分店 (ID: " + dto.getStoreId() + ")")));
+        }
+
+        return ResponseEntity.ok(sales);
     }
 
     /**
@@ -96,9 +156,10 @@ public class ReportController {
             // 1. 驗證權限
             helperService.validateStoreAccess(storeId);
 
-            // 2. 查詢資料庫
-            List<ProductSalesStatsDto> stats = dailyProductStatsRepository
-                    .findProductSalesRanking(storeId, startDate, endDate);
+            // 2. 優先由記憶體快取計算，區間超出快取範圍時查詢資料庫
+            Long brandId = helperService.getCurrentBrandId();
+            List<ProductSalesStatsDto> stats = reportAnalyticsCache.rankProducts(brandId, storeId, startDate, endDate)
+                    .orElseGet(() -> dailyProductStatsRepository.findProductSalesRanking(storeId, startDate, endDate));
 
             return ResponseEntity.ok(stats);
         }
@@ -120,8 +181,8 @@ public class ReportController {
 
         Long brandId = helperService.getCurrentBrandId();
 
-        BrandSalesSummaryDto summary = dailyStoreStatsRepository
-                .aggregateBrandSales(brandId, startDate, endDate);
+        BrandSalesSummaryDto summary = reportAnalyticsCache.summarize(brandId, startDate, endDate)
+                .orElseGet(() -> dailyStoreStatsRepository.aggregateBrandSales(brandId, startDate, endDate));
 
         return ResponseEntity.ok(summary);
     }
@@ -143,8 +204,8 @@ public class ReportController {
 
         Long brandId = helperService.getCurrentBrandId();
 
-        List<StoreRankingDto> ranking = dailyStoreStatsRepository
-                .findTopStoresByRevenue(brandId, startDate, endDate);
+        List<StoreRankingDto> ranking = reportAnalyticsCache.rankStores(brandId, startDate, endDate)
+                .orElseGet(() -> dailyStoreStatsRepository.findTopStoresByRevenue(brandId, startDate, endDate));
 
         Set<Long> storeIds = ranking.stream()
                 .map(StoreRankingDto::getStoreId)
@@ -182,6 +243,26 @@ public class ReportController {
         return ResponseEntity.ok("已手動觸發 " + date + " 的報表結算。");
     }
 
+    /**
+     * 【測試/管理用】以已結案訂單重算理論消耗累計表
+     * 用途：補回實例當機遺失的即時消耗，或在啟用即時消耗前/停用後回填該期間的用量
+     * URL: POST /api/v1/reports/rebuild-inventory-usage?startDate=2023-10-01&endDate=2023-10-20
+     */
+    @PostMapping("/rebuild-inventory-usage")
+    @PreAuthorize("hasRole('BRAND_ADMIN')") // 與手動日結相同，正式環境建議只給 PLATFORM_ADMIN
+    @Operation(
+            summary = "重算理論消耗",
+            description = "以已結案訂單重算指定區間 (今天以前) 的理論消耗累計表，可重複執行 (權限: 品牌管理員)"
+    )
+    public ResponseEntity<String> rebuildInventoryUsage(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+
+        int rows = inventoryReportService.rebuildTheoreticalUsage(startDate, endDate);
+
+        return ResponseEntity.ok("已重算 " + startDate + " ~ " + endDate + " 的理論消耗，共 " + rows + " 筆。");
+    }
+
     /**
      * 【分店端】查詢庫存耗損分析報表
      */
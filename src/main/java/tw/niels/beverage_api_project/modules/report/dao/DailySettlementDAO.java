@@ -0,0 +1,56 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集合式日結 DAO 介面
+ * 以 INSERT ... SELECT ... GROUP BY store_id 一次計算所有分店 (或單一分區) 的日結統計，需在同一個交易中呼叫。
+ * 分區條件為 MOD(store_id, partitions) = partition；partitions = 1 時涵蓋全部分店。
+ */
+public interface DailySettlementDAO {
+
+    /**
+     * 刪除既有的日結資料 (冪等：重跑同一天時覆蓋)
+     */
+    void deleteStats(LocalDate date, int partitions, int partition);
+
+    /**
+     * 分區內的所有分店 ID (依 ID 排序)
+     */
+    List<Long> findStoreIds(int partitions, int partition);
+
+    /**
+     * 每間分店一筆 daily_store_stats (沒有訂單的分店數值為 0)
+     *
+     * @param storeIds 要結算的分店 (findStoreIds 的結果)
+     * @param ids      與 storeIds 一一對應的新 ID
+     * @return 新增筆數
+     */
+    int insertStoreStats(long[] storeIds, long[] ids, LocalDate date, LocalDateTime start, LocalDateTime end,
+                         int partitions, int partition);
+
+    /**
+     * 將每間分店每個售出商品的統計 (含分類名稱) 寫入交易內的暫存表
+     *
+     * @return 暫存筆數 (insertProductStats 需要的 ID 數量)
+     */
+    int stageProductStats(LocalDate date, LocalDateTime start, LocalDateTime end, int partitions, int partition);
+
+    /**
+     * 由暫存表新增 daily_product_stats (需與 stageProductStats 在同一個交易中呼叫)
+     *
+     * @param ids 新 ID，第 N 筆暫存資料使用第 N 個 ID
+     * @return 新增筆數
+     */
+    int insertProductStats(long[] ids, LocalDate date);
+
+    /**
+     * 統計各分店在區間內仍未結案的訂單數
+     *
+     * @return Map<分店 ID, 未結案訂單數> (只包含有未結案訂單的分店)
+     */
+    Map<Long, Long> countUnclosedOrdersByStore(LocalDateTime start, LocalDateTime end, int partitions, int partition);
+}
@@ -0,0 +1,175 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集合式日結 DAO 實作
+ * 使用 JdbcTemplate 執行實際的 SQL 操作。統計口徑與 StoreSettlementService (逐店) 相同。
+ */
+@Repository
+public class DailySettlementDAOImpl implements DailySettlementDAO {
+
+    // 與 StoreSettlementService 的未結案狀態一致
+    private static final List<String> UNCLOSED_STATUSES =
+            List.of("PREPARING", "READY_FOR_PICKUP", "PENDING", "HELD", "AWAITING_ACCEPTANCE");
+
+    // 商品日結的暫存表 (交易結束時自動刪除)
+    private static final String PRODUCT_STAGING_TABLE = "daily_product_stats_staging";
+
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public DailySettlementDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public void deleteStats(LocalDate date, int partitions, int partition) {
+        MapSqlParameterSource params = partitionParams(partitions, partition).addValue("date", Date.valueOf(date));
+        namedParameterJdbcTemplate.update("DELETE FROM daily_product_stats " +
+                "WHERE date = :date AND MOD(store_id, :partitions) = :partition", params);
+        namedParameterJdbcTemplate.update("DELETE FROM daily_store_stats " +
+                "WHERE date = :date AND MOD(store_id, :partitions) = :partition", params);
+    }
+
+    @Override
+    public List<Long> findStoreIds(int partitions, int partition) {
+        return namedParameterJdbcTemplate.queryForList("SELECT store_id FROM stores " +
+                "WHERE MOD(store_id, :partitions) = :partition ORDER BY store_id",
+                partitionParams(partitions, partition), Long.class);
+    }
+
+    @Override
+    public int insertStoreStats(long[] storeIds, long[] ids, LocalDate date, LocalDateTime start, LocalDateTime end,
+                                int partitions, int partition) {
+        // 分店與 ID 以陣列參數成對傳入；訂單狀態與付款方式在同一次掃描中以 FILTER 分別加總
+        String sql = "INSERT INTO daily_store_stats (daily_store_stats_id, store_id, brand_id, date, " +
+                "    total_orders, total_revenue, total_discount, final_revenue, cancelled_orders, " +
+                "    cash_total, line_pay_total, created_at) " +
+                "SELECT k.id, s.store_id, s.brand_id, :date, " +
+                "       COALESCE(o.closed_orders, 0), COALESCE(o.total_revenue, 0), COALESCE(o.total_discount, 0), " +
+                "       COALESCE(o.final_revenue, 0), COALESCE(o.cancelled_orders, 0), " +
+                "       COALESCE(o.cash_total, 0), COALESCE(o.line_pay_total, 0), CURRENT_TIMESTAMP " +
+                "FROM unnest(CAST(:storeIds AS bigint[]), CAST(:ids AS bigint[])) AS k(store_id, id) " +
+                "JOIN stores s ON s.store_id = k.store_id " +
+                "LEFT JOIN ( " +
+                "    SELECT o.store_id, " +
+                "           COUNT(*) FILTER (WHERE o.status_code = 'CLOSED') AS closed_orders, " +
+                "           SUM(o.total_amount) FILTER (WHERE o.status_code = 'CLOSED') AS total_revenue, " +
+                "           SUM(o.discount_amount) FILTER (WHERE o.status_code = 'CLOSED') AS total_discount, " +
+                "           SUM(o.final_amount) FILTER (WHERE o.status_code = 'CLOSED') AS final_revenue, " +
+                "           COUNT(*) FILTER (WHERE o.status_code = 'CANCELLED') AS cancelled_orders, " +
+                "           SUM(o.final_amount) FILTER (WHERE o.status_code = 'CLOSED' AND UPPER(pm.code) = 'CASH') AS cash_total, " +
+                "           SUM(o.final_amount) FILTER (WHERE o.status_code = 'CLOSED' AND UPPER(pm.code) = 'LINE_PAY') AS line_pay_total " +
+                "    FROM orders o " +
+                "    LEFT JOIN payment_methods pm ON pm.payment_method_id = o.payment_method_id " +
+                "    WHERE o.completed_time BETWEEN :start AND :end " +
+                "      AND MOD(o.store_id, :partitions) = :partition " +
+                "    GROUP BY o.store_id " +
+                ") o ON o.store_id = s.store_id";
+
+        MapSqlParameterSource params = rangeParams(date, start, end, partitions, partition)
+                .addValue("storeIds", storeIds)
+                .addValue("ids", ids);
+        return namedParameterJdbcTemplate.update(sql, params);
+    }
+
+    @Override
+    public int stageProductStats(LocalDate date, LocalDateTime start, LocalDateTime end, int partitions, int partition) {
+        // 分類取排序最前的一個；商品不屬於分店的品牌時視為未分類。列號供 insertProductStats 對應 ID
+        namedParameterJdbcTemplate.getJdbcTemplate().execute("CREATE TEMP TABLE " + PRODUCT_STAGING_TABLE + " (" +
+                "row_no bigint NOT NULL, " +
+                "store_id bigint NOT NULL, " +
+                "brand_id bigint NOT NULL, " +
+                "product_id bigint NOT NULL, " +
+                "product_name text NOT NULL, " +
+                "category_name text NOT NULL, " +
+                "quantity_sold bigint NOT NULL, " +
+                "total_sales_amount numeric NOT NULL" +
+                ") ON COMMIT DROP");
+
+        String sql = "INSERT INTO " + PRODUCT_STAGING_TABLE + " " +
+                "SELECT ROW_NUMBER() OVER (ORDER BY x.store_id, x.product_id) AS row_no, " +
+                "       x.store_id, x.brand_id, x.product_id, p.name AS product_name, " +
+                "       COALESCE(c.name, '未分類') AS category_name, x.quantity_sold, x.total_sales_amount " +
+                "FROM ( " +
+                "    SELECT o.store_id, s.brand_id, oi.product_id, " +
+                "           SUM(oi.quantity) AS quantity_sold, SUM(oi.subtotal) AS total_sales_amount " +
+                "    FROM orders o " +
+                "    JOIN stores s ON s.store_id = o.store_id " +
+                "    JOIN order_items oi ON oi.order_id = o.order_id " +
+                "    WHERE o.status_code = 'CLOSED' AND o.completed_time BETWEEN :start AND :end " +
+                "      AND MOD(o.store_id, :partitions) = :partition " +
+                "    GROUP BY o.store_id, s.brand_id, oi.product_id " +
+                ") x " +
+                "JOIN products p ON p.product_id = x.product_id " +
+                "LEFT JOIN LATERAL ( " +
+                "    SELECT c.name FROM product_category_mappings pcm " +
+                "    JOIN categories c ON c.category_id = pcm.category_id " +
+                "    WHERE pcm.product_id = p.product_id AND p.brand_id = x.brand_id " +
+                "    ORDER BY c.sort_order, c.category_id LIMIT 1 " +
+                ") c ON true";
+
+        return namedParameterJdbcTemplate.update(sql, rangeParams(date, start, end, partitions, partition));
+    }
+
+    @Override
+    public int insertProductStats(long[] ids, LocalDate date) {
+        // 第 N 列使用陣列中的第 N 個 ID
+        String sql = "INSERT INTO daily_product_stats (daily_product_stats_id, store_id, brand_id, product_id, " +
+                "    product_name, category_name, date, quantity_sold, total_sales_amount, created_at) " +
+                "SELECT k.id, x.store_id, x.brand_id, x.product_id, x.product_name, x.category_name, :date, " +
+                "       x.quantity_sold, x.total_sales_amount, CURRENT_TIMESTAMP " +
+                "FROM " + PRODUCT_STAGING_TABLE + " x " +
+                "JOIN unnest(CAST(:ids AS bigint[])) WITH ORDINALITY AS k(id, row_no) ON k.row_no = x.row_no";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("ids", ids)
+                .addValue("date", Date.valueOf(date));
+        return namedParameterJdbcTemplate.update(sql, params);
+    }
+
+    @Override
+    public Map<Long, Long> countUnclosedOrdersByStore(LocalDateTime start, LocalDateTime end,
+                                                      int partitions, int partition) {
+        String sql = "SELECT o.store_id, COUNT(*) AS unclosed FROM orders o " +
+                "WHERE o.order_time BETWEEN :start AND :end AND o.status_code IN (:statuses) " +
+                "  AND MOD(o.store_id, :partitions) = :partition " +
+                "GROUP BY o.store_id";
+
+        MapSqlParameterSource params = partitionParams(partitions, partition)
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("statuses", UNCLOSED_STATUSES);
+
+        Map<Long, Long> counts = new HashMap<>();
+        namedParameterJdbcTemplate.query(sql, params, rs -> {
+            counts.put(rs.getLong("store_id"), rs.getLong("unclosed"));
+        });
+        return counts;
+    }
+
+    private static MapSqlParameterSource rangeParams(LocalDate date, LocalDateTime start, LocalDateTime end,
+                                                     int partitions, int partition) {
+        return partitionParams(partitions, partition)
+                .addValue("date", Date.valueOf(date))
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end));
+    }
+
+    private static MapSqlParameterSource partitionParams(int partitions, int partition) {
+        return new MapSqlParameterSource()
+                .addValue("partitions", partitions)
+                .addValue("partition", partition);
+    }
+}
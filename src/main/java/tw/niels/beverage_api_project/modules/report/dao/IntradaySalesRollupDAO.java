@@ -0,0 +1,54 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import tw.niels.beverage_api_project.modules.report.dto.IntradayStoreSalesDto;
+import tw.niels.beverage_api_project.modules.report.dto.ProductSalesStatsDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 當日即時銷售彙總 DAO 介面
+ * 供 IntradaySalesRollupService 累加寫入 hourly_store_sales / hourly_product_sales，
+ * 以及「今日至今」報表讀取與凌晨日結的校正。
+ */
+public interface IntradaySalesRollupDAO {
+
+    /**
+     * 批次累加分店時段統計 (INSERT ... ON CONFLICT DO UPDATE，需在交易中呼叫；略過已校正的時段)
+     */
+    void batchUpsertStoreSales(List<StoreSalesDelta> deltas);
+
+    /**
+     * 批次累加商品時段統計 (INSERT ... ON CONFLICT DO UPDATE，需在交易中呼叫；略過已校正的時段)
+     */
+    void batchUpsertProductSales(List<ProductSalesDelta> deltas);
+
+    /**
+     * 以訂單資料重算 [start, end) 之間的時段統計 (先刪除再寫入並標記為已校正，需在交易中呼叫)
+     */
+    void reconcile(LocalDateTime start, LocalDateTime end, int partitions, int partition);
+
+    /**
+     * 刪除早於指定時段的統計
+     */
+    int purgeBefore(LocalDateTime cutoff);
+
+    /**
+     * 加總各分店自指定時段起的統計 (storeId 為 null 時查詢整個品牌)
+     */
+    List<IntradayStoreSalesDto> sumStoreSales(Long brandId, Long storeId, LocalDateTime from);
+
+    /**
+     * 加總單一分店自指定時段起的商品統計 (依銷售總額排序)
+     */
+    List<ProductSalesStatsDto> sumProductSales(Long brandId, Long storeId, LocalDateTime from);
+
+    record StoreSalesDelta(Long storeId, Long brandId, LocalDateTime bucketHour,
+                           int closedOrders, int cancelledOrders,
+                           BigDecimal totalRevenue, BigDecimal totalDiscount, BigDecimal finalRevenue,
+                           BigDecimal cashTotal, BigDecimal linePayTotal) {}
+
+    record ProductSalesDelta(Long storeId, Long brandId, Long productId, LocalDateTime bucketHour,
+                             int quantitySold, BigDecimal totalSalesAmount) {}
+}
@@ -0,0 +1,227 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import org.jetbrains.annotations.NotNull;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+import tw.niels.beverage_api_project.modules.report.dto.IntradayStoreSalesDto;
+import tw.niels.beverage_api_project.modules.report.dto.ProductSalesStatsDto;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * 當日即時銷售彙總 DAO 實作
+ * 使用 JdbcTemplate 執行實際的 SQL 操作。校正的統計口徑與 DailySettlementDAO 相同，
+ * 但取消訂單依下單時間歸入時段 (取消訂單沒有完成時間)。
+ */
+@Repository
+public class IntradaySalesRollupDAOImpl implements IntradaySalesRollupDAO {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    public IntradaySalesRollupDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public void batchUpsertStoreSales(List<StoreSalesDelta> deltas) {
+        if (deltas == null || deltas.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO hourly_store_sales (store_id, brand_id, bucket_hour, closed_orders, cancelled_orders, " +
+                "    total_revenue, total_discount, final_revenue, cash_total, line_pay_total, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT (store_id, bucket_hour) DO UPDATE SET " +
+                "    closed_orders = hourly_store_sales.closed_orders + EXCLUDED.closed_orders, " +
+                "    cancelled_orders = hourly_store_sales.cancelled_orders + EXCLUDED.cancelled_orders, " +
+                "    total_revenue = hourly_store_sales.total_revenue + EXCLUDED.total_revenue, " +
+                "    total_discount = hourly_store_sales.total_discount + EXCLUDED.total_discount, " +
+                "    final_revenue = hourly_store_sales.final_revenue + EXCLUDED.final_revenue, " +
+                "    cash_total = hourly_store_sales.cash_total + EXCLUDED.cash_total, " +
+                "    line_pay_total = hourly_store_sales.line_pay_total + EXCLUDED.line_pay_total, " +
+                "    updated_at = CURRENT_TIMESTAMP " +
+                "WHERE NOT hourly_store_sales.reconciled";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                StoreSalesDelta delta = deltas.get(i);
+                ps.setLong(1, delta.storeId());
+                ps.setLong(2, delta.brandId());
+                ps.setTimestamp(3, Timestamp.valueOf(delta.bucketHour()));
+                ps.setInt(4, delta.closedOrders());
+                ps.setInt(5, delta.cancelledOrders());
+                ps.setBigDecimal(6, delta.totalRevenue());
+                ps.setBigDecimal(7, delta.totalDiscount());
+                ps.setBigDecimal(8, delta.finalRevenue());
+                ps.setBigDecimal(9, delta.cashTotal());
+                ps.setBigDecimal(10, delta.linePayTotal());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    @Override
+    public void batchUpsertProductSales(List<ProductSalesDelta> deltas) {
+        if (deltas == null || deltas.isEmpty()) {
+            return;
+        }
+
+        String sql = "INSERT INTO hourly_product_sales (store_id, brand_id, product_id, bucket_hour, " +
+                "    quantity_sold, total_sales_amount, updated_at) " +
+                "VALUES (?, ?, ?, ?, ?, ?, CURRENT_TIMESTAMP) " +
+                "ON CONFLICT (store_id, bucket_hour, product_id) DO UPDATE SET " +
+                "    quantity_sold = hourly_product_sales.quantity_sold + EXCLUDED.quantity_sold, " +
+                "    total_sales_amount = hourly_product_sales.total_sales_amount + EXCLUDED.total_sales_amount, " +
+                "    updated_at = CURRENT_TIMESTAMP " +
+                "WHERE NOT hourly_product_sales.reconciled";
+
+        jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(@NotNull PreparedStatement ps, int i) throws SQLException {
+                ProductSalesDelta delta = deltas.get(i);
+                ps.setLong(1, delta.storeId());
+                ps.setLong(2, delta.brandId());
+                ps.setLong(3, delta.productId());
+                ps.setTimestamp(4, Timestamp.valueOf(delta.bucketHour()));
+                ps.setInt(5, delta.quantitySold());
+                ps.setBigDecimal(6, delta.totalSalesAmount());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    /**
+     * 校正寫入的時段列標記為 reconciled，之後的累加 (batchUpsert*) 一律略過這些列：
+     * 其他實例在校正前擷取、校正後才寫入的統計已包含在校正結果中。
+     * 標記在 ON CONFLICT 的 WHERE 判斷，等待校正交易提交後以最新的資料列判斷，不會與校正互相覆蓋。
+     */
+    @Override
+    public void reconcile(LocalDateTime start, LocalDateTime end, int partitions, int partition) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.valueOf(start))
+                .addValue("end", Timestamp.valueOf(end))
+                .addValue("partitions", partitions)
+                .addValue("partition", partition);
+
+        namedParameterJdbcTemplate.update("DELETE FROM hourly_product_sales " +
+                "WHERE bucket_hour >= :start AND bucket_hour < :end AND MOD(store_id, :partitions) = :partition", params);
+        namedParameterJdbcTemplate.update("DELETE FROM hourly_store_sales " +
+                "WHERE bucket_hour >= :start AND bucket_hour < :end AND MOD(store_id, :partitions) = :partition", params);
+
+        // 1. 分店時段統計：結案訂單依完成時間、取消訂單依下單時間 (時段以連線時區計算，與應用程式一致)
+        namedParameterJdbcTemplate.update("INSERT INTO hourly_store_sales (store_id, brand_id, bucket_hour, " +
+                "    closed_orders, cancelled_orders, total_revenue, total_discount, final_revenue, cash_total, line_pay_total, reconciled) " +
+                "SELECT x.store_id, x.brand_id, x.bucket_hour, " +
+                "       COUNT(*) FILTER (WHERE x.status_code = 'CLOSED'), " +
+                "       COUNT(*) FILTER (WHERE x.status_code = 'CANCELLED'), " +
+                "       COALESCE(SUM(x.total_amount) FILTER (WHERE x.status_code = 'CLOSED'), 0), " +
+                "       COALESCE(SUM(x.discount_amount) FILTER (WHERE x.status_code = 'CLOSED'), 0), " +
+                "       COALESCE(SUM(x.final_amount) FILTER (WHERE x.status_code = 'CLOSED'), 0), " +
+                "       COALESCE(SUM(x.final_amount) FILTER (WHERE x.status_code = 'CLOSED' AND UPPER(pm.code) = 'CASH'), 0), " +
+                "       COALESCE(SUM(x.final_amount) FILTER (WHERE x.status_code = 'CLOSED' AND UPPER(pm.code) = 'LINE_PAY'), 0), " +
+                "       true " +
+                "FROM ( " +
+                "    SELECT o.store_id, o.brand_id, o.status_code, o.total_amount, o.discount_amount, o.final_amount, " +
+                "           o.payment_method_id, date_trunc('hour', o.completed_time)::timestamp AS bucket_hour " +
+                "    FROM orders o " +
+                "    WHERE o.status_code = 'CLOSED' AND o.completed_time >= :start AND o.completed_time < :end " +
+                "      AND MOD(o.store_id, :partitions) = :partition " +
+                "    UNION ALL " +
+                "    SELECT o.store_id, o.brand_id, o.status_code, o.total_amount, o.discount_amount, o.final_amount, " +
+                "           o.payment_method_id, date_trunc('hour', o.order_time)::timestamp " +
+                "    FROM orders o " +
+                "    WHERE o.status_code = 'CANCELLED' AND o.order_time >= :start AND o.order_time < :end " +
+                "      AND MOD(o.store_id, :partitions) = :partition " +
+                ") x " +
+                "LEFT JOIN payment_methods pm ON pm.payment_method_id = x.payment_method_id " +
+                "GROUP BY x.store_id, x.brand_id, x.bucket_hour", params);
+
+        // 2. 商品時段統計 (僅結案訂單)
+        namedParameterJdbcTemplate.update("INSERT INTO hourly_product_sales (store_id, brand_id, product_id, bucket_hour, " +
+                "    quantity_sold, total_sales_amount, reconciled) " +
+                "SELECT o.store_id, o.brand_id, oi.product_id, date_trunc('hour', o.completed_time)::timestamp, " +
+                "       SUM(oi.quantity), SUM(oi.subtotal), true " +
+                "FROM orders o " +
+                "JOIN order_items oi ON oi.order_id = o.order_id " +
+                "WHERE o.status_code = 'CLOSED' AND o.completed_time >= :start AND o.completed_time < :end " +
+                "  AND MOD(o.store_id, :partitions) = :partition " +
+                "GROUP BY o.store_id, o.brand_id, oi.product_id, date_trunc('hour', o.completed_time)", params);
+    }
+
+    @Override
+    public int purgeBefore(LocalDateTime cutoff) {
+        Timestamp timestamp = Timestamp.valueOf(cutoff);
+        return jdbcTemplate.update("DELETE FROM hourly_product_sales WHERE bucket_hour < ?", timestamp)
+                + jdbcTemplate.update("DELETE FROM hourly_store_sales WHERE bucket_hour < ?", timestamp);
+    }
+
+    @Override
+    public List<IntradayStoreSalesDto> sumStoreSales(Long brandId, Long storeId, LocalDateTime from) {
+        // 每間分店最多 24 個時段，查詢量只與分店數成正比
+        String sql = "SELECT h.store_id, SUM(h.closed_orders) AS closed_orders, SUM(h.cancelled_orders) AS cancelled_orders, " +
+                "       SUM(h.total_revenue) AS total_revenue, SUM(h.total_discount) AS total_discount, " +
+                "       SUM(h.final_revenue) AS final_revenue, SUM(h.cash_total) AS cash_total, " +
+                "       SUM(h.line_pay_total) AS line_pay_total, MAX(h.updated_at) AS last_updated_at " +
+                "FROM hourly_store_sales h " +
+                "WHERE h.brand_id = :brandId AND h.bucket_hour >= :from " +
+                (storeId != null ? "AND h.store_id = :storeId " : "") +
+                "GROUP BY h.store_id " +
+                "ORDER BY final_revenue DESC, h.store_id";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("brandId", brandId)
+                .addValue("storeId", storeId)
+                .addValue("from", Timestamp.valueOf(from));
+
+        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> {
+            IntradayStoreSalesDto dto = new IntradayStoreSalesDto();
+            dto.setStoreId(rs.getLong("store_id"));
+            dto.setTotalOrders(rs.getInt("closed_orders"));
+            dto.setCancelledOrders(rs.getInt("cancelled_orders"));
+            dto.setTotalRevenue(rs.getBigDecimal("total_revenue"));
+            dto.setTotalDiscount(rs.getBigDecimal("total_discount"));
+            dto.setFinalRevenue(rs.getBigDecimal("final_revenue"));
+            dto.setCashTotal(rs.getBigDecimal("cash_total"));
+            dto.setLinePayTotal(rs.getBigDecimal("line_pay_total"));
+            dto.setLastUpdatedAt(rs.getObject("last_updated_at", OffsetDateTime.class));
+            return dto;
+        });
+    }
+
+    @Override
+    public List<ProductSalesStatsDto> sumProductSales(Long brandId, Long storeId, LocalDateTime from) {
+        String sql = "SELECT h.product_id, p.name AS product_name, SUM(h.quantity_sold) AS total_quantity, " +
+                "       SUM(h.total_sales_amount) AS total_sales_amount " +
+                "FROM hourly_product_sales h " +
+                "LEFT JOIN products p ON p.product_id = h.product_id " +
+                "WHERE h.brand_id = ? AND h.store_id = ? AND h.bucket_hour >= ? " +
+                "GROUP BY h.product_id, p.name " +
+                "ORDER BY total_sales_amount DESC, h.product_id";
+
+        return jdbcTemplate.query(sql, (rs, rowNum) -> new ProductSalesStatsDto(
+                rs.getLong("product_id"),
+                rs.getString("product_name"),
+                rs.getLong("total_quantity"),
+                rs.getBigDecimal("total_sales_amount")
+        ), brandId, storeId, Timestamp.valueOf(from));
+    }
+}
@@ -0,0 +1,62 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 庫存差異報表 DAO 介面
+ * 以單一 SQL 計算品牌所有原物料的期初、期末、進貨與理論消耗，查詢次數不隨原物料數量增加。
+ */
+public interface InventoryVarianceDAO {
+
+    /**
+     * 查詢報表資料列
+     *
+     * @param startInstant         期初時間點 (含)
+     * @param endInstant           期末時間點 (含)
+     * @param usageSource          理論消耗來源 (NONE 時理論消耗欄位為 0，由呼叫端另行計算)
+     */
+    List<VarianceRow> findVarianceRows(Long brandId, Long storeId,
+                                       LocalDate startDate, LocalDate endDate,
+                                       Instant startInstant, Instant endInstant,
+                                       UsageSource usageSource);
+
+    /**
+     * 以單向游標 (forward-only cursor) 逐列讀取區間內已結案訂單的明細，不在記憶體中保留結果
+     * 規格列與加料選項列分開送出；需在交易中呼叫，PostgreSQL 才會依 fetch size 分批取回。
+     */
+    void streamClosedOrderLines(Long brandId, Long storeId, Instant startInstant, Instant endInstant,
+                                OrderLineHandler handler);
+
+    /**
+     * 找出區間內缺少規格(Variant)資訊的已結案訂單品項 (沒有則回傳 null)
+     */
+    MissingVariantTuple findMissingVariantLine(Long brandId, Long storeId, Instant startInstant, Instant endInstant);
+
+    enum UsageSource {
+        // 即時消耗累計表 (inventory_theoretical_usage)
+        PRECOMPUTED,
+        // 在資料庫中聚合區間內的訂單與配方
+        REPLAY,
+        // 不計算
+        NONE
+    }
+
+    @FunctionalInterface
+    interface OrderLineHandler {
+        /**
+         * @param variantId 規格 ID (加料選項列或缺少規格時為 0)
+         * @param optionId  加料選項 ID (規格列為 0)
+         * @param quantity  品項數量
+         */
+        void onLine(long variantId, long optionId, int quantity);
+    }
+
+    record VarianceRow(Long itemId, String itemName, String unit,
+                       BigDecimal openingQuantity, BigDecimal restockQuantity, BigDecimal closingQuantity,
+                       BigDecimal theoreticalUsage) {}
+
+    record MissingVariantTuple(String orderNumber, Long orderItemId, String productName) {}
+}
@@ -0,0 +1,177 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 庫存差異報表 DAO 實作
+ * 使用 JdbcTemplate 執行實際的 SQL 操作。
+ */
+@Repository
+public class InventoryVarianceDAOImpl implements InventoryVarianceDAO {
+
+    // 期初 / 期末 / 進貨：一次掃描分店在期末之前的異動紀錄
+    // closing_rank：每個原物料最後一筆；period_rank：期初時間點前 (含) 與之後各自排序，期初取前段的第一筆
+    private static final String BALANCES_SUBQUERY =
+            "SELECT tx.inventory_item_id, " +
+            "       MAX(tx.balance_after) FILTER (WHERE tx.period_rank = 1 AND tx.created_at <= :startTime) AS opening_quantity, " +
+            "       MAX(tx.balance_after) FILTER (WHERE tx.closing_rank = 1) AS closing_quantity, " +
+            "       SUM(tx.change_amount) FILTER (WHERE tx.reason_type = 'RESTOCK' AND tx.created_at > :startTime) AS restock_quantity " +
+            "FROM ( " +
+            "    SELECT t.inventory_item_id, t.balance_after, t.change_amount, t.reason_type, t.created_at, " +
+            "           ROW_NUMBER() OVER (PARTITION BY t.inventory_item_id " +
+            "                              ORDER BY t.created_at DESC, t.transaction_id DESC) AS closing_rank, " +
+            "           ROW_NUMBER() OVER (PARTITION BY t.inventory_item_id, t.created_at <= :startTime " +
+            "                              ORDER BY t.created_at DESC, t.transaction_id DESC) AS period_rank " +
+            "    FROM inventory_transactions t " +
+            "    WHERE t.store_id = :storeId AND t.created_at <= :endTime " +
+            ") tx GROUP BY tx.inventory_item_id";
+
+    // 理論消耗：即時消耗累計表
+    private static final String PRECOMPUTED_USAGE_SUBQUERY =
+            "SELECT inventory_item_id, SUM(quantity) AS quantity " +
+            "FROM inventory_theoretical_usage " +
+            "WHERE store_id = :storeId AND usage_date BETWEEN :startDate AND :endDate " +
+            "GROUP BY inventory_item_id";
+
+    // 理論消耗：只聚合區間內已結案的訂單 (規格配方 + 加料選項配方)
+    private static final String REPLAY_USAGE_SUBQUERY =
+            "SELECT x.inventory_item_id, SUM(x.quantity) AS quantity FROM ( " +
+            "    SELECT r.inventory_item_id, r.quantity * oi.quantity AS quantity " +
+            "    FROM orders o " +
+            "    JOIN order_items oi ON oi.order_id = o.order_id " +
+            "    JOIN recipes r ON r.variant_id = oi.variant_id " +
+            "    WHERE o.brand_id = :brandId AND o.store_id = :storeId AND o.status_code = 'CLOSED' " +
+            "      AND o.completed_time BETWEEN :startTime AND :endTime " +
+            "    UNION ALL " +
+            "    SELECT r.inventory_item_id, r.quantity * oi.quantity AS quantity " +
+            "    FROM orders o " +
+            "    JOIN order_items oi ON oi.order_id = o.order_id " +
+            "    JOIN order_item_options oio ON oio.order_item_id = oi.order_item_id " +
+            "    JOIN recipes r ON r.option_id = oio.option_id " +
+            "    WHERE o.brand_id = :brandId AND o.store_id = :storeId AND o.status_code = 'CLOSED' " +
+            "      AND o.completed_time BETWEEN :startTime AND :endTime " +
+            ") x GROUP BY x.inventory_item_id";
+
+    private static final String NO_USAGE_SUBQUERY =
+            "SELECT NULL::bigint AS inventory_item_id, NULL::numeric AS quantity WHERE false";
+
+    // 串流模式：規格列 (option_id = 0) 與加料選項列 (variant_id = 0)，不排序、不聚合
+    private static final String ORDER_LINE_STREAM_SQL =
+            "SELECT COALESCE(oi.variant_id, 0) AS variant_id, 0 AS option_id, oi.quantity " +
+            "FROM orders o " +
+            "JOIN order_items oi ON oi.order_id = o.order_id " +
+            "WHERE o.brand_id = :brandId AND o.store_id = :storeId AND o.status_code = 'CLOSED' " +
+            "  AND o.completed_time BETWEEN :startTime AND :endTime " +
+            "UNION ALL " +
+            "SELECT 0 AS variant_id, oio.option_id, oi.quantity " +
+            "FROM orders o " +
+            "JOIN order_items oi ON oi.order_id = o.order_id " +
+            "JOIN order_item_options oio ON oio.order_item_id = oi.order_item_id " +
+            "WHERE o.brand_id = :brandId AND o.store_id = :storeId AND o.status_code = 'CLOSED' " +
+            "  AND o.completed_time BETWEEN :startTime AND :endTime";
+
+    // 以原物料為主表 (沒有異動的原物料也要出現在報表)
+    private static final String REPORT_SQL =
+            "SELECT i.inventory_item_id, i.name, i.unit, " +
+            "       COALESCE(b.opening_quantity, 0) AS opening_quantity, " +
+            "       COALESCE(b.restock_quantity, 0) AS restock_quantity, " +
+            "       COALESCE(b.closing_quantity, 0) AS closing_quantity, " +
+            "       COALESCE(u.quantity, 0) AS theoretical_usage " +
+            "FROM inventory_items i " +
+            "LEFT JOIN (%s) b ON b.inventory_item_id = i.inventory_item_id " +
+            "LEFT JOIN (%s) u ON u.inventory_item_id = i.inventory_item_id " +
+            "WHERE i.brand_id = :brandId " +
+            "ORDER BY i.inventory_item_id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    // 串流查詢每次從資料庫取回的筆數
+    @Value("${app.report.inventory-variance.stream-fetch-size:5000}")
+    private int streamFetchSize;
+
+    public InventoryVarianceDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+    }
+
+    @Override
+    public List<VarianceRow> findVarianceRows(Long brandId, Long storeId,
+                                              LocalDate startDate, LocalDate endDate,
+                                              Instant startInstant, Instant endInstant,
+                                              UsageSource usageSource) {
+        String usageSubquery = switch (usageSource) {
+            case PRECOMPUTED -> PRECOMPUTED_USAGE_SUBQUERY;
+            case REPLAY -> REPLAY_USAGE_SUBQUERY;
+            case NONE -> NO_USAGE_SUBQUERY;
+        };
+        String sql = String.format(REPORT_SQL, BALANCES_SUBQUERY, usageSubquery);
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("brandId", brandId)
+                .addValue("storeId", storeId)
+                .addValue("startDate", Date.valueOf(startDate))
+                .addValue("endDate", Date.valueOf(endDate))
+                .addValue("startTime", Timestamp.from(startInstant))
+                .addValue("endTime", Timestamp.from(endInstant));
+
+        return namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) -> new VarianceRow(
+                rs.getLong("inventory_item_id"),
+                rs.getString("name"),
+                rs.getString("unit"),
+                rs.getBigDecimal("opening_quantity"),
+                rs.getBigDecimal("restock_quantity"),
+                rs.getBigDecimal("closing_quantity"),
+                rs.getBigDecimal("theoretical_usage")));
+    }
+
+    @Override
+    public void streamClosedOrderLines(Long brandId, Long storeId, Instant startInstant, Instant endInstant,
+                                       OrderLineHandler handler) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("brandId", brandId)
+                .addValue("storeId", storeId)
+                .addValue("startTime", Timestamp.from(startInstant))
+                .addValue("endTime", Timestamp.from(endInstant));
+
+        // 使用獨立的 JdbcTemplate (同一個 DataSource，仍參與目前交易)，避免 fetch size 影響其他查詢
+        JdbcTemplate streaming = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        streaming.setFetchSize(streamFetchSize);
+        new NamedParameterJdbcTemplate(streaming).query(ORDER_LINE_STREAM_SQL, params, (RowCallbackHandler) rs ->
+                handler.onLine(rs.getLong(1), rs.getLong(2), rs.getInt(3)));
+    }
+
+    @Override
+    public MissingVariantTuple findMissingVariantLine(Long brandId, Long storeId, Instant startInstant, Instant endInstant) {
+        String sql = "SELECT o.order_number, oi.order_item_id, p.name AS product_name " +
+                "FROM orders o " +
+                "JOIN order_items oi ON oi.order_id = o.order_id " +
+                "LEFT JOIN products p ON p.product_id = oi.product_id " +
+                "WHERE o.brand_id = :brandId AND o.store_id = :storeId AND o.status_code = 'CLOSED' " +
+                "  AND o.completed_time BETWEEN :startTime AND :endTime AND oi.variant_id IS NULL " +
+                "LIMIT 1";
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("brandId", brandId)
+                .addValue("storeId", storeId)
+                .addValue("startTime", Timestamp.from(startInstant))
+                .addValue("endTime", Timestamp.from(endInstant));
+
+        List<MissingVariantTuple> rows = namedParameterJdbcTemplate.query(sql, params, (rs, rowNum) ->
+                new MissingVariantTuple(rs.getString("order_number"), rs.getLong("order_item_id"),
+                        rs.getString("product_name")));
+        return rows.isEmpty() ? null : rows.getFirst();
+    }
+}
@@ -0,0 +1,42 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Map;
+
+/**
+ * 報表分析快取 DAO 介面
+ * 供 ReportAnalyticsCache 以串流方式載入日結資料 (金額以「分」為單位的整數回傳)，
+ * 以及判斷哪些日期的日結資料已變更。
+ */
+public interface ReportAnalyticsDAO {
+
+    /**
+     * 串流讀取區間內的分店日結 (依日期、品牌、分店排序，需在交易中呼叫)
+     */
+    void streamStoreStats(LocalDate startDate, LocalDate endDate, StoreStatsHandler handler);
+
+    /**
+     * 串流讀取區間內的商品日結 (依日期、品牌、分店、商品排序，需在交易中呼叫)
+     */
+    void streamProductStats(LocalDate startDate, LocalDate endDate, ProductStatsHandler handler);
+
+    /**
+     * 查詢區間內每天日結資料的指紋 (筆數與最後寫入時間)，沒有資料的日期不會出現在結果中
+     */
+    Map<LocalDate, DayFingerprint> findFingerprints(LocalDate startDate, LocalDate endDate);
+
+    @FunctionalInterface
+    interface StoreStatsHandler {
+        void onRow(LocalDate date, long brandId, long storeId, int totalOrders, int cancelledOrders,
+                   long totalRevenueCents, long totalDiscountCents, long finalRevenueCents);
+    }
+
+    @FunctionalInterface
+    interface ProductStatsHandler {
+        void onRow(LocalDate date, long brandId, long storeId, long productId, String productName,
+                   int quantitySold, long totalSalesCents);
+    }
+
+    record DayFingerprint(long storeRows, long productRows, Instant storeWrittenAt, Instant productWrittenAt) {}
+}
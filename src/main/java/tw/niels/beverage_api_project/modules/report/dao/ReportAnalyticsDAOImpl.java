@@ -0,0 +1,95 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 報表分析快取 DAO 實作
+ * 金額欄位皆為 numeric(12,2)，乘以 100 轉成 bigint 不會失去精度。
+ */
+@Repository
+public class ReportAnalyticsDAOImpl implements ReportAnalyticsDAO {
+
+    private static final String STORE_STATS_SQL =
+            "SELECT date, brand_id, store_id, total_orders, cancelled_orders, " +
+            "       (total_revenue * 100)::bigint, (total_discount * 100)::bigint, (final_revenue * 100)::bigint " +
+            "FROM daily_store_stats " +
+            "WHERE date BETWEEN ? AND ? " +
+            "ORDER BY date, brand_id, store_id";
+
+    private static final String PRODUCT_STATS_SQL =
+            "SELECT date, brand_id, store_id, product_id, product_name, quantity_sold, (total_sales_amount * 100)::bigint " +
+            "FROM daily_product_stats " +
+            "WHERE date BETWEEN ? AND ? " +
+            "ORDER BY date, brand_id, store_id, product_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    // 串流讀取時每次向資料庫取回的筆數
+    @Value("${app.report.analytics-cache.fetch-size:10000}")
+    private int fetchSize = 10_000;
+
+    public ReportAnalyticsDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void streamStoreStats(LocalDate startDate, LocalDate endDate, StoreStatsHandler handler) {
+        streaming().query(STORE_STATS_SQL, (RowCallbackHandler) rs -> handler.onRow(
+                rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getLong(3), rs.getInt(4), rs.getInt(5),
+                rs.getLong(6), rs.getLong(7), rs.getLong(8)
+        ), Date.valueOf(startDate), Date.valueOf(endDate));
+    }
+
+    @Override
+    public void streamProductStats(LocalDate startDate, LocalDate endDate, ProductStatsHandler handler) {
+        streaming().query(PRODUCT_STATS_SQL, (RowCallbackHandler) rs -> handler.onRow(
+                rs.getDate(1).toLocalDate(), rs.getLong(2), rs.getLong(3), rs.getLong(4), rs.getString(5),
+                rs.getInt(6), rs.getLong(7)
+        ), Date.valueOf(startDate), Date.valueOf(endDate));
+    }
+
+    @Override
+    public Map<LocalDate, DayFingerprint> findFingerprints(LocalDate startDate, LocalDate endDate) {
+        String sql = "SELECT COALESCE(s.date, p.date) AS date, " +
+                "       COALESCE(s.row_count, 0) AS store_rows, COALESCE(p.row_count, 0) AS product_rows, " +
+                "       s.written_at AS store_written_at, p.written_at AS product_written_at " +
+                "FROM ( " +
+                "    SELECT date, COUNT(*) AS row_count, MAX(created_at) AS written_at FROM daily_store_stats " +
+                "    WHERE date BETWEEN ? AND ? GROUP BY date " +
+                ") s " +
+                "FULL JOIN ( " +
+                "    SELECT date, COUNT(*) AS row_count, MAX(created_at) AS written_at FROM daily_product_stats " +
+                "    WHERE date BETWEEN ? AND ? GROUP BY date " +
+                ") p ON p.date = s.date";
+
+        Map<LocalDate, DayFingerprint> fingerprints = new HashMap<>();
+        jdbcTemplate.query(sql, (RowCallbackHandler) rs -> {
+            fingerprints.put(rs.getDate("date").toLocalDate(), new DayFingerprint(
+                    rs.getLong("store_rows"), rs.getLong("product_rows"),
+                    toInstant(rs.getTimestamp("store_written_at")), toInstant(rs.getTimestamp("product_written_at"))));
+        }, Date.valueOf(startDate), Date.valueOf(endDate), Date.valueOf(startDate), Date.valueOf(endDate));
+        return fingerprints;
+    }
+
+    // 使用獨立的 JdbcTemplate (同一個 DataSource，仍參與目前交易)，避免 fetch size 影響其他查詢
+    private JdbcTemplate streaming() {
+        JdbcTemplate streaming = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        streaming.setFetchSize(fetchSize);
+        return streaming;
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
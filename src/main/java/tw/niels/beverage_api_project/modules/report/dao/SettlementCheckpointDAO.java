@@ -0,0 +1,36 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import tw.niels.beverage_api_project.modules.report.enums.CheckpointStatus;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 日結檢查點 DAO 介面
+ * 記錄每個 (日期, 分區數, 分區) 的結算狀態，供補漏作業判斷哪些分區需要重新結算。
+ */
+public interface SettlementCheckpointDAO {
+
+    /**
+     * 標記分區開始結算 (不存在則新增，存在則重設為 RUNNING 並累加嘗試次數)
+     */
+    void markRunning(LocalDate date, int partitionCount, int partition);
+
+    /**
+     * 標記分區結算結束
+     */
+    void markFinished(LocalDate date, int partitionCount, int partition, CheckpointStatus status,
+                      long storeCount, long failedStores);
+
+    /**
+     * 查詢區間內所有已完成的分區 (依日期、分區數、分區排序)
+     */
+    List<Checkpoint> findCompleted(LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 查詢最近一個有檢查點的日期 (不論狀態)，沒有任何檢查點時回傳 null
+     */
+    LocalDate findLatestDate();
+
+    record Checkpoint(LocalDate date, int partitionCount, int partition) {}
+}
@@ -0,0 +1,58 @@
+package tw.niels.beverage_api_project.modules.report.dao;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import tw.niels.beverage_api_project.modules.report.enums.CheckpointStatus;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 日結檢查點 DAO 實作
+ * 每次寫入都是獨立的自動提交 (不參與結算的交易)，結算回滾時檢查點仍保留 RUNNING / FAILED。
+ */
+@Repository
+public class SettlementCheckpointDAOImpl implements SettlementCheckpointDAO {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SettlementCheckpointDAOImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void markRunning(LocalDate date, int partitionCount, int partition) {
+        jdbcTemplate.update("INSERT INTO settlement_checkpoints (date, partition_count, partition_no, status) " +
+                        "VALUES (?, ?, ?, ?) " +
+                        "ON CONFLICT (date, partition_count, partition_no) DO UPDATE " +
+                        "SET status = EXCLUDED.status, attempts = settlement_checkpoints.attempts + 1, " +
+                        "    started_at = CURRENT_TIMESTAMP, completed_at = NULL",
+                Date.valueOf(date), partitionCount, partition, CheckpointStatus.RUNNING.name());
+    }
+
+    @Override
+    public void markFinished(LocalDate date, int partitionCount, int partition, CheckpointStatus status,
+                             long storeCount, long failedStores) {
+        jdbcTemplate.update("UPDATE settlement_checkpoints " +
+                        "SET status = ?, store_count = ?, failed_stores = ?, completed_at = CURRENT_TIMESTAMP " +
+                        "WHERE date = ? AND partition_count = ? AND partition_no = ?",
+                status.name(), storeCount, failedStores, Date.valueOf(date), partitionCount, partition);
+    }
+
+    @Override
+    public List<Checkpoint> findCompleted(LocalDate startDate, LocalDate endDate) {
+        return jdbcTemplate.query("SELECT date, partition_count, partition_no FROM settlement_checkpoints " +
+                        "WHERE date BETWEEN ? AND ? AND status = ? " +
+                        "ORDER BY date, partition_count, partition_no",
+                (rs, rowNum) -> new Checkpoint(rs.getDate("date").toLocalDate(),
+                        rs.getInt("partition_count"), rs.getInt("partition_no")),
+                Date.valueOf(startDate), Date.valueOf(endDate), CheckpointStatus.COMPLETED.name());
+    }
+
+    @Override
+    public LocalDate findLatestDate() {
+        Date latest = jdbcTemplate.queryForObject("SELECT MAX(date) FROM settlement_checkpoints", Date.class);
+        return latest != null ? latest.toLocalDate() : null;
+    }
+}
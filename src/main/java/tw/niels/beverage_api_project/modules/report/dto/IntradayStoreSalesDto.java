@@ -0,0 +1,49 @@
+package tw.niels.beverage_api_project.modules.report.dto;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@Schema(description = "分店今日至今銷售統計 (即時彙總，約有數秒延遲)")
+public class IntradayStoreSalesDto {
+
+    @Schema(description = "分店 ID", example = "1")
+    private Long storeId;
+
+    @Schema(description = "分店名稱", example = "台北信義店")
+    private String storeName;
+
+    @Schema(description = "已結案訂單數", example = "152")
+    private Integer totalOrders = 0;
+
+    @Schema(description = "已取消訂單數", example = "3")
+    private Integer cancelledOrders = 0;
+
+    @Schema(description = "原始總額", example = "9800.00")
+    private BigDecimal totalRevenue = BigDecimal.ZERO;
+
+    @Schema(description = "折扣總額", example = "320.00")
+    private BigDecimal totalDiscount = BigDecimal.ZERO;
+
+    @Schema(description = "實收金額", example = "9480.00")
+    private BigDecimal finalRevenue = BigDecimal.ZERO;
+
+    @Schema(description = "現金收款", example = "5200.00")
+    private BigDecimal cashTotal = BigDecimal.ZERO;
+
+    @Schema(description = "LINE Pay 收款", example = "4280.00")
+    private BigDecimal linePayTotal = BigDecimal.ZERO;
+
+    @Schema(description = "最後一次寫入時間")
+    private OffsetDateTime lastUpdatedAt;
+
+    @Schema(description = "商品銷售統計 (僅單一分店查詢時提供)")
+    private List<ProductSalesStatsDto> products = new ArrayList<>();
+}
@@ -0,0 +1,10 @@
+package tw.niels.beverage_api_project.modules.report.enums;
+
+/**
+ * 日結檢查點狀態 (settlement_checkpoints.status)
+ */
+public enum CheckpointStatus {
+    RUNNING,   // 結算中 (或結算途中當機，補漏時重新結算)
+    COMPLETED, // 範圍內所有分店皆已結算成功
+    FAILED     // 部分分店用盡重試仍失敗，補漏時重新結算
+}
@@ -0,0 +1,9 @@
+package tw.niels.beverage_api_project.modules.report.enums;
+
+/**
+ * 每日結算的計算策略
+ */
+public enum SettlementStrategy {
+    PER_STORE, // 逐店各自開交易計算 (可平行)，單店失敗不影響其他分店
+    SET_BASED  // 以集合式 SQL 在單一交易中計算所有分店 (或單一分區)，任一錯誤整批回滾
+}
@@ -5,46 +5,56 @@ import net.javacrumbs.shedlock.core.LockProvider;
 import net.javacrumbs.shedlock.core.SimpleLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationArguments;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.stereotype.Component;
-import tw.niels.beverage_api_project.modules.report.entity.DailyStoreStats;
-import tw.niels.beverage_api_project.modules.report.repository.DailyStoreStatsRepository;
-import tw.niels.beverage_api_project.modules.report.service.ReportAggregationService;
+import tw.niels.beverage_api_project.modules.report.service.ReportBackfillService;
 
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalDate;
 import java.util.Optional;
-import java.util.concurrent.Executors;
 
+/**
+ * 啟動時的報表補漏檢查
+ * <p>
+ * 補漏在背景執行緒進行，不阻塞應用程式啟動；進度記錄在日結檢查點，
+ * 補漏途中停機或當機時，下次啟動只會補跑未完成的分區。
+ * </p>
+ */
 @Component
 public class ReportRecoveryRunner implements ApplicationRunner {
 
     private static final Logger logger = LoggerFactory.getLogger(ReportRecoveryRunner.class);
 
-    private final ReportAggregationService reportAggregationService;
-    private final DailyStoreStatsRepository dailyStoreStatsRepository;
+    private final ReportBackfillService reportBackfillService;
     private final LockProvider lockProvider; // 注入 LockProvider
 
-    public ReportRecoveryRunner(ReportAggregationService reportAggregationService,
-                                DailyStoreStatsRepository dailyStoreStatsRepository,
+    // 補漏的鎖最多持有時間 (需大於補漏的最長耗時，否則其他實例可能同時補跑)
+    @Value("${app.report.backfill.lock-at-most-for:PT2H}")
+    private Duration lockAtMostFor;
+
+    public ReportRecoveryRunner(ReportBackfillService reportBackfillService,
                                 LockProvider lockProvider) {
-        this.reportAggregationService = reportAggregationService;
-        this.dailyStoreStatsRepository = dailyStoreStatsRepository;
+        this.reportBackfillService = reportBackfillService;
         this.lockProvider = lockProvider;
     }
 
     @Override
     public void run(ApplicationArguments args) throws RuntimeException {
+        Thread.ofVirtual().name("report-backfill").start(this::recover);
+        logger.info("【報表補漏檢查】已於背景啟動。");
+    }
+
+    private void recover() {
         // 設定鎖的組態
         // name: 鎖的名稱 (必須唯一)
-        // lockAtMostFor: 鎖最多持有 10 分鐘 (預防程式當掉鎖死)
+        // lockAtMostFor: 鎖最多持有時間 (預防程式當掉鎖死)
         // lockAtLeastFor: 鎖最少持有 10 秒
         LockConfiguration lockConfig = new LockConfiguration(
                 Instant.now(),
                 "ReportStartupRecovery",
-                Duration.ofMinutes(10),
+                lockAtMostFor,
                 Duration.ofSeconds(10)
         );
 
@@ -54,7 +64,9 @@ public class ReportRecoveryRunner implements ApplicationRunner {
         if (lock.isPresent()) {
             try {
                 logger.info("【報表補漏檢查】已獲取分散式鎖，開始檢查...");
-                performRecoveryLogic();
+                reportBackfillService.backfillMissing();
+            } catch (Exception e) {
+                logger.error("【報表補漏檢查】補漏作業發生未預期的錯誤，下次啟動時由檢查點續跑", e);
             } finally {
                 // 釋放鎖
                 lock.get().unlock();
@@ -64,64 +76,4 @@ public class ReportRecoveryRunner implements ApplicationRunner {
             logger.info("【報表補漏檢查】其他實例正在執行補漏作業，本實例跳過。");
         }
     }
-
-    private void performRecoveryLogic() {
-        // 1. 目標：結算到「昨天」
-        LocalDate yesterday = LocalDate.now().minusDays(1);
-
-        // 2. 查詢資料庫
-        Optional<DailyStoreStats> lastStatOpt = dailyStoreStatsRepository.findTopByOrderByDateDesc();
-        LocalDate startDate;
-
-        if (lastStatOpt.isPresent()) {
-            startDate = lastStatOpt.get().getDate().plusDays(1);
-        } else {
-            logger.info("【報表補漏檢查】查無歷史報表，將嘗試執行昨天的結算。");
-            startDate = yesterday;
-        }
-
-        if (startDate.isAfter(yesterday)) {
-            logger.info("【報表補漏檢查】資料已是最新，無需補跑。");
-            return;
-        }
-
-        logger.info("【報表補漏檢查】發現數據缺漏！區間: {} 到 {}", startDate, yesterday);
-
-        LocalDate processingDate = startDate;
-
-        // 使用 Java 21 虛擬線程 Executor
-        // try-with-resources 會自動等待所有任務完成 (await termination) 才繼續往下執行
-        // 這確保了在鎖釋放前，所有補跑作業都已完成。
-        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
-            // 限制同時只有 8 個任務在執行 (保護資料庫連線池)
-            java.util.concurrent.Semaphore semaphore = new java.util.concurrent.Semaphore(8);
-
-            // 【修正 2】 使用 !isAfter 確保「昨天」也會被執行
-            while (!processingDate.isAfter(yesterday)) {
-                final LocalDate dateToProcess = processingDate;
-
-                try {
-                    semaphore.acquire();
-
-                    executor.submit(() -> {
-                        try {
-                            reportAggregationService.generateDailyStats(dateToProcess);
-                        } finally {
-                            semaphore.release(); // 任務結束釋放許可
-                        }
-                    });
-                } catch (InterruptedException e) {
-                    logger.error("補跑作業被中斷", e);
-                    Thread.currentThread().interrupt(); // 恢復中斷狀態
-                    break; // 中斷迴圈
-                }
-
-                processingDate = processingDate.plusDays(1);
-            }
-
-        } // 這裡會阻塞，直到所有提交給 executor 的任務都執行完畢
-
-        logger.info("【報表補漏檢查】區間補跑作業已全部完成。");
-
-    }
-}
\ No newline at end of file
+}
@@ -30,6 +30,10 @@ public class ReportScheduler {
             lockAtLeastFor = "1m"     // 鎖最少持有 1 分鐘 (防止時鐘不同步導致重複執行)
     )
     public void runDailyReportAggregation() {
+        // 分區模式改由 runPartitionedDailyReportAggregation 在每個節點執行
+        if (reportAggregationService.isPartitioned()) {
+            return;
+        }
         LocalDate yesterday = LocalDate.now().minusDays(1);
         logger.info("【排程啟動】開始執行日結報表計算 (含分散式鎖)，目標日期: {}", yesterday);
 
@@ -42,4 +46,26 @@ public class ReportScheduler {
             logger.error("【排程錯誤】執行日結報表時發生未預期的錯誤", e);
         }
     }
+
+    /**
+     * 分區模式：每天凌晨 03:00 在叢集的每個節點執行
+     * 不使用 @SchedulerLock，改由各分區的租約確保每個分區只由一個節點結算
+     */
+    @Scheduled(cron = "0 0 3 * * ?")
+    public void runPartitionedDailyReportAggregation() {
+        if (!reportAggregationService.isPartitioned()) {
+            return;
+        }
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        logger.info("【排程啟動】開始執行分區日結報表計算，目標日期: {}", yesterday);
+
+        try {
+            long startTime = System.currentTimeMillis();
+            reportAggregationService.generateDailyStatsForClaimedPartitions(yesterday);
+            long duration = System.currentTimeMillis() - startTime;
+            logger.info("【排程結束】本節點分區日結報表計算完成，耗時: {} ms", duration);
+        } catch (Exception e) {
+            logger.error("【排程錯誤】執行分區日結報表時發生未預期的錯誤", e);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.modules.report.dao.DailySettlementDAO;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * 全連鎖集合式日結服務。
+ * <p>
+ * 以少數幾個 INSERT ... SELECT ... GROUP BY store_id 在單一交易內計算所有分店 (或單一分區) 的
+ * daily_store_stats 與 daily_product_stats，統計口徑與 StoreSettlementService 相同，但查詢次數不隨分店或商品數增加。
+ * </p>
+ * <p>
+ * 新增資料的 ID 在應用程式端以 TSID 逐列產生 (與其他寫入路徑相同)，以陣列參數一次傳入 INSERT。
+ * </p>
+ */
+@Service
+public class ChainSettlementService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChainSettlementService.class);
+
+    private final DailySettlementDAO settlementDAO;
+
+    public ChainSettlementService(DailySettlementDAO settlementDAO) {
+        this.settlementDAO = settlementDAO;
+    }
+
+    /**
+     * 結算指定日期的所有分店 (partitions = 1) 或單一分區
+     *
+     * @return 結算的分店數
+     */
+    @Transactional
+    public int settle(LocalDate date, LocalDateTime start, LocalDateTime end, int partitions, int partition) {
+        // 1. 冪等：刪除同一天的舊資料
+        settlementDAO.deleteStats(date, partitions, partition);
+
+        // 2. 分店統計 (訂單狀態 + 付款方式) 與商品統計 (含分類名稱)
+        long[] storeIds = settlementDAO.findStoreIds(partitions, partition).stream().mapToLong(Long::longValue).toArray();
+        int storeCount = settlementDAO.insertStoreStats(storeIds, TsidUtil.nextIds(storeIds.length),
+                date, start, end, partitions, partition);
+
+        int stagedRows = settlementDAO.stageProductStats(date, start, end, partitions, partition);
+        int productRows = settlementDAO.insertProductStats(TsidUtil.nextIds(stagedRows), date);
+
+        // 3. 未結案訂單警告 (每間分店一次)
+        Map<Long, Long> unclosed = settlementDAO.countUnclosedOrdersByStore(start, end, partitions, partition);
+        unclosed.forEach((storeId, count) ->
+                logger.warn("【日結警告】分店 ID: {} 在日期 {} 尚有 {} 筆訂單未結案 (非 CLOSED/CANCELLED)。",
+                        storeId, date, count));
+
+        logger.debug("集合式日結完成 (日期: {}, 分區: {}/{})，分店 {} 筆，商品 {} 筆",
+                date, partition, partitions, storeCount, productRows);
+        return storeCount;
+    }
+}
@@ -0,0 +1,290 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
+import tw.niels.beverage_api_project.modules.report.dao.IntradaySalesRollupDAO;
+import tw.niels.beverage_api_project.modules.report.dto.IntradayStoreSalesDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * 當日即時銷售彙總 (不在結帳路徑上)
+ * <p>
+ * 1. 訂單結案 (CLOSED) 或取消 (CANCELLED) 的交易提交後，把訂單的金額與品項摘要放進記憶體佇列。
+ * 2. 排程每隔數秒把佇列依 (分店, 小時) 與 (分店, 商品, 小時) 合併，以批次 upsert 累加到 hourly_store_sales / hourly_product_sales；
+ *    寫入失敗時保留在記憶體，下次排程重試。
+ * 3.「今日至今」報表直接加總今日的時段統計，查詢量只與分店數成正比，不掃描 orders。
+ * 4. 凌晨日結時以訂單資料重算前一天的時段統計 (校正遺失或重複的事件)，並清除超過保留天數的資料。
+ *    校正寫入的時段列標記為已校正，任何實例之後才寫入的同時段累加都由資料庫略過 (多實例不會重複累加)。
+ * </p>
+ * 結案訂單依完成時間、取消訂單依下單時間歸入時段 (取消訂單沒有完成時間)，與校正 SQL 一致。
+ * 注意：佇列屬於單一實例，實例在提交後、寫入前當機時，當天的統計會短少到凌晨校正為止。
+ * 因此預設關閉 (app.report.intraday.enabled)，確認可接受「今日至今」報表在當機後短暫短少再開啟；
+ * 關閉時「今日至今」查詢會回報未啟用，不會回傳看似正確的零值。
+ */
+@Service
+public class IntradaySalesRollupService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IntradaySalesRollupService.class);
+
+    private final Queue<OrderSale> sales = new ConcurrentLinkedQueue<>();
+
+    // 已合併、尚未寫入的統計 (只在 flush 中存取；排序後寫入，各實例以相同順序鎖定資料列)
+    private final Map<StoreHourKey, IntradaySalesRollupDAO.StoreSalesDelta> pendingStoreSales = new TreeMap<>();
+    private final Map<ProductHourKey, IntradaySalesRollupDAO.ProductSalesDelta> pendingProductSales = new TreeMap<>();
+
+    private final IntradaySalesRollupDAO rollupDAO;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counter ordersCounter;
+    private final Counter captureFailureCounter;
+    private final Counter flushFailureCounter;
+
+    @Value("${app.report.intraday.enabled:false}")
+    private boolean enabled;
+
+    // 時段統計的保留天數 (超過的資料在凌晨校正時刪除)
+    @Value("${app.report.intraday.retention-days:35}")
+    private int retentionDays;
+
+    public IntradaySalesRollupService(IntradaySalesRollupDAO rollupDAO,
+                                      PlatformTransactionManager transactionManager,
+                                      MeterRegistry meterRegistry) {
+        this.rollupDAO = rollupDAO;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ordersCounter = Counter.builder("report.intraday.orders")
+                .description("已寫入即時彙總的結案/取消訂單數")
+                .register(meterRegistry);
+        this.captureFailureCounter = Counter.builder("report.intraday.capture.failures")
+                .description("無法擷取訂單摘要而略過的事件數 (由凌晨校正補正)")
+                .register(meterRegistry);
+        this.flushFailureCounter = Counter.builder("report.intraday.flush.failures")
+                .description("即時彙總寫入失敗次數")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 訂單結案/取消提交後加入佇列 (只擷取摘要，不做任何資料庫寫入)
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderStateChanged(OrderStateChangedEvent event) {
+        OrderStatus newStatus = event.newStatus();
+        if (!enabled || (newStatus != OrderStatus.CLOSED && newStatus != OrderStatus.CANCELLED)
+                || newStatus == event.oldStatus()) {
+            return;
+        }
+        try {
+            sales.add(OrderSale.of(event.order(), newStatus));
+        } catch (RuntimeException e) {
+            // 擷取失敗不影響訂單流程，缺漏的統計由凌晨校正補正
+            captureFailureCounter.increment();
+            logger.warn("無法擷取訂單 {} 的銷售摘要，略過即時彙總", event.order().getId(), e);
+        }
+    }
+
+    /**
+     * 合併佇列中的訂單並寫入時段統計 (單一交易)
+     */
+    @Scheduled(fixedDelayString = "${app.report.intraday.flush-interval-ms:5000}")
+    public synchronized void flush() {
+        if (!enabled) {
+            return;
+        }
+
+        int orderCount = 0;
+        OrderSale sale;
+        while ((sale = sales.poll()) != null) {
+            merge(sale);
+            orderCount++;
+        }
+        ordersCounter.increment(orderCount);
+
+        if (pendingStoreSales.isEmpty() && pendingProductSales.isEmpty()) {
+            return;
+        }
+
+        List<IntradaySalesRollupDAO.StoreSalesDelta> storeDeltas = new ArrayList<>(pendingStoreSales.values());
+        List<IntradaySalesRollupDAO.ProductSalesDelta> productDeltas = new ArrayList<>(pendingProductSales.values());
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                rollupDAO.batchUpsertStoreSales(storeDeltas);
+                rollupDAO.batchUpsertProductSales(productDeltas);
+            });
+            pendingStoreSales.clear();
+            pendingProductSales.clear();
+        } catch (RuntimeException e) {
+            flushFailureCounter.increment();
+            logger.error("即時彙總寫入失敗，將於下次排程重試 ({} 筆分店時段, {} 筆商品時段)",
+                    storeDeltas.size(), productDeltas.size(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+
+    /**
+     * 以訂單資料重算指定日期 (單一分區) 的時段統計，並清除超過保留天數的資料
+     * <p>
+     * 由日結流程在結算後呼叫；與本實例的 flush 互斥。其他實例 (或其他分區的分店) 尚未寫入的統計
+     * 不在此捨棄，寫入時由資料庫略過已校正的時段列。
+     * </p>
+     */
+    public synchronized void reconcile(LocalDate date, int partitions, int partition) {
+        if (!enabled) {
+            return;
+        }
+        // 先寫出記憶體中的統計 (寫入失敗的會在校正後重試，已校正的時段由資料庫略過)
+        flush();
+
+        transactionTemplate.executeWithoutResult(status -> rollupDAO.reconcile(
+                date.atStartOfDay(), date.plusDays(1).atStartOfDay(), partitions, partition));
+
+        int purged = rollupDAO.purgeBefore(LocalDate.now().minusDays(retentionDays).atStartOfDay());
+        logger.info("即時彙總校正完成 (日期: {}, 分區: {}/{})，清除過期資料 {} 筆", date, partition, partitions, purged);
+    }
+
+    /**
+     * 品牌所有分店今日至今的統計 (依實收金額排序，不含商品明細)
+     */
+    public List<IntradayStoreSalesDto> getTodayBrandSales(Long brandId) {
+        requireEnabled();
+        return rollupDAO.sumStoreSales(brandId, null, LocalDate.now().atStartOfDay());
+    }
+
+    /**
+     * 單一分店今日至今的統計 (含商品銷售排行)
+     */
+    public IntradayStoreSalesDto getTodayStoreSales(Long brandId, Long storeId) {
+        requireEnabled();
+        LocalDateTime from = LocalDate.now().atStartOfDay();
+        List<IntradayStoreSalesDto> rows = rollupDAO.sumStoreSales(brandId, storeId, from);
+
+        IntradayStoreSalesDto dto = rows.isEmpty() ? new IntradayStoreSalesDto() : rows.getFirst();
+        dto.setStoreId(storeId);
+        dto.setProducts(rollupDAO.sumProductSales(brandId, storeId, from));
+        return dto;
+    }
+
+    private void requireEnabled() {
+        if (!enabled) {
+            throw new BadRequestException("即時銷售彙總未啟用，請改查詢日結報表");
+        }
+    }
+
+    private void merge(OrderSale sale) {
+        boolean closed = sale.status() == OrderStatus.CLOSED;
+        IntradaySalesRollupDAO.StoreSalesDelta storeDelta = new IntradaySalesRollupDAO.StoreSalesDelta(
+                sale.storeId(), sale.brandId(), sale.bucketHour(),
+                closed ? 1 : 0, closed ? 0 : 1,
+                closed ? sale.totalAmount() : BigDecimal.ZERO,
+                closed ? sale.discountAmount() : BigDecimal.ZERO,
+                closed ? sale.finalAmount() : BigDecimal.ZERO,
+                closed && "CASH".equalsIgnoreCase(sale.paymentCode()) ? sale.finalAmount() : BigDecimal.ZERO,
+                closed && "LINE_PAY".equalsIgnoreCase(sale.paymentCode()) ? sale.finalAmount() : BigDecimal.ZERO);
+        pendingStoreSales.merge(new StoreHourKey(sale.storeId(), sale.bucketHour()), storeDelta,
+                IntradaySalesRollupService::add);
+
+        if (!closed) {
+            return;
+        }
+        for (SaleLine line : sale.lines()) {
+            pendingProductSales.merge(new ProductHourKey(sale.storeId(), sale.bucketHour(), line.productId()),
+                    new IntradaySalesRollupDAO.ProductSalesDelta(sale.storeId(), sale.brandId(), line.productId(),
+                            sale.bucketHour(), line.quantity(), line.subtotal()),
+                    (a, b) -> new IntradaySalesRollupDAO.ProductSalesDelta(a.storeId(), a.brandId(), a.productId(),
+                            a.bucketHour(), a.quantitySold() + b.quantitySold(),
+                            a.totalSalesAmount().add(b.totalSalesAmount())));
+        }
+    }
+
+    private static IntradaySalesRollupDAO.StoreSalesDelta add(IntradaySalesRollupDAO.StoreSalesDelta a,
+                                                              IntradaySalesRollupDAO.StoreSalesDelta b) {
+        return new IntradaySalesRollupDAO.StoreSalesDelta(a.storeId(), a.brandId(), a.bucketHour(),
+                a.closedOrders() + b.closedOrders(), a.cancelledOrders() + b.cancelledOrders(),
+                a.totalRevenue().add(b.totalRevenue()), a.totalDiscount().add(b.totalDiscount()),
+                a.finalRevenue().add(b.finalRevenue()), a.cashTotal().add(b.cashTotal()),
+                a.linePayTotal().add(b.linePayTotal()));
+    }
+
+    /**
+     * 提交當下擷取的訂單摘要 (之後不再存取實體)
+     */
+    private record OrderSale(long storeId, long brandId, OrderStatus status, LocalDateTime bucketHour,
+                             BigDecimal totalAmount, BigDecimal discountAmount, BigDecimal finalAmount,
+                             String paymentCode, List<SaleLine> lines) {
+
+        static OrderSale of(Order order, OrderStatus status) {
+            // 結案依完成時間、取消依下單時間歸入時段
+            Date time = status == OrderStatus.CLOSED ? order.getCompletedTime() : order.getOrderTime();
+            LocalDateTime bucketHour = (time != null
+                    ? LocalDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault())
+                    : LocalDateTime.now()).truncatedTo(ChronoUnit.HOURS);
+
+            List<SaleLine> lines = new ArrayList<>();
+            if (status == OrderStatus.CLOSED) {
+                for (OrderItem item : order.getItems()) {
+                    lines.add(new SaleLine(item.getProduct().getId(), item.getQuantity(), orZero(item.getSubtotal())));
+                }
+            }
+            return new OrderSale(order.getStore().getId(), order.getBrand().getId(), status, bucketHour,
+                    orZero(order.getTotalAmount()), orZero(order.getDiscountAmount()), orZero(order.getFinalAmount()),
+                    order.getPaymentMethod() != null ? order.getPaymentMethod().getCode() : null, lines);
+        }
+
+        private static BigDecimal orZero(BigDecimal value) {
+            return value != null ? value : BigDecimal.ZERO;
+        }
+    }
+
+    private record SaleLine(long productId, int quantity, BigDecimal subtotal) {}
+
+    private record StoreHourKey(long storeId, LocalDateTime bucketHour) implements Comparable<StoreHourKey> {
+        @Override
+        public int compareTo(StoreHourKey other) {
+            int result = Long.compare(storeId, other.storeId);
+            return result != 0 ? result : bucketHour.compareTo(other.bucketHour);
+        }
+    }
+
+    private record ProductHourKey(long storeId, LocalDateTime bucketHour, long productId)
+            implements Comparable<ProductHourKey> {
+        @Override
+        public int compareTo(ProductHourKey other) {
+            int result = Long.compare(storeId, other.storeId);
+            if (result == 0) result = bucketHour.compareTo(other.bucketHour);
+            return result != 0 ? result : Long.compare(productId, other.productId);
+        }
+    }
+}
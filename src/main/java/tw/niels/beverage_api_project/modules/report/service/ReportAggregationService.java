@@ -1,17 +1,46 @@
 package tw.niels.beverage_api_project.modules.report.service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.retry.support.RetryTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+import tw.niels.beverage_api_project.modules.report.dao.SettlementCheckpointDAO;
+import tw.niels.beverage_api_project.modules.report.enums.CheckpointStatus;
+import tw.niels.beverage_api_project.modules.report.enums.SettlementStrategy;
 import tw.niels.beverage_api_project.modules.store.repository.StoreIdentity;
 import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
 /**
  * 報表聚合核心服務。
@@ -19,20 +48,128 @@ import java.time.LocalTime;
  * 負責執行每日的數據結算邏輯。
  * 採用「分頁批次」與「獨立交易」模式，確保大量分店結算時的效能與容錯性。
  * </p>
+ * <p>
+ * 平行模式 (parallelism > 1，或 0 = 自動使用連線池的一半)：分店分派到虛擬執行緒，以全域 Semaphore 限制同時結算的分店數，
+ * 多個日期同時結算 (如補漏) 也不會超過上限。暫時性的資料庫錯誤會依退避間隔重試。
+ * </p>
+ * <p>
+ * 分區模式 (partitions > 1)：分店依 ID 取餘數分成數個分區，每個分區以 ShedLock 租約 (lease) 認領，
+ * 叢集中的每個節點都執行排程並認領尚未被持有的分區，完成後租約保留到期為止，避免同一輪被其他節點重複結算。
+ * 節點中途失效時，該分區在租約到期前不會被接手，缺漏的分店需以手動觸發補跑。
+ * </p>
+ * <p>
+ * 集合式策略 (strategy = SET_BASED)：改由 ChainSettlementService 以少數幾個 INSERT ... SELECT 在單一交易中
+ * 結算全部分店 (分區模式下為整個分區)，失敗時整批回滾並重試，不再有部分成功。
+ * </p>
+ * <p>
+ * 檢查點：每次結算在開始與結束時寫入 settlement_checkpoints (日期, 分區數, 分區)，
+ * 只有範圍內所有分店都成功才標記為 COMPLETED，補漏作業 (ReportBackfillService) 依此略過已完成的分區。
+ * </p>
  */
 @Service
 public class ReportAggregationService {
 
     private static final Logger logger = LoggerFactory.getLogger(ReportAggregationService.class);
 
+    private static final String PARTITION_LOCK_PREFIX = "DailyReportAggregation-p";
+
     private final StoreRepository storeRepository;
     private final StoreSettlementService storeSettlementService;
+    private final ChainSettlementService chainSettlementService;
+    private final IntradaySalesRollupService intradaySalesRollupService;
+    private final ReportAnalyticsCache reportAnalyticsCache;
+    private final SettlementCheckpointDAO checkpointDAO;
+    private final LockProvider lockProvider;
+
+    private final Counter successCounter;
+    private final Counter failureCounter;
+    private final Counter retryCounter;
 
+    // 進行中的結算 (每次 settle 各自一份進度，補漏可能同時結算多個日期)，供 progress / ETA 指標彙總讀取
+    private final Set<SettlementProgress> activeRuns = ConcurrentHashMap.newKeySet();
+
+    // 所有進行中的日結共用同一組許可，同時結算的分店數不會超過連線池的負荷 (例如補漏同時結算多個日期)
+    private Semaphore settlementPermits;
+    private RetryTemplate retryTemplate;
+
+    // 同時結算的分店數：1 = 逐店依序執行；0 = 依連線池大小自動決定
+    @Value("${app.report.settlement.parallelism:1}")
+    private int parallelism;
+
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+
+    // 每間分店的最大嘗試次數 (只重試暫時性的資料庫錯誤)
+    @Value("${app.report.settlement.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.report.settlement.retry-backoff-ms:500}")
+    private long retryBackoffMillis;
+
+    // 分區數量：1 = 不分區 (由排程的 @SchedulerLock 確保單一節點執行)
+    @Value("${app.report.settlement.partitions:1}")
+    private int partitions;
+
+    // 分區租約長度 (同時作為最短持有時間)
+    @Value("${app.report.settlement.partition-lease:PT30M}")
+    private Duration partitionLease;
+
+    @Value("${app.report.settlement.page-size:50}")
+    private int pageSize;
+
+    @Value("${app.report.settlement.strategy:PER_STORE}")
+    private SettlementStrategy strategy = SettlementStrategy.PER_STORE;
 
     public ReportAggregationService(StoreRepository storeRepository,
-                                    StoreSettlementService storeSettlementService) {
+                                    StoreSettlementService storeSettlementService,
+                                    ChainSettlementService chainSettlementService,
+                                    IntradaySalesRollupService intradaySalesRollupService,
+                                    ReportAnalyticsCache reportAnalyticsCache,
+                                    SettlementCheckpointDAO checkpointDAO,
+                                    LockProvider lockProvider,
+                                    MeterRegistry meterRegistry) {
         this.storeRepository = storeRepository;
         this.storeSettlementService = storeSettlementService;
+        this.chainSettlementService = chainSettlementService;
+        this.intradaySalesRollupService = intradaySalesRollupService;
+        this.reportAnalyticsCache = reportAnalyticsCache;
+        this.checkpointDAO = checkpointDAO;
+        this.lockProvider = lockProvider;
+
+        this.successCounter = Counter.builder("report.settlement.stores")
+                .tag("result", "success")
+                .description("日結成功的分店數")
+                .register(meterRegistry);
+        this.failureCounter = Counter.builder("report.settlement.stores")
+                .tag("result", "failure")
+                .description("日結失敗的分店數 (已用盡重試)")
+                .register(meterRegistry);
+        this.retryCounter = Counter.builder("report.settlement.retries")
+                .description("分店日結重試次數")
+                .register(meterRegistry);
+        Gauge.builder("report.settlement.progress", activeRuns, SettlementProgress::overallRatio)
+                .description("進行中日結的整體進度 (0 ~ 1，沒有進行中的日結時為 1)")
+                .register(meterRegistry);
+        Gauge.builder("report.settlement.eta.seconds", activeRuns, SettlementProgress::maxEtaSeconds)
+                .description("進行中日結中最晚完成者的預估剩餘秒數")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    void init() {
+        this.settlementPermits = new Semaphore(resolveParallelism());
+        this.retryTemplate = RetryTemplate.builder()
+                .maxAttempts(Math.max(1, maxAttempts))
+                .exponentialBackoff(Math.max(1, retryBackoffMillis), 2.0, Math.max(1, retryBackoffMillis) * 8)
+                .retryOn(List.of(TransientDataAccessException.class,
+                        RecoverableDataAccessException.class,
+                        CannotCreateTransactionException.class))
+                .traversingCauses()
+                .build();
+    }
+
+    public boolean isPartitioned() {
+        return partitions > 1;
     }
 
     /**
@@ -44,46 +181,282 @@ public class ReportAggregationService {
      */
     public void generateDailyStats(LocalDate date) {
         logger.info("開始執行日結報表計算，目標日期: {}", date);
+        settle(date, 1, 0, storeRepository::findAllStoreIdentities, "全部分店", resolveParallelism());
+    }
+
+    /**
+     * 補漏用：結算指定日期的單一分區 (partitionCount = 1 時為全部分店)，不認領分區租約
+     * <p>
+     * storeParallelism 限制這次結算同時處理的分店數 (仍受全域上限限制)，
+     * 讓補漏同時結算多個日期時，每個日期只使用一部分的連線。
+     * </p>
+     *
+     * @return 範圍內所有分店是否都結算成功 (檢查點標記為 COMPLETED)
+     */
+    public boolean settlePartition(LocalDate date, int partitionCount, int partition, int storeParallelism) {
+        Function<Pageable, Page<StoreIdentity>> pageLoader = partitionCount > 1
+                ? pageable -> storeRepository.findStoreIdentitiesByPartition(partitionCount, partition, pageable)
+                : storeRepository::findAllStoreIdentities;
+        return settle(date, partitionCount, partition, pageLoader,
+                "補漏分區 " + partition + "/" + partitionCount, Math.max(1, storeParallelism));
+    }
+
+    /**
+     * 分區模式：依序嘗試認領每個分區的租約，只結算本節點取得租約的分區
+     * <p>
+     * 由叢集中每個節點的排程同時呼叫；起始分區隨機，讓各節點優先處理不同的分區。
+     * </p>
+     */
+    public void generateDailyStatsForClaimedPartitions(LocalDate date) {
+        int offset = ThreadLocalRandom.current().nextInt(partitions);
+        int claimed = 0;
+
+        for (int i = 0; i < partitions; i++) {
+            int partition = (offset + i) % partitions;
+            Optional<SimpleLock> lease = lockProvider.lock(new LockConfiguration(
+                    Instant.now(), PARTITION_LOCK_PREFIX + partition, partitionLease, partitionLease));
+            if (lease.isEmpty()) {
+                logger.debug("日結分區 {}/{} 已由其他節點認領，略過", partition, partitions);
+                continue;
+            }
+
+            claimed++;
+            try {
+                logger.info("已認領日結分區 {}/{}，目標日期: {}", partition, partitions, date);
+                settle(date, partitions, partition,
+                        pageable -> storeRepository.findStoreIdentitiesByPartition(partitions, partition, pageable),
+                        "分區 " + partition + "/" + partitions, resolveParallelism());
+            } finally {
+                // 租約的最短持有時間與租約長度相同：釋放後仍保留到期，同一輪其他節點不會重複結算
+                lease.get().unlock();
+            }
+        }
+        logger.info("本節點日結分區認領完成，目標日期: {}，認領 {}/{} 個分區", date, claimed, partitions);
+    }
 
+    private boolean settle(LocalDate date, int partitionCount, int partition,
+                           Function<Pageable, Page<StoreIdentity>> pageLoader, String scope, int storeLimit) {
         LocalDateTime startOfDay = date.atStartOfDay();
         LocalDateTime endOfDay = date.atTime(LocalTime.MAX);
 
-        int successCount = 0;
-        int failCount = 0;
+        SettlementProgress progress = new SettlementProgress(System.nanoTime());
+        activeRuns.add(progress);
+        try {
+            // 檢查點寫入失敗不影響結算，只會讓補漏多跑一次
+            try {
+                checkpointDAO.markRunning(date, partitionCount, partition);
+            } catch (Exception e) {
+                logger.warn("日結檢查點寫入失敗 ({})，目標日期: {}", scope, date, e);
+            }
+
+            boolean finished = true;
+            if (strategy == SettlementStrategy.SET_BASED) {
+                settleChain(date, partitionCount, partition, startOfDay, endOfDay,
+                        pageLoader.apply(PageRequest.of(0, 1)).getTotalElements(), progress);
+            } else {
+                finished = settlePerStore(date, pageLoader, scope, startOfDay, endOfDay, storeLimit, progress);
+            }
+
+            boolean completed = finished && progress.failed.get() == 0;
+            try {
+                checkpointDAO.markFinished(date, partitionCount, partition,
+                        completed ? CheckpointStatus.COMPLETED : CheckpointStatus.FAILED,
+                        progress.total.get(), progress.failed.get());
+            } catch (Exception e) {
+                logger.warn("日結檢查點寫入失敗 ({})，目標日期: {}", scope, date, e);
+            }
+
+            // 即時彙總只需校正：以訂單資料重算當天的時段統計
+            try {
+                intradaySalesRollupService.reconcile(date, partitionCount, partition);
+            } catch (Exception e) {
+                logger.error("即時彙總校正失敗 ({})，目標日期: {}", scope, date, e);
+            }
+
+            // 報表分析快取只重新載入該日期 (並廣播給其他節點重新載入)
+            try {
+                reportAnalyticsCache.reloadDay(date);
+            } catch (Exception e) {
+                logger.error("報表分析快取重新載入失敗 ({})，目標日期: {}", scope, date, e);
+            }
+
+            logger.info("日結報表計算完成 ({}, {})。成功: {}, 失敗: {}, 總分店數: {}, 耗時: {} ms",
+                    scope, strategy, progress.succeeded.get(), progress.failed.get(), progress.total.get(),
+                    Duration.ofNanos(System.nanoTime() - progress.startNanos).toMillis());
+            return completed;
+        } finally {
+            activeRuns.remove(progress);
+        }
+    }
+
+    /**
+     * 逐店結算
+     *
+     * @return 是否走訪完所有分店 (中斷時為 false)
+     */
+    private boolean settlePerStore(LocalDate date, Function<Pageable, Page<StoreIdentity>> pageLoader, String scope,
+                                   LocalDateTime startOfDay, LocalDateTime endOfDay, int storeLimit,
+                                   SettlementProgress progress) {
 
         int pageNumber = 0;
-        int pageSize = 50;
         Page<StoreIdentity> storePage;
 
-        do {
-            // 1. 查詢該頁分店
-            storePage = storeRepository.findAllStoreIdentities(
-                    PageRequest.of(pageNumber, pageSize, Sort.by("storeId"))
-            );
-
-            // 2. 處理該頁的分店
-            for (StoreIdentity storeIdentity : storePage.getContent()) {
-                try {
-                    // 直接呼叫外部 Service，不需要 Self-Injection
-                    storeSettlementService.processStoreStats(
-                            storeIdentity.getStoreId(),
-                            storeIdentity.getBrandId(),
-                            date,
-                            startOfDay, endOfDay);
-                    successCount++;
-                } catch (Exception e) {
-                    logger.error("分店 ID: {} 日結失敗", storeIdentity.getStoreId(), e);
-                    failCount++;
+        // 本次結算的分店上限 (補漏時每個日期各自一組)，與全域上限取較小者
+        Semaphore storePermits = new Semaphore(storeLimit);
+
+        // 使用 Java 21 虛擬線程 Executor；try-with-resources 會等待所有分店完成
+        try (ExecutorService executor = Math.min(resolveParallelism(), storeLimit) > 1
+                ? Executors.newVirtualThreadPerTaskExecutor() : null) {
+            do {
+                // 1. 查詢該頁分店
+                storePage = pageLoader.apply(PageRequest.of(pageNumber, pageSize, Sort.by("storeId")));
+                progress.total.set(storePage.getTotalElements());
+
+                // 2. 處理該頁的分店
+                List<StoreIdentity> stores = storePage.getContent();
+                for (StoreIdentity storeIdentity : stores) {
+                    if (executor == null) {
+                        settleStore(storeIdentity, date, startOfDay, endOfDay, progress);
+                        continue;
+                    }
+                    try {
+                        storePermits.acquire();
+                        try {
+                            settlementPermits.acquire();
+                        } catch (InterruptedException e) {
+                            storePermits.release();
+                            throw e;
+                        }
+                    } catch (InterruptedException e) {
+                        logger.error("日結作業被中斷 ({})", scope, e);
+                        Thread.currentThread().interrupt();
+                        return false;
+                    }
+                    executor.submit(() -> {
+                        try {
+                            settleStore(storeIdentity, date, startOfDay, endOfDay, progress);
+                        } finally {
+                            settlementPermits.release();
+                            storePermits.release();
+                        }
+                    });
+                }
+
+                pageNumber++;
+                if (pageNumber % 10 == 0) {
+                    logger.info("已處理 {} 頁分店 ({})，進度 {}/{}...",
+                            pageNumber, scope, progress.completed(), progress.total.get());
                 }
-            }
 
-            pageNumber++;
-            if (pageNumber % 10 == 0) {
-                logger.info("已處理 {} 頁分店...", pageNumber);
+            } while (storePage.hasNext());
+        }
+        return true;
+    }
+
+    /**
+     * 集合式結算：整個範圍在同一個交易中完成，重試時整批重算
+     */
+    private void settleChain(LocalDate date, int partitionCount, int partition,
+                             LocalDateTime startOfDay, LocalDateTime endOfDay, long storeCount,
+                             SettlementProgress progress) {
+        progress.total.set(storeCount);
+        try {
+            int settled = retryTemplate.execute(context -> {
+                if (context.getRetryCount() > 0) {
+                    retryCounter.increment();
+                    logger.warn("集合式日結 (分區 {}/{}) 重試第 {} 次", partition, partitionCount, context.getRetryCount());
+                }
+                return chainSettlementService.settle(date, startOfDay, endOfDay, partitionCount, partition);
+            });
+            progress.succeeded.set(settled);
+            successCounter.increment(settled);
+        } catch (Exception e) {
+            logger.error("集合式日結失敗 (分區 {}/{})，已整批回滾", partition, partitionCount, e);
+            progress.failed.set(storeCount);
+            failureCounter.increment(storeCount);
+        }
+    }
+
+    private void settleStore(StoreIdentity storeIdentity, LocalDate date,
+                             LocalDateTime startOfDay, LocalDateTime endOfDay, SettlementProgress progress) {
+        try {
+            retryTemplate.execute(context -> {
+                if (context.getRetryCount() > 0) {
+                    retryCounter.increment();
+                    logger.warn("分店 ID: {} 日結重試第 {} 次", storeIdentity.getStoreId(), context.getRetryCount());
+                }
+                // 直接呼叫外部 Service，不需要 Self-Injection
+                storeSettlementService.processStoreStats(
+                        storeIdentity.getStoreId(),
+                        storeIdentity.getBrandId(),
+                        date,
+                        startOfDay, endOfDay);
+                return null;
+            });
+            progress.succeeded.incrementAndGet();
+            successCounter.increment();
+        } catch (Exception e) {
+            logger.error("分店 ID: {} 日結失敗", storeIdentity.getStoreId(), e);
+            progress.failed.incrementAndGet();
+            failureCounter.increment();
+        }
+    }
+
+    private int resolveParallelism() {
+        if (parallelism > 0) {
+            return parallelism;
+        }
+        // 自動：使用連線池的一半，保留連線給線上交易
+        return Math.max(1, connectionPoolSize / 2);
+    }
+
+    /**
+     * 單次日結的進度 (各分店的虛擬執行緒並行更新)
+     */
+    private static final class SettlementProgress {
+
+        private final long startNanos;
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong succeeded = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private SettlementProgress(long startNanos) {
+            this.startNanos = startNanos;
+        }
+
+        long completed() {
+            return succeeded.get() + failed.get();
+        }
+
+        // 所有進行中結算的整體進度 (以分店數加權)
+        static double overallRatio(Collection<SettlementProgress> runs) {
+            long totalStores = 0;
+            long done = 0;
+            for (SettlementProgress run : runs) {
+                totalStores += run.total.get();
+                done += run.completed();
             }
+            return totalStores == 0 ? 1.0 : (double) done / totalStores;
+        }
 
-        } while (storePage.hasNext());
+        // 進行中的結算共用同一組許可，以最晚完成者的剩餘時間為準
+        static double maxEtaSeconds(Collection<SettlementProgress> runs) {
+            double eta = 0.0;
+            for (SettlementProgress run : runs) {
+                eta = Math.max(eta, run.etaSeconds());
+            }
+            return eta;
+        }
 
-        logger.info("日結報表計算完成。成功: {}, 失敗: {}, 總分店數: {}", successCount, failCount, storePage.getTotalElements());
+        // 依目前的平均每店耗時推估剩餘時間
+        double etaSeconds() {
+            long done = completed();
+            long remaining = total.get() - done;
+            if (done == 0 || remaining <= 0) {
+                return 0.0;
+            }
+            double elapsedSeconds = (System.nanoTime() - startNanos) / 1_000_000_000.0;
+            return elapsedSeconds / done * remaining;
+        }
     }
-}
\ No newline at end of file
+}
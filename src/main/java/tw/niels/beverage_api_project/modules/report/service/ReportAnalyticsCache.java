@@ -0,0 +1,666 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tw.niels.beverage_api_project.common.util.LongKeyedMap;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.report.dao.ReportAnalyticsDAO;
+import tw.niels.beverage_api_project.modules.report.dto.BrandSalesSummaryDto;
+import tw.niels.beverage_api_project.modules.report.dto.ProductSalesStatsDto;
+import tw.niels.beverage_api_project.modules.report.dto.StoreRankingDto;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 品牌報表的記憶體欄式 (columnar) 快取
+ * <p>
+ * 1. 保存最近 N 天的日結資料：每個品牌、每一天一組欄位陣列 (訂單數、金額...)，以分店索引存取；
+ *    商品日結則依分店索引分段 (CSR)，金額皆以「分」為單位的 long 保存。
+ * 2. 品牌總覽、分店排行與商品排行直接以迴圈加總陣列，不存取資料庫；查詢區間超出快取範圍時回傳 empty，由呼叫端改查資料庫。
+ * 3. 日結完成後只重新載入該日期，並透過 RabbitMQ Fanout 通知其他實例重新載入同一日期 (任何日期的補跑或手動重算皆同)；
+ *    排程另外定期比對最近幾天的指紋 (筆數與最後寫入時間)，補上遺漏的廣播。
+ * 4. 第一次載入整個範圍在啟動後的背景執行緒 (Virtual Thread) 進行，不佔用共用的排程執行緒；載入完成前查詢一律未命中。
+ * </p>
+ * 寫入 (載入) 方法以同一把鎖互斥；查詢不加鎖，讀到正在被覆寫的日期時視為未命中。
+ */
+@Service
+public class ReportAnalyticsCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportAnalyticsCache.class);
+
+    private final ReportAnalyticsDAO analyticsDAO;
+    private final TransactionTemplate readOnlyTransaction;
+    private final RabbitTemplate rabbitTemplate;
+
+    // 用來略過自己送出的重新載入廣播
+    private final String instanceId = TsidUtil.nextIdString();
+
+    private final Counter hitCounter;
+    private final Counter missCounter;
+
+    private final Map<Long, BrandColumns> brands = new ConcurrentHashMap<>();
+
+    // 已載入的日期範圍 (null = 尚未完成第一次載入)
+    private volatile Window window;
+
+    // 寫入 (載入) 方法的鎖；使用 ReentrantLock，避免 Virtual Thread 在長時間載入時佔住載體執行緒
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    // 第一次載入是否正在背景執行
+    private final AtomicBoolean initialLoading = new AtomicBoolean();
+
+    // 已載入日期的指紋 (只在寫入方法中存取)
+    private final Map<LocalDate, ReportAnalyticsDAO.DayFingerprint> loadedFingerprints = new HashMap<>();
+
+    @Value("${app.report.analytics-cache.enabled:false}")
+    private boolean enabled;
+
+    // 快取保留的天數 (含昨天)
+    @Value("${app.report.analytics-cache.days:35}")
+    private int days;
+
+    // 排程比對指紋的最近天數 (較早的日期依賴重新載入廣播)
+    @Value("${app.report.analytics-cache.refresh-days:3}")
+    private int refreshDays;
+
+    public ReportAnalyticsCache(ReportAnalyticsDAO analyticsDAO,
+                                PlatformTransactionManager transactionManager,
+                                RabbitTemplate rabbitTemplate,
+                                MeterRegistry meterRegistry) {
+        this.analyticsDAO = analyticsDAO;
+        this.rabbitTemplate = rabbitTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.hitCounter = Counter.builder("report.analytics.cache.queries")
+                .tag("result", "hit")
+                .description("由記憶體快取回答的報表查詢數")
+                .register(meterRegistry);
+        this.missCounter = Counter.builder("report.analytics.cache.queries")
+                .tag("result", "miss")
+                .description("超出快取範圍、改查資料庫的報表查詢數")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 啟動完成後在背景執行第一次載入
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        startInitialLoad();
+    }
+
+    /**
+     * 載入整個範圍 (第一次載入；由背景執行緒呼叫，完成後才開放查詢)
+     */
+    public void initialLoad() {
+        if (!enabled) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            if (window != null) {
+                return;
+            }
+            long start = System.nanoTime();
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            LocalDate from = yesterday.minusDays(days - 1);
+            loadRange(from, yesterday);
+            window = new Window(from, yesterday);
+            logger.info("報表分析快取載入完成 ({} ~ {}，{} 個品牌，{} ms)",
+                    from, yesterday, brands.size(), (System.nanoTime() - start) / 1_000_000);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * 只重新載入指紋有變化的最近日期
+     * 第一次載入尚未完成時不等待 (不佔用排程執行緒)；第一次載入失敗時由此重新在背景啟動
+     */
+    @Scheduled(fixedDelayString = "${app.report.analytics-cache.refresh-interval-ms:60000}")
+    public void refresh() {
+        if (!enabled) {
+            return;
+        }
+        if (window == null) {
+            startInitialLoad();
+            return;
+        }
+
+        loadLock.lock();
+        try {
+            LocalDate yesterday = LocalDate.now().minusDays(1);
+            Window current = window;
+            LocalDate from = max(current.from(), yesterday.minusDays(refreshDays - 1));
+            Map<LocalDate, ReportAnalyticsDAO.DayFingerprint> latest = analyticsDAO.findFingerprints(from, yesterday);
+            LocalDate firstChanged = null;
+            LocalDate lastChanged = null;
+            for (LocalDate date = from; !date.isAfter(yesterday); date = date.plusDays(1)) {
+                if (date.isAfter(current.to()) || !Objects.equals(latest.get(date), loadedFingerprints.get(date))) {
+                    firstChanged = firstChanged == null ? date : firstChanged;
+                    lastChanged = date;
+                }
+            }
+            if (firstChanged != null) {
+                reload(firstChanged, lastChanged);
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    /**
+     * 日結 (或補跑) 完成後重新載入該日期，並通知其他實例
+     */
+    public void reloadDay(LocalDate date) {
+        reloadLocal(date);
+        try {
+            rabbitTemplate.convertAndSend(RabbitConfig.REPORT_CACHE_EXCHANGE, "",
+                    new ReloadDayMessage(date.toString(), instanceId));
+        } catch (Exception e) {
+            // 廣播失敗時，最近幾天的日期仍會由排程比對指紋載入
+            logger.error("報表分析快取重新載入廣播失敗 (日期: {})", date, e);
+        }
+    }
+
+    /**
+     * 監聽其他實例送出的重新載入廣播
+     */
+    @RabbitListener(queues = "#{reportCacheAnonymousQueue.name}")
+    public void handleReloadBroadcast(ReloadDayMessage message) {
+        if (instanceId.equals(message.originId())) {
+            return;
+        }
+        reloadLocal(LocalDate.parse(message.date()));
+    }
+
+    private void reloadLocal(LocalDate date) {
+        // 尚未完成第一次載入時，由第一次載入 (或之後的指紋比對) 一併讀取
+        if (!enabled || window == null) {
+            return;
+        }
+        loadLock.lock();
+        try {
+            reload(date, date);
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private void startInitialLoad() {
+        if (!enabled || !initialLoading.compareAndSet(false, true)) {
+            return;
+        }
+        Thread.ofVirtual().name("report-analytics-cache").start(() -> {
+            try {
+                initialLoad();
+            } catch (Exception e) {
+                logger.error("報表分析快取載入失敗，下次排程重試 (期間查詢改查資料庫)", e);
+            } finally {
+                initialLoading.set(false);
+            }
+        });
+    }
+
+    /**
+     * 品牌總覽 (等同 DailyStoreStatsRepository.aggregateBrandSales)
+     */
+    public Optional<BrandSalesSummaryDto> summarize(Long brandId, LocalDate startDate, LocalDate endDate) {
+        StoreDay[] slices = storeSlices(brandId, startDate, endDate);
+        if (slices == null) {
+            return Optional.empty();
+        }
+
+        long totalOrders = 0;
+        long cancelledOrders = 0;
+        long totalRevenue = 0;
+        long totalDiscount = 0;
+        for (StoreDay day : slices) {
+            int[] orders = day.totalOrders();
+            int[] cancelled = day.cancelledOrders();
+            long[] revenue = day.totalRevenue();
+            long[] discount = day.totalDiscount();
+            for (int i = 0; i < orders.length; i++) {
+                totalOrders += orders[i];
+                cancelledOrders += cancelled[i];
+                totalRevenue += revenue[i];
+                totalDiscount += discount[i];
+            }
+        }
+        return Optional.of(new BrandSalesSummaryDto(totalOrders, cents(totalRevenue), cents(totalDiscount), cancelledOrders));
+    }
+
+    /**
+     * 分店實收排行 (等同 DailyStoreStatsRepository.findTopStoresByRevenue，同額時依分店 ID 排序)
+     */
+    public Optional<List<StoreRankingDto>> rankStores(Long brandId, LocalDate startDate, LocalDate endDate) {
+        StoreDay[] slices = storeSlices(brandId, startDate, endDate);
+        if (slices == null) {
+            return Optional.empty();
+        }
+        // 分店目錄在日期資料之前發布，讀取順序在後即可涵蓋所有索引
+        long[] storeIds = directory(brandId).storeIds();
+
+        long[] finalRevenue = new long[storeIds.length];
+        boolean[] present = new boolean[storeIds.length];
+        for (StoreDay day : slices) {
+            long[] revenue = day.finalRevenue();
+            boolean[] rows = day.present();
+            for (int i = 0; i < revenue.length; i++) {
+                finalRevenue[i] += revenue[i];
+                present[i] |= rows[i];
+            }
+        }
+
+        List<StoreRankingDto> ranking = new ArrayList<>();
+        for (int i = 0; i < storeIds.length; i++) {
+            if (present[i]) {
+                ranking.add(new StoreRankingDto(storeIds[i], cents(finalRevenue[i])));
+            }
+        }
+        ranking.sort(Comparator.comparing(StoreRankingDto::getTotalRevenue).reversed()
+                .thenComparing(StoreRankingDto::getStoreId));
+        return Optional.of(ranking);
+    }
+
+    /**
+     * 分店商品銷售排行 (等同 DailyProductStatsRepository.findProductSalesRanking，同額時依商品 ID 排序)
+     */
+    public Optional<List<ProductSalesStatsDto>> rankProducts(Long brandId, Long storeId,
+                                                             LocalDate startDate, LocalDate endDate) {
+        ProductDay[] slices = productSlices(brandId, startDate, endDate);
+        if (slices == null) {
+            return Optional.empty();
+        }
+        Integer storeIndex = directory(brandId).storeIndex().get(storeId);
+        if (storeIndex == null) {
+            return Optional.of(List.of());
+        }
+        ProductDirectory products = brands.get(brandId).products;
+
+        long[] quantity = new long[products.productIds().length];
+        long[] sales = new long[products.productIds().length];
+        boolean[] present = new boolean[products.productIds().length];
+        int s = storeIndex;
+        for (ProductDay day : slices) {
+            if (s >= day.storeStart().length) {
+                continue;
+            }
+            int[] productIndex = day.productIndex();
+            int[] sold = day.quantitySold();
+            long[] amount = day.totalSales();
+            for (int i = day.storeStart()[s], end = day.storeEnd()[s]; i < end; i++) {
+                int p = productIndex[i];
+                quantity[p] += sold[i];
+                sales[p] += amount[i];
+                present[p] = true;
+            }
+        }
+
+        List<ProductSalesStatsDto> ranking = new ArrayList<>();
+        for (int p = 0; p < present.length; p++) {
+            if (present[p]) {
+                ranking.add(new ProductSalesStatsDto(products.productIds()[p], products.productNames()[p],
+                        quantity[p], cents(sales[p])));
+            }
+        }
+        ranking.sort(Comparator.comparing(ProductSalesStatsDto::getTotalSalesAmount).reversed()
+                .thenComparing(ProductSalesStatsDto::getProductId));
+        return Optional.of(ranking);
+    }
+
+    // ---------- 查詢 ----------
+
+    private StoreDay[] storeSlices(Long brandId, LocalDate startDate, LocalDate endDate) {
+        if (!covers(startDate, endDate)) {
+            missCounter.increment();
+            return null;
+        }
+        BrandColumns columns = brands.get(brandId);
+        List<StoreDay> slices = new ArrayList<>();
+        for (LocalDate date = startDate; columns != null && !date.isAfter(endDate); date = date.plusDays(1)) {
+            StoreDay day = columns.storeDays.get(slot(date));
+            if (day != null && day.epochDay() == date.toEpochDay()) {
+                slices.add(day);
+            } else if (day != null) {
+                // 該位置已被其他日期覆寫 (查詢期間快取範圍前移)
+                missCounter.increment();
+                return null;
+            }
+        }
+        hitCounter.increment();
+        return slices.toArray(StoreDay[]::new);
+    }
+
+    private ProductDay[] productSlices(Long brandId, LocalDate startDate, LocalDate endDate) {
+        if (!covers(startDate, endDate)) {
+            missCounter.increment();
+            return null;
+        }
+        BrandColumns columns = brands.get(brandId);
+        List<ProductDay> slices = new ArrayList<>();
+        for (LocalDate date = startDate; columns != null && !date.isAfter(endDate); date = date.plusDays(1)) {
+            ProductDay day = columns.productDays.get(slot(date));
+            if (day != null && day.epochDay() == date.toEpochDay()) {
+                slices.add(day);
+            } else if (day != null) {
+                missCounter.increment();
+                return null;
+            }
+        }
+        hitCounter.increment();
+        return slices.toArray(ProductDay[]::new);
+    }
+
+    private boolean covers(LocalDate startDate, LocalDate endDate) {
+        Window current = window;
+        if (!enabled || current == null) {
+            return false;
+        }
+        // 起日晚於迄日時 BETWEEN 查無資料，快取同樣回傳空結果
+        return startDate.isAfter(endDate)
+                || (!startDate.isBefore(current.from()) && !endDate.isAfter(current.to()));
+    }
+
+    private StoreDirectory directory(Long brandId) {
+        BrandColumns columns = brands.get(brandId);
+        return columns != null ? columns.stores : StoreDirectory.EMPTY;
+    }
+
+    private BrandColumns brandColumns(Long brandId) {
+        return brands.computeIfAbsent(brandId, id -> new BrandColumns(days));
+    }
+
+    // ---------- 載入 ----------
+
+    /**
+     * 重新載入 [from, to]；超過目前範圍時先把範圍起點前移，載入完成後才延伸範圍終點
+     */
+    private void reload(LocalDate from, LocalDate to) {
+        Window current = window;
+        LocalDate newTo = max(current.to(), to);
+        LocalDate newFrom = max(current.from(), newTo.minusDays(days - 1));
+        // 範圍延伸時，中間的日期也需要載入 (覆寫舊日期的位置)
+        LocalDate loadFrom = to.isAfter(current.to()) ? min(from, current.to().plusDays(1)) : from;
+        loadFrom = max(loadFrom, newFrom);
+        if (loadFrom.isAfter(to)) {
+            return;
+        }
+
+        window = new Window(newFrom, current.to());
+        loadRange(loadFrom, to);
+        window = new Window(newFrom, newTo);
+        loadedFingerprints.keySet().removeIf(date -> date.isBefore(newFrom));
+        logger.debug("報表分析快取重新載入 {} ~ {}", loadFrom, to);
+    }
+
+    private void loadRange(LocalDate from, LocalDate to) {
+        // 先取指紋再讀資料：期間若有新的寫入，下次排程會因指紋不同而再次載入
+        Map<LocalDate, ReportAnalyticsDAO.DayFingerprint> fingerprints = analyticsDAO.findFingerprints(from, to);
+
+        Map<Long, Map<Long, StoreDay>> storeDays = new HashMap<>();
+        Map<Long, Map<Long, ProductDay>> productDays = new HashMap<>();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            StoreDayBuilder storeBuilder = new StoreDayBuilder(storeDays);
+            analyticsDAO.streamStoreStats(from, to, storeBuilder::add);
+            storeBuilder.flush();
+
+            ProductDayBuilder productBuilder = new ProductDayBuilder(productDays);
+            analyticsDAO.streamProductStats(from, to, productBuilder::add);
+            productBuilder.flush();
+        });
+
+        // 每個品牌的每一天都要覆寫 (沒有資料的日期清空)
+        for (Map.Entry<Long, BrandColumns> entry : brands.entrySet()) {
+            Map<Long, StoreDay> brandStoreDays = storeDays.getOrDefault(entry.getKey(), Map.of());
+            Map<Long, ProductDay> brandProductDays = productDays.getOrDefault(entry.getKey(), Map.of());
+            for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+                long epochDay = date.toEpochDay();
+                entry.getValue().storeDays.set(slot(date), brandStoreDays.get(epochDay));
+                entry.getValue().productDays.set(slot(date), brandProductDays.get(epochDay));
+            }
+        }
+
+        for (LocalDate date = from; !date.isAfter(to); date = date.plusDays(1)) {
+            ReportAnalyticsDAO.DayFingerprint fingerprint = fingerprints.get(date);
+            if (fingerprint != null) {
+                loadedFingerprints.put(date, fingerprint);
+            } else {
+                loadedFingerprints.remove(date);
+            }
+        }
+    }
+
+    private int slot(LocalDate date) {
+        return (int) Math.floorMod(date.toEpochDay(), (long) days);
+    }
+
+    private static BigDecimal cents(long value) {
+        return BigDecimal.valueOf(value, 2);
+    }
+
+    private static LocalDate max(LocalDate a, LocalDate b) {
+        return a.isAfter(b) ? a : b;
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    /**
+     * 依 (日期, 品牌) 分組建立分店欄位陣列 (資料依日期、品牌、分店排序)
+     */
+    private final class StoreDayBuilder {
+
+        private final Map<Long, Map<Long, StoreDay>> result;
+        private final List<long[]> rows = new ArrayList<>();
+        private long epochDay = Long.MIN_VALUE;
+        private long brandId;
+
+        private StoreDayBuilder(Map<Long, Map<Long, StoreDay>> result) {
+            this.result = result;
+        }
+
+        void add(LocalDate date, long brandId, long storeId, int totalOrders, int cancelledOrders,
+                 long totalRevenue, long totalDiscount, long finalRevenue) {
+            if (date.toEpochDay() != epochDay || brandId != this.brandId) {
+                flush();
+                this.epochDay = date.toEpochDay();
+                this.brandId = brandId;
+            }
+            rows.add(new long[]{storeId, totalOrders, cancelledOrders, totalRevenue, totalDiscount, finalRevenue});
+        }
+
+        void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            BrandColumns columns = brandColumns(brandId);
+            int[] indexes = columns.registerStores(rows.stream().mapToLong(row -> row[0]).toArray());
+
+            int size = columns.stores.storeIds().length;
+            StoreDay day = new StoreDay(epochDay, new int[size], new int[size],
+                    new long[size], new long[size], new long[size], new boolean[size]);
+            for (int r = 0; r < rows.size(); r++) {
+                long[] row = rows.get(r);
+                int i = indexes[r];
+                day.totalOrders()[i] = (int) row[1];
+                day.cancelledOrders()[i] = (int) row[2];
+                day.totalRevenue()[i] = row[3];
+                day.totalDiscount()[i] = row[4];
+                day.finalRevenue()[i] = row[5];
+                day.present()[i] = true;
+            }
+            result.computeIfAbsent(brandId, id -> new HashMap<>()).put(epochDay, day);
+            rows.clear();
+        }
+    }
+
+    /**
+     * 依 (日期, 品牌) 分組建立商品 CSR 陣列 (資料依日期、品牌、分店、商品排序，同一分店的資料連續)
+     */
+    private final class ProductDayBuilder {
+
+        private final Map<Long, Map<Long, ProductDay>> result;
+        private final List<Object[]> rows = new ArrayList<>();
+        private long epochDay = Long.MIN_VALUE;
+        private long brandId;
+
+        private ProductDayBuilder(Map<Long, Map<Long, ProductDay>> result) {
+            this.result = result;
+        }
+
+        void add(LocalDate date, long brandId, long storeId, long productId, String productName,
+                 int quantitySold, long totalSales) {
+            if (date.toEpochDay() != epochDay || brandId != this.brandId) {
+                flush();
+                this.epochDay = date.toEpochDay();
+                this.brandId = brandId;
+            }
+            rows.add(new Object[]{storeId, productId, productName, quantitySold, totalSales});
+        }
+
+        void flush() {
+            if (rows.isEmpty()) {
+                return;
+            }
+            BrandColumns columns = brandColumns(brandId);
+            columns.registerStores(rows.stream().mapToLong(row -> (Long) row[0]).distinct().toArray());
+            LongKeyedMap<Integer> storeIndex = columns.stores.storeIndex();
+
+            int size = columns.stores.storeIds().length;
+            int[] storeStart = new int[size];
+            int[] storeEnd = new int[size];
+            int[] productIndex = new int[rows.size()];
+            int[] quantitySold = new int[rows.size()];
+            long[] totalSales = new long[rows.size()];
+            for (int r = 0; r < rows.size(); r++) {
+                Object[] row = rows.get(r);
+                int s = storeIndex.get((Long) row[0]);
+                if (r == 0 || !row[0].equals(rows.get(r - 1)[0])) {
+                    storeStart[s] = r;
+                }
+                storeEnd[s] = r + 1;
+                productIndex[r] = columns.registerProduct((Long) row[1], (String) row[2]);
+                quantitySold[r] = (Integer) row[3];
+                totalSales[r] = (Long) row[4];
+            }
+            columns.publishProducts();
+            result.computeIfAbsent(brandId, id -> new HashMap<>())
+                    .put(epochDay, new ProductDay(epochDay, storeStart, storeEnd, productIndex, quantitySold, totalSales));
+            rows.clear();
+        }
+    }
+
+    /**
+     * 單一品牌的欄式資料 (每個日期位置一組陣列) 與分店、商品目錄
+     * 目錄只會附加：已發布的索引不會改變，新的陣列一律在目錄發布後才放入日期位置。
+     */
+    private static final class BrandColumns {
+
+        private final AtomicReferenceArray<StoreDay> storeDays;
+        private final AtomicReferenceArray<ProductDay> productDays;
+        private volatile StoreDirectory stores = StoreDirectory.EMPTY;
+        private volatile ProductDirectory products = new ProductDirectory(new long[0], new String[0]);
+
+        // 以下只在寫入方法中存取
+        private final Map<Long, Integer> storeIndexes = new HashMap<>();
+        private final Map<ProductKey, Integer> productIndexes = new HashMap<>();
+        private final List<ProductKey> productKeys = new ArrayList<>();
+
+        private BrandColumns(int days) {
+            this.storeDays = new AtomicReferenceArray<>(days);
+            this.productDays = new AtomicReferenceArray<>(days);
+        }
+
+        int[] registerStores(long[] storeIds) {
+            int before = storeIndexes.size();
+            int[] indexes = new int[storeIds.length];
+            for (int i = 0; i < storeIds.length; i++) {
+                indexes[i] = storeIndexes.computeIfAbsent(storeIds[i], id -> storeIndexes.size());
+            }
+            if (storeIndexes.size() != before) {
+                long[] ids = new long[storeIndexes.size()];
+                storeIndexes.forEach((id, index) -> ids[index] = id);
+                stores = new StoreDirectory(ids, LongKeyedMap.copyOf(storeIndexes));
+            }
+            return indexes;
+        }
+
+        int registerProduct(long productId, String productName) {
+            ProductKey key = new ProductKey(productId, productName);
+            Integer index = productIndexes.get(key);
+            if (index == null) {
+                index = productKeys.size();
+                productIndexes.put(key, index);
+                productKeys.add(key);
+            }
+            return index;
+        }
+
+        void publishProducts() {
+            if (productKeys.size() == products.productIds().length) {
+                return;
+            }
+            long[] ids = new long[productKeys.size()];
+            String[] names = new String[productKeys.size()];
+            for (int i = 0; i < productKeys.size(); i++) {
+                ids[i] = productKeys.get(i).productId();
+                names[i] = productKeys.get(i).productName();
+            }
+            products = new ProductDirectory(ids, names);
+        }
+    }
+
+    private record Window(LocalDate from, LocalDate to) {}
+
+    /**
+     * 重新載入廣播 (日期以 ISO 字串傳送)
+     */
+    public record ReloadDayMessage(String date, String originId) {}
+
+    private record StoreDirectory(long[] storeIds, LongKeyedMap<Integer> storeIndex) {
+        static final StoreDirectory EMPTY = new StoreDirectory(new long[0], LongKeyedMap.empty());
+    }
+
+    // 商品排行依 (商品 ID, 商品名稱) 分組，與資料庫查詢相同
+    private record ProductKey(long productId, String productName) {}
+
+    private record ProductDirectory(long[] productIds, String[] productNames) {}
+
+    /**
+     * 單一品牌、單一日期的分店欄位 (陣列索引 = 分店索引；長度為建立當時的分店數)
+     */
+    private record StoreDay(long epochDay, int[] totalOrders, int[] cancelledOrders,
+                            long[] totalRevenue, long[] totalDiscount, long[] finalRevenue, boolean[] present) {}
+
+    /**
+     * 單一品牌、單一日期的商品欄位 (分店 s 的資料位於 [storeStart[s], storeEnd[s]))
+     */
+    private record ProductDay(long epochDay, int[] storeStart, int[] storeEnd,
+                              int[] productIndex, int[] quantitySold, long[] totalSales) {}
+}
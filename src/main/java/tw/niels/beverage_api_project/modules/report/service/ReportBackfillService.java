@@ -0,0 +1,177 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tw.niels.beverage_api_project.modules.report.dao.SettlementCheckpointDAO;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 報表補漏 (可中斷續跑)
+ * <p>
+ * 1. 每個日期的分店依 ID 取餘數分成數個補漏分區，每個分區各自寫入日結檢查點 (settlement_checkpoints)。
+ * 2. 補漏時略過已完成的分區 (或已完整結算的日期)，中途當機後重新執行只會補跑未完成的分區。
+ * 3. 兩層並行上限：同時補跑的日期數，以及每個日期同時結算的分店數 (仍受日結的全域上限限制)。
+ * </p>
+ */
+@Service
+public class ReportBackfillService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportBackfillService.class);
+
+    private final ReportAggregationService reportAggregationService;
+    private final SettlementCheckpointDAO checkpointDAO;
+
+    // 每個日期的補漏分區數 (分區越多，中斷後重跑的範圍越小)
+    @Value("${app.report.backfill.partitions:4}")
+    private int partitions;
+
+    // 同時補跑的日期數
+    @Value("${app.report.backfill.max-concurrent-dates:2}")
+    private int maxConcurrentDates;
+
+    // 每個日期同時結算的分店數
+    @Value("${app.report.backfill.max-stores-per-date:4}")
+    private int maxStoresPerDate;
+
+    // 每次補漏都重新檢查最近幾天的檢查點 (補上部分失敗的日期)
+    @Value("${app.report.backfill.lookback-days:7}")
+    private int lookbackDays;
+
+    public ReportBackfillService(ReportAggregationService reportAggregationService,
+                                 SettlementCheckpointDAO checkpointDAO) {
+        this.reportAggregationService = reportAggregationService;
+        this.checkpointDAO = checkpointDAO;
+    }
+
+    /**
+     * 補跑到昨天為止缺漏或未完成的日結
+     * <p>
+     * 檢查範圍：最後一個有檢查點的日期之後 (缺漏的日期)，以及最近 lookback-days 天 (未完成的分區)；
+     * 完全沒有檢查點時只結算昨天。
+     * </p>
+     */
+    public BackfillResult backfillMissing() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate latest = checkpointDAO.findLatestDate();
+        if (latest == null) {
+            logger.info("【報表補漏】查無日結檢查點，將嘗試執行昨天的結算。");
+            return backfill(yesterday, yesterday);
+        }
+
+        LocalDate recent = yesterday.minusDays(Math.max(1, lookbackDays) - 1);
+        LocalDate startDate = latest.plusDays(1).isBefore(recent) ? latest.plusDays(1) : recent;
+        return backfill(startDate, yesterday);
+    }
+
+    /**
+     * 補跑區間內所有未完成的分區 (依日期由舊到新)，呼叫端會等待全部完成
+     */
+    public BackfillResult backfill(LocalDate startDate, LocalDate endDate) {
+        List<DatePlan> plans = plan(startDate, endDate);
+        int pendingPartitions = plans.stream().mapToInt(plan -> plan.partitions().size()).sum();
+        int skippedPartitions = (int) (startDate.datesUntil(endDate.plusDays(1)).count() * partitions) - pendingPartitions;
+
+        if (plans.isEmpty()) {
+            logger.info("【報表補漏】{} ~ {} 的日結皆已完成，無需補跑。", startDate, endDate);
+            return new BackfillResult(0, 0, 0, skippedPartitions);
+        }
+        logger.info("【報表補漏】{} ~ {} 共 {} 個日期、{} 個分區待補跑 (略過 {} 個已完成分區)",
+                startDate, endDate, plans.size(), pendingPartitions, skippedPartitions);
+
+        AtomicInteger settled = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        Semaphore datePermits = new Semaphore(Math.max(1, maxConcurrentDates));
+
+        // try-with-resources 會等待所有日期完成
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (DatePlan plan : plans) {
+                try {
+                    datePermits.acquire();
+                } catch (InterruptedException e) {
+                    logger.error("【報表補漏】作業被中斷，未開始的日期留待下次補跑", e);
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                executor.submit(() -> {
+                    try {
+                        backfillDate(plan, settled, failed);
+                    } finally {
+                        datePermits.release();
+                    }
+                });
+            }
+        }
+
+        logger.info("【報表補漏】完成。成功分區: {}，失敗分區: {} (下次補漏重試)", settled.get(), failed.get());
+        return new BackfillResult(plans.size(), settled.get(), failed.get(), skippedPartitions);
+    }
+
+    private void backfillDate(DatePlan plan, AtomicInteger settled, AtomicInteger failed) {
+        for (int partition : plan.partitions()) {
+            try {
+                if (reportAggregationService.settlePartition(plan.date(), partitions, partition, maxStoresPerDate)) {
+                    settled.incrementAndGet();
+                } else {
+                    failed.incrementAndGet();
+                }
+            } catch (Exception e) {
+                logger.error("【報表補漏】{} 分區 {}/{} 結算失敗", plan.date(), partition, partitions, e);
+                failed.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 依檢查點列出每個日期尚未完成的補漏分區
+     * 某個分區數 N 的 N 個分區都已完成 (如凌晨排程的不分區結算) 即視為整天已完成。
+     */
+    private List<DatePlan> plan(LocalDate startDate, LocalDate endDate) {
+        // 日期 -> 分區數 -> 已完成的分區
+        Map<LocalDate, Map<Integer, Set<Integer>>> completed = new HashMap<>();
+        for (SettlementCheckpointDAO.Checkpoint checkpoint : checkpointDAO.findCompleted(startDate, endDate)) {
+            completed.computeIfAbsent(checkpoint.date(), date -> new HashMap<>())
+                    .computeIfAbsent(checkpoint.partitionCount(), count -> new HashSet<>())
+                    .add(checkpoint.partition());
+        }
+
+        List<DatePlan> plans = new ArrayList<>();
+        for (LocalDate date = startDate; !date.isAfter(endDate); date = date.plusDays(1)) {
+            Map<Integer, Set<Integer>> byCount = completed.getOrDefault(date, Map.of());
+            boolean dateCompleted = byCount.entrySet().stream()
+                    .anyMatch(entry -> entry.getValue().size() >= entry.getKey());
+            if (dateCompleted) {
+                continue;
+            }
+
+            Set<Integer> done = byCount.getOrDefault(partitions, Set.of());
+            List<Integer> pending = new ArrayList<>();
+            for (int partition = 0; partition < partitions; partition++) {
+                if (!done.contains(partition)) {
+                    pending.add(partition);
+                }
+            }
+            plans.add(new DatePlan(date, pending));
+        }
+        return plans;
+    }
+
+    private record DatePlan(LocalDate date, List<Integer> partitions) {}
+
+    /**
+     * 補漏結果 (分區數皆以補漏分區計算)
+     */
+    public record BackfillResult(int dates, int settledPartitions, int failedPartitions, int skippedPartitions) {}
+}
@@ -0,0 +1,125 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import tw.niels.beverage_api_project.common.util.LongKeyedMap;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryUsageDAO.RecipeTuple;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 串流計算理論消耗的累加器 (非執行緒安全，每份報表建立一個)
+ * <p>
+ * 1. 建立時把配方轉成原生型別：規格/選項 ID -> [原物料槽位, 配方量 x 10^4] 的 long 陣列。
+ * 2. 每一列訂單明細只做整數乘加，用量累加到以槽位為索引的 long[]，不建立 BigDecimal 或裝箱物件。
+ * 3. 記憶體只與配方數量有關，與訂單明細筆數無關。
+ * </p>
+ */
+public final class TheoreticalUsageAccumulator {
+
+    // 與 recipes.quantity 的小數位數一致 (numeric(10, 4))
+    static final int SCALE = 4;
+
+    private final LongKeyedMap<long[]> variantRecipes;
+    private final LongKeyedMap<long[]> optionRecipes;
+    private final long[] itemIds;
+    private final long[] totals;
+
+    private long lineCount;
+    private long missingVariantLines;
+
+    private TheoreticalUsageAccumulator(LongKeyedMap<long[]> variantRecipes, LongKeyedMap<long[]> optionRecipes,
+                                        long[] itemIds) {
+        this.variantRecipes = variantRecipes;
+        this.optionRecipes = optionRecipes;
+        this.itemIds = itemIds;
+        this.totals = new long[itemIds.length];
+    }
+
+    public static TheoreticalUsageAccumulator of(List<RecipeTuple> recipes) {
+        Map<Long, Integer> slots = new LinkedHashMap<>();
+        Map<Long, List<Long>> byVariant = new HashMap<>();
+        Map<Long, List<Long>> byOption = new HashMap<>();
+
+        for (RecipeTuple recipe : recipes) {
+            if (recipe.inventoryItemId() == null || recipe.quantity() == null) {
+                continue;
+            }
+            Map<Long, List<Long>> target = recipe.variantId() != null ? byVariant
+                    : recipe.optionId() != null ? byOption : null;
+            if (target == null) {
+                continue;
+            }
+            long slot = slots.computeIfAbsent(recipe.inventoryItemId(), id -> slots.size());
+            long scaled = recipe.quantity().setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+            List<Long> lines = target.computeIfAbsent(
+                    recipe.variantId() != null ? recipe.variantId() : recipe.optionId(), id -> new ArrayList<>());
+            lines.add(slot);
+            lines.add(scaled);
+        }
+
+        long[] itemIds = slots.keySet().stream().mapToLong(Long::longValue).toArray();
+        return new TheoreticalUsageAccumulator(toPrimitive(byVariant), toPrimitive(byOption), itemIds);
+    }
+
+    /**
+     * 累加飲品本體 (規格) 配方；variantId 為 0 表示訂單明細缺少規格
+     */
+    public void addVariantLine(long variantId, int quantity) {
+        lineCount++;
+        if (variantId == 0L) {
+            missingVariantLines++;
+            return;
+        }
+        accumulate(variantRecipes.get(variantId), quantity);
+    }
+
+    /**
+     * 累加加料選項配方
+     */
+    public void addOptionLine(long optionId, int quantity) {
+        lineCount++;
+        accumulate(optionRecipes.get(optionId), quantity);
+    }
+
+    public long getLineCount() {
+        return lineCount;
+    }
+
+    public long getMissingVariantLines() {
+        return missingVariantLines;
+    }
+
+    /**
+     * @return Map<原物料 ID, 理論消耗> (只包含有用量的原物料)
+     */
+    public Map<Long, BigDecimal> toUsageMap() {
+        Map<Long, BigDecimal> usage = new HashMap<>();
+        for (int slot = 0; slot < itemIds.length; slot++) {
+            if (totals[slot] != 0L) {
+                usage.put(itemIds[slot], BigDecimal.valueOf(totals[slot], SCALE));
+            }
+        }
+        return usage;
+    }
+
+    private void accumulate(long[] lines, int quantity) {
+        if (lines == null) {
+            return;
+        }
+        for (int i = 0; i < lines.length; i += 2) {
+            int slot = (int) lines[i];
+            totals[slot] = Math.addExact(totals[slot], Math.multiplyExact(lines[i + 1], quantity));
+        }
+    }
+
+    private static LongKeyedMap<long[]> toPrimitive(Map<Long, List<Long>> source) {
+        Map<Long, long[]> converted = new HashMap<>();
+        source.forEach((id, lines) -> converted.put(id, lines.stream().mapToLong(Long::longValue).toArray()));
+        return LongKeyedMap.copyOf(converted);
+    }
+}
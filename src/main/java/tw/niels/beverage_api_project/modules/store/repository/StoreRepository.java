@@ -35,6 +35,14 @@ public interface StoreRepository extends JpaRepository<Store, Long> {
     @Query("SELECT s.id as storeId, s.brand.id as brandId FROM Store s")
     Page<StoreIdentity> findAllStoreIdentities(Pageable pageable);
 
+    /**
+     * 只查詢指定分區的分店 ID (分店 ID 對分區數取餘數)，供多節點分區日結使用
+     */
+    @Query("SELECT s.id as storeId, s.brand.id as brandId FROM Store s WHERE MOD(s.id, :partitions) = :partition")
+    Page<StoreIdentity> findStoreIdentitiesByPartition(@Param("partitions") int partitions,
+                                                       @Param("partition") int partition,
+                                                       Pageable pageable);
+
     /**
      * 【系統專用】根據 ID 查詢分店 (繞過 BrandId 檢查)
      * 用於報表結算等背景服務。
@@ -1,5 +1,6 @@
 package tw.niels.beverage_api_project.modules.user.repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,6 +25,12 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.brand.id = :brandId AND u.id = :userId")
     Optional<User> findByBrand_IdAndId(Long brandId, Long userId);
 
+    /**
+     * 批次查詢品牌下的多位使用者 (一併抓取 MemberProfile，供批次結帳驗證員工 / 會員)
+     */
+    @Query("SELECT u FROM User u LEFT JOIN FETCH u.memberProfile WHERE u.brand.id = :brandId AND u.id IN :userIds")
+    List<User> findByBrand_IdAndIdIn(Long brandId, Collection<Long> userIds);
+
     /**
      * 禁用預設的 findById，強迫使用 findByBrand_BrandIdAndUserId()。
      */
@@ -0,0 +1,6 @@
+-- 促銷活動疊加設定
+-- is_stackable: 可與其他可疊加活動同時使用 (預設不可疊加，維持「只取單一最佳活動」的行為)
+-- stack_group : 互斥群組，同一群組的活動在同一張訂單最多只能使用一個 (null 代表不屬於任何群組)
+ALTER TABLE promotions
+    ADD COLUMN is_stackable BOOLEAN NOT NULL DEFAULT FALSE,
+    ADD COLUMN stack_group VARCHAR(50);
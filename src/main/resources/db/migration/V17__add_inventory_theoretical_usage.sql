@@ -0,0 +1,41 @@
+-- V17__add_inventory_theoretical_usage.sql
+-- 理論消耗累計表：訂單結案後依配方拆解的原物料用量，依 (分店, 原物料, 日期) 累加
+-- 由 InventoryDepletionService 非同步寫入，庫存差異報表直接讀取，不需再重播訂單
+
+CREATE TABLE public.inventory_theoretical_usage (
+                                                    store_id bigint NOT NULL,
+                                                    inventory_item_id bigint NOT NULL,
+                                                    usage_date date NOT NULL,
+                                                    quantity numeric(16, 4) DEFAULT 0.0000 NOT NULL,
+                                                    updated_at timestamp with time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+
+                                                    CONSTRAINT pk_inventory_theoretical_usage PRIMARY KEY (store_id, inventory_item_id, usage_date),
+                                                    CONSTRAINT fk_itu_store FOREIGN KEY (store_id) REFERENCES public.stores(store_id) ON DELETE CASCADE,
+                                                    CONSTRAINT fk_itu_item FOREIGN KEY (inventory_item_id) REFERENCES public.inventory_items(inventory_item_id) ON DELETE CASCADE
+);
+
+-- 報表查詢：某店某段日期的各原物料用量
+CREATE INDEX idx_itu_store_date ON public.inventory_theoretical_usage (store_id, usage_date);
+
+-- 以既有的已結案訂單回填歷史用量 (日期以資料庫時區計算)
+INSERT INTO public.inventory_theoretical_usage (store_id, inventory_item_id, usage_date, quantity)
+SELECT u.store_id, u.inventory_item_id, u.usage_date, SUM(u.quantity)
+FROM (
+         -- 飲品規格配方
+         SELECT o.store_id, r.inventory_item_id, o.completed_time::date AS usage_date,
+                r.quantity * oi.quantity AS quantity
+         FROM public.orders o
+                  JOIN public.order_items oi ON oi.order_id = o.order_id
+                  JOIN public.recipes r ON r.variant_id = oi.variant_id
+         WHERE o.status_code = 'CLOSED' AND o.completed_time IS NOT NULL
+         UNION ALL
+         -- 加料選項配方
+         SELECT o.store_id, r.inventory_item_id, o.completed_time::date AS usage_date,
+                r.quantity * oi.quantity AS quantity
+         FROM public.orders o
+                  JOIN public.order_items oi ON oi.order_id = o.order_id
+                  JOIN public.order_item_options oio ON oio.order_item_id = oi.order_item_id
+                  JOIN public.recipes r ON r.option_id = oio.option_id
+         WHERE o.status_code = 'CLOSED' AND o.completed_time IS NOT NULL
+     ) u
+GROUP BY u.store_id, u.inventory_item_id, u.usage_date;
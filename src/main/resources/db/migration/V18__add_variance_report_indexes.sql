@@ -0,0 +1,5 @@
+-- V18__add_variance_report_indexes.sql
+-- 庫存差異報表 (單一 SQL) 使用的區間掃描索引
+
+-- 分店已結案訂單依完成時間範圍查詢 (理論消耗聚合)
+CREATE INDEX idx_orders_store_status_completed ON public.orders (store_id, status_code, completed_time);
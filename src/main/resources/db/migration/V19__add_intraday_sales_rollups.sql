@@ -0,0 +1,37 @@
+-- V19__add_intraday_sales_rollups.sql
+-- 當日即時銷售彙總表：訂單結案/取消後依 (分店, 小時) 與 (分店, 商品, 小時) 累加
+-- 由 IntradaySalesRollupService 非同步寫入，「今日至今」報表直接讀取，凌晨日結時再以訂單資料校正
+-- 時段 (bucket_hour) 為應用程式時區的整點；結案訂單依完成時間、取消訂單依下單時間歸入時段
+
+CREATE TABLE public.hourly_store_sales (
+                                           store_id bigint NOT NULL,
+                                           brand_id bigint NOT NULL,
+                                           bucket_hour timestamp without time zone NOT NULL,
+                                           closed_orders integer DEFAULT 0 NOT NULL,
+                                           cancelled_orders integer DEFAULT 0 NOT NULL,
+                                           total_revenue numeric(12,2) DEFAULT 0.00 NOT NULL,
+                                           total_discount numeric(12,2) DEFAULT 0.00 NOT NULL,
+                                           final_revenue numeric(12,2) DEFAULT 0.00 NOT NULL,
+                                           cash_total numeric(12,2) DEFAULT 0.00 NOT NULL,
+                                           line_pay_total numeric(12,2) DEFAULT 0.00 NOT NULL,
+                                           updated_at timestamp with time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+
+                                           CONSTRAINT pk_hourly_store_sales PRIMARY KEY (store_id, bucket_hour),
+                                           CONSTRAINT fk_hss_store FOREIGN KEY (store_id) REFERENCES public.stores(store_id) ON DELETE CASCADE
+);
+
+-- 品牌端查詢：某品牌今日所有分店
+CREATE INDEX idx_hss_brand_hour ON public.hourly_store_sales (brand_id, bucket_hour);
+
+CREATE TABLE public.hourly_product_sales (
+                                             store_id bigint NOT NULL,
+                                             brand_id bigint NOT NULL,
+                                             product_id bigint NOT NULL,
+                                             bucket_hour timestamp without time zone NOT NULL,
+                                             quantity_sold integer DEFAULT 0 NOT NULL,
+                                             total_sales_amount numeric(12,2) DEFAULT 0.00 NOT NULL,
+                                             updated_at timestamp with time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+
+                                             CONSTRAINT pk_hourly_product_sales PRIMARY KEY (store_id, bucket_hour, product_id),
+                                             CONSTRAINT fk_hps_store FOREIGN KEY (store_id) REFERENCES public.stores(store_id) ON DELETE CASCADE
+);
@@ -0,0 +1,26 @@
+-- V20__add_settlement_checkpoints.sql
+-- 日結檢查點：每個 (日期, 分區數, 分區) 一列，記錄該範圍的分店是否已全部結算成功
+-- 由 ReportAggregationService 在每次結算開始與結束時寫入；補漏作業 (ReportBackfillService) 依此略過已完成的分區，
+-- 中途當機後重新啟動只需補跑未完成 (RUNNING / FAILED) 或尚未開始的分區
+-- 某個分區數 N 的 N 個分區都已完成，即代表該日期已完整結算 (不分區的結算為 N = 1)
+
+CREATE TABLE public.settlement_checkpoints (
+                                               date date NOT NULL,
+                                               partition_count integer NOT NULL,
+                                               partition_no integer NOT NULL,
+                                               status character varying(20) NOT NULL,
+                                               store_count integer DEFAULT 0 NOT NULL,
+                                               failed_stores integer DEFAULT 0 NOT NULL,
+                                               attempts integer DEFAULT 1 NOT NULL,
+                                               started_at timestamp with time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+                                               completed_at timestamp with time zone,
+
+                                               CONSTRAINT pk_settlement_checkpoints PRIMARY KEY (date, partition_count, partition_no),
+                                               CONSTRAINT ck_settlement_checkpoints_partition CHECK (partition_no >= 0 AND partition_no < partition_count)
+);
+
+-- 既有的日結資料視為已完整結算 (舊版補漏以最新日期判斷進度，之前的日期不會再補跑)
+INSERT INTO public.settlement_checkpoints (date, partition_count, partition_no, status, store_count, completed_at)
+SELECT date, 1, 0, 'COMPLETED', COUNT(*), MAX(created_at)
+FROM public.daily_store_stats
+GROUP BY date;
@@ -0,0 +1,8 @@
+-- V21__add_intraday_reconciled_flag.sql
+-- 當日即時銷售彙總的校正標記：凌晨校正以訂單資料重寫的時段列標記為 reconciled
+-- 各實例記憶體中尚未寫入的累加 (可能已包含在校正結果中) 在 upsert 時略過已校正的時段列，避免多實例重複累加
+-- 校正時沒有資料的時段不會有列，之後寫入的累加 (校正後才提交的訂單) 照常新增
+
+ALTER TABLE public.hourly_store_sales ADD COLUMN reconciled boolean DEFAULT false NOT NULL;
+
+ALTER TABLE public.hourly_product_sales ADD COLUMN reconciled boolean DEFAULT false NOT NULL;
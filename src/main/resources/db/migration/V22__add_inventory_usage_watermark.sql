@@ -0,0 +1,13 @@
+-- V22__add_inventory_usage_watermark.sql
+-- 即時理論消耗的涵蓋起始日：inventory_theoretical_usage 從 live_from (含) 起的用量才是完整的
+-- 首次啟用即時消耗時寫入啟用日的隔天 (啟用當天在啟用前結案的訂單沒有被累加)；V17 回填之後到啟用之前的日期沒有資料，
+-- 庫存差異報表的區間早於 live_from 時改為重播訂單。以 InventoryDepletionService.rebuild 重算較早的日期後，live_from 會往前移
+
+CREATE TABLE public.inventory_usage_watermark (
+                                                  id smallint DEFAULT 1 NOT NULL,
+                                                  live_from date NOT NULL,
+                                                  updated_at timestamp with time zone DEFAULT CURRENT_TIMESTAMP NOT NULL,
+
+                                                  CONSTRAINT pk_inventory_usage_watermark PRIMARY KEY (id),
+                                                  CONSTRAINT chk_inventory_usage_watermark_single CHECK (id = 1)
+);
@@ -0,0 +1,131 @@
+package tw.niels.beverage_api_project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BuyXGetYCalculator;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * 買 X 送 Y 計算成本：依數量展開為單價列表 vs 以 (單價, 數量) 計算
+ * <p>
+ * 訂單 5 個適用品項，每個品項的數量由 quantityPerLine 決定 (團購訂單如「珍珠奶茶 x 30」)。
+ * 搭配 GC profiler 可看到每次計算的配置量 (gc.alloc.rate.norm)。
+ * </p>
+ * 執行方式：mvn -B test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tw.niels.beverage_api_project.benchmark.BuyXGetYBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuyXGetYBenchmark {
+
+    private static final int LINES = 5;
+
+    @Param({"1", "30", "300"})
+    public int quantityPerLine;
+
+    private BuyXGetYCalculator calculator;
+    private Promotion promotion;
+    private Order order;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        calculator = new BuyXGetYCalculator();
+
+        Set<Product> products = new HashSet<>();
+        Set<OrderItem> items = new HashSet<>();
+        order = new Order();
+        for (int i = 0; i < LINES; i++) {
+            Product product = new Product();
+            product.setId(1000L + i);
+            products.add(product);
+
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product);
+            item.setQuantity(quantityPerLine);
+            item.setUnitPrice(new BigDecimal(45 + i * 5).setScale(2));
+            items.add(item);
+        }
+        order.setItems(items);
+
+        // 買二送一
+        promotion = new Promotion();
+        promotion.setType(PromotionType.BUY_X_GET_Y);
+        promotion.setMinSpend(new BigDecimal("2"));
+        promotion.setValue(BigDecimal.ONE);
+        promotion.setApplicableProducts(products);
+    }
+
+    /**
+     * 舊做法：每件商品展開為一個 BigDecimal，排序後加總最低價的贈送件數
+     */
+    @Benchmark
+    public BigDecimal expandPerUnit() {
+        int groupSize = promotion.getMinSpend().intValue() + promotion.getValue().intValue();
+        Set<Long> applicableProductIds = promotion.getApplicableProducts().stream()
+                .map(Product::getId)
+                .collect(Collectors.toSet());
+
+        List<BigDecimal> prices = new ArrayList<>();
+        for (OrderItem item : order.getItems()) {
+            if (applicableProductIds.contains(item.getProduct().getId())) {
+                for (int i = 0; i < item.getQuantity(); i++) {
+                    prices.add(item.getUnitPrice());
+                }
+            }
+        }
+        prices.sort(Comparator.naturalOrder());
+
+        BigDecimal totalDiscount = BigDecimal.ZERO;
+        int freeItemsCount = (prices.size() / groupSize) * promotion.getValue().intValue();
+        for (int i = 0; i < freeItemsCount; i++) {
+            totalDiscount = totalDiscount.add(prices.get(i));
+        }
+        return totalDiscount;
+    }
+
+    /**
+     * 新做法：以 (單價, 數量) 計算，配置量與數量無關
+     */
+    @Benchmark
+    public BigDecimal priceRuns() {
+        return calculator.calculateDiscount(order, promotion);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(BuyXGetYBenchmark.class.getSimpleName())
+                .addProfiler("gc")
+                .build()).run();
+    }
+}
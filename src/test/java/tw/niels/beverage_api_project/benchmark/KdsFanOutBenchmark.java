@@ -0,0 +1,130 @@
+package tw.niels.beverage_api_project.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import tw.niels.beverage_api_project.modules.kds.dto.KdsOrderDto;
+import tw.niels.beverage_api_project.modules.kds.service.KdsFrameEncoder;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * KDS 推播扇出 (fan-out) 成本：每個連線各自序列化 vs 整個事件只編碼一次
+ * <p>
+ * 每個 SseEmitter 以一個輸出緩衝模擬 (實際寫入 HTTP 回應的成本兩者相同)，
+ * 比較的是「每個連線序列化一次 SseEventPayload」與「共用預先編碼的 SSE 訊框」的差異。
+ * </p>
+ * 執行方式：mvn -B test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tw.niels.beverage_api_project.benchmark.KdsFanOutBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KdsFanOutBenchmark {
+
+    private static final byte[] DATA_PREFIX = "data:".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FRAME_SUFFIX = "\n\n".getBytes(StandardCharsets.UTF_8);
+
+    // 每個店家同時連線的 KDS / POS 畫面數
+    @Param({"1", "8", "32", "128"})
+    public int emittersPerStore;
+
+    private ObjectMapper objectMapper;
+    private KdsFrameEncoder frameEncoder;
+    private KdsOrderDto order;
+    private List<ByteArrayOutputStream> emitters;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        frameEncoder = new KdsFrameEncoder(objectMapper);
+
+        order = new KdsOrderDto();
+        order.setOrderId(605958172863201280L);
+        order.setOrderNumber("1-20251105-0042");
+        order.setStatus(OrderStatus.PREPARING);
+        order.setOrderTime(new Date());
+        order.setCustomerNote("外帶");
+        List<KdsOrderDto.KdsOrderItemDto> items = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            KdsOrderDto.KdsOrderItemDto item = new KdsOrderDto.KdsOrderItemDto();
+            item.setOrderItemId(605958172863201281L + i);
+            item.setProductName("珍珠奶茶 " + i);
+            item.setQuantity(2);
+            item.setNotes("少冰半糖");
+            List<KdsOrderDto.KdsOrderOptionDto> options = new ArrayList<>();
+            for (String name : List.of("加珍珠", "換燕麥奶")) {
+                KdsOrderDto.KdsOrderOptionDto option = new KdsOrderDto.KdsOrderOptionDto();
+                option.setOptionName(name);
+                options.add(option);
+            }
+            item.setOptions(options);
+            items.add(item);
+        }
+        order.setItems(items);
+
+        emitters = new ArrayList<>(emittersPerStore);
+        for (int i = 0; i < emittersPerStore; i++) {
+            emitters.add(new ByteArrayOutputStream(2048));
+        }
+    }
+
+    /**
+     * 舊做法：emitter.send(SseEmitter.event().data(payload))，每個連線都由 Jackson 序列化一次
+     */
+    @Benchmark
+    public void serializePerEmitter(Blackhole bh) throws IOException {
+        Map<String, Object> payload = Map.of("action", "NEW_ORDER", "payload", order);
+        for (ByteArrayOutputStream emitter : emitters) {
+            emitter.reset();
+            emitter.write(DATA_PREFIX);
+            objectMapper.writeValue(emitter, payload);
+            emitter.write(FRAME_SUFFIX);
+            bh.consume(emitter.size());
+        }
+    }
+
+    /**
+     * 新做法：發布端編碼一次，所有連線寫入同一份訊框位元組
+     */
+    @Benchmark
+    public void preEncodedFrame(Blackhole bh) throws IOException {
+        byte[] frame = frameEncoder.encode("NEW_ORDER", order);
+        for (ByteArrayOutputStream emitter : emitters) {
+            emitter.reset();
+            emitter.write(frame);
+            bh.consume(emitter.size());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(KdsFanOutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,211 @@
+package tw.niels.beverage_api_project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionCacheService;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionPlanService;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionService;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionStackOptimizer;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BundleDiscountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BuyXGetYCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.FixedAmountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PercentageCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionStrategyFactory;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionSnapshot;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionWindow;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 促銷活動評估成本：逐一評估品牌所有有效活動 vs 編譯後的評估計畫
+ * <p>
+ * 品牌有 200 個有效活動 (滿額折抵 / 百分比折扣 / 指定商品買 X 送 Y / 組合優惠)、300 項商品，
+ * 每張訂單 10 個品項。兩種做法使用相同的計算器，差異在於候選活動的篩選與適用商品 ID 的建立。
+ * </p>
+ * 執行方式：mvn -B test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tw.niels.beverage_api_project.benchmark.PromotionEvaluationBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromotionEvaluationBenchmark {
+
+    private static final long BRAND_ID = 1L;
+    private static final int PROMOTIONS = 200;
+    private static final int PRODUCTS = 300;
+    private static final int ORDER_LINES = 10;
+    private static final int ORDERS = 64;
+
+    private PromotionStrategyFactory strategyFactory;
+    private PromotionService promotionService;
+    private List<Promotion> activePromotions;
+    private Order[] orders;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        Brand brand = new Brand();
+        brand.setId(BRAND_ID);
+
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setId(1000L + i);
+            products.add(product);
+        }
+
+        activePromotions = new ArrayList<>(PROMOTIONS);
+        for (int i = 0; i < PROMOTIONS; i++) {
+            Promotion promotion = new Promotion();
+            promotion.setStartDate(LocalDateTime.now().minusDays(1));
+            promotion.setEndDate(LocalDateTime.now().plusDays(30));
+            switch (i % 10) {
+                case 0 -> {
+                    promotion.setType(PromotionType.FIXED_AMOUNT);
+                    promotion.setMinSpend(BigDecimal.valueOf(100L + random.nextInt(900)));
+                    promotion.setValue(BigDecimal.valueOf(10L + random.nextInt(50)));
+                }
+                case 1 -> {
+                    promotion.setType(PromotionType.PERCENTAGE);
+                    promotion.setMinSpend(BigDecimal.valueOf(200L + random.nextInt(800)));
+                    promotion.setValue(new BigDecimal("0.9"));
+                }
+                case 2, 3, 4, 5 -> {
+                    promotion.setType(PromotionType.BUY_X_GET_Y);
+                    promotion.setMinSpend(BigDecimal.ONE);
+                    promotion.setValue(BigDecimal.ONE);
+                    promotion.setApplicableProducts(pick(products, 1 + random.nextInt(3), random));
+                }
+                default -> {
+                    promotion.setType(PromotionType.BUNDLE_DISCOUNT);
+                    promotion.setValue(BigDecimal.valueOf(60L + random.nextInt(40)));
+                    promotion.setApplicableProducts(pick(products, 2, random));
+                }
+            }
+            activePromotions.add(promotion);
+        }
+
+        List<PromotionCalculator> calculators = List.of(new FixedAmountCalculator(), new PercentageCalculator(),
+                new BuyXGetYCalculator(), new BundleDiscountCalculator());
+        strategyFactory = new PromotionStrategyFactory(calculators);
+
+        LocalDateTime now = LocalDateTime.now();
+        PromotionWindow window = new PromotionWindow("0", now, now.plusMinutes(10),
+                activePromotions.stream().map(PromotionSnapshot::from).toList());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PromotionCacheService cacheService = new PromotionCacheService(null, null, null, meterRegistry) {
+            @Override
+            public PromotionWindow getPromotionWindow(Long brandId) {
+                return window;
+            }
+        };
+        PromotionPlanService planService = new PromotionPlanService(cacheService, strategyFactory, null, meterRegistry);
+        ReflectionTestUtils.setField(planService, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(planService, "maxBrands", 100L);
+        planService.init();
+        promotionService = new PromotionService(null, null, null, planService,
+                new PromotionStackOptimizer(meterRegistry), null);
+
+        orders = new Order[ORDERS];
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setBrand(brand);
+            Set<OrderItem> items = new HashSet<>();
+            BigDecimal total = BigDecimal.ZERO;
+            for (int line = 0; line < ORDER_LINES; line++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(products.get(random.nextInt(PRODUCTS)));
+                item.setQuantity(1 + random.nextInt(3));
+                item.setUnitPrice(BigDecimal.valueOf(35L + random.nextInt(4) * 10));
+                items.add(item);
+                total = total.add(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            }
+            order.setItems(items);
+            order.setTotalAmount(total);
+            orders[o] = order;
+        }
+    }
+
+    /**
+     * 舊做法：每張訂單逐一評估所有活動，每次都查詢策略工廠並重建適用商品 ID
+     */
+    @Benchmark
+    public void evaluateAllPromotions(Blackhole bh) {
+        Order order = nextOrder();
+        BigDecimal maxDiscount = BigDecimal.ZERO;
+        for (Promotion promotion : activePromotions) {
+            try {
+                PromotionCalculator calculator = strategyFactory.getCalculator(promotion.getType());
+                BigDecimal discount = calculator.calculateDiscount(order, promotion);
+                if (discount.compareTo(maxDiscount) > 0) {
+                    maxDiscount = discount;
+                }
+            } catch (Exception e) {
+                // 與舊版相同：忽略
+            }
+        }
+        bh.consume(maxDiscount);
+    }
+
+    /**
+     * 新做法：透過編譯後的評估計畫只計算候選活動
+     */
+    @Benchmark
+    public void evaluateCompiledPlan(Blackhole bh) {
+        bh.consume(promotionService.calculateBestDiscount(nextOrder()));
+    }
+
+    private Order nextOrder() {
+        Order order = orders[next];
+        next = (next + 1) % ORDERS;
+        return order;
+    }
+
+    private static Set<Product> pick(List<Product> products, int count, Random random) {
+        Set<Product> picked = new HashSet<>();
+        while (picked.size() < count) {
+            picked.add(products.get(random.nextInt(products.size())));
+        }
+        return picked;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PromotionEvaluationBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
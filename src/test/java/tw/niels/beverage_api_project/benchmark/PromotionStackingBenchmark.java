@@ -0,0 +1,186 @@
+package tw.niels.beverage_api_project.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionCacheService;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionPlanService;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionService;
+import tw.niels.beverage_api_project.modules.promotion.service.PromotionStackOptimizer;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BundleDiscountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BuyXGetYCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.FixedAmountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PercentageCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionStrategyFactory;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionSnapshot;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionWindow;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 促銷疊加最佳化的結帳延遲 (SampleTime 模式，報表中的 p0.99 即為 p99)
+ * <p>
+ * 品牌有 80 個有效活動，其中一半可疊加、分屬 4 個互斥群組；商品 40 項，
+ * 每張訂單 lines 個品項 (典型 5 個，大單 15 個)。量測 calculateBestDiscount 的完整時間 (單一最佳 + 疊加搜尋)。
+ * </p>
+ * 執行方式：mvn -B test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=tw.niels.beverage_api_project.benchmark.PromotionStackingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromotionStackingBenchmark {
+
+    private static final long BRAND_ID = 1L;
+    private static final int PROMOTIONS = 80;
+    private static final int PRODUCTS = 40;
+    private static final int ORDERS = 64;
+    private static final String[] STACK_GROUPS = {null, "member", "spend", "weekday"};
+
+    @Param({"5", "15"})
+    private int lines;
+
+    private PromotionService promotionService;
+    private Order[] orders;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        Brand brand = new Brand();
+        brand.setId(BRAND_ID);
+
+        List<Product> products = new ArrayList<>(PRODUCTS);
+        for (int i = 0; i < PRODUCTS; i++) {
+            Product product = new Product();
+            product.setId(1000L + i);
+            products.add(product);
+        }
+
+        List<Promotion> activePromotions = new ArrayList<>(PROMOTIONS);
+        for (int i = 0; i < PROMOTIONS; i++) {
+            Promotion promotion = new Promotion();
+            promotion.setStartDate(LocalDateTime.now().minusDays(1));
+            promotion.setEndDate(LocalDateTime.now().plusDays(30));
+            promotion.setIsStackable(i % 2 == 0);
+            promotion.setStackGroup(STACK_GROUPS[(i / 2) % STACK_GROUPS.length]);
+            switch (i % 8) {
+                case 0, 1 -> {
+                    promotion.setType(PromotionType.FIXED_AMOUNT);
+                    promotion.setMinSpend(BigDecimal.valueOf(100L + random.nextInt(400)));
+                    promotion.setValue(BigDecimal.valueOf(10L + random.nextInt(30)));
+                }
+                case 2 -> {
+                    promotion.setType(PromotionType.PERCENTAGE);
+                    promotion.setMinSpend(BigDecimal.valueOf(200L + random.nextInt(300)));
+                    promotion.setValue(new BigDecimal("0.9"));
+                }
+                case 3, 4, 5 -> {
+                    promotion.setType(PromotionType.BUY_X_GET_Y);
+                    promotion.setMinSpend(BigDecimal.ONE);
+                    promotion.setValue(BigDecimal.ONE);
+                    promotion.setApplicableProducts(pick(products, 1 + random.nextInt(4), random));
+                }
+                default -> {
+                    promotion.setType(PromotionType.BUNDLE_DISCOUNT);
+                    promotion.setValue(BigDecimal.valueOf(60L + random.nextInt(30)));
+                    promotion.setApplicableProducts(pick(products, 2, random));
+                }
+            }
+            activePromotions.add(promotion);
+        }
+
+        PromotionStrategyFactory strategyFactory = new PromotionStrategyFactory(List.of(
+                new FixedAmountCalculator(), new PercentageCalculator(),
+                new BuyXGetYCalculator(), new BundleDiscountCalculator()));
+
+        LocalDateTime now = LocalDateTime.now();
+        PromotionWindow window = new PromotionWindow("0", now, now.plusMinutes(10),
+                activePromotions.stream().map(PromotionSnapshot::from).toList());
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PromotionCacheService cacheService = new PromotionCacheService(null, null, null, meterRegistry) {
+            @Override
+            public PromotionWindow getPromotionWindow(Long brandId) {
+                return window;
+            }
+        };
+        PromotionPlanService planService = new PromotionPlanService(cacheService, strategyFactory, null, meterRegistry);
+        ReflectionTestUtils.setField(planService, "ttlSeconds", 3600L);
+        ReflectionTestUtils.setField(planService, "maxBrands", 100L);
+        planService.init();
+        PromotionStackOptimizer optimizer = new PromotionStackOptimizer(meterRegistry);
+        ReflectionTestUtils.setField(optimizer, "budgetMicros", 1000L);
+        promotionService = new PromotionService(null, null, null, planService, optimizer, null);
+
+        orders = new Order[ORDERS];
+        for (int o = 0; o < ORDERS; o++) {
+            Order order = new Order();
+            order.setBrand(brand);
+            Set<OrderItem> items = new HashSet<>();
+            BigDecimal total = BigDecimal.ZERO;
+            for (int line = 0; line < lines; line++) {
+                OrderItem item = new OrderItem();
+                item.setOrder(order);
+                item.setProduct(products.get(random.nextInt(PRODUCTS)));
+                item.setQuantity(1 + random.nextInt(3));
+                item.setUnitPrice(BigDecimal.valueOf(35L + random.nextInt(4) * 10));
+                items.add(item);
+                total = total.add(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+            }
+            order.setItems(items);
+            order.setTotalAmount(total);
+            orders[o] = order;
+        }
+    }
+
+    @Benchmark
+    public BigDecimal calculateBestDiscount() {
+        Order order = orders[next];
+        next = (next + 1) % ORDERS;
+        return promotionService.calculateBestDiscount(order);
+    }
+
+    private static Set<Product> pick(List<Product> products, int count, Random random) {
+        Set<Product> picked = new HashSet<>();
+        while (picked.size() < count) {
+            picked.add(products.get(random.nextInt(products.size())));
+        }
+        return picked;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PromotionStackingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,184 @@
+package tw.niels.beverage_api_project.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.config.DataSeeder;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.report.enums.SettlementStrategy;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
+import tw.niels.beverage_api_project.modules.report.service.ReportAggregationService;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 日結效能比較：逐店結算 (PER_STORE) vs 集合式結算 (SET_BASED)
+ * 200 間分店、同一天 1,000,000 張訂單 (含取消與未結案訂單)，比較兩種策略的耗時並驗證統計結果一致。
+ * 效能比較標記為 benchmark (預設不執行，以 -Pbenchmark 執行)；預設只以 8,000 張訂單驗證統計結果一致。
+ */
+public class DailySettlementBenchmarkIntegrationTest extends AbstractIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(DailySettlementBenchmarkIntegrationTest.class);
+    private static final int ORDER_COUNT = 1_000_000;
+    private static final int CORRECTNESS_ORDER_COUNT = 8_000;
+    private static final int STORE_COUNT = 200;
+    private static final int PRODUCT_COUNT = 20;
+    private static final int CATEGORY_COUNT = 4;
+
+    @MockitoBean private DataSeeder dataSeeder;
+    @MockitoBean private ReportRecoveryRunner reportRecoveryRunner;
+    @MockitoBean private ReportScheduler reportScheduler;
+    @MockitoBean private ControllerHelperService helperService;
+
+    @Autowired private ReportAggregationService reportAggregationService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private BrandRepository brandRepository;
+    @Autowired private StoreRepository storeRepository;
+
+    private Long brandId;
+    private LocalDate date;
+    private long productBase;
+
+    @BeforeEach
+    void setup() {
+        Brand brand = new Brand();
+        brand.setName("Settlement Brand");
+        brand = brandRepository.save(brand);
+        brandId = brand.getId();
+
+        for (int i = 0; i < STORE_COUNT; i++) {
+            Store store = new Store();
+            store.setBrand(brand);
+            store.setName("Settlement Store " + i);
+            storeRepository.save(store);
+        }
+
+        // 1. 商品與分類：每個商品一個分類 (逐店結算取 Set 中任一分類，多分類時兩者不一定相同)，最後一個商品未分類
+        long categoryBase = TsidUtil.nextId();
+        for (int c = 0; c < CATEGORY_COUNT; c++) {
+            jdbcTemplate.update("INSERT INTO categories (category_id, brand_id, name, sort_order) VALUES (?, ?, ?, ?)",
+                    categoryBase + c, brandId, "Category " + c, CATEGORY_COUNT - c);
+        }
+        productBase = TsidUtil.nextId();
+        for (int p = 0; p < PRODUCT_COUNT; p++) {
+            jdbcTemplate.update("INSERT INTO products (product_id, brand_id, name, base_price) VALUES (?, ?, ?, 50)",
+                    productBase + p, brandId, "Settlement Tea " + p);
+            if (p < PRODUCT_COUNT - 1) {
+                jdbcTemplate.update("INSERT INTO product_category_mappings (product_id, category_id) VALUES (?, ?)",
+                        productBase + p, categoryBase + p % CATEGORY_COUNT);
+            }
+        }
+
+        date = LocalDate.now().minusDays(1);
+    }
+
+    @Test
+    @DisplayName("少量訂單 - 逐店結算與集合式結算的統計結果一致")
+    void setBased_ShouldMatchPerStore() {
+        seedOrders(CORRECTNESS_ORDER_COUNT);
+        compare();
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("1,000,000 張訂單 - 逐店結算 vs 集合式結算")
+    void comparePerStoreAndSetBased() {
+        seedOrders(ORDER_COUNT);
+        long[] millis = compare();
+
+        logger.info("1,000,000 張訂單日結 ({} 間分店)：逐店 {} ms，集合式 {} ms (x{})",
+                STORE_COUNT, millis[0], millis[1], String.format("%.2f", (double) millis[0] / Math.max(millis[1], 1)));
+    }
+
+    /**
+     * 訂單 (集合式 INSERT)：約 5% 取消、2% 未結案，付款方式輪流為現金、LINE Pay 與其他
+     * 訂單數達 STORE_COUNT x PRODUCT_COUNT 以上時，每間分店都會賣出每個商品
+     */
+    private void seedOrders(int orderCount) {
+        long orderBase = TsidUtil.nextId();
+        long orderItemBase = TsidUtil.nextId();
+        Timestamp dayStart = Timestamp.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+        jdbcTemplate.update("WITH s AS (SELECT array_agg(store_id ORDER BY store_id) AS ids FROM stores WHERE brand_id = ?), " +
+                        "pm AS (SELECT array_agg(payment_method_id ORDER BY payment_method_id) AS ids FROM payment_methods) " +
+                        "INSERT INTO orders (order_id, brand_id, store_id, order_number, status_code, " +
+                        "    total_amount, discount_amount, final_amount, order_time, completed_time, payment_method_id) " +
+                        "SELECT ? + g, ?, s.ids[(g % array_length(s.ids, 1)) + 1], 'SET-' || g, st.code, " +
+                        "       100, g % 7, 100 - g % 7, t, CASE WHEN st.code = 'PENDING' THEN NULL ELSE t END, " +
+                        "       pm.ids[(g % array_length(pm.ids, 1)) + 1] " +
+                        "FROM generate_series(1, ?) g, s, pm, " +
+                        "LATERAL (SELECT ?::timestamptz + (g % 86000) * interval '1 second' AS t, " +
+                        "    CASE WHEN g % 20 = 0 THEN 'CANCELLED' WHEN g % 50 = 1 THEN 'PENDING' ELSE 'CLOSED' END AS code) st",
+                brandId, orderBase, brandId, orderCount, dayStart);
+
+        jdbcTemplate.update("INSERT INTO order_items (order_item_id, order_id, product_id, quantity, unit_price, subtotal) " +
+                        "SELECT ? + g, ? + g, ? + (g / ?) % ?, 1 + g % 3, 50, 50 * (1 + g % 3) " +
+                        "FROM generate_series(1, ?) g",
+                orderItemBase, orderBase, productBase, STORE_COUNT, PRODUCT_COUNT, orderCount);
+
+        jdbcTemplate.execute("ANALYZE orders");
+        jdbcTemplate.execute("ANALYZE order_items");
+    }
+
+    /**
+     * 依序以兩種策略結算同一天，驗證統計結果一致
+     *
+     * @return {逐店耗時, 集合式耗時} (毫秒)
+     */
+    private long[] compare() {
+        try {
+            long perStoreMillis = run(SettlementStrategy.PER_STORE);
+            List<String> perStoreStores = storeStats();
+            List<String> perStoreProducts = productStats();
+
+            long setBasedMillis = run(SettlementStrategy.SET_BASED);
+            List<String> setBasedStores = storeStats();
+            List<String> setBasedProducts = productStats();
+
+            // 兩種策略的統計結果一致 (集合式結算會先刪除逐店結算的資料)
+            assertThat(setBasedStores).hasSize(STORE_COUNT).isEqualTo(perStoreStores);
+            assertThat(setBasedProducts).hasSize(STORE_COUNT * PRODUCT_COUNT).isEqualTo(perStoreProducts);
+            return new long[]{perStoreMillis, setBasedMillis};
+        } finally {
+            ReflectionTestUtils.setField(reportAggregationService, "strategy", SettlementStrategy.PER_STORE);
+        }
+    }
+
+    private long run(SettlementStrategy strategy) {
+        ReflectionTestUtils.setField(reportAggregationService, "strategy", strategy);
+        long start = System.nanoTime();
+        reportAggregationService.generateDailyStats(date);
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private List<String> storeStats() {
+        return jdbcTemplate.queryForList("SELECT store_id || ':' || total_orders || ':' || total_revenue || ':' || " +
+                "total_discount || ':' || final_revenue || ':' || cancelled_orders || ':' || cash_total || ':' || line_pay_total " +
+                "FROM daily_store_stats WHERE brand_id = ? AND date = ? ORDER BY store_id", String.class, brandId, date);
+    }
+
+    private List<String> productStats() {
+        return jdbcTemplate.queryForList("SELECT store_id || ':' || product_id || ':' || product_name || ':' || category_name || ':' || " +
+                "quantity_sold || ':' || total_sales_amount " +
+                "FROM daily_product_stats WHERE brand_id = ? AND date = ? ORDER BY store_id, product_id", String.class, brandId, date);
+    }
+}
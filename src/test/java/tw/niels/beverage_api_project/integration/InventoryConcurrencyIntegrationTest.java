@@ -3,6 +3,7 @@ package tw.niels.beverage_api_project.integration;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.ReflectionTestUtils;
 import tw.niels.beverage_api_project.AbstractIntegrationTest;
 import tw.niels.beverage_api_project.modules.brand.entity.Brand;
 import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
@@ -10,6 +11,7 @@ import tw.niels.beverage_api_project.modules.inventory.entity.InventoryBatch;
 import tw.niels.beverage_api_project.modules.inventory.entity.InventoryItem;
 import tw.niels.beverage_api_project.modules.inventory.repository.InventoryBatchRepository;
 import tw.niels.beverage_api_project.modules.inventory.repository.InventoryItemRepository;
+import tw.niels.beverage_api_project.modules.inventory.service.InventoryReservationLedger;
 import tw.niels.beverage_api_project.modules.inventory.service.InventoryService;
 import tw.niels.beverage_api_project.modules.store.entity.Store;
 import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
@@ -37,6 +39,8 @@ public class InventoryConcurrencyIntegrationTest extends AbstractIntegrationTest
     private StoreRepository storeRepository;
     @Autowired
     private BrandRepository brandRepository;
+    @Autowired
+    private InventoryReservationLedger reservationLedger;
 
     @Test
     @DisplayName("併發庫存扣減測試 - 10 個執行緒同時搶購 (FIFO 驗證)")
@@ -116,6 +120,86 @@ public class InventoryConcurrencyIntegrationTest extends AbstractIntegrationTest
         assertThat(batches.get(1).getCurrentQuantity()).isEqualByComparingTo("50.00");
     }
 
+    @Test
+    @DisplayName("預留模式併發扣減測試 - 30 個執行緒搶購超過庫存的數量，不可超賣")
+    void testConcurrentReservationDoesNotOversell() throws InterruptedException {
+        // --- Arrange ---
+        Brand brand = new Brand();
+        brand.setName("Reservation Brand");
+        brand = brandRepository.save(brand);
+
+        Store store = new Store();
+        store.setName("Reservation Store");
+        store.setBrand(brand);
+        store = storeRepository.save(store);
+
+        InventoryItem item = new InventoryItem();
+        item.setBrand(brand);
+        item.setName("Reservation Pearls");
+        item.setUnit("g");
+        item.setTotalQuantity(new BigDecimal("100.00"));
+        item = itemRepository.save(item);
+
+        Long storeId = store.getId();
+        Long itemId = item.getId();
+        Long brandId = brand.getId();
+
+        createTestBatch(store, item, new BigDecimal("30.00"), LocalDate.now().plusDays(10));
+        createTestBatch(store, item, new BigDecimal("70.00"), LocalDate.now().plusDays(20));
+
+        // 30 x 7 = 210，遠超過庫存 100：最多只能成功 14 次
+        int numberOfThreads = 30;
+        BigDecimal qtyPerThread = new BigDecimal("7.00");
+
+        ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch latch = new CountDownLatch(numberOfThreads);
+        AtomicInteger successCount = new AtomicInteger(0);
+
+        ReflectionTestUtils.setField(reservationLedger, "enabled", true);
+        try {
+            // --- Act ---
+            for (int i = 0; i < numberOfThreads; i++) {
+                executor.submit(() -> {
+                    try {
+                        start.await();
+                        inventoryService.deductInventory(brandId, storeId, itemId, qtyPerThread);
+                        successCount.incrementAndGet();
+                    } catch (Exception e) {
+                        // 庫存不足的請求應被拒絕
+                    } finally {
+                        latch.countDown();
+                    }
+                });
+            }
+            start.countDown();
+            latch.await();
+            executor.shutdown();
+
+            // 寫回資料庫
+            reservationLedger.flush();
+        } finally {
+            ReflectionTestUtils.setField(reservationLedger, "enabled", false);
+        }
+
+        // --- Assert ---
+        assertThat(successCount.get()).as("成功次數不可超過庫存").isEqualTo(14);
+
+        // 100 - 14 x 7 = 2
+        InventoryItem updatedItem = itemRepository.findByBrand_IdAndId(brandId, itemId).orElseThrow();
+        assertThat(updatedItem.getTotalQuantity()).isEqualByComparingTo("2.00");
+
+        List<InventoryBatch> batches = batchRepository.findByStore_Id(storeId).stream()
+                .filter(b -> b.getInventoryItem().getId().equals(itemId))
+                .sorted(Comparator.comparing(InventoryBatch::getExpiryDate))
+                .toList();
+
+        // 沒有任何批次變成負數，且依 FIFO 扣減：第一批扣光，第二批剩 2
+        assertThat(batches).allSatisfy(b -> assertThat(b.getCurrentQuantity()).isGreaterThanOrEqualTo(BigDecimal.ZERO));
+        assertThat(batches.get(0).getCurrentQuantity()).isEqualByComparingTo("0.00");
+        assertThat(batches.get(1).getCurrentQuantity()).isEqualByComparingTo("2.00");
+    }
+
     private void createTestBatch(Store store, InventoryItem item, BigDecimal qty, LocalDate expiryDate) {
         InventoryBatch batch = new InventoryBatch();
         batch.setStore(store);
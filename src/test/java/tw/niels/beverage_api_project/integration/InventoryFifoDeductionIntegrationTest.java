@@ -0,0 +1,200 @@
+package tw.niels.beverage_api_project.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryBatchDAO;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryBatch;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryItem;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryBatchRepository;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryItemRepository;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 驗證 InventoryBatchDAO.deductFifo (單一 SQL) 與原本 Java 端 FIFO 演算法的結果一致
+ */
+public class InventoryFifoDeductionIntegrationTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private InventoryBatchDAO inventoryBatchDAO;
+    @Autowired
+    private InventoryBatchRepository batchRepository;
+    @Autowired
+    private InventoryItemRepository itemRepository;
+    @Autowired
+    private StoreRepository storeRepository;
+    @Autowired
+    private BrandRepository brandRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    @DisplayName("SQL FIFO 扣減 - 隨機批次與扣減量，結果與 Java 演算法一致")
+    void deductFifo_ShouldMatchJavaAlgorithm() {
+        Random random = new Random(17);
+
+        for (int round = 0; round < 20; round++) {
+            // --- Arrange ---
+            Brand brand = new Brand();
+            brand.setName("FIFO Brand " + round);
+            brand = brandRepository.save(brand);
+
+            Store store = new Store();
+            store.setName("FIFO Store " + round);
+            store.setBrand(brand);
+            store = storeRepository.save(store);
+
+            // 每輪 1~6 種原物料，每種 0~8 個批次；到期日刻意重複，驗證同日以批次 ID 排序
+            Map<Long, BigDecimal> deductions = new HashMap<>();
+            int itemCount = 1 + random.nextInt(6);
+            for (int i = 0; i < itemCount; i++) {
+                InventoryItem item = createItem(brand, "FIFO Item " + round + "-" + i);
+                BigDecimal total = BigDecimal.ZERO;
+                int batchCount = random.nextInt(9);
+                for (int b = 0; b < batchCount; b++) {
+                    BigDecimal qty = BigDecimal.valueOf(1 + random.nextInt(5000), 2);
+                    // 部分批次已用完，不應被扣減
+                    BigDecimal current = random.nextInt(5) == 0 ? BigDecimal.ZERO.setScale(2) : qty;
+                    createTestBatch(store, item, qty, current, LocalDate.now().plusDays(random.nextInt(4)));
+                    total = total.add(current);
+                }
+                // 扣減量介於 0 ~ 總量的 1.2 倍 (約一成的原物料會短缺)
+                BigDecimal requested = total.multiply(BigDecimal.valueOf(random.nextInt(121), 2))
+                        .setScale(2, RoundingMode.DOWN).max(new BigDecimal("0.01"));
+                deductions.put(item.getId(), requested);
+            }
+            Long storeId = store.getId();
+
+            List<InventoryBatch> before = batchRepository.findByStore_Id(storeId);
+            Map<Long, BigDecimal> expectedQuantities = new HashMap<>();
+            Map<Long, BigDecimal> expectedShortfalls = javaFifo(before, deductions, expectedQuantities);
+
+            // --- Act ---
+            Map<Long, BigDecimal> shortfalls = new TransactionTemplate(transactionManager)
+                    .execute(status -> inventoryBatchDAO.deductFifo(storeId, deductions));
+
+            // --- Assert ---
+            assertThat(shortfalls).hasSameSizeAs(expectedShortfalls);
+            expectedShortfalls.forEach((itemId, shortfall) ->
+                    assertThat(shortfalls.get(itemId)).as("Item %d 短缺量", itemId).isEqualByComparingTo(shortfall));
+
+            Map<Long, BigDecimal> actualQuantities = batchRepository.findByStore_Id(storeId).stream()
+                    .collect(Collectors.toMap(InventoryBatch::getId, InventoryBatch::getCurrentQuantity));
+            assertThat(actualQuantities).hasSameSizeAs(expectedQuantities);
+            expectedQuantities.forEach((batchId, quantity) ->
+                    assertThat(actualQuantities.get(batchId)).as("Batch %d 剩餘量", batchId).isEqualByComparingTo(quantity));
+        }
+    }
+
+    @Test
+    @DisplayName("SQL FIFO 扣減 - 可用批次不足時回傳短缺量，其他原物料不受影響")
+    void deductFifo_ShouldReturnShortfall() {
+        Brand brand = new Brand();
+        brand.setName("Shortfall Brand");
+        brand = brandRepository.save(brand);
+
+        Store store = new Store();
+        store.setName("Shortfall Store");
+        store.setBrand(brand);
+        store = storeRepository.save(store);
+
+        InventoryItem tea = createItem(brand, "Shortfall Tea");
+        InventoryItem milk = createItem(brand, "Shortfall Milk");
+        createTestBatch(store, tea, new BigDecimal("30.00"), new BigDecimal("30.00"), LocalDate.now().plusDays(10));
+        createTestBatch(store, tea, new BigDecimal("70.00"), new BigDecimal("70.00"), LocalDate.now().plusDays(20));
+        createTestBatch(store, milk, new BigDecimal("10.00"), new BigDecimal("10.00"), LocalDate.now().plusDays(5));
+
+        Long storeId = store.getId();
+        Map<Long, BigDecimal> shortfalls = new TransactionTemplate(transactionManager)
+                .execute(status -> inventoryBatchDAO.deductFifo(storeId, Map.of(
+                        tea.getId(), new BigDecimal("50.00"),
+                        milk.getId(), new BigDecimal("12.50"))));
+
+        assertThat(shortfalls).containsOnlyKeys(milk.getId());
+        assertThat(shortfalls.get(milk.getId())).isEqualByComparingTo("2.50");
+
+        List<InventoryBatch> teaBatches = batchRepository.findByStore_Id(storeId).stream()
+                .filter(b -> b.getInventoryItem().getId().equals(tea.getId()))
+                .sorted(Comparator.comparing(InventoryBatch::getExpiryDate))
+                .toList();
+        assertThat(teaBatches.get(0).getCurrentQuantity()).isEqualByComparingTo("0.00");
+        assertThat(teaBatches.get(1).getCurrentQuantity()).isEqualByComparingTo("50.00");
+    }
+
+    /**
+     * 原本 InventoryService.processBatchDeductions 的 Java 端 FIFO 演算法 (作為對照)
+     */
+    private static Map<Long, BigDecimal> javaFifo(List<InventoryBatch> batches, Map<Long, BigDecimal> deductions,
+                                                  Map<Long, BigDecimal> quantities) {
+        batches.forEach(b -> quantities.put(b.getId(), b.getCurrentQuantity()));
+
+        Map<Long, List<InventoryBatch>> batchesByItem = batches.stream()
+                .filter(b -> b.getCurrentQuantity().compareTo(BigDecimal.ZERO) > 0)
+                .sorted(Comparator.comparing(InventoryBatch::getExpiryDate).thenComparing(InventoryBatch::getId))
+                .collect(Collectors.groupingBy(b -> b.getInventoryItem().getId(), HashMap::new,
+                        Collectors.mapping(Function.identity(), Collectors.toCollection(ArrayList::new))));
+
+        Map<Long, BigDecimal> shortfalls = new HashMap<>();
+        deductions.forEach((itemId, requested) -> {
+            BigDecimal remainingToDeduct = requested;
+            for (InventoryBatch batch : batchesByItem.getOrDefault(itemId, new ArrayList<>())) {
+                if (remainingToDeduct.compareTo(BigDecimal.ZERO) <= 0) break;
+
+                BigDecimal currentQty = batch.getCurrentQuantity();
+                if (currentQty.compareTo(remainingToDeduct) >= 0) {
+                    quantities.put(batch.getId(), currentQty.subtract(remainingToDeduct));
+                    remainingToDeduct = BigDecimal.ZERO;
+                } else {
+                    quantities.put(batch.getId(), BigDecimal.ZERO);
+                    remainingToDeduct = remainingToDeduct.subtract(currentQty);
+                }
+            }
+            if (remainingToDeduct.compareTo(BigDecimal.ZERO) > 0) {
+                shortfalls.put(itemId, remainingToDeduct);
+            }
+        });
+        return shortfalls;
+    }
+
+    private InventoryItem createItem(Brand brand, String name) {
+        InventoryItem item = new InventoryItem();
+        item.setBrand(brand);
+        item.setName(name);
+        item.setUnit("g");
+        item.setTotalQuantity(BigDecimal.ZERO);
+        return itemRepository.save(item);
+    }
+
+    private void createTestBatch(Store store, InventoryItem item, BigDecimal received, BigDecimal current,
+                                 LocalDate expiryDate) {
+        InventoryBatch batch = new InventoryBatch();
+        batch.setStore(store);
+        batch.setInventoryItem(item);
+        batch.setQuantityReceived(received);
+        batch.setCurrentQuantity(current);
+        batch.setExpiryDate(expiryDate);
+        batch.setProductionDate(LocalDate.now());
+        batch.setShipment(null);
+        batchRepository.save(batch);
+    }
+}
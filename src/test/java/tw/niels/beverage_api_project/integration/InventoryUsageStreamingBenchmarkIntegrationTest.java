@@ -0,0 +1,228 @@
+package tw.niels.beverage_api_project.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.config.DataSeeder;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryItem;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryItemRepository;
+import tw.niels.beverage_api_project.modules.inventory.service.InventoryDepletionService;
+import tw.niels.beverage_api_project.modules.report.dto.InventoryVarianceReportDto;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
+import tw.niels.beverage_api_project.modules.report.service.InventoryReportService;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 理論消耗計算效能比較：資料庫聚合 vs 串流累加
+ * 一間分店 90 天、250,000 張訂單、1,000,000 筆訂單明細 (約三分之一帶加料選項)，
+ * 比較兩種方式的耗時與配置量 (allocated bytes)，並驗證結果一致。
+ * 效能比較標記為 benchmark (預設不執行，以 -Pbenchmark 執行)；預設只以 2,000 張訂單驗證結果一致。
+ */
+public class InventoryUsageStreamingBenchmarkIntegrationTest extends AbstractIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(InventoryUsageStreamingBenchmarkIntegrationTest.class);
+    private static final int ORDER_COUNT = 250_000;
+    private static final int CORRECTNESS_ORDER_COUNT = 2_000;
+    private static final int LINES_PER_ORDER = 4;
+    private static final int DAYS = 90;
+    private static final int ITEM_COUNT = 50;
+    private static final int VARIANT_COUNT = 20;
+    private static final int OPTION_COUNT = 10;
+
+    @MockitoBean private DataSeeder dataSeeder;
+    @MockitoBean private ReportRecoveryRunner reportRecoveryRunner;
+    @MockitoBean private ReportScheduler reportScheduler;
+    @MockitoBean private ControllerHelperService helperService;
+
+    @Autowired private InventoryReportService inventoryReportService;
+    @Autowired private InventoryDepletionService depletionService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private BrandRepository brandRepository;
+    @Autowired private StoreRepository storeRepository;
+    @Autowired private InventoryItemRepository itemRepository;
+
+    private Long brandId;
+    private Long storeId;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private Long productId;
+    private Long groupId;
+
+    @BeforeEach
+    void setup() {
+        Brand brand = new Brand();
+        brand.setName("Streaming Brand");
+        brand = brandRepository.save(brand);
+        brandId = brand.getId();
+
+        Store store = new Store();
+        store.setBrand(brand);
+        store.setName("Streaming Store");
+        storeId = storeRepository.save(store).getId();
+
+        endDate = LocalDate.now().minusDays(1);
+        startDate = endDate.minusDays(DAYS - 1);
+
+        List<Long> itemIds = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            InventoryItem item = new InventoryItem();
+            item.setBrand(brand);
+            item.setName("Streaming Item " + i);
+            item.setUnit("g");
+            itemIds.add(itemRepository.save(item).getId());
+        }
+
+        // 1. 商品規格與加料選項：每個規格 3 行配方、每個選項 1 行配方
+        productId = TsidUtil.nextId();
+        jdbcTemplate.update("INSERT INTO products (product_id, brand_id, name, base_price) VALUES (?, ?, 'Streaming Tea', 30)",
+                productId, brandId);
+        groupId = TsidUtil.nextId();
+        jdbcTemplate.update("INSERT INTO option_groups (group_id, brand_id, name, selection_type) VALUES (?, ?, 'Toppings', 'MULTIPLE')",
+                groupId, brandId);
+
+        for (int v = 0; v < VARIANT_COUNT; v++) {
+            Long variantId = TsidUtil.nextId();
+            jdbcTemplate.update("INSERT INTO product_variants (variant_id, product_id, name, price) VALUES (?, ?, ?, 30)",
+                    variantId, productId, "V" + v);
+            for (int r = 0; r < 3; r++) {
+                jdbcTemplate.update("INSERT INTO recipes (recipe_id, variant_id, inventory_item_id, quantity) VALUES (?, ?, ?, ?)",
+                        TsidUtil.nextId(), variantId, itemIds.get((v * 3 + r) % ITEM_COUNT),
+                        new BigDecimal("0.1234").multiply(BigDecimal.valueOf(r + 1)));
+            }
+        }
+        for (int o = 0; o < OPTION_COUNT; o++) {
+            Long optionId = TsidUtil.nextId();
+            jdbcTemplate.update("INSERT INTO product_options (option_id, group_id, name) VALUES (?, ?, ?)",
+                    optionId, groupId, "O" + o);
+            jdbcTemplate.update("INSERT INTO recipes (recipe_id, option_id, inventory_item_id, quantity) VALUES (?, ?, ?, 0.0500)",
+                    TsidUtil.nextId(), optionId, itemIds.get(ITEM_COUNT - 1 - o));
+        }
+    }
+
+    @Test
+    @DisplayName("少量訂單明細 - 資料庫聚合與串流累加的理論消耗一致")
+    void streaming_ShouldMatchAggregate() {
+        seedOrders(CORRECTNESS_ORDER_COUNT);
+        compare(false);
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("1,000,000 筆訂單明細 - 資料庫聚合 vs 串流累加")
+    void compareAggregateAndStreaming() {
+        seedOrders(ORDER_COUNT);
+        compare(true);
+    }
+
+    /**
+     * 訂單、明細與加料選項 (集合式 INSERT)
+     */
+    private void seedOrders(int orderCount) {
+        long orderBase = TsidUtil.nextId();
+        long orderItemBase = TsidUtil.nextId();
+        Timestamp rangeStart = Timestamp.from(startDate.atStartOfDay(ZoneId.systemDefault()).toInstant());
+
+        jdbcTemplate.update("INSERT INTO orders (order_id, brand_id, store_id, order_number, status_code, " +
+                        "total_amount, final_amount, order_time, completed_time) " +
+                        "SELECT ? + g, ?, ?, 'STR-' || g, 'CLOSED', 60, 60, t, t " +
+                        "FROM generate_series(1, ?) g, " +
+                        "LATERAL (SELECT ?::timestamptz + (g % ?) * interval '1 day' + (g % 43200) * interval '1 second' AS t) ts",
+                orderBase, brandId, storeId, orderCount, rangeStart, DAYS);
+
+        jdbcTemplate.update("WITH v AS (SELECT array_agg(variant_id ORDER BY variant_id) AS ids FROM product_variants WHERE product_id = ?) " +
+                        "INSERT INTO order_items (order_item_id, order_id, product_id, variant_id, quantity, unit_price, subtotal) " +
+                        "SELECT ? + g, ? + ((g - 1) / ?) + 1, ?, v.ids[(g % array_length(v.ids, 1)) + 1], 1 + g % 3, 30, 30 * (1 + g % 3) " +
+                        "FROM generate_series(1, ?) g, v",
+                productId, orderItemBase, orderBase, LINES_PER_ORDER, productId, orderCount * LINES_PER_ORDER);
+
+        jdbcTemplate.update("WITH o AS (SELECT array_agg(option_id ORDER BY option_id) AS ids FROM product_options WHERE group_id = ?) " +
+                        "INSERT INTO order_item_options (order_item_id, option_id) " +
+                        "SELECT ? + g, o.ids[(g % array_length(o.ids, 1)) + 1] " +
+                        "FROM generate_series(3, ?, 3) g, o",
+                groupId, orderItemBase, orderCount * LINES_PER_ORDER);
+
+        jdbcTemplate.execute("ANALYZE orders");
+        jdbcTemplate.execute("ANALYZE order_items");
+        jdbcTemplate.execute("ANALYZE order_item_options");
+    }
+
+    /**
+     * 比較兩種方式的理論消耗 (benchmark = true 時先預熱並記錄耗時與配置量)
+     */
+    private void compare(boolean benchmark) {
+        boolean originalDepletion = depletionService.isEnabled();
+        ReflectionTestUtils.setField(depletionService, "enabled", false);
+        try {
+            if (benchmark) {
+                // 預熱 (JIT 與資料庫快取)，不計入結果
+                run(true);
+                run(false);
+            }
+
+            Measurement aggregate = run(false);
+            Measurement streaming = run(true);
+
+            if (benchmark) {
+                logger.info("1,000,000 筆明細理論消耗：資料庫聚合 {} ms / {} MB 配置，串流累加 {} ms / {} MB 配置",
+                        aggregate.millis(), aggregate.allocatedBytes() / (1024 * 1024),
+                        streaming.millis(), streaming.allocatedBytes() / (1024 * 1024));
+            }
+
+            // 兩種方式結果一致 (皆為 4 位小數)
+            assertThat(streaming.usage()).hasSize(ITEM_COUNT);
+            aggregate.usage().forEach((itemId, usage) ->
+                    assertThat(streaming.usage().get(itemId)).as("Item %d 理論消耗", itemId).isEqualByComparingTo(usage));
+            assertThat(streaming.usage().values().stream().reduce(BigDecimal.ZERO, BigDecimal::add))
+                    .isGreaterThan(BigDecimal.ZERO);
+        } finally {
+            ReflectionTestUtils.setField(depletionService, "enabled", originalDepletion);
+            ReflectionTestUtils.setField(inventoryReportService, "streamingUsageEnabled", false);
+        }
+    }
+
+    private Measurement run(boolean streaming) {
+        ReflectionTestUtils.setField(inventoryReportService, "streamingUsageEnabled", streaming);
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().threadId();
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+
+        List<InventoryVarianceReportDto> report =
+                inventoryReportService.generateVarianceReport(brandId, storeId, startDate, endDate);
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        Map<Long, BigDecimal> usage = report.stream()
+                .collect(Collectors.toMap(InventoryVarianceReportDto::getItemId, InventoryVarianceReportDto::getTheoreticalUsage));
+        return new Measurement(millis, allocated, usage);
+    }
+
+    private record Measurement(long millis, long allocatedBytes, Map<Long, BigDecimal> usage) {}
+}
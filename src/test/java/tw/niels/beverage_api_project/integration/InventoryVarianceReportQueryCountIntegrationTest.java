@@ -0,0 +1,232 @@
+package tw.niels.beverage_api_project.integration;
+
+import io.hypersistence.utils.jdbc.validator.SQLStatementCountValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.config.DataSeeder;
+import tw.niels.beverage_api_project.config.TestDataSourceConfig;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryItem;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryTransaction;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryItemRepository;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryTransactionRepository;
+import tw.niels.beverage_api_project.modules.inventory.service.InventoryDepletionService;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.repository.OrderRepository;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.product.entity.ProductVariant;
+import tw.niels.beverage_api_project.modules.product.entity.Recipe;
+import tw.niels.beverage_api_project.modules.product.enums.ProductStatus;
+import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
+import tw.niels.beverage_api_project.modules.product.repository.ProductVariantRepository;
+import tw.niels.beverage_api_project.modules.product.repository.RecipeRepository;
+import tw.niels.beverage_api_project.modules.report.dto.InventoryVarianceReportDto;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
+import tw.niels.beverage_api_project.modules.report.service.InventoryReportService;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 庫存差異報表查詢次數：不論原物料數量多少，都只執行固定次數的 SELECT
+ * (即時消耗模式 1 次；重播模式多 1 次缺少規格的檢查)
+ */
+@Import(TestDataSourceConfig.class)
+public class InventoryVarianceReportQueryCountIntegrationTest extends AbstractIntegrationTest {
+
+    @MockitoBean private DataSeeder dataSeeder;
+    @MockitoBean private ReportRecoveryRunner reportRecoveryRunner;
+    @MockitoBean private ReportScheduler reportScheduler;
+    @MockitoBean private ControllerHelperService helperService;
+
+    @Autowired private InventoryReportService inventoryReportService;
+    @Autowired private InventoryDepletionService depletionService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private BrandRepository brandRepository;
+    @Autowired private StoreRepository storeRepository;
+    @Autowired private InventoryItemRepository itemRepository;
+    @Autowired private InventoryTransactionRepository transactionRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private ProductVariantRepository variantRepository;
+    @Autowired private RecipeRepository recipeRepository;
+    @Autowired private OrderRepository orderRepository;
+
+    private Brand brand;
+    private Store store;
+    private LocalDate reportDate;
+    private InventoryItem tea;
+
+    @BeforeEach
+    void setup() {
+        brand = new Brand();
+        brand.setName("Variance Brand");
+        brand = brandRepository.save(brand);
+
+        store = new Store();
+        store.setBrand(brand);
+        store.setName("Variance Store");
+        store = storeRepository.save(store);
+
+        reportDate = LocalDate.now().minusDays(1);
+        tea = createItemWithTransactions("Variance Tea");
+
+        // 紅茶 (中杯) 配方：每杯 10 單位；報表當日結案 2 杯，理論消耗 20
+        Product product = new Product();
+        product.setBrand(brand);
+        product.setName("Black Tea");
+        product.setBasePrice(new BigDecimal("30"));
+        product.setStatus(ProductStatus.ACTIVE);
+        product = productRepository.save(product);
+
+        ProductVariant variant = new ProductVariant();
+        variant.setProduct(product);
+        variant.setName("中杯");
+        variant.setPrice(new BigDecimal("30"));
+        variant = variantRepository.save(variant);
+
+        Recipe recipe = new Recipe();
+        recipe.setVariant(variant);
+        recipe.setInventoryItem(tea);
+        recipe.setQuantity(new BigDecimal("10.0000"));
+        recipeRepository.save(recipe);
+
+        Order order = new Order();
+        order.setBrand(brand);
+        order.setStore(store);
+        order.setOrderNumber("VAR-001");
+        order.setStatus(OrderStatus.CLOSED);
+        order.setTotalAmount(new BigDecimal("60"));
+        order.setFinalAmount(new BigDecimal("60"));
+        order.setCompletedTime(java.util.Date.from(at(reportDate, 12)));
+
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setProductVariant(variant);
+        item.setQuantity(2);
+        item.setUnitPrice(new BigDecimal("30"));
+        item.setSubtotal(new BigDecimal("60"));
+        order.getItems().add(item);
+        orderRepository.save(order);
+
+        // 即時消耗累計表 (正常由 InventoryDepletionService 寫入)
+        jdbcTemplate.update("INSERT INTO inventory_theoretical_usage (store_id, inventory_item_id, usage_date, quantity) " +
+                "VALUES (?, ?, ?, 20)", store.getId(), tea.getId(), Date.valueOf(reportDate));
+    }
+
+    @Test
+    @DisplayName("即時消耗模式 - 原物料數量增加時查詢次數不變 (1 次 SELECT)")
+    void generateVarianceReport_Precomputed_ShouldUseConstantQueries() {
+        assertConstantQueryCount(true, 1);
+    }
+
+    @Test
+    @DisplayName("重播模式 - 原物料數量增加時查詢次數不變 (2 次 SELECT)")
+    void generateVarianceReport_Replay_ShouldUseConstantQueries() {
+        assertConstantQueryCount(false, 2);
+    }
+
+    private void assertConstantQueryCount(boolean depletionEnabled, int expectedSelects) {
+        boolean original = depletionService.isEnabled();
+        Object originalLiveFrom = ReflectionTestUtils.getField(depletionService, "liveFrom");
+        ReflectionTestUtils.setField(depletionService, "enabled", depletionEnabled);
+        // 累計表涵蓋報表日期 (不在計數範圍內查詢涵蓋起始日)
+        ReflectionTestUtils.setField(depletionService, "liveFrom", reportDate);
+        try {
+            // 1. 少量原物料
+            SQLStatementCountValidator.reset();
+            List<InventoryVarianceReportDto> report = generateReport();
+            SQLStatementCountValidator.assertSelectCount(expectedSelects);
+
+            assertThat(report).hasSize(1);
+            assertTea(report.getFirst());
+
+            // 2. 原物料增加 20 倍，查詢次數不變
+            for (int i = 0; i < 20; i++) {
+                createItemWithTransactions("Variance Item " + i);
+            }
+
+            SQLStatementCountValidator.reset();
+            report = generateReport();
+            SQLStatementCountValidator.assertSelectCount(expectedSelects);
+
+            assertThat(report).hasSize(21);
+            report.stream().filter(row -> row.getItemId().equals(tea.getId())).findFirst()
+                    .ifPresentOrElse(this::assertTea, () -> { throw new AssertionError("報表缺少紅茶"); });
+            report.stream().filter(row -> !row.getItemId().equals(tea.getId())).forEach(row -> {
+                assertThat(row.getActualUsage()).isEqualByComparingTo("30");
+                assertThat(row.getTheoreticalUsage()).isEqualByComparingTo("0");
+            });
+        } finally {
+            ReflectionTestUtils.setField(depletionService, "enabled", original);
+            ReflectionTestUtils.setField(depletionService, "liveFrom", originalLiveFrom);
+        }
+    }
+
+    private List<InventoryVarianceReportDto> generateReport() {
+        return inventoryReportService.generateVarianceReport(brand.getId(), store.getId(), reportDate, reportDate);
+    }
+
+    // 期初 100、期間進貨 50、期末 120 -> 實際消耗 30；理論 20 -> 差異 10 (50%)
+    private void assertTea(InventoryVarianceReportDto row) {
+        assertThat(row.getOpeningQuantity()).isEqualByComparingTo("100");
+        assertThat(row.getRestockQuantity()).isEqualByComparingTo("50");
+        assertThat(row.getClosingQuantity()).isEqualByComparingTo("120");
+        assertThat(row.getActualUsage()).isEqualByComparingTo("30");
+        assertThat(row.getTheoreticalUsage()).isEqualByComparingTo("20");
+        assertThat(row.getVariance()).isEqualByComparingTo("10");
+        assertThat(row.getVariancePercentage()).isEqualByComparingTo("50");
+    }
+
+    /**
+     * 建立原物料與異動紀錄：前天進貨 100 (期初)、報表當日進貨 50 與扣減 30、今天再進貨 (不計入報表區間)
+     */
+    private InventoryItem createItemWithTransactions(String name) {
+        InventoryItem item = new InventoryItem();
+        item.setBrand(brand);
+        item.setName(name);
+        item.setUnit("g");
+        item = itemRepository.save(item);
+
+        createTransaction(item, "RESTOCK", "100", "100", at(reportDate.minusDays(1), 12));
+        createTransaction(item, "RESTOCK", "50", "150", at(reportDate, 10));
+        createTransaction(item, "AUDIT", "-30", "120", at(reportDate, 15));
+        createTransaction(item, "RESTOCK", "80", "200", Instant.now());
+        return item;
+    }
+
+    private void createTransaction(InventoryItem item, String reason, String change, String balance, Instant createdAt) {
+        InventoryTransaction tx = new InventoryTransaction();
+        tx.setStore(store);
+        tx.setInventoryItem(item);
+        tx.setReasonType(reason);
+        tx.setChangeAmount(new BigDecimal(change));
+        tx.setBalanceAfter(new BigDecimal(balance));
+        tx.setCreatedAt(createdAt);
+        transactionRepository.save(tx);
+    }
+
+    private static Instant at(LocalDate date, int hour) {
+        return date.atTime(hour, 0).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
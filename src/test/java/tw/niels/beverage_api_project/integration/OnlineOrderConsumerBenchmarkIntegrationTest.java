@@ -0,0 +1,239 @@
+package tw.niels.beverage_api_project.integration;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.config.DataSeeder;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.order.dto.AsyncOrderTaskDto;
+import tw.niels.beverage_api_project.modules.order.dto.CreateOrderRequestDto;
+import tw.niels.beverage_api_project.modules.order.dto.OrderItemDto;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.enums.OrderTaskState;
+import tw.niels.beverage_api_project.modules.order.service.OrderTaskStatusService;
+import tw.niels.beverage_api_project.modules.order.vo.OrderTaskStatus;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.product.entity.ProductVariant;
+import tw.niels.beverage_api_project.modules.product.enums.ProductStatus;
+import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
+import tw.niels.beverage_api_project.modules.product.repository.ProductVariantRepository;
+import tw.niels.beverage_api_project.modules.product.service.CatalogSnapshotService;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+import tw.niels.beverage_api_project.modules.user.entity.User;
+import tw.niels.beverage_api_project.modules.user.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 線上訂單消費吞吐量比較：單筆 Listener vs 批次 Listener (同一個 Testcontainers RabbitMQ)
+ * 先在 Listener 停止時把訊息灌進佇列，再啟動 Listener 計時直到全部訂單寫入資料庫。
+ * 吞吐量比較標記為 benchmark (預設不執行，以 -Pbenchmark 執行)；預設只執行少量訊息的批次消費正確性測試。
+ */
+public class OnlineOrderConsumerBenchmarkIntegrationTest extends AbstractIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OnlineOrderConsumerBenchmarkIntegrationTest.class);
+    private static final int MESSAGE_COUNT = 500;
+    private static final int CORRECTNESS_MESSAGE_COUNT = 20;
+
+    @MockitoBean private DataSeeder dataSeeder;
+    @MockitoBean private ReportRecoveryRunner reportRecoveryRunner;
+    @MockitoBean private ReportScheduler reportScheduler;
+    @MockitoBean private ControllerHelperService helperService;
+
+    @Autowired private RabbitTemplate rabbitTemplate;
+    @Autowired private RabbitListenerEndpointRegistry listenerRegistry;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private BrandRepository brandRepository;
+    @Autowired private StoreRepository storeRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private ProductVariantRepository productVariantRepository;
+    @Autowired private CatalogSnapshotService catalogSnapshotService;
+    @Autowired private OrderTaskStatusService orderTaskStatusService;
+
+    private Long brandId;
+    private Long staffUserId;
+    private Long productId;
+    private Long variantId;
+
+    @BeforeEach
+    void setup() {
+        stopListeners();
+
+        Brand brand = new Brand();
+        brand.setName("Benchmark Brand");
+        brand = brandRepository.save(brand);
+        this.brandId = brand.getId();
+
+        User staff = new User();
+        staff.setBrand(brand);
+        staff.setPrimaryPhone("0934567890");
+        staff.setPasswordHash("hash123");
+        this.staffUserId = userRepository.save(staff).getId();
+
+        Product p = new Product();
+        p.setBrand(brand);
+        p.setName("Black Tea");
+        p.setBasePrice(BigDecimal.valueOf(30));
+        p.setStatus(ProductStatus.ACTIVE);
+        p = productRepository.save(p);
+        this.productId = p.getId();
+
+        ProductVariant v = new ProductVariant();
+        v.setProduct(p);
+        v.setName("Medium");
+        v.setPrice(BigDecimal.valueOf(30));
+        v.setSkuCode("BT-M");
+        v.setDeleted(false);
+        this.variantId = productVariantRepository.save(v).getId();
+
+        catalogSnapshotService.getSnapshot(brandId);
+    }
+
+    @AfterEach
+    void restoreListeners() {
+        stopListeners();
+        listenerRegistry.getListenerContainer("online-order-single").start();
+    }
+
+    @Test
+    @DisplayName("批次消費 - 每筆訊息各建立一張訂單，任務狀態皆為已建立")
+    void batchConsumer_ShouldCreateEachOrderOnce() {
+        Long storeId = createStore("online-order-batch");
+        List<String> requestIds = publish("online-order-batch", storeId, CORRECTNESS_MESSAGE_COUNT);
+
+        consume("online-order-batch", storeId, CORRECTNESS_MESSAGE_COUNT);
+
+        assertOrders(storeId, CORRECTNESS_MESSAGE_COUNT);
+        for (String requestId : requestIds) {
+            OrderTaskStatus status = orderTaskStatusService.getStatus(requestId).orElseThrow();
+            assertThat(status.state()).as("任務 %s", requestId).isEqualTo(OrderTaskState.CREATED);
+            assertThat(countOrder(storeId, status.orderId())).as("任務 %s 的訂單", requestId).isEqualTo(1);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("吞吐量比較 - 單筆消費 vs 批次消費 (messages/sec)")
+    void compareSingleAndBatchThroughput() {
+        double singleRate = measure("online-order-single");
+        double batchRate = measure("online-order-batch");
+
+        logger.info("線上訂單消費吞吐量 ({} 筆)：單筆 {} msg/s，批次 {} msg/s (x{})",
+                MESSAGE_COUNT,
+                String.format("%.1f", singleRate),
+                String.format("%.1f", batchRate),
+                String.format("%.2f", batchRate / singleRate));
+    }
+
+    /**
+     * 在獨立的分店上灌入 MESSAGE_COUNT 筆訊息，啟動指定的 Listener 並計算每秒處理筆數 (並驗證結果與單筆消費相同)
+     */
+    private double measure(String listenerId) {
+        Long storeId = createStore(listenerId);
+        publish(listenerId, storeId, MESSAGE_COUNT);
+
+        long elapsedNanos = consume(listenerId, storeId, MESSAGE_COUNT);
+
+        assertOrders(storeId, MESSAGE_COUNT);
+        return MESSAGE_COUNT / (elapsedNanos / 1_000_000_000.0);
+    }
+
+    private Long createStore(String listenerId) {
+        Store store = new Store();
+        store.setBrand(brandRepository.getReferenceById(brandId));
+        store.setName("Benchmark Store " + listenerId);
+        return storeRepository.save(store).getId();
+    }
+
+    /**
+     * Listener 停止時灌入訊息，回傳 requestId
+     */
+    private List<String> publish(String listenerId, Long storeId, int count) {
+        List<String> requestIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateOrderRequestDto request = new CreateOrderRequestDto();
+            request.setStatus(OrderStatus.AWAITING_ACCEPTANCE);
+            request.setItems(List.of(new OrderItemDto(productId, variantId, 1, null, Collections.emptyList())));
+
+            String requestId = listenerId + "-" + storeId + "-" + i;
+            AsyncOrderTaskDto task = new AsyncOrderTaskDto(
+                    requestId, brandId, storeId, staffUserId, "0934567890", request);
+            rabbitTemplate.convertAndSend(RabbitConfig.ONLINE_ORDER_EXCHANGE, RabbitConfig.ONLINE_ORDER_ROUTING_KEY, task);
+            requestIds.add(requestId);
+        }
+        return requestIds;
+    }
+
+    /**
+     * 啟動指定的 Listener 直到分店的訂單數達到 count，回傳耗時 (奈秒)
+     */
+    private long consume(String listenerId, Long storeId, int count) {
+        MessageListenerContainer container = listenerRegistry.getListenerContainer(listenerId);
+        long start = System.nanoTime();
+        container.start();
+
+        await().atMost(2, TimeUnit.MINUTES).pollInterval(Duration.ofMillis(50)).until(() ->
+                countOrders(storeId) >= count);
+
+        long elapsedNanos = System.nanoTime() - start;
+        container.stop();
+        return elapsedNanos;
+    }
+
+    /**
+     * 訂單數剛好為 count (沒有重複建立)，且每張訂單的狀態與明細正確
+     */
+    private void assertOrders(Long storeId, int count) {
+        assertThat(countOrders(storeId)).isEqualTo(count);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT order_number) FROM orders WHERE store_id = ?",
+                Long.class, storeId)).isEqualTo(count);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders " +
+                        "WHERE store_id = ? AND status_code = 'AWAITING_ACCEPTANCE'",
+                Long.class, storeId)).isEqualTo(count);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM order_items oi " +
+                        "JOIN orders o ON o.order_id = oi.order_id WHERE o.store_id = ?",
+                Long.class, storeId)).isEqualTo(count);
+    }
+
+    private long countOrder(Long storeId, Long orderId) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE store_id = ? AND order_id = ?",
+                Long.class, storeId, orderId);
+        return count != null ? count : 0;
+    }
+
+    private long countOrders(Long storeId) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM orders WHERE store_id = ?", Long.class, storeId);
+        return count != null ? count : 0;
+    }
+
+    private void stopListeners() {
+        listenerRegistry.getListenerContainer("online-order-single").stop();
+        listenerRegistry.getListenerContainer("online-order-batch").stop();
+    }
+}
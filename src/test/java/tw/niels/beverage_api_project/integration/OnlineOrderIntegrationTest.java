@@ -10,6 +10,7 @@ import org.springframework.security.authentication.UsernamePasswordAuthenticatio
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.transaction.support.TransactionTemplate;
 import tw.niels.beverage_api_project.AbstractIntegrationTest;
 import tw.niels.beverage_api_project.modules.order.dto.CreateOrderRequestDto;
@@ -29,8 +30,11 @@ import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.awaitility.Awaitility.await;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @AutoConfigureMockMvc
@@ -100,13 +104,27 @@ public class OnlineOrderIntegrationTest extends AbstractIntegrationTest {
         requestDto.setItems(List.of(itemDto));
 
         // 2. 發送 POST 請求
-        mockMvc.perform(post("/api/v1/online-orders")
+        String responseBody = mockMvc.perform(post("/api/v1/online-orders")
                         .header("Authorization", "Bearer " + token)
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(requestDto)))
                 .andExpect(status().isAccepted()) // 202 Accepted
                 .andExpect(jsonPath("$.ticketId").exists())
-                .andExpect(jsonPath("$.status").value("QUEUED"));
+                .andExpect(jsonPath("$.status").value("QUEUED"))
+                .andReturn().getResponse().getContentAsString();
+        String ticketId = objectMapper.readTree(responseBody).get("ticketId").asText();
+
+        // 2-1. 以長輪詢查詢任務狀態 (只讀 Redis，不查詢訂單資料表)
+        MvcResult pollResult = mockMvc.perform(get("/api/v1/online-orders/" + ticketId + "/status")
+                        .param("waitMs", "10000")
+                        .header("Authorization", "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(pollResult))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.requestId").value(ticketId))
+                .andExpect(jsonPath("$.state").value("CREATED"))
+                .andExpect(jsonPath("$.orderNumber").exists());
 
         // 3. 驗證資料庫寫入 (非同步等待 RabbitMQ 消費完成)
         await().atMost(10, TimeUnit.SECONDS).pollInterval(Duration.ofMillis(500)).untilAsserted(() -> {
@@ -25,6 +25,7 @@ import tw.niels.beverage_api_project.modules.product.enums.ProductStatus;
 import tw.niels.beverage_api_project.modules.product.repository.CategoryRepository;
 import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
 import tw.niels.beverage_api_project.modules.product.repository.ProductVariantRepository; // 新增注入
+import tw.niels.beverage_api_project.modules.product.service.CatalogSnapshotService;
 import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
 import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
 import tw.niels.beverage_api_project.modules.store.entity.Store;
@@ -54,6 +55,7 @@ public class OrderCreationNPlusOneIntegrationTest extends AbstractIntegrationTes
     @Autowired private ProductVariantRepository productVariantRepository; // 新增
     @Autowired private CategoryRepository categoryRepository;
     @Autowired private UserRepository userRepository;
+    @Autowired private CatalogSnapshotService catalogSnapshotService;
 
     private Long brandId;
     private Long storeId;
@@ -113,6 +115,9 @@ public class OrderCreationNPlusOneIntegrationTest extends AbstractIntegrationTes
         }
 
         storeRepository.flush();
+
+        // 預先載入目錄快照 (正式環境中快照常駐記憶體，只有第一次或商品異動時才會查詢)
+        catalogSnapshotService.getSnapshot(brandId);
         SQLStatementCountValidator.reset();
     }
 
@@ -145,13 +150,10 @@ public class OrderCreationNPlusOneIntegrationTest extends AbstractIntegrationTes
         // 斷言分析：
         // 1. SELECT Store
         // 2. SELECT Staff
-        // 3. SELECT Batch Products (IN clause)
-        // 4. SELECT Batch Variants (IN clause) -> 新增的查詢
-        // 5. SELECT User/Staff Profiles (視 JPA fetch 設定，通常會有關聯查詢)
-        // OrderItemProcessorService 現在會執行：productRepository.findByBrand_IdAndIdIn AND productVariantRepository.findBy...
-
-        // 預期查詢數增加 1 (因為多了一次對 product_variants 的批次查詢)
-        // 原本預期 5，現在改為 6。重點是查詢次數固定，不會隨 items 數量 (5) 而變成 5+N
-        SQLStatementCountValidator.assertSelectCount(6);
+        // 3~4. 其餘基礎資料關聯查詢 (視 JPA fetch 設定)
+        // OrderItemProcessorService 改用記憶體中的目錄快照驗證與計價，
+        // 商品 / 規格關聯使用 getReferenceById 代理物件，因此不再有 products / product_variants 的查詢。
+        // 重點是查詢次數固定，不會隨 items 數量 (5) 而變成 5+N
+        SQLStatementCountValidator.assertSelectCount(4);
     }
 }
\ No newline at end of file
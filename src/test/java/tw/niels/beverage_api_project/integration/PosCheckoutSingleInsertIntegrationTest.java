@@ -0,0 +1,145 @@
+package tw.niels.beverage_api_project.integration;
+
+import io.hypersistence.utils.jdbc.validator.SQLStatementCountValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.config.DataSeeder;
+import tw.niels.beverage_api_project.config.TestDataSourceConfig;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.order.dto.OrderItemDto;
+import tw.niels.beverage_api_project.modules.order.dto.PosCheckoutRequestDto;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.facade.OrderProcessFacade;
+import tw.niels.beverage_api_project.modules.product.entity.Category;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.product.entity.ProductVariant;
+import tw.niels.beverage_api_project.modules.product.enums.ProductStatus;
+import tw.niels.beverage_api_project.modules.product.repository.CategoryRepository;
+import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
+import tw.niels.beverage_api_project.modules.product.repository.ProductVariantRepository;
+import tw.niels.beverage_api_project.modules.product.service.CatalogSnapshotService;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+import tw.niels.beverage_api_project.modules.user.entity.User;
+import tw.niels.beverage_api_project.modules.user.repository.UserRepository;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Import(TestDataSourceConfig.class)
+public class PosCheckoutSingleInsertIntegrationTest extends AbstractIntegrationTest {
+
+    @MockitoBean private DataSeeder dataSeeder;
+    @MockitoBean private ReportRecoveryRunner reportRecoveryRunner;
+    @MockitoBean private ReportScheduler reportScheduler;
+    @MockitoBean private ControllerHelperService helperService;
+
+    @Autowired private OrderProcessFacade orderProcessFacade;
+    @Autowired private BrandRepository brandRepository;
+    @Autowired private StoreRepository storeRepository;
+    @Autowired private ProductRepository productRepository;
+    @Autowired private ProductVariantRepository productVariantRepository;
+    @Autowired private CategoryRepository categoryRepository;
+    @Autowired private UserRepository userRepository;
+    @Autowired private CatalogSnapshotService catalogSnapshotService;
+
+    private Long brandId;
+    private Long storeId;
+    private Long staffUserId;
+    private record ProductInfo(Long productId, Long variantId) {}
+    private final List<ProductInfo> productInfos = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        Brand brand = new Brand();
+        brand.setName("POS Insert Brand");
+        brand = brandRepository.save(brand);
+        this.brandId = brand.getId();
+
+        Store store = new Store();
+        store.setBrand(brand);
+        store.setName("POS Insert Store");
+        store = storeRepository.save(store);
+        this.storeId = store.getId();
+
+        User staff = new User();
+        staff.setBrand(brand);
+        staff.setPrimaryPhone("0923456789");
+        staff.setPasswordHash("hash123");
+        staff = userRepository.save(staff);
+        this.staffUserId = staff.getId();
+
+        Category category = new Category();
+        category.setBrand(brand);
+        category.setName("Tea");
+        categoryRepository.save(category);
+
+        for (int i = 1; i <= 5; i++) {
+            Product p = new Product();
+            p.setBrand(brand);
+            p.setName("Green Tea " + i);
+            p.setBasePrice(BigDecimal.valueOf(40));
+            p.setStatus(ProductStatus.ACTIVE);
+            p.setCategories(Set.of(category));
+            p = productRepository.save(p);
+
+            ProductVariant v = new ProductVariant();
+            v.setProduct(p);
+            v.setName("Large");
+            v.setPrice(BigDecimal.valueOf(45));
+            v.setSkuCode("GT-" + i + "-L");
+            v.setDeleted(false);
+            v = productVariantRepository.save(v);
+
+            productInfos.add(new ProductInfo(p.getId(), v.getId()));
+        }
+
+        storeRepository.flush();
+
+        // 預先載入目錄快照，讓計數只反映結帳本身的寫入
+        catalogSnapshotService.getSnapshot(brandId);
+        SQLStatementCountValidator.reset();
+    }
+
+    @Test
+    @DisplayName("POS 結帳 - 訂單與品項只各產生一批 INSERT，且沒有任何 UPDATE")
+    void testPosCheckout_ShouldInsertOrderOnce() {
+        PosCheckoutRequestDto request = new PosCheckoutRequestDto();
+        request.setPaymentMethod("CASH");
+
+        List<OrderItemDto> items = new ArrayList<>();
+        for (ProductInfo info : productInfos) {
+            items.add(new OrderItemDto(info.productId(), info.variantId(), 1, null, Collections.emptyList()));
+        }
+        request.setItems(items);
+
+        SQLStatementCountValidator.reset();
+
+        Order order = orderProcessFacade.processPosCheckout(brandId, storeId, staffUserId, request);
+
+        // 斷言分析：
+        // 1. INSERT orders (所有欄位在存檔前已計算完成)
+        // 2. INSERT order_items (hibernate.jdbc.batch_size 讓 5 筆品項合併成一個 JDBC 批次)
+        // 過去先存檔再回寫金額 / 狀態，會多出一次 UPDATE orders
+        SQLStatementCountValidator.assertInsertCount(2);
+        SQLStatementCountValidator.assertUpdateCount(0);
+
+        assertThat(order.getStatus()).isEqualTo(OrderStatus.PREPARING);
+        assertThat(order.getFinalAmount()).isEqualByComparingTo(BigDecimal.valueOf(225));
+    }
+}
@@ -0,0 +1,228 @@
+package tw.niels.beverage_api_project.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.common.util.TsidUtil;
+import tw.niels.beverage_api_project.config.DataSeeder;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.report.dto.BrandSalesSummaryDto;
+import tw.niels.beverage_api_project.modules.report.dto.ProductSalesStatsDto;
+import tw.niels.beverage_api_project.modules.report.dto.StoreRankingDto;
+import tw.niels.beverage_api_project.modules.report.repository.DailyProductStatsRepository;
+import tw.niels.beverage_api_project.modules.report.repository.DailyStoreStatsRepository;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
+import tw.niels.beverage_api_project.modules.report.service.ReportAnalyticsCache;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+
+/**
+ * 報表儀表板效能比較：資料庫聚合查詢 vs 記憶體欄式快取
+ * 1,000 間分店、365 天日結 (365,000 筆分店日結、3,650,000 筆商品日結)，
+ * 比較 7 / 30 / 365 天區間的品牌總覽、分店排行與商品排行耗時，並驗證結果一致。
+ * 效能比較標記為 benchmark (預設不執行，以 -Pbenchmark 執行)；預設只以 20 間分店 x 30 天驗證結果一致。
+ */
+@TestPropertySource(properties = {
+        "app.report.analytics-cache.enabled=true",
+        "app.report.analytics-cache.days=400"
+})
+public class ReportDashboardBenchmarkIntegrationTest extends AbstractIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReportDashboardBenchmarkIntegrationTest.class);
+    private static final int STORE_COUNT = 1_000;
+    private static final int DAY_COUNT = 365;
+    private static final int PRODUCT_COUNT = 10;
+    private static final int ITERATIONS = 20;
+    private static final int CORRECTNESS_STORE_COUNT = 20;
+    private static final int CORRECTNESS_DAY_COUNT = 30;
+
+    @MockitoBean private DataSeeder dataSeeder;
+    @MockitoBean private ReportRecoveryRunner reportRecoveryRunner;
+    @MockitoBean private ReportScheduler reportScheduler;
+    @MockitoBean private ControllerHelperService helperService;
+
+    @Autowired private ReportAnalyticsCache reportAnalyticsCache;
+    @Autowired private DailyStoreStatsRepository dailyStoreStatsRepository;
+    @Autowired private DailyProductStatsRepository dailyProductStatsRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private BrandRepository brandRepository;
+    @Autowired private StoreRepository storeRepository;
+
+    private Long brandId;
+    private Long storeId;
+    private LocalDate yesterday;
+    private long productBase;
+
+    @BeforeEach
+    void setup() {
+        Brand brand = new Brand();
+        brand.setName("Dashboard Brand");
+        brand = brandRepository.save(brand);
+        brandId = brand.getId();
+
+        productBase = TsidUtil.nextId();
+        for (int p = 0; p < PRODUCT_COUNT; p++) {
+            jdbcTemplate.update("INSERT INTO products (product_id, brand_id, name, base_price) VALUES (?, ?, ?, 50)",
+                    productBase + p, brandId, "Dashboard Tea " + p);
+        }
+        yesterday = LocalDate.now().minusDays(1);
+    }
+
+    @Test
+    @DisplayName("少量日結 - 記憶體快取與資料庫聚合的結果一致")
+    void cache_ShouldMatchDatabase() {
+        seed(CORRECTNESS_STORE_COUNT, CORRECTNESS_DAY_COUNT);
+        load();
+
+        for (int days : new int[]{1, 7, CORRECTNESS_DAY_COUNT}) {
+            assertSameResults(yesterday.minusDays(days - 1), CORRECTNESS_STORE_COUNT);
+        }
+        // 超出快取範圍：改查資料庫
+        assertThat(reportAnalyticsCache.summarize(brandId, yesterday.minusDays(1_000), yesterday)).isEmpty();
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("1,000 間分店 x 365 天 - 資料庫聚合 vs 記憶體快取")
+    void compareDatabaseAndCache() {
+        seed(STORE_COUNT, DAY_COUNT);
+        long loadMillis = load();
+        logger.info("報表分析快取完整載入 ({} 間分店 x {} 天)：{} ms", STORE_COUNT, DAY_COUNT, loadMillis);
+
+        for (int days : new int[]{7, 30, 365}) {
+            LocalDate from = yesterday.minusDays(days - 1);
+            assertSameResults(from, STORE_COUNT);
+
+            // 儀表板一次請求 = 總覽 + 分店排行 + 單店商品排行
+            long dbMicros = time(() -> {
+                dailyStoreStatsRepository.aggregateBrandSales(brandId, from, yesterday);
+                dailyStoreStatsRepository.findTopStoresByRevenue(brandId, from, yesterday);
+                dailyProductStatsRepository.findProductSalesRanking(storeId, from, yesterday);
+            });
+            long cacheMicros = time(() -> {
+                reportAnalyticsCache.summarize(brandId, from, yesterday);
+                reportAnalyticsCache.rankStores(brandId, from, yesterday);
+                reportAnalyticsCache.rankProducts(brandId, storeId, from, yesterday);
+            });
+            logger.info("儀表板 {} 天區間 (平均 {} 次)：資料庫 {} us，記憶體快取 {} us (x{})",
+                    days, ITERATIONS, dbMicros, cacheMicros,
+                    String.format("%.2f", (double) dbMicros / Math.max(cacheMicros, 1)));
+        }
+    }
+
+    /**
+     * 建立分店與日結資料 (集合式 INSERT)：金額含角分，讓分店與商品的排行不完全相同
+     */
+    private void seed(int storeCount, int dayCount) {
+        Brand brand = brandRepository.getReferenceById(brandId);
+        List<Store> stores = new ArrayList<>();
+        for (int i = 0; i < storeCount; i++) {
+            Store store = new Store();
+            store.setBrand(brand);
+            store.setName("Dashboard Store " + i);
+            stores.add(store);
+        }
+        storeId = storeRepository.saveAll(stores).getFirst().getId();
+
+        jdbcTemplate.update("INSERT INTO daily_store_stats (daily_store_stats_id, store_id, brand_id, date, " +
+                        "    total_orders, total_revenue, total_discount, final_revenue, cancelled_orders) " +
+                        "SELECT ? + row_number() OVER (), s.store_id, ?, ?::date - d, " +
+                        "       50 + (s.n + d) % 50, 1000 + (s.n * 7 + d * 13) % 5000 + (s.n % 100) / 100.0, " +
+                        "       (s.n + d) % 50, 1000 + (s.n * 7 + d * 13) % 5000 + (s.n % 100) / 100.0 - (s.n + d) % 50, " +
+                        "       (s.n + d) % 3 " +
+                        "FROM (SELECT store_id, row_number() OVER (ORDER BY store_id) AS n FROM stores WHERE brand_id = ?) s, " +
+                        "     generate_series(0, ?) d",
+                TsidUtil.nextId(), brandId, yesterday, brandId, dayCount - 1);
+
+        jdbcTemplate.update("INSERT INTO daily_product_stats (daily_product_stats_id, store_id, brand_id, product_id, " +
+                        "    product_name, date, quantity_sold, total_sales_amount) " +
+                        "SELECT ? + row_number() OVER (), s.store_id, ?, ? + p, 'Dashboard Tea ' || p, ?::date - d, " +
+                        "       1 + (s.n + d + p * 3) % 20, (1 + (s.n + d + p * 3) % 20) * (45 + p + (s.n % 10) / 10.0) " +
+                        "FROM (SELECT store_id, row_number() OVER (ORDER BY store_id) AS n FROM stores WHERE brand_id = ?) s, " +
+                        "     generate_series(0, ?) d, generate_series(0, ?) p",
+                TsidUtil.nextId(), brandId, productBase, yesterday, brandId, dayCount - 1, PRODUCT_COUNT - 1);
+
+        jdbcTemplate.execute("ANALYZE daily_store_stats");
+        jdbcTemplate.execute("ANALYZE daily_product_stats");
+    }
+
+    /**
+     * 完整載入 (啟動後的背景載入早於測試資料：等它結束後重設，再同步載入)，回傳耗時 (毫秒)
+     */
+    private long load() {
+        AtomicBoolean startupLoading = (AtomicBoolean) ReflectionTestUtils.getField(reportAnalyticsCache, "initialLoading");
+        await().atMost(30, TimeUnit.SECONDS).until(() -> !startupLoading.get());
+        ReflectionTestUtils.setField(reportAnalyticsCache, "window", null);
+        long start = System.nanoTime();
+        reportAnalyticsCache.initialLoad();
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    /**
+     * 快取與資料庫的總覽、分店排行與商品排行一致 (同額時排序可能不同，比較排序後的內容)
+     */
+    private void assertSameResults(LocalDate from, int storeCount) {
+        BrandSalesSummaryDto dbSummary = dailyStoreStatsRepository.aggregateBrandSales(brandId, from, yesterday);
+        BrandSalesSummaryDto cacheSummary = reportAnalyticsCache.summarize(brandId, from, yesterday).orElseThrow();
+        assertThat(cacheSummary.getTotalOrders()).isEqualTo(dbSummary.getTotalOrders());
+        assertThat(cacheSummary.getCancelledOrders()).isEqualTo(dbSummary.getCancelledOrders());
+        assertThat(cacheSummary.getTotalRevenue()).isEqualByComparingTo(dbSummary.getTotalRevenue());
+        assertThat(cacheSummary.getTotalDiscount()).isEqualByComparingTo(dbSummary.getTotalDiscount());
+
+        List<StoreRankingDto> cacheRanking = reportAnalyticsCache.rankStores(brandId, from, yesterday).orElseThrow();
+        assertThat(cacheRanking).hasSize(storeCount);
+        assertThat(storeKeys(cacheRanking))
+                .isEqualTo(storeKeys(dailyStoreStatsRepository.findTopStoresByRevenue(brandId, from, yesterday)));
+
+        List<ProductSalesStatsDto> cacheProducts = reportAnalyticsCache.rankProducts(brandId, storeId, from, yesterday).orElseThrow();
+        assertThat(cacheProducts).hasSize(PRODUCT_COUNT);
+        assertThat(productKeys(cacheProducts))
+                .isEqualTo(productKeys(dailyProductStatsRepository.findProductSalesRanking(storeId, from, yesterday)));
+    }
+
+    private static long time(Runnable dashboard) {
+        // 暖機一次，不計入平均
+        dashboard.run();
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            dashboard.run();
+        }
+        return (System.nanoTime() - start) / 1_000 / ITERATIONS;
+    }
+
+    private static List<String> storeKeys(List<StoreRankingDto> ranking) {
+        return ranking.stream()
+                .map(dto -> dto.getStoreId() + ":" + dto.getTotalRevenue().stripTrailingZeros().toPlainString())
+                .sorted()
+                .toList();
+    }
+
+    private static List<String> productKeys(List<ProductSalesStatsDto> ranking) {
+        return ranking.stream()
+                .map(dto -> dto.getProductId() + ":" + dto.getProductName() + ":" + dto.getTotalQuantity() + ":" +
+                        dto.getTotalSalesAmount().stripTrailingZeros().toPlainString())
+                .sorted()
+                .toList();
+    }
+}
@@ -0,0 +1,190 @@
+package tw.niels.beverage_api_project.integration;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import tw.niels.beverage_api_project.AbstractIntegrationTest;
+import tw.niels.beverage_api_project.common.service.ControllerHelperService;
+import tw.niels.beverage_api_project.config.DataSeeder;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
+import tw.niels.beverage_api_project.modules.inventory.dto.AddShipmentRequestDto;
+import tw.niels.beverage_api_project.modules.inventory.dto.ShipmentImportResultDto;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryItem;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryItemRepository;
+import tw.niels.beverage_api_project.modules.inventory.service.InventoryService;
+import tw.niels.beverage_api_project.modules.inventory.service.InventoryShipmentImportService;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportRecoveryRunner;
+import tw.niels.beverage_api_project.modules.report.schedule.ReportScheduler;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+import tw.niels.beverage_api_project.modules.user.entity.User;
+import tw.niels.beverage_api_project.modules.user.repository.UserRepository;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 大量進貨效能比較：JPA saveAll (addShipment) vs COPY 匯入 (importShipment)
+ * 兩種方式在各自的分店匯入相同的 10,000 行進貨單，比較耗時並驗證寫入結果一致。
+ * 效能比較標記為 benchmark (預設不執行，以 -Pbenchmark 執行)；預設只以少量進貨單驗證寫入結果一致。
+ */
+public class ShipmentImportBenchmarkIntegrationTest extends AbstractIntegrationTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShipmentImportBenchmarkIntegrationTest.class);
+    private static final int LINE_COUNT = 10_000;
+    private static final int ITEM_COUNT = 200;
+    private static final int CORRECTNESS_LINE_COUNT = 500;
+
+    @MockitoBean private DataSeeder dataSeeder;
+    @MockitoBean private ReportRecoveryRunner reportRecoveryRunner;
+    @MockitoBean private ReportScheduler reportScheduler;
+    @MockitoBean private ControllerHelperService helperService;
+
+    @Autowired private InventoryService inventoryService;
+    @Autowired private InventoryShipmentImportService shipmentImportService;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private InventoryItemRepository itemRepository;
+    @Autowired private BrandRepository brandRepository;
+    @Autowired private StoreRepository storeRepository;
+    @Autowired private UserRepository userRepository;
+
+    private Brand brand;
+    private final List<Long> itemIds = new ArrayList<>();
+
+    @BeforeEach
+    void setup() {
+        brand = new Brand();
+        brand.setName("Import Benchmark Brand");
+        brand = brandRepository.save(brand);
+
+        User user = new User();
+        user.setBrand(brand);
+        user.setPrimaryPhone("0911222333");
+        user.setPasswordHash("dummy_hash_for_test");
+        user = userRepository.save(user);
+        Mockito.when(helperService.getCurrentUserId()).thenReturn(user.getId());
+
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            InventoryItem item = new InventoryItem();
+            item.setBrand(brand);
+            item.setName("Import Item " + i);
+            item.setUnit("g");
+            itemIds.add(itemRepository.save(item).getId());
+        }
+    }
+
+    @Test
+    @DisplayName("少量進貨單 - COPY 匯入與 JPA saveAll 的寫入結果一致")
+    void copyImport_ShouldMatchJpa() {
+        importBoth(lines(CORRECTNESS_LINE_COUNT));
+    }
+
+    @Test
+    @Tag("benchmark")
+    @DisplayName("10,000 行進貨單 - JPA saveAll vs COPY 匯入")
+    void compareJpaAndCopyImport() {
+        long[] millis = importBoth(lines(LINE_COUNT));
+
+        logger.info("10,000 行進貨單：JPA saveAll {} ms，COPY 匯入 {} ms (x{})",
+                millis[0], millis[1], String.format("%.2f", (double) millis[0] / Math.max(millis[1], 1)));
+    }
+
+    private List<AddShipmentRequestDto.BatchItemDto> lines(int lineCount) {
+        Random random = new Random(18);
+        List<AddShipmentRequestDto.BatchItemDto> lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            AddShipmentRequestDto.BatchItemDto line = new AddShipmentRequestDto.BatchItemDto();
+            line.setInventoryItemId(itemIds.get(random.nextInt(ITEM_COUNT)));
+            line.setQuantity(BigDecimal.valueOf(1 + random.nextInt(100_000), 2));
+            line.setExpiryDate(LocalDate.now().plusDays(1 + random.nextInt(180)));
+            lines.add(line);
+        }
+        return lines;
+    }
+
+    /**
+     * 兩種方式在各自的分店匯入相同的進貨單，驗證寫入結果一致
+     *
+     * @return {JPA 耗時, COPY 耗時} (毫秒)
+     */
+    private long[] importBoth(List<AddShipmentRequestDto.BatchItemDto> lines) {
+        // 1. JPA (逐筆 INSERT，Hibernate JDBC 批次)
+        Long jpaStoreId = createStore("JPA Store");
+        AddShipmentRequestDto request = new AddShipmentRequestDto();
+        request.setSupplier("Central Kitchen");
+        request.setItems(lines);
+
+        long start = System.nanoTime();
+        inventoryService.addShipment(brand.getId(), jpaStoreId, request);
+        long jpaMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 2. COPY 匯入
+        Long copyStoreId = createStore("COPY Store");
+        StringBuilder csv = new StringBuilder("inventory_item_id,quantity,expiry_date\n");
+        for (AddShipmentRequestDto.BatchItemDto line : lines) {
+            csv.append(line.getInventoryItemId()).append(',')
+                    .append(line.getQuantity().toPlainString()).append(',')
+                    .append(line.getExpiryDate()).append('\n');
+        }
+
+        start = System.nanoTime();
+        ShipmentImportResultDto result = shipmentImportService.importShipment(brand.getId(), copyStoreId,
+                "Central Kitchen", null, null,
+                new ByteArrayInputStream(csv.toString().getBytes(StandardCharsets.UTF_8)));
+        long copyMillis = (System.nanoTime() - start) / 1_000_000;
+
+        // 3. 兩種方式寫入的結果一致
+        assertThat(result.lineCount()).isEqualTo(lines.size());
+        assertThat(count("inventory_batches", copyStoreId)).isEqualTo(lines.size());
+        assertThat(count("inventory_transactions", copyStoreId)).isEqualTo(lines.size());
+        assertThat(count("inventory_snapshots", copyStoreId)).isEqualTo(count("inventory_snapshots", jpaStoreId));
+        assertThat(snapshotTotals(copyStoreId)).isEqualTo(snapshotTotals(jpaStoreId));
+        assertThat(maxBalances(copyStoreId)).isEqualTo(maxBalances(jpaStoreId));
+
+        // 4. 原物料總量 (品牌層級) 兩種方式都有累加：等於兩家分店的批次總和
+        assertThat(jdbcTemplate.queryForList("SELECT i.inventory_item_id || ':' || i.total_quantity FROM inventory_items i " +
+                        "WHERE i.brand_id = ? AND i.total_quantity <> 0 ORDER BY i.inventory_item_id", String.class, brand.getId()))
+                .isEqualTo(jdbcTemplate.queryForList("SELECT b.inventory_item_id || ':' || SUM(b.quantity_received) " +
+                        "FROM inventory_batches b WHERE b.store_id IN (?, ?) " +
+                        "GROUP BY b.inventory_item_id ORDER BY b.inventory_item_id", String.class, jpaStoreId, copyStoreId));
+        return new long[]{jpaMillis, copyMillis};
+    }
+
+    private Long createStore(String name) {
+        Store store = new Store();
+        store.setBrand(brand);
+        store.setName(name);
+        return storeRepository.save(store).getId();
+    }
+
+    private long count(String table, Long storeId) {
+        Long count = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE store_id = ?", Long.class, storeId);
+        return count != null ? count : 0;
+    }
+
+    private List<String> snapshotTotals(Long storeId) {
+        return jdbcTemplate.queryForList("SELECT inventory_item_id || ':' || quantity FROM inventory_snapshots " +
+                "WHERE store_id = ? ORDER BY inventory_item_id", String.class, storeId);
+    }
+
+    // 每個原物料最後一筆異動後餘額應等於快照數量
+    private List<String> maxBalances(Long storeId) {
+        return jdbcTemplate.queryForList("SELECT inventory_item_id || ':' || MAX(balance_after) FROM inventory_transactions " +
+                "WHERE store_id = ? GROUP BY inventory_item_id ORDER BY inventory_item_id", String.class, storeId);
+    }
+}
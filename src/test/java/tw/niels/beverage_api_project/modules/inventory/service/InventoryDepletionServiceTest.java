@@ -0,0 +1,159 @@
+package tw.niels.beverage_api_project.modules.inventory.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryUsageDAO;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryUsageDAO.OrderLineTuple;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryUsageDAO.RecipeTuple;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryUsageDAO.UsageDeltaTuple;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryDepletionServiceTest {
+
+    private static final Long STORE_ID = 10L;
+    private static final Long VARIANT_ID = 500L;
+    private static final Long OPTION_ID = 600L;
+    private static final Long TEA_ID = 100L;
+    private static final Long PEARL_ID = 101L;
+    private static final LocalDate TODAY = LocalDate.of(2025, 1, 15);
+
+    @Mock private InventoryUsageDAO usageDAO;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private InventoryDepletionService depletionService;
+
+    @BeforeEach
+    void setUp() {
+        depletionService = new InventoryDepletionService(usageDAO, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(depletionService, "enabled", true);
+        ReflectionTestUtils.setField(depletionService, "recipeRefreshSeconds", 300L);
+
+        // 規格配方：紅茶 0.3；加料配方：珍珠 0.05
+        lenient().when(usageDAO.findAllRecipes()).thenReturn(List.of(
+                new RecipeTuple(VARIANT_ID, null, TEA_ID, new BigDecimal("0.3000")),
+                new RecipeTuple(null, OPTION_ID, PEARL_ID, new BigDecimal("0.0500"))));
+    }
+
+    @Test
+    @DisplayName("拆解 - 依配方合併同店同日用量，規格配方每個品項只計算一次")
+    void flush_ShouldExplodeAndAggregate() {
+        close(1L);
+        close(2L);
+        // 訂單 1：2 杯珍珠紅茶 (品項有選項 -> 一列)；訂單 2：1 杯紅茶 (無選項) + 同品項重複列 (兩個選項)
+        when(usageDAO.findClosedOrderLines(List.of(1L, 2L))).thenReturn(List.of(
+                new OrderLineTuple(11L, STORE_ID, TODAY, VARIANT_ID, 2, OPTION_ID),
+                new OrderLineTuple(21L, STORE_ID, TODAY, VARIANT_ID, 1, null),
+                new OrderLineTuple(22L, STORE_ID, TODAY, VARIANT_ID, 3, OPTION_ID),
+                new OrderLineTuple(22L, STORE_ID, TODAY, VARIANT_ID, 3, OPTION_ID)));
+
+        depletionService.flush();
+
+        // 紅茶：0.3 x (2 + 1 + 3) = 1.8；珍珠：0.05 x (2 + 3 + 3) = 0.4
+        verify(usageDAO).batchUpsertUsage(argThat(list ->
+                list.size() == 2
+                        && matches(list.get(0), TEA_ID, "1.8")
+                        && matches(list.get(1), PEARL_ID, "0.4")));
+    }
+
+    @Test
+    @DisplayName("事件 - 只有結案的訂單會加入佇列")
+    void onOrderStateChanged_ShouldOnlyQueueClosedOrders() {
+        Order order = new Order();
+        order.setId(3L);
+        depletionService.onOrderStateChanged(
+                new OrderStateChangedEvent(order, OrderStatus.PREPARING, OrderStatus.READY_FOR_PICKUP));
+
+        depletionService.flush();
+
+        verify(usageDAO, never()).findClosedOrderLines(any());
+        verify(usageDAO, never()).batchUpsertUsage(any());
+    }
+
+    @Test
+    @DisplayName("寫入 - 失敗時保留用量，下次重試且不重複拆解")
+    void flush_Failure_ShouldRetainUsage() {
+        close(1L);
+        when(usageDAO.findClosedOrderLines(List.of(1L))).thenReturn(List.of(
+                new OrderLineTuple(11L, STORE_ID, TODAY, VARIANT_ID, 1, null)));
+        doThrow(new IllegalStateException("db down")).doNothing()
+                .when(usageDAO).batchUpsertUsage(any());
+
+        depletionService.flush();
+        depletionService.flush();
+
+        verify(usageDAO, times(1)).findClosedOrderLines(any());
+        verify(usageDAO, times(2)).batchUpsertUsage(argThat(list ->
+                list.size() == 1 && matches(list.getFirst(), TEA_ID, "0.3")));
+
+        // 已寫入：再次排程沒有待寫入量
+        depletionService.flush();
+        verify(usageDAO, times(2)).batchUpsertUsage(any());
+    }
+
+    @Test
+    @DisplayName("涵蓋範圍 - 區間早於涵蓋起始日時不使用累計表，起始日只讀取一次")
+    void coversFrom_ShouldRequireLiveFrom() {
+        when(usageDAO.findLiveFrom()).thenReturn(TODAY);
+
+        assertThat(depletionService.coversFrom(TODAY.minusDays(1))).isFalse();
+        assertThat(depletionService.coversFrom(TODAY)).isTrue();
+        verify(usageDAO, times(1)).findLiveFrom();
+
+        ReflectionTestUtils.setField(depletionService, "enabled", false);
+        assertThat(depletionService.coversFrom(TODAY)).isFalse();
+    }
+
+    @Test
+    @DisplayName("重算 - 與涵蓋起始日相連時起始日往前移；不可重算今天")
+    void rebuild_ShouldLowerLiveFromWhenContiguous() {
+        LocalDate today = LocalDate.now();
+        LocalDate liveFrom = today.minusDays(5);
+        when(usageDAO.findLiveFrom()).thenReturn(liveFrom);
+        when(usageDAO.rebuildUsage(any(), any())).thenReturn(3);
+
+        // 與起始日不相連 (中間缺一天)：只重算，不移動起始日
+        depletionService.rebuild(today.minusDays(20), liveFrom.minusDays(2));
+        verify(usageDAO, never()).lowerLiveFrom(any());
+
+        assertThat(depletionService.rebuild(today.minusDays(20), liveFrom.minusDays(1))).isEqualTo(3);
+        verify(usageDAO).lowerLiveFrom(today.minusDays(20));
+
+        assertThatThrownBy(() -> depletionService.rebuild(today.minusDays(1), today))
+                .isInstanceOf(BadRequestException.class);
+        verify(usageDAO, times(2)).rebuildUsage(any(), any());
+    }
+
+    private void close(Long orderId) {
+        Order order = new Order();
+        order.setId(orderId);
+        depletionService.onOrderStateChanged(
+                new OrderStateChangedEvent(order, OrderStatus.READY_FOR_PICKUP, OrderStatus.CLOSED));
+    }
+
+    private static boolean matches(UsageDeltaTuple tuple, Long itemId, String quantity) {
+        return tuple.storeId().equals(STORE_ID)
+                && tuple.inventoryItemId().equals(itemId)
+                && tuple.usageDate().equals(TODAY)
+                && tuple.quantity().compareTo(new BigDecimal(quantity)) == 0;
+    }
+}
@@ -0,0 +1,198 @@
+package tw.niels.beverage_api_project.modules.inventory.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryBatchDAO;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryReservationDAO;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryBatch;
+import tw.niels.beverage_api_project.modules.inventory.entity.InventoryItem;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryBatchRepository;
+import tw.niels.beverage_api_project.modules.inventory.repository.InventoryItemRepository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class InventoryReservationLedgerTest {
+
+    private static final Long BRAND_ID = 1L;
+    private static final Long STORE_ID = 10L;
+    private static final Long ITEM_ID = 100L;
+
+    @Mock private InventoryItemRepository itemRepository;
+    @Mock private InventoryBatchRepository batchRepository;
+    @Mock private InventoryBatchDAO inventoryBatchDAO;
+    @Mock private InventoryReservationDAO reservationDAO;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private InventoryReservationLedger ledger;
+
+    @BeforeEach
+    void setUp() {
+        ledger = new InventoryReservationLedger(itemRepository, batchRepository, inventoryBatchDAO,
+                reservationDAO, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(ledger, "enabled", true);
+
+        InventoryItem item = new InventoryItem();
+        item.setId(ITEM_ID);
+        item.setName("珍珠");
+        lenient().when(itemRepository.findByBrand_IdAndId(BRAND_ID, ITEM_ID)).thenReturn(Optional.of(item));
+        lenient().when(batchRepository.sumQuantityByStoreAndItem(STORE_ID, ITEM_ID))
+                .thenReturn(Optional.of(new BigDecimal("100.00")));
+    }
+
+    @Test
+    @DisplayName("預留 - 併發搶購不會超賣")
+    void reserve_Concurrent_ShouldNotOversell() throws InterruptedException {
+        int threads = 32;
+        BigDecimal quantity = new BigDecimal("7.00"); // 100 / 7 -> 最多 14 次成功
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger success = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            executor.submit(() -> {
+                try {
+                    start.await();
+                    ledger.reserve(BRAND_ID, STORE_ID, ITEM_ID, quantity);
+                    success.incrementAndGet();
+                } catch (BadRequestException e) {
+                    rejected.incrementAndGet();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        assertThat(success.get()).isEqualTo(14);
+        assertThat(rejected.get()).isEqualTo(threads - 14);
+        assertThat(ledger.availableQuantity(STORE_ID, ITEM_ID)).isEqualByComparingTo("2.00");
+    }
+
+    @Test
+    @DisplayName("寫回 - 合併預留量，總量以相對更新扣減，批次依 FIFO 扣減")
+    void flush_ShouldWriteBackFifo() {
+        ledger.reserve(BRAND_ID, STORE_ID, ITEM_ID, new BigDecimal("20.00"));
+        ledger.reserve(BRAND_ID, STORE_ID, ITEM_ID, new BigDecimal("15.00"));
+
+        InventoryBatch older = batch(1L, "30.00");
+        InventoryBatch newer = batch(2L, "70.00");
+        when(batchRepository.findAvailableBatchesForItemsForUpdate(STORE_ID, Set.of(ITEM_ID)))
+                .thenReturn(List.of(older, newer));
+
+        ledger.flush();
+
+        verify(reservationDAO).batchDecreaseTotalQuantities(argThat(list ->
+                list.size() == 1
+                        && list.getFirst().inventoryItemId().equals(ITEM_ID)
+                        && list.getFirst().quantity().compareTo(new BigDecimal("35.00")) == 0));
+        verify(inventoryBatchDAO).batchUpdateQuantities(argThat(list ->
+                list.size() == 2
+                        && list.get(0).batchId().equals(1L) && list.get(0).newQuantity().signum() == 0
+                        && list.get(1).batchId().equals(2L)
+                        && list.get(1).newQuantity().compareTo(new BigDecimal("65.00")) == 0));
+
+        // 已寫回：再次排程不會重複扣減
+        ledger.flush();
+        verify(reservationDAO, times(1)).batchDecreaseTotalQuantities(any());
+    }
+
+    @Test
+    @DisplayName("寫回 - 失敗時保留預留量，下次重試")
+    void flush_Failure_ShouldRetainPending() {
+        ledger.reserve(BRAND_ID, STORE_ID, ITEM_ID, new BigDecimal("10.00"));
+        doThrow(new IllegalStateException("db down")).doNothing()
+                .when(reservationDAO).batchDecreaseTotalQuantities(any());
+        when(batchRepository.findAvailableBatchesForItemsForUpdate(STORE_ID, Set.of(ITEM_ID)))
+                .thenReturn(List.of(batch(1L, "100.00")));
+
+        ledger.flush();
+        ledger.flush();
+
+        verify(reservationDAO, times(2)).batchDecreaseTotalQuantities(argThat(list ->
+                list.getFirst().quantity().compareTo(new BigDecimal("10.00")) == 0));
+        verify(inventoryBatchDAO, times(1)).batchUpdateQuantities(any());
+    }
+
+    @Test
+    @DisplayName("寫回 - 每家分店各自一個交易，單一分店失敗不影響其他分店；總量只扣減實際從批次扣下的量")
+    void flush_StoreFailure_ShouldNotBlockOtherStores() {
+        Long otherStoreId = 20L;
+        when(batchRepository.sumQuantityByStoreAndItem(otherStoreId, ITEM_ID))
+                .thenReturn(Optional.of(new BigDecimal("50.00")));
+        ledger.reserve(BRAND_ID, STORE_ID, ITEM_ID, new BigDecimal("10.00"));
+        ledger.reserve(BRAND_ID, otherStoreId, ITEM_ID, new BigDecimal("5.00"));
+
+        // 分店 10 的批次只剩 4 (帳本與資料庫不一致)；分店 20 鎖定批次失敗
+        when(batchRepository.findAvailableBatchesForItemsForUpdate(STORE_ID, Set.of(ITEM_ID)))
+                .thenReturn(List.of(batch(1L, "4.00")));
+        when(batchRepository.findAvailableBatchesForItemsForUpdate(otherStoreId, Set.of(ITEM_ID)))
+                .thenThrow(new IllegalStateException("lock timeout"))
+                .thenReturn(List.of(batch(2L, "50.00")));
+
+        ledger.flush();
+
+        verify(reservationDAO, times(1)).batchDecreaseTotalQuantities(argThat(list ->
+                list.size() == 1 && list.getFirst().quantity().compareTo(new BigDecimal("4.00")) == 0));
+        verify(inventoryBatchDAO).batchUpdateQuantities(argThat(list ->
+                list.size() == 1 && list.getFirst().batchId().equals(1L) && list.getFirst().newQuantity().signum() == 0));
+
+        // 下次排程只重試分店 20
+        ledger.flush();
+
+        verify(batchRepository, times(1)).findAvailableBatchesForItemsForUpdate(STORE_ID, Set.of(ITEM_ID));
+        verify(reservationDAO).batchDecreaseTotalQuantities(argThat(list ->
+                list.size() == 1 && list.getFirst().quantity().compareTo(new BigDecimal("5.00")) == 0));
+        verify(inventoryBatchDAO).batchUpdateQuantities(argThat(list ->
+                list.size() == 1 && list.getFirst().batchId().equals(2L)
+                        && list.getFirst().newQuantity().compareTo(new BigDecimal("45.00")) == 0));
+    }
+
+    @Test
+    @DisplayName("預留 - 可用量不足時拒絕，且不影響可用量")
+    void reserve_Insufficient_ShouldReject() {
+        assertThrows(BadRequestException.class, () ->
+                ledger.reserve(BRAND_ID, STORE_ID, ITEM_ID, new BigDecimal("100.01")));
+
+        assertThat(ledger.availableQuantity(STORE_ID, ITEM_ID)).isEqualByComparingTo("100.00");
+    }
+
+    private InventoryBatch batch(Long id, String quantity) {
+        InventoryItem item = new InventoryItem();
+        item.setId(ITEM_ID);
+        InventoryBatch batch = new InventoryBatch();
+        batch.setId(id);
+        batch.setInventoryItem(item);
+        batch.setCurrentQuantity(new BigDecimal(quantity));
+        batch.setExpiryDate(LocalDate.now().plusDays(id));
+        return batch;
+    }
+}
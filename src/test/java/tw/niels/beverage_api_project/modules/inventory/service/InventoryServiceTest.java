@@ -32,6 +32,7 @@ class InventoryServiceTest {
     @Mock private InventoryBatchRepository batchRepository;
     @Mock private InventoryBatchDAO inventoryBatchDAO;
     @Mock private ControllerHelperService helperService; // 即使沒直接用到，Service 依賴它也需要 Mock
+    @Mock private InventoryReservationLedger reservationLedger; // 預設為 Mock 的 false (未啟用預留模式)
 
     @InjectMocks
     private InventoryService inventoryService;
@@ -135,4 +136,22 @@ class InventoryServiceTest {
         // 確保沒有執行後續 DB 更新
         verify(inventoryBatchDAO, never()).batchUpdateQuantities(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("庫存扣減 - 預留模式改由帳本預留，不鎖定資料列")
+    void deductInventory_ReservationMode_DelegatesToLedger() {
+        Long brandId = 1L;
+        Long storeId = 1L;
+        Long itemId = 100L;
+        BigDecimal deductQty = new BigDecimal("5.0");
+
+        when(reservationLedger.isEnabled()).thenReturn(true);
+
+        inventoryService.deductInventory(brandId, storeId, itemId, deductQty);
+
+        verify(reservationLedger).reserve(brandId, storeId, itemId, deductQty);
+        verify(itemRepository, never()).findByBrandIdAndIdForUpdate(any(), any());
+        verify(batchRepository, never()).findAvailableBatchesForUpdate(any(), any());
+        verify(inventoryBatchDAO, never()).batchUpdateQuantities(any());
+    }
+}
@@ -0,0 +1,134 @@
+package tw.niels.beverage_api_project.modules.kds.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KdsConnectionTest {
+
+    private static final String UPDATE = "UPDATE_ORDER";
+
+    @Test
+    @DisplayName("同一張訂單尚未送出的更新訊框會被較新的訊框取代")
+    void offer_ShouldCoalesceSameOrder() {
+        KdsConnection connection = new KdsConnection(1L, new SseEmitter(), 10, 10_000);
+
+        assertThat(connection.offer(100L, UPDATE, frame("v1"), 0)).isEqualTo(KdsConnection.OfferResult.QUEUED);
+        assertThat(connection.offer(200L, UPDATE, frame("other"), 0)).isEqualTo(KdsConnection.OfferResult.QUEUED);
+        assertThat(connection.offer(100L, UPDATE, frame("v2"), 0)).isEqualTo(KdsConnection.OfferResult.COALESCED);
+
+        assertThat(connection.pendingCount()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("合併後的訊框移到佇列尾端，送出順序與放入順序一致；落後時間仍以原本的排隊時間計算")
+    void offer_CoalescedFrameShouldMoveToTail() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch twoSent = new CountDownLatch(2);
+        SseEmitter emitter = new SseEmitter() {
+            @Override
+            public synchronized void send(Set<DataWithMediaType> items) {
+                items.forEach(item -> sent.add(new String((byte[]) item.getData(), StandardCharsets.UTF_8)));
+                twoSent.countDown();
+            }
+        };
+        KdsConnection connection = new KdsConnection(1L, emitter, 10, 1_000);
+        connection.offer(100L, UPDATE, frame("v1"), 0);
+        connection.offer(200L, UPDATE, frame("other"), 800);
+        assertThat(connection.offer(100L, UPDATE, frame("v2"), 900)).isEqualTo(KdsConnection.OfferResult.COALESCED);
+        // 訂單 100 的排隊時間仍為 0
+        assertThat(connection.offer(300L, UPDATE, frame("late"), 1_500)).isEqualTo(KdsConnection.OfferResult.REJECTED);
+
+        Thread writer = Thread.ofVirtual().start(connection::runWriter);
+        assertThat(twoSent.await(5, TimeUnit.SECONDS)).isTrue();
+        connection.close();
+        writer.join(5_000);
+
+        assertThat(sent).containsExactly("other", "v2");
+    }
+
+    @Test
+    @DisplayName("尚未送出的 NEW_ORDER 不會被 UPDATE_ORDER / CANCEL_ORDER 取代，只會被 MOVE_TO_PICKUP 這類完整取代的動作合併")
+    void offer_ShouldNotDropPendingNewOrderForWeakerAction() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch threeSent = new CountDownLatch(3);
+        SseEmitter emitter = new SseEmitter() {
+            @Override
+            public synchronized void send(Set<DataWithMediaType> items) {
+                items.forEach(item -> sent.add(new String((byte[]) item.getData(), StandardCharsets.UTF_8)));
+                threeSent.countDown();
+            }
+        };
+        KdsConnection connection = new KdsConnection(1L, emitter, 10, 10_000);
+        assertThat(connection.offer(100L, "NEW_ORDER", frame("new"), 0)).isEqualTo(KdsConnection.OfferResult.QUEUED);
+        assertThat(connection.offer(100L, UPDATE, frame("update"), 0)).isEqualTo(KdsConnection.OfferResult.QUEUED);
+        // 最後一個訊框是 UPDATE_ORDER，可以被取代；NEW_ORDER 仍保留
+        assertThat(connection.offer(100L, "CANCEL_ORDER", frame("cancel"), 0)).isEqualTo(KdsConnection.OfferResult.COALESCED);
+        assertThat(connection.offer(200L, "NEW_ORDER", frame("other"), 0)).isEqualTo(KdsConnection.OfferResult.QUEUED);
+        assertThat(connection.pendingCount()).isEqualTo(3);
+
+        Thread writer = Thread.ofVirtual().start(connection::runWriter);
+        assertThat(threeSent.await(5, TimeUnit.SECONDS)).isTrue();
+        connection.close();
+        writer.join(5_000);
+
+        assertThat(sent).containsExactly("new", "cancel", "other");
+        assertThat(KdsConnection.supersedes("NEW_ORDER", UPDATE)).isFalse();
+        assertThat(KdsConnection.supersedes("NEW_ORDER", "MOVE_TO_PICKUP")).isTrue();
+        assertThat(KdsConnection.supersedes("CANCEL_ORDER", UPDATE)).isFalse();
+        assertThat(KdsConnection.supersedes(UPDATE, null)).isFalse();
+    }
+
+    @Test
+    @DisplayName("佇列已滿或最舊訊框落後過久時拒絕，呼叫端應踢除連線")
+    void offer_ShouldRejectWhenBehind() {
+        KdsConnection full = new KdsConnection(1L, new SseEmitter(), 2, 10_000);
+        full.offer(1L, UPDATE, frame("a"), 0);
+        full.offer(2L, UPDATE, frame("b"), 0);
+        assertThat(full.offer(3L, UPDATE, frame("c"), 0)).isEqualTo(KdsConnection.OfferResult.REJECTED);
+
+        KdsConnection lagging = new KdsConnection(1L, new SseEmitter(), 100, 1_000);
+        lagging.offer(1L, UPDATE, frame("a"), 0);
+        assertThat(lagging.offer(2L, UPDATE, frame("b"), 500)).isEqualTo(KdsConnection.OfferResult.QUEUED);
+        assertThat(lagging.offer(3L, UPDATE, frame("c"), 1_500)).isEqualTo(KdsConnection.OfferResult.REJECTED);
+    }
+
+    @Test
+    @DisplayName("寫入執行緒依放入順序送出，關閉後丟棄剩餘訊框")
+    void writer_ShouldSendInOrderAndStopOnClose() throws Exception {
+        List<String> sent = new CopyOnWriteArrayList<>();
+        CountDownLatch twoSent = new CountDownLatch(2);
+        SseEmitter emitter = new SseEmitter() {
+            @Override
+            public synchronized void send(Set<DataWithMediaType> items) {
+                items.forEach(item -> sent.add(new String((byte[]) item.getData(), StandardCharsets.UTF_8)));
+                twoSent.countDown();
+            }
+        };
+        KdsConnection connection = new KdsConnection(1L, emitter, 10, 10_000);
+        connection.offer(1L, UPDATE, frame("first"), 0);
+        connection.offer(2L, UPDATE, frame("second"), 0);
+
+        Thread writer = Thread.ofVirtual().start(connection::runWriter);
+        assertThat(twoSent.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(connection.close()).isZero();
+        writer.join(5_000);
+        assertThat(writer.isAlive()).isFalse();
+        assertThat(sent).containsExactly("first", "second");
+        assertThat(connection.offer(3L, UPDATE, frame("late"), 0)).isEqualTo(KdsConnection.OfferResult.REJECTED);
+    }
+
+    private static byte[] frame(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,64 @@
+package tw.niels.beverage_api_project.modules.kds.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class KdsReplayBufferTest {
+
+    @Test
+    @DisplayName("重連時只補送 Last-Event-ID 之後的事件")
+    void eventsAfter_ShouldReturnOnlyMissedEvents() {
+        KdsReplayBuffer buffer = bufferWith(5, 1, 2, 3, 4);
+
+        assertThat(buffer.eventsAfter(2, 4)).hasValueSatisfying(events ->
+                assertThat(events).extracting(KdsReplayBuffer.Event::eventId).containsExactly(3L, 4L));
+        assertThat(buffer.eventsAfter(4, 4)).hasValue(List.of());
+    }
+
+    @Test
+    @DisplayName("遺漏的事件已被擠出緩衝時回傳 empty，改送完整快照")
+    void eventsAfter_ShouldRequireSnapshotWhenGapEvicted() {
+        KdsReplayBuffer buffer = bufferWith(3, 1, 2, 3, 4, 5);
+
+        assertThat(buffer.latestEventId()).isEqualTo(5);
+        assertThat(buffer.eventsAfter(2, 5)).hasValueSatisfying(events ->
+                assertThat(events).extracting(KdsReplayBuffer.Event::eventId).containsExactly(3L, 4L, 5L));
+        assertThat(buffer.eventsAfter(1, 5)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("事件尚未抵達本節點或序號被重設時回傳 empty")
+    void eventsAfter_ShouldRequireSnapshotWhenIncomplete() {
+        // 事件 4 尚未抵達，事件 5 已抵達
+        KdsReplayBuffer outOfOrder = bufferWith(10, 1, 2, 3, 5);
+        assertThat(outOfOrder.eventsAfter(2, 5)).isEmpty();
+
+        // 叢集已發出事件 6，但本節點尚未收到
+        KdsReplayBuffer lagging = bufferWith(10, 1, 2, 3);
+        assertThat(lagging.eventsAfter(2, 6)).isEmpty();
+
+        // 前端的 ID 比叢集目前的 ID 還大 (Redis 序號被重設)
+        assertThat(lagging.eventsAfter(100, 3)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("不同節點發布的事件抵達順序不同時，依事件 ID 排序補送")
+    void eventsAfter_ShouldSortByEventId() {
+        KdsReplayBuffer buffer = bufferWith(10, 1, 3, 2);
+
+        assertThat(buffer.eventsAfter(0, 3)).hasValueSatisfying(events ->
+                assertThat(events).extracting(KdsReplayBuffer.Event::eventId).containsExactly(1L, 2L, 3L));
+    }
+
+    private static KdsReplayBuffer bufferWith(int capacity, long... eventIds) {
+        KdsReplayBuffer buffer = new KdsReplayBuffer(capacity);
+        for (long eventId : eventIds) {
+            buffer.append(new KdsReplayBuffer.Event(eventId, eventId, "UPDATE_ORDER", new byte[0]));
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,51 @@
+package tw.niels.beverage_api_project.modules.order.consumer;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.context.ApplicationEventPublisher;
+import tw.niels.beverage_api_project.common.exception.BadRequestException;
+import tw.niels.beverage_api_project.modules.order.dto.AsyncOrderTaskDto;
+import tw.niels.beverage_api_project.modules.order.dto.CreateOrderRequestDto;
+import tw.niels.beverage_api_project.modules.order.facade.OrderProcessFacade;
+import tw.niels.beverage_api_project.modules.order.service.OrderTaskStatusService;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderMessageConsumerTest {
+
+    @Mock private OrderProcessFacade orderProcessFacade;
+    @Mock private ApplicationEventPublisher eventPublisher;
+    @Mock private OrderTaskStatusService orderTaskStatusService;
+
+    private OrderMessageConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        consumer = new OrderMessageConsumer(orderProcessFacade, eventPublisher, orderTaskStatusService);
+    }
+
+    @Test
+    @DisplayName("失敗 - 標記為 FAILED 後拒絕訊息且不重新排隊，狀態不會再被改回 CREATED")
+    void processTask_Failure_ShouldMarkFailedAndRejectWithoutRequeue() {
+        AsyncOrderTaskDto task = new AsyncOrderTaskDto("req-1", 1L, 10L, 100L, "0912345678",
+                new CreateOrderRequestDto());
+        when(orderProcessFacade.createOrder(any(), any(), any(), any()))
+                .thenThrow(new BadRequestException("庫存不足"));
+
+        assertThatThrownBy(() -> consumer.processTask(task))
+                .isInstanceOf(AmqpRejectAndDontRequeueException.class)
+                .hasCauseInstanceOf(BadRequestException.class);
+
+        verify(orderTaskStatusService).markFailed(task, "庫存不足");
+        verify(orderTaskStatusService, never()).markCreated(any(), any());
+        verifyNoInteractions(eventPublisher);
+    }
+}
@@ -0,0 +1,109 @@
+package tw.niels.beverage_api_project.modules.order.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.modules.order.enums.OrderNumberAllocationMode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class OrderNumberServiceTest {
+
+    @Mock private StringRedisTemplate redisTemplate;
+    @Mock private ValueOperations<String, String> valueOperations;
+
+    // 模擬 Redis 上的計數器
+    private final AtomicLong redisCounter = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OrderNumberService orderNumberService;
+
+    @BeforeEach
+    void setup() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        lenient().when(valueOperations.increment(anyString(), anyLong()))
+                .thenAnswer(invocation -> redisCounter.addAndGet(invocation.getArgument(1, Long.class)));
+
+        orderNumberService = new OrderNumberService(redisTemplate, meterRegistry);
+        ReflectionTestUtils.setField(orderNumberService, "blockSize", 10);
+        ReflectionTestUtils.setField(orderNumberService, "prefetchRemaining", 3);
+    }
+
+    @Test
+    @DisplayName("BLOCK 模式 - 一次 INCRBY 租用一段號碼，在本機依序發放")
+    void blockMode_ShouldLeaseRangesWithIncrBy() {
+        List<Long> sequences = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            sequences.add(orderNumberService.getNextStoreDailySequence(1L));
+        }
+
+        // 單一節點、單一執行緒下號碼仍然連續
+        assertThat(sequences).containsExactlyElementsOf(
+                LongStream.rangeClosed(1, 25).boxed().toList());
+        // 25 張訂單只需要 3 個區塊 (加上最多 1 次背景預取)，而不是 25 次 INCR
+        verify(valueOperations, atMost(4)).increment(anyString(), anyLong());
+        assertThat(meterRegistry.get("order.number.block.wait").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("BLOCK 模式 - 多執行緒同時取號不會重複")
+    void blockMode_ShouldNotDuplicateUnderConcurrency() throws Exception {
+        int threads = 8;
+        int perThread = 500;
+        Set<Long> seen = ConcurrentHashMap.newKeySet();
+
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        assertThat(seen.add(orderNumberService.getNextStoreDailySequence(1L))).isTrue();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(seen).hasSize(threads * perThread);
+        // 所有號碼都在 Redis 已發出的範圍內
+        assertThat(seen).allMatch(seq -> seq >= 1 && seq <= redisCounter.get());
+    }
+
+    @Test
+    @DisplayName("GAP_FREE 模式 - 每張訂單都向 Redis 取號")
+    void gapFreeMode_ShouldIncrementPerOrder() {
+        ReflectionTestUtils.setField(orderNumberService, "mode", OrderNumberAllocationMode.GAP_FREE);
+
+        assertThat(orderNumberService.getNextStoreDailySequence(1L)).isEqualTo(1L);
+        assertThat(orderNumberService.getNextStoreDailySequence(1L)).isEqualTo(2L);
+        assertThat(orderNumberService.getNextStoreDailySequence(1L)).isEqualTo(3L);
+
+        verify(valueOperations, times(3)).increment(anyString(), anyLong());
+    }
+}
@@ -0,0 +1,101 @@
+package tw.niels.beverage_api_project.modules.promotion.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.event.PromotionChangedEvent;
+import tw.niels.beverage_api_project.modules.promotion.strategy.FixedAmountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionStrategyFactory;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionPlan;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionSnapshot;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionWindow;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class PromotionPlanServiceTest {
+
+    @Mock private PromotionCacheService promotionCacheService;
+    @Mock private RabbitTemplate rabbitTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+    private PromotionPlanService planService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        PromotionStrategyFactory strategyFactory = new PromotionStrategyFactory(List.of(new FixedAmountCalculator()));
+        planService = new PromotionPlanService(promotionCacheService, strategyFactory, rabbitTemplate, meterRegistry);
+        ReflectionTestUtils.setField(planService, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(planService, "maxBrands", 100L);
+        planService.init();
+    }
+
+    @Test
+    @DisplayName("即將開始的活動不列入計畫，計畫在該活動開始時失效，開始後重新編譯即生效")
+    void compile_ShouldHonorStartAndEndBoundaries() {
+        LocalDateTime now = LocalDateTime.of(2025, 11, 5, 11, 58);
+        LocalDateTime lunchStart = now.plusMinutes(2);
+        PromotionWindow window = new PromotionWindow("0", now, now.plusMinutes(10), List.of(
+                fixed(1L, now.minusDays(1), now.plusMinutes(5)),
+                fixed(2L, lunchStart, now.plusHours(2))));
+
+        PromotionPlan before = planService.compile(1L, window, now);
+        assertThat(before.size()).isEqualTo(1);
+        assertThat(before.getValidUntil()).isEqualTo(lunchStart);
+
+        PromotionPlan during = planService.compile(1L, window, lunchStart.plusSeconds(1));
+        assertThat(during.size()).isEqualTo(2);
+        // 下一個邊界為活動 1 的結束時間
+        assertThat(during.getValidUntil()).isEqualTo(now.plusMinutes(5));
+
+        PromotionPlan after = planService.compile(1L, window, now.plusMinutes(6));
+        assertThat(after.size()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("本機命中時不查詢 Redis；活動異動後清除兩層快取並廣播給其他實例")
+    void getPlan_ShouldCacheLocallyUntilInvalidated() {
+        LocalDateTime now = LocalDateTime.now();
+        when(promotionCacheService.getPromotionWindow(1L)).thenReturn(new PromotionWindow("0", now, now.plusMinutes(10),
+                List.of(fixed(1L, now.minusDays(1), now.plusDays(1)))));
+
+        planService.getPlan(1L);
+        planService.getPlan(1L);
+        verify(promotionCacheService, times(1)).getPromotionWindow(1L);
+        assertThat(meterRegistry.get("promotion.cache.hit.ratio").tag("tier", "local").gauge().value())
+                .isEqualTo(0.5);
+
+        planService.handlePromotionChanged(new PromotionChangedEvent(1L));
+        verify(promotionCacheService).invalidate(1L);
+        verify(rabbitTemplate).convertAndSend(eq("promotion.exchange"), eq(""), any(Object.class));
+
+        planService.getPlan(1L);
+        verify(promotionCacheService, times(2)).getPromotionWindow(1L);
+
+        // 其他實例送出的廣播同樣清除本機計畫
+        planService.handleRabbitMessage(new PromotionPlanService.PromotionBroadcastMessage(1L, "other-node"));
+        planService.getPlan(1L);
+        verify(promotionCacheService, times(3)).getPromotionWindow(1L);
+    }
+
+    private static PromotionSnapshot fixed(Long id, LocalDateTime start, LocalDateTime end) {
+        return new PromotionSnapshot(id, PromotionType.FIXED_AMOUNT, BigDecimal.TEN, null, start, end, List.of(), false, null);
+    }
+}
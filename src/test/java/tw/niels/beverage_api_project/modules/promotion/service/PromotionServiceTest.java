@@ -4,26 +4,43 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.test.util.ReflectionTestUtils;
 import tw.niels.beverage_api_project.modules.brand.entity.Brand;
 import tw.niels.beverage_api_project.modules.brand.repository.BrandRepository;
 import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
 import tw.niels.beverage_api_project.modules.product.repository.ProductRepository;
 import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
 import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
 import tw.niels.beverage_api_project.modules.promotion.repository.PromotionRepository;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BundleDiscountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BuyXGetYCalculator;
 import tw.niels.beverage_api_project.modules.promotion.strategy.FixedAmountCalculator;
 import tw.niels.beverage_api_project.modules.promotion.strategy.PercentageCalculator;
 import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionCalculator;
 import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionStrategyFactory;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionSnapshot;
+import tw.niels.beverage_api_project.modules.promotion.vo.PromotionWindow;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -34,15 +51,29 @@ class PromotionServiceTest {
     // 新增 PromotionCacheService 的 Mock
     @Mock private PromotionCacheService promotionCacheService;
 
-    // 為了讓 @InjectMocks 順利透過建構子注入，建議也 Mock 其他 Repository
+    // 為了讓建構子注入完整，也 Mock 其他 Repository
     // 即使在這個測試案例中沒有直接使用到它們
     @Mock private PromotionRepository promotionRepository;
     @Mock private BrandRepository brandRepository;
     @Mock private ProductRepository productRepository;
 
-    @InjectMocks
     private PromotionService promotionService;
 
+    @Mock private RabbitTemplate rabbitTemplate;
+    @Mock private ApplicationEventPublisher eventPublisher;
+
+    @BeforeEach
+    void setUp() {
+        // 評估計畫使用真實的編譯邏輯與本機快取，活動來源 (Redis 層) 與策略工廠使用 Mock
+        PromotionPlanService planService = new PromotionPlanService(promotionCacheService, strategyFactory,
+                rabbitTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(planService, "ttlSeconds", 300L);
+        ReflectionTestUtils.setField(planService, "maxBrands", 100L);
+        planService.init();
+        promotionService = new PromotionService(promotionRepository, brandRepository, productRepository,
+                planService, new PromotionStackOptimizer(new SimpleMeterRegistry()), eventPublisher);
+    }
+
 
     @Test
     @DisplayName("計算最佳折扣 - 比較多個活動取最優")
@@ -67,8 +98,8 @@ class PromotionServiceTest {
         promoB.setType(PromotionType.PERCENTAGE);
         promoB.setValue(new BigDecimal("0.8")); // 8折
 
-        // 修改為 Mock promotionCacheService.getActivePromotions
-        when(promotionCacheService.getActivePromotions(brandId)).thenReturn(Arrays.asList(promoA, promoB));
+        // Mock Redis 層回傳的活動
+        when(promotionCacheService.getPromotionWindow(brandId)).thenReturn(window(promoA, promoB));
 
         // Mock Strategy Factory
         PromotionCalculator fixedCalc = new FixedAmountCalculator();
@@ -84,4 +115,92 @@ class PromotionServiceTest {
         // 應該選 200 (8折) 而不是 100 (固定折扣)
         assertThat(result).isEqualByComparingTo("200.00");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("計算最佳折扣 - 只評估訂單包含其商品的活動，組合優惠需包含全部商品")
+    void calculateBestDiscount_ShouldOnlyEvaluateCandidates() {
+        Long brandId = 1L;
+        Brand brand = new Brand();
+        brand.setId(brandId);
+
+        Product tea = product(10L);
+        Product milkTea = product(11L);
+        Product coffee = product(12L);
+
+        Order order = new Order();
+        order.setBrand(brand);
+        order.setItems(Set.of(item(order, tea, 2, "30"), item(order, milkTea, 1, "50")));
+        order.setTotalAmount(new BigDecimal("110"));
+
+        // 買一送一：紅茶 -> 送一杯 30 元
+        Promotion buyOneGetOne = new Promotion();
+        buyOneGetOne.setType(PromotionType.BUY_X_GET_Y);
+        buyOneGetOne.setMinSpend(BigDecimal.ONE);
+        buyOneGetOne.setValue(BigDecimal.ONE);
+        buyOneGetOne.setApplicableProducts(Set.of(tea));
+
+        // 組合優惠：紅茶 + 奶茶 = 60 元 -> 折 20 元
+        Promotion teaBundle = new Promotion();
+        teaBundle.setType(PromotionType.BUNDLE_DISCOUNT);
+        teaBundle.setValue(new BigDecimal("60"));
+        teaBundle.setApplicableProducts(Set.of(tea, milkTea));
+
+        // 組合優惠：紅茶 + 咖啡 (訂單沒有咖啡，不應被評估)
+        Promotion coffeeBundle = new Promotion();
+        coffeeBundle.setType(PromotionType.BUNDLE_DISCOUNT);
+        coffeeBundle.setValue(BigDecimal.ONE);
+        coffeeBundle.setApplicableProducts(Set.of(tea, coffee));
+
+        // 滿 500 折 100 (未達門檻，不應被評估)
+        Promotion highSpend = new Promotion();
+        highSpend.setType(PromotionType.FIXED_AMOUNT);
+        highSpend.setMinSpend(new BigDecimal("500"));
+        highSpend.setValue(new BigDecimal("100"));
+
+        // 尚未支援的類型：編譯時排除，不影響其他活動
+        Promotion gift = new Promotion();
+        gift.setType(PromotionType.GIFT_WITH_PURCHASE);
+
+        when(promotionCacheService.getPromotionWindow(brandId))
+                .thenReturn(window(buyOneGetOne, teaBundle, coffeeBundle, highSpend, gift));
+
+        PromotionCalculator bundleCalc = spy(new BundleDiscountCalculator());
+        PromotionCalculator fixedCalc = spy(new FixedAmountCalculator());
+        when(strategyFactory.getCalculator(PromotionType.BUY_X_GET_Y)).thenReturn(new BuyXGetYCalculator());
+        when(strategyFactory.getCalculator(PromotionType.BUNDLE_DISCOUNT)).thenReturn(bundleCalc);
+        when(strategyFactory.getCalculator(PromotionType.FIXED_AMOUNT)).thenReturn(fixedCalc);
+        when(strategyFactory.getCalculator(PromotionType.GIFT_WITH_PURCHASE))
+                .thenThrow(new IllegalArgumentException("尚未實作"));
+
+        BigDecimal result = promotionService.calculateBestDiscount(order);
+
+        assertThat(result).isEqualByComparingTo("30");
+        verify(bundleCalc, times(1)).calculateDiscount(any(Order.class), any(CompiledPromotion.class));
+        verify(fixedCalc, never()).calculateDiscount(any(Order.class), any(CompiledPromotion.class));
+
+        // 計畫已快取：第二次計算不再重新載入活動
+        promotionService.calculateBestDiscount(order);
+        verify(promotionCacheService, times(1)).getPromotionWindow(brandId);
+    }
+
+    private static PromotionWindow window(Promotion... promotions) {
+        LocalDateTime now = LocalDateTime.now();
+        List<PromotionSnapshot> snapshots = Arrays.stream(promotions).map(PromotionSnapshot::from).toList();
+        return new PromotionWindow("0", now, now.plusMinutes(10), snapshots);
+    }
+
+    private static Product product(Long id) {
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    }
+
+    private static OrderItem item(Order order, Product product, int quantity, String unitPrice) {
+        OrderItem item = new OrderItem();
+        item.setOrder(order);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setUnitPrice(new BigDecimal(unitPrice));
+        return item;
+    }
+}
@@ -0,0 +1,196 @@
+package tw.niels.beverage_api_project.modules.promotion.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BundleDiscountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.BuyXGetYCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.FixedAmountCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PercentageCalculator;
+import tw.niels.beverage_api_project.modules.promotion.strategy.PromotionCalculator;
+import tw.niels.beverage_api_project.modules.promotion.vo.CompiledPromotion;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PromotionStackOptimizerTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PromotionStackOptimizer optimizer;
+
+    private final Product tea = product(10L);
+    private final Product milkTea = product(11L);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        optimizer = new PromotionStackOptimizer(meterRegistry);
+        ReflectionTestUtils.setField(optimizer, "budgetMicros", 1_000_000L);
+    }
+
+    @Test
+    @DisplayName("疊加 - 買一送一後再以折扣後金額判斷滿額折")
+    void optimize_ShouldStackItemAndOrderLevelPromotions() {
+        // 紅茶 30 x 2 + 奶茶 50 x 2 = 160
+        Order order = order(item(tea, 2, "30"), item(milkTea, 2, "50"));
+
+        // 奶茶買一送一 (折 50) + 滿 100 折 20：折扣後 110 仍達門檻 -> 共折 70
+        CompiledPromotion buyOneGetOne = buyOneGetOne(milkTea, null);
+        CompiledPromotion spend100 = fixed("100", "20", null);
+
+        BigDecimal result = optimizer.optimize(order, List.of(buyOneGetOne, spend100), new BigDecimal("50"));
+
+        assertThat(result).isEqualByComparingTo("70");
+        assertThat(outcome("improved")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("疊加 - 滿額門檻以折扣後金額判斷，跌破門檻的組合不成立")
+    void optimize_ShouldCheckThresholdAfterItemDiscounts() {
+        // 奶茶 50 x 2 = 100，買一送一後只剩 50，未達滿 100 折 20
+        Order order = order(item(milkTea, 2, "50"));
+
+        BigDecimal result = optimizer.optimize(order,
+                List.of(buyOneGetOne(milkTea, null), fixed("100", "20", null)), new BigDecimal("50"));
+
+        assertThat(result).isEqualByComparingTo("50");
+        assertThat(outcome("single")).isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("疊加 - 同一互斥群組最多選一個")
+    void optimize_ShouldRespectStackGroups() {
+        Order order = order(item(tea, 2, "30"), item(milkTea, 2, "50"));
+
+        // 兩個滿額折屬於同一群組，只能擇一；與另一群組的 9 折可以疊加
+        CompiledPromotion spend100 = fixed("100", "20", "spend");
+        CompiledPromotion spend150 = fixed("150", "30", "spend");
+        CompiledPromotion ninetyPercent = percentage("0.9", "member");
+
+        BigDecimal result = optimizer.optimize(order, List.of(spend100, spend150, ninetyPercent),
+                new BigDecimal("30"));
+
+        // 先 9 折 (160 -> 144，折 16)，144 未達 150，只能再用滿 100 折 20 -> 共 36
+        assertThat(result).isEqualByComparingTo("36");
+    }
+
+    @Test
+    @DisplayName("疊加 - 同一件商品不會被兩個品項層級活動重複折扣")
+    void optimize_ShouldNotDiscountSameUnitTwice() {
+        // 紅茶 30 x 1 + 奶茶 50 x 1
+        Order order = order(item(tea, 1, "30"), item(milkTea, 1, "50"));
+
+        // 紅茶 + 奶茶組合價 60 (折 20)；全館買一送一 (送 30)；兩者都需要同一件紅茶
+        CompiledPromotion bundle = bundle("60", tea, milkTea);
+        CompiledPromotion anyBuyOneGetOne = buyOneGetOne(null, null);
+
+        BigDecimal result = optimizer.optimize(order, List.of(bundle, anyBuyOneGetOne), new BigDecimal("30"));
+
+        // 不能同時拿到 20 + 30，最佳仍是單一活動的 30
+        assertThat(result).isEqualByComparingTo("30");
+    }
+
+    @Test
+    @DisplayName("疊加 - 超過時間預算時改用單一最佳活動")
+    void optimize_ShouldFallBackToSingleBestWhenBudgetExceeded() {
+        ReflectionTestUtils.setField(optimizer, "budgetMicros", 0L);
+        Order order = order(item(tea, 2, "30"), item(milkTea, 2, "50"));
+
+        // 預算為 0：第一個節點就會超過期限
+        List<CompiledPromotion> candidates = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            candidates.add(fixed("10", "1", null));
+        }
+
+        BigDecimal result = optimizer.optimize(order, candidates, new BigDecimal("1"));
+
+        assertThat(result).isEqualByComparingTo("1");
+        assertThat(outcome("timeout")).isEqualTo(1.0);
+    }
+
+    private double outcome(String outcome) {
+        return meterRegistry.get("promotion.optimizer.outcomes").tag("outcome", outcome).counter().count();
+    }
+
+    private static CompiledPromotion buyOneGetOne(Product product, String stackGroup) {
+        Promotion promotion = new Promotion();
+        promotion.setType(PromotionType.BUY_X_GET_Y);
+        promotion.setMinSpend(BigDecimal.ONE);
+        promotion.setValue(BigDecimal.ONE);
+        long[] productIds = product != null ? new long[]{product.getId()} : new long[0];
+        return compiled(promotion, new BuyXGetYCalculator(), productIds, null, stackGroup);
+    }
+
+    private static CompiledPromotion bundle(String price, Product... products) {
+        Promotion promotion = new Promotion();
+        promotion.setType(PromotionType.BUNDLE_DISCOUNT);
+        promotion.setValue(new BigDecimal(price));
+        long[] productIds = Arrays.stream(products).mapToLong(Product::getId).sorted().toArray();
+        return compiled(promotion, new BundleDiscountCalculator(), productIds, null, null);
+    }
+
+    private static CompiledPromotion fixed(String minSpend, String value, String stackGroup) {
+        Promotion promotion = new Promotion();
+        promotion.setType(PromotionType.FIXED_AMOUNT);
+        promotion.setMinSpend(new BigDecimal(minSpend));
+        promotion.setValue(new BigDecimal(value));
+        return compiled(promotion, new FixedAmountCalculator(), new long[0], promotion.getMinSpend(), stackGroup);
+    }
+
+    private static CompiledPromotion percentage(String value, String stackGroup) {
+        Promotion promotion = new Promotion();
+        promotion.setType(PromotionType.PERCENTAGE);
+        promotion.setValue(new BigDecimal(value));
+        return compiled(promotion, new PercentageCalculator(), new long[0], null, stackGroup);
+    }
+
+    private static CompiledPromotion compiled(Promotion promotion, PromotionCalculator calculator,
+                                              long[] productIds, BigDecimal minSpend, String stackGroup) {
+        promotion.setIsStackable(true);
+        promotion.setStackGroup(stackGroup);
+        return new CompiledPromotion(promotion, calculator, productIds, minSpend,
+                promotion.getType() == PromotionType.BUNDLE_DISCOUNT, null, true, stackGroup);
+    }
+
+    private static Order order(OrderItem... items) {
+        Brand brand = new Brand();
+        brand.setId(1L);
+        Order order = new Order();
+        order.setBrand(brand);
+        BigDecimal total = BigDecimal.ZERO;
+        for (OrderItem item : items) {
+            item.setOrder(order);
+            total = total.add(item.getUnitPrice().multiply(BigDecimal.valueOf(item.getQuantity())));
+        }
+        order.setItems(Set.of(items));
+        order.setTotalAmount(total);
+        return order;
+    }
+
+    private static Product product(Long id) {
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    }
+
+    private static OrderItem item(Product product, int quantity, String unitPrice) {
+        OrderItem item = new OrderItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setUnitPrice(new BigDecimal(unitPrice));
+        return item;
+    }
+}
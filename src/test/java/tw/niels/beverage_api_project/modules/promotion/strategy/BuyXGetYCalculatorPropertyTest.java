@@ -0,0 +1,122 @@
+package tw.niels.beverage_api_project.modules.promotion.strategy;
+
+import net.jqwik.api.Arbitraries;
+import net.jqwik.api.Arbitrary;
+import net.jqwik.api.Combinators;
+import net.jqwik.api.ForAll;
+import net.jqwik.api.Property;
+import net.jqwik.api.Provide;
+import net.jqwik.api.constraints.IntRange;
+import net.jqwik.api.constraints.Size;
+import net.jqwik.api.constraints.UniqueElements;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.promotion.entity.Promotion;
+import tw.niels.beverage_api_project.modules.promotion.enums.PromotionType;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 買 X 送 Y：以 (單價, 數量) 計算的結果必須與「依數量展開為單價列表後排序」的原始演算法相同
+ */
+class BuyXGetYCalculatorPropertyTest {
+
+    private final BuyXGetYCalculator calculator = new BuyXGetYCalculator();
+
+    record Line(long productId, BigDecimal unitPrice, int quantity) {}
+
+    @Property(tries = 1000)
+    void calculateDiscount_ShouldMatchExpandedAlgorithm(
+            @ForAll("lines") List<Line> lines,
+            @ForAll @Size(max = 4) @UniqueElements List<@IntRange(min = 1, max = 6) Integer> applicableProductIds,
+            @ForAll @IntRange(min = 0, max = 4) int buyCount,
+            @ForAll @IntRange(min = 0, max = 3) int freeCount) {
+
+        Promotion promotion = new Promotion();
+        promotion.setType(PromotionType.BUY_X_GET_Y);
+        promotion.setMinSpend(BigDecimal.valueOf(buyCount));
+        promotion.setValue(BigDecimal.valueOf(freeCount));
+        Set<Product> products = new HashSet<>();
+        for (Integer id : applicableProductIds) {
+            products.add(product(id));
+        }
+        promotion.setApplicableProducts(products);
+
+        Order order = new Order();
+        Set<OrderItem> items = new HashSet<>();
+        for (Line line : lines) {
+            OrderItem item = new OrderItem();
+            item.setOrder(order);
+            item.setProduct(product(line.productId()));
+            item.setUnitPrice(line.unitPrice());
+            item.setQuantity(line.quantity());
+            items.add(item);
+        }
+        order.setItems(items);
+
+        BigDecimal expected = expandedDiscount(lines, applicableProductIds, buyCount, freeCount);
+
+        assertThat(calculator.calculateDiscount(order, promotion)).isEqualByComparingTo(expected);
+    }
+
+    @Provide
+    Arbitrary<List<Line>> lines() {
+        // 單價混合 0 ~ 2 位小數，涵蓋同價不同品項與大數量的團購訂單
+        Arbitrary<BigDecimal> prices = Combinators.combine(
+                Arbitraries.integers().between(0, 20_000),
+                Arbitraries.integers().between(0, 2)
+        ).as((unscaled, scale) -> BigDecimal.valueOf(unscaled, scale));
+
+        Arbitrary<Line> line = Combinators.combine(
+                Arbitraries.longs().between(1, 8),
+                Arbitraries.oneOf(prices, Arbitraries.of(new BigDecimal("50.00"), new BigDecimal("45"))),
+                Arbitraries.integers().between(0, 60)
+        ).as(Line::new);
+
+        return line.list().ofMaxSize(12);
+    }
+
+    /**
+     * 原始演算法：將每個單品 (考慮數量) 展開為獨立的單價，由低到高排序後取前 (組數 * Y) 個加總
+     */
+    private static BigDecimal expandedDiscount(List<Line> lines, List<Integer> applicableProductIds,
+                                               int buyCount, int freeCount) {
+        int groupSize = buyCount + freeCount;
+        if (groupSize <= 0) return BigDecimal.ZERO;
+
+        List<BigDecimal> prices = new ArrayList<>();
+        for (Line line : lines) {
+            boolean isApplicable = applicableProductIds.isEmpty() ||
+                    applicableProductIds.contains((int) line.productId());
+            if (isApplicable) {
+                for (int i = 0; i < line.quantity(); i++) {
+                    prices.add(line.unitPrice());
+                }
+            }
+        }
+        if (prices.isEmpty()) return BigDecimal.ZERO;
+
+        prices.sort(Comparator.naturalOrder());
+        int freeItemsCount = (prices.size() / groupSize) * freeCount;
+
+        BigDecimal totalDiscount = BigDecimal.ZERO;
+        for (int i = 0; i < freeItemsCount; i++) {
+            totalDiscount = totalDiscount.add(prices.get(i));
+        }
+        return totalDiscount;
+    }
+
+    private static Product product(long id) {
+        Product product = new Product();
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,187 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import tw.niels.beverage_api_project.modules.brand.entity.Brand;
+import tw.niels.beverage_api_project.modules.order.entity.Order;
+import tw.niels.beverage_api_project.modules.order.entity.OrderItem;
+import tw.niels.beverage_api_project.modules.order.entity.PaymentMethodEntity;
+import tw.niels.beverage_api_project.modules.order.enums.OrderStatus;
+import tw.niels.beverage_api_project.modules.order.event.OrderStateChangedEvent;
+import tw.niels.beverage_api_project.modules.product.entity.Product;
+import tw.niels.beverage_api_project.modules.report.dao.IntradaySalesRollupDAO;
+import tw.niels.beverage_api_project.modules.report.dao.IntradaySalesRollupDAO.ProductSalesDelta;
+import tw.niels.beverage_api_project.modules.report.dao.IntradaySalesRollupDAO.StoreSalesDelta;
+import tw.niels.beverage_api_project.modules.store.entity.Store;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class IntradaySalesRollupServiceTest {
+
+    private static final Long STORE_ID = 10L;
+    private static final Long BRAND_ID = 1L;
+    private static final Long TEA_ID = 100L;
+    private static final Long LATTE_ID = 101L;
+    private static final LocalDateTime TEN_O_CLOCK = LocalDateTime.of(2025, 1, 15, 10, 0);
+
+    @Mock private IntradaySalesRollupDAO rollupDAO;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private IntradaySalesRollupService rollupService;
+
+    // 品項以 ID 判斷相等，每個品項需有不同的 ID
+    private static long nextItemId = 1;
+
+    @BeforeEach
+    void setUp() {
+        rollupService = new IntradaySalesRollupService(rollupDAO, transactionManager, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(rollupService, "enabled", true);
+        ReflectionTestUtils.setField(rollupService, "retentionDays", 35);
+    }
+
+    @Test
+    @DisplayName("彙總 - 同店同時段的結案與取消訂單合併為一列，商品依時段合併")
+    void flush_ShouldMergeOrdersByStoreAndHour() {
+        // 10:05 現金 2 杯紅茶、10:40 LINE Pay 1 杯紅茶 + 1 杯拿鐵、10:50 取消 (依下單時間 10:30)
+        publish(order(TEN_O_CLOCK.plusMinutes(5), null, "CASH", "100.00", "10.00",
+                item(TEA_ID, 2, "100.00")), OrderStatus.CLOSED);
+        publish(order(TEN_O_CLOCK.plusMinutes(40), null, "LINE_PAY", "110.00", "0.00",
+                item(TEA_ID, 1, "50.00"), item(LATTE_ID, 1, "60.00")), OrderStatus.CLOSED);
+        publish(order(null, TEN_O_CLOCK.plusMinutes(30), null, "80.00", "0.00",
+                item(TEA_ID, 1, "80.00")), OrderStatus.CANCELLED);
+
+        rollupService.flush();
+
+        verify(rollupDAO).batchUpsertStoreSales(argThat(list -> list.size() == 1
+                && matches(list.getFirst(), 2, 1, "200.00", "210.00", "90.00", "110.00")));
+        verify(rollupDAO).batchUpsertProductSales(argThat(list -> list.size() == 2
+                && matches(list.get(0), TEA_ID, 3, "150.00")
+                && matches(list.get(1), LATTE_ID, 1, "60.00")));
+    }
+
+    @Test
+    @DisplayName("事件 - 只有轉為結案或取消的訂單會被彙總")
+    void onOrderStateChanged_ShouldIgnoreOtherTransitions() {
+        Order order = order(TEN_O_CLOCK, TEN_O_CLOCK, "CASH", "50.00", "0.00", item(TEA_ID, 1, "50.00"));
+        rollupService.onOrderStateChanged(new OrderStateChangedEvent(order, OrderStatus.PENDING, OrderStatus.PREPARING));
+        rollupService.onOrderStateChanged(new OrderStateChangedEvent(order, OrderStatus.CLOSED, OrderStatus.CLOSED));
+
+        rollupService.flush();
+
+        verifyNoInteractions(rollupDAO);
+    }
+
+    @Test
+    @DisplayName("重試 - 寫入失敗時保留在記憶體，下次排程與新訂單一起寫入")
+    void flush_ShouldRetainDeltasOnFailure() {
+        doThrow(new QueryTimeoutException("timeout")).doNothing().when(rollupDAO).batchUpsertStoreSales(anyList());
+        publish(order(TEN_O_CLOCK, null, "CASH", "50.00", "0.00", item(TEA_ID, 1, "50.00")), OrderStatus.CLOSED);
+        rollupService.flush();
+
+        publish(order(TEN_O_CLOCK.plusMinutes(1), null, "CASH", "50.00", "0.00", item(TEA_ID, 1, "50.00")), OrderStatus.CLOSED);
+        rollupService.flush();
+
+        verify(rollupDAO, times(2)).batchUpsertStoreSales(anyList());
+        verify(rollupDAO).batchUpsertProductSales(argThat(list -> list.size() == 1
+                && matches(list.getFirst(), TEA_ID, 2, "100.00")));
+    }
+
+    @Test
+    @DisplayName("校正 - 只重算指定分區，未寫入的統計保留在記憶體，交由資料庫略過已校正的時段")
+    void reconcile_ShouldKeepPendingDeltasForDatabaseToSkip() {
+        LocalDate date = TEN_O_CLOCK.toLocalDate();
+        doThrow(new QueryTimeoutException("timeout")).doNothing().when(rollupDAO).batchUpsertStoreSales(anyList());
+        publish(order(TEN_O_CLOCK, null, "CASH", "50.00", "0.00", item(TEA_ID, 1, "50.00")), OrderStatus.CLOSED);
+
+        // 校正前的 flush 失敗，統計仍在記憶體；校正後照常重試 (是否已校正由 upsert 判斷，不在本實例捨棄)
+        rollupService.reconcile(date, 4, 1);
+        rollupService.flush();
+
+        verify(rollupDAO).reconcile(date.atStartOfDay(), date.plusDays(1).atStartOfDay(), 4, 1);
+        verify(rollupDAO, times(2)).batchUpsertStoreSales(argThat(list -> list.size() == 1
+                && matches(list.getFirst(), 1, 0, "50.00", "50.00", "50.00", "0.00")));
+        verify(rollupDAO).batchUpsertProductSales(argThat(list -> list.size() == 1
+                && matches(list.getFirst(), TEA_ID, 1, "50.00")));
+        verify(rollupDAO).purgeBefore(any());
+    }
+
+    private void publish(Order order, OrderStatus newStatus) {
+        rollupService.onOrderStateChanged(new OrderStateChangedEvent(order, OrderStatus.READY_FOR_PICKUP, newStatus));
+    }
+
+    private static Order order(LocalDateTime completedTime, LocalDateTime orderTime, String paymentCode,
+                               String totalAmount, String discountAmount, OrderItem... items) {
+        Brand brand = new Brand();
+        brand.setId(BRAND_ID);
+        Store store = new Store();
+        store.setId(STORE_ID);
+
+        Order order = new Order();
+        order.setBrand(brand);
+        order.setStore(store);
+        order.setCompletedTime(toDate(completedTime));
+        order.setOrderTime(toDate(orderTime));
+        order.setTotalAmount(new BigDecimal(totalAmount));
+        order.setDiscountAmount(new BigDecimal(discountAmount));
+        order.setFinalAmount(new BigDecimal(totalAmount).subtract(new BigDecimal(discountAmount)));
+        if (paymentCode != null) {
+            PaymentMethodEntity paymentMethod = new PaymentMethodEntity();
+            paymentMethod.setCode(paymentCode);
+            order.setPaymentMethod(paymentMethod);
+        }
+        for (OrderItem item : items) {
+            order.getItems().add(item);
+        }
+        return order;
+    }
+
+    private static OrderItem item(Long productId, int quantity, String subtotal) {
+        Product product = new Product();
+        product.setId(productId);
+        OrderItem item = new OrderItem();
+        item.setId(nextItemId++);
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        item.setSubtotal(new BigDecimal(subtotal));
+        return item;
+    }
+
+    private static Date toDate(LocalDateTime time) {
+        return time != null ? Date.from(time.atZone(ZoneId.systemDefault()).toInstant()) : null;
+    }
+
+    private static boolean matches(StoreSalesDelta delta, int closed, int cancelled, String finalRevenue,
+                                   String totalRevenue, String cash, String linePay) {
+        return delta.storeId().equals(STORE_ID) && delta.brandId().equals(BRAND_ID)
+                && delta.bucketHour().equals(TEN_O_CLOCK)
+                && delta.closedOrders() == closed && delta.cancelledOrders() == cancelled
+                && delta.finalRevenue().compareTo(new BigDecimal(finalRevenue)) == 0
+                && delta.totalRevenue().compareTo(new BigDecimal(totalRevenue)) == 0
+                && delta.cashTotal().compareTo(new BigDecimal(cash)) == 0
+                && delta.linePayTotal().compareTo(new BigDecimal(linePay)) == 0;
+    }
+
+    private static boolean matches(ProductSalesDelta delta, Long productId, int quantity, String amount) {
+        return delta.productId().equals(productId) && delta.bucketHour().equals(TEN_O_CLOCK)
+                && delta.quantitySold() == quantity
+                && delta.totalSalesAmount().compareTo(new BigDecimal(amount)) == 0;
+    }
+}
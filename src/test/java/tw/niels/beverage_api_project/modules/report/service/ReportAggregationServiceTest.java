@@ -0,0 +1,177 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.javacrumbs.shedlock.core.LockConfiguration;
+import net.javacrumbs.shedlock.core.LockProvider;
+import net.javacrumbs.shedlock.core.SimpleLock;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.modules.report.dao.SettlementCheckpointDAO;
+import tw.niels.beverage_api_project.modules.report.enums.CheckpointStatus;
+import tw.niels.beverage_api_project.modules.report.enums.SettlementStrategy;
+import tw.niels.beverage_api_project.modules.store.repository.StoreIdentity;
+import tw.niels.beverage_api_project.modules.store.repository.StoreRepository;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReportAggregationServiceTest {
+
+    private static final LocalDate DATE = LocalDate.of(2025, 1, 15);
+    private static final Long BRAND_ID = 1L;
+
+    @Mock private StoreRepository storeRepository;
+    @Mock private StoreSettlementService storeSettlementService;
+    @Mock private ChainSettlementService chainSettlementService;
+    @Mock private IntradaySalesRollupService intradaySalesRollupService;
+    @Mock private ReportAnalyticsCache reportAnalyticsCache;
+    @Mock private SettlementCheckpointDAO checkpointDAO;
+    @Mock private LockProvider lockProvider;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ReportAggregationService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new ReportAggregationService(storeRepository, storeSettlementService, chainSettlementService,
+                intradaySalesRollupService, reportAnalyticsCache, checkpointDAO, lockProvider, meterRegistry);
+        ReflectionTestUtils.setField(service, "parallelism", 8);
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "retryBackoffMillis", 1L);
+        ReflectionTestUtils.setField(service, "partitions", 1);
+        ReflectionTestUtils.setField(service, "partitionLease", Duration.ofMinutes(30));
+        ReflectionTestUtils.setField(service, "pageSize", 50);
+        service.init();
+    }
+
+    @Test
+    @DisplayName("平行模式 - 跨頁的所有分店都會結算，進度指標為 100%")
+    void generateDailyStats_Parallel_ShouldSettleAllStores() {
+        stubStores(120);
+
+        service.generateDailyStats(DATE);
+
+        verify(storeSettlementService, times(120)).processStoreStats(anyLong(), eq(BRAND_ID), eq(DATE), any(), any());
+        assertThat(meterRegistry.get("report.settlement.stores").tag("result", "success").counter().count()).isEqualTo(120);
+        assertThat(meterRegistry.get("report.settlement.progress").gauge().value()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("report.settlement.eta.seconds").gauge().value()).isZero();
+        verify(checkpointDAO).markRunning(DATE, 1, 0);
+        verify(checkpointDAO).markFinished(DATE, 1, 0, CheckpointStatus.COMPLETED, 120, 0);
+    }
+
+    @Test
+    @DisplayName("重試 - 暫時性錯誤重試後成功；其他錯誤不重試並計入失敗")
+    void generateDailyStats_ShouldRetryTransientFailures() {
+        stubStores(3);
+        // 分店 1：第一次逾時，第二次成功；分店 2：資料錯誤；分店 3：成功 (嚴格 stub 下需明確宣告)
+        doNothing().when(storeSettlementService).processStoreStats(anyLong(), any(), any(), any(), any());
+        doThrow(new QueryTimeoutException("timeout")).doNothing()
+                .when(storeSettlementService).processStoreStats(eq(1L), any(), any(), any(), any());
+        doThrow(new IllegalStateException("bad data"))
+                .when(storeSettlementService).processStoreStats(eq(2L), any(), any(), any(), any());
+
+        service.generateDailyStats(DATE);
+
+        verify(storeSettlementService, times(2)).processStoreStats(eq(1L), any(), any(), any(), any());
+        verify(storeSettlementService, times(1)).processStoreStats(eq(2L), any(), any(), any(), any());
+        assertThat(meterRegistry.get("report.settlement.retries").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("report.settlement.stores").tag("result", "success").counter().count()).isEqualTo(2);
+        assertThat(meterRegistry.get("report.settlement.stores").tag("result", "failure").counter().count()).isEqualTo(1);
+        // 有分店失敗：檢查點標記為 FAILED，補漏時重新結算
+        verify(checkpointDAO).markFinished(DATE, 1, 0, CheckpointStatus.FAILED, 3, 1);
+    }
+
+    @Test
+    @DisplayName("補漏分區 - 只結算該分區的分店，檢查點依分區記錄")
+    void settlePartition_ShouldSettlePartitionAndRecordCheckpoint() {
+        when(storeRepository.findStoreIdentitiesByPartition(eq(4), eq(1), any(Pageable.class)))
+                .thenAnswer(invocation -> page(List.of(store(1L), store(5L), store(9L)), invocation.getArgument(2), 3));
+
+        boolean completed = service.settlePartition(DATE, 4, 1, 2);
+
+        assertThat(completed).isTrue();
+        verify(storeSettlementService, times(3)).processStoreStats(anyLong(), eq(BRAND_ID), eq(DATE), any(), any());
+        verify(storeRepository, never()).findAllStoreIdentities(any());
+        verify(lockProvider, never()).lock(any());
+        verify(checkpointDAO).markRunning(DATE, 4, 1);
+        verify(checkpointDAO).markFinished(DATE, 4, 1, CheckpointStatus.COMPLETED, 3, 0);
+    }
+
+    @Test
+    @DisplayName("分區模式 - 只結算本節點取得租約的分區")
+    void generateDailyStatsForClaimedPartitions_ShouldOnlySettleClaimedPartitions() {
+        ReflectionTestUtils.setField(service, "partitions", 4);
+        SimpleLock lease = mock(SimpleLock.class);
+        when(lockProvider.lock(any(LockConfiguration.class))).thenAnswer(invocation -> {
+            LockConfiguration config = invocation.getArgument(0);
+            return config.getName().endsWith("-p2") ? Optional.of(lease) : Optional.empty();
+        });
+        when(storeRepository.findStoreIdentitiesByPartition(eq(4), eq(2), any(Pageable.class)))
+                .thenAnswer(invocation -> page(List.of(store(2L), store(6L)), invocation.getArgument(2), 2));
+
+        service.generateDailyStatsForClaimedPartitions(DATE);
+
+        verify(lockProvider, times(4)).lock(any(LockConfiguration.class));
+        verify(storeRepository, never()).findStoreIdentitiesByPartition(anyInt(), intThat(p -> p != 2), any());
+        verify(storeSettlementService).processStoreStats(eq(2L), any(), any(), any(), any());
+        verify(storeSettlementService).processStoreStats(eq(6L), any(), any(), any(), any());
+        verify(lease).unlock();
+    }
+
+    @Test
+    @DisplayName("集合式策略 - 單次呼叫結算全部分店，暫時性錯誤整批重試")
+    void generateDailyStats_SetBased_ShouldSettleChainInOneCall() {
+        ReflectionTestUtils.setField(service, "strategy", SettlementStrategy.SET_BASED);
+        stubStores(120);
+        when(chainSettlementService.settle(eq(DATE), any(), any(), eq(1), eq(0)))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(120);
+
+        service.generateDailyStats(DATE);
+
+        verify(chainSettlementService, times(2)).settle(eq(DATE), any(), any(), eq(1), eq(0));
+        verifyNoInteractions(storeSettlementService);
+        assertThat(meterRegistry.get("report.settlement.retries").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("report.settlement.stores").tag("result", "success").counter().count()).isEqualTo(120);
+        assertThat(meterRegistry.get("report.settlement.progress").gauge().value()).isEqualTo(1.0);
+    }
+
+    private void stubStores(int count) {
+        List<StoreIdentity> stores = LongStream.rangeClosed(1, count).mapToObj(ReportAggregationServiceTest::store).toList();
+        when(storeRepository.findAllStoreIdentities(any(Pageable.class))).thenAnswer(invocation -> {
+            Pageable pageable = invocation.getArgument(0);
+            int from = (int) Math.min(pageable.getOffset(), count);
+            int to = Math.min(from + pageable.getPageSize(), count);
+            return page(stores.subList(from, to), pageable, count);
+        });
+    }
+
+    private static PageImpl<StoreIdentity> page(List<StoreIdentity> content, Pageable pageable, long total) {
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private static StoreIdentity store(long storeId) {
+        return new TestStoreIdentity(storeId, BRAND_ID);
+    }
+
+    private record TestStoreIdentity(Long getStoreId, Long getBrandId) implements StoreIdentity {}
+}
@@ -0,0 +1,260 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import tw.niels.beverage_api_project.config.RabbitConfig;
+import tw.niels.beverage_api_project.modules.report.dao.ReportAnalyticsDAO;
+import tw.niels.beverage_api_project.modules.report.dao.ReportAnalyticsDAO.DayFingerprint;
+import tw.niels.beverage_api_project.modules.report.dto.BrandSalesSummaryDto;
+import tw.niels.beverage_api_project.modules.report.dto.ProductSalesStatsDto;
+import tw.niels.beverage_api_project.modules.report.dto.StoreRankingDto;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.awaitility.Awaitility.await;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReportAnalyticsCacheTest {
+
+    private static final long BRAND_ID = 1L;
+    private static final long OTHER_BRAND_ID = 2L;
+    private static final long STORE_A = 10L;
+    private static final long STORE_B = 11L;
+    private static final long TEA_ID = 100L;
+    private static final long LATTE_ID = 101L;
+
+    private static final LocalDate YESTERDAY = LocalDate.now().minusDays(1);
+
+    @Mock private ReportAnalyticsDAO analyticsDAO;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private RabbitTemplate rabbitTemplate;
+
+    private ReportAnalyticsCache cache;
+
+    // 模擬資料庫內容 (金額以分為單位)
+    private final List<StoreRow> storeRows = new ArrayList<>();
+    private final List<ProductRow> productRows = new ArrayList<>();
+    private final Map<LocalDate, DayFingerprint> fingerprints = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        cache = new ReportAnalyticsCache(analyticsDAO, transactionManager, rabbitTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "days", 30);
+        ReflectionTestUtils.setField(cache, "refreshDays", 3);
+
+        lenient().doAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            ReportAnalyticsDAO.StoreStatsHandler handler = invocation.getArgument(2);
+            storeRows.stream()
+                    .filter(row -> !row.date().isBefore(start) && !row.date().isAfter(end))
+                    .sorted(Comparator.comparing(StoreRow::date).thenComparing(StoreRow::brandId).thenComparing(StoreRow::storeId))
+                    .forEach(row -> handler.onRow(row.date(), row.brandId(), row.storeId(), row.orders(), row.cancelled(),
+                            row.revenue(), row.discount(), row.revenue() - row.discount()));
+            return null;
+        }).when(analyticsDAO).streamStoreStats(any(), any(), any());
+
+        lenient().doAnswer(invocation -> {
+            LocalDate start = invocation.getArgument(0);
+            LocalDate end = invocation.getArgument(1);
+            ReportAnalyticsDAO.ProductStatsHandler handler = invocation.getArgument(2);
+            productRows.stream()
+                    .filter(row -> !row.date().isBefore(start) && !row.date().isAfter(end))
+                    .sorted(Comparator.comparing(ProductRow::date).thenComparing(ProductRow::brandId)
+                            .thenComparing(ProductRow::storeId).thenComparing(ProductRow::productId))
+                    .forEach(row -> handler.onRow(row.date(), row.brandId(), row.storeId(), row.productId(),
+                            row.productName(), row.quantity(), row.sales()));
+            return null;
+        }).when(analyticsDAO).streamProductStats(any(), any(), any());
+
+        lenient().when(analyticsDAO.findFingerprints(any(), any())).thenAnswer(invocation -> new HashMap<>(fingerprints));
+    }
+
+    @Test
+    @DisplayName("查詢 - 第一次載入後，總覽、分店排行與商品排行由記憶體計算")
+    void refresh_ShouldAnswerQueriesFromMemory() {
+        LocalDate twoDaysAgo = YESTERDAY.minusDays(1);
+        storeRow(twoDaysAgo, BRAND_ID, STORE_A, 10, 1, 100_00, 5_00);
+        storeRow(YESTERDAY, BRAND_ID, STORE_A, 20, 0, 200_00, 0);
+        storeRow(YESTERDAY, BRAND_ID, STORE_B, 30, 2, 350_50, 10_00);
+        storeRow(YESTERDAY, OTHER_BRAND_ID, 99L, 99, 9, 999_00, 0);
+        productRow(twoDaysAgo, BRAND_ID, STORE_A, TEA_ID, "紅茶", 4, 200_00);
+        productRow(YESTERDAY, BRAND_ID, STORE_A, TEA_ID, "紅茶", 1, 50_00);
+        productRow(YESTERDAY, BRAND_ID, STORE_A, LATTE_ID, "拿鐵", 3, 180_00);
+        productRow(YESTERDAY, BRAND_ID, STORE_B, TEA_ID, "紅茶", 7, 350_00);
+
+        cache.initialLoad();
+
+        BrandSalesSummaryDto summary = cache.summarize(BRAND_ID, twoDaysAgo, YESTERDAY).orElseThrow();
+        assertThat(summary.getTotalOrders()).isEqualTo(60L);
+        assertThat(summary.getCancelledOrders()).isEqualTo(3L);
+        assertThat(summary.getTotalRevenue()).isEqualByComparingTo("650.50");
+        assertThat(summary.getTotalDiscount()).isEqualByComparingTo("15.00");
+
+        List<StoreRankingDto> ranking = cache.rankStores(BRAND_ID, twoDaysAgo, YESTERDAY).orElseThrow();
+        assertThat(ranking).extracting(StoreRankingDto::getStoreId).containsExactly(STORE_B, STORE_A);
+        assertThat(ranking).extracting(StoreRankingDto::getTotalRevenue)
+                .containsExactly(new BigDecimal("340.50"), new BigDecimal("295.00"));
+
+        List<ProductSalesStatsDto> products = cache.rankProducts(BRAND_ID, STORE_A, twoDaysAgo, YESTERDAY).orElseThrow();
+        assertThat(products).extracting(ProductSalesStatsDto::getProductId).containsExactly(TEA_ID, LATTE_ID);
+        assertThat(products.getFirst().getTotalQuantity()).isEqualTo(5L);
+        assertThat(products.getFirst().getTotalSalesAmount()).isEqualByComparingTo("250.00");
+
+        // 只查昨天：前天的資料不計入
+        assertThat(cache.rankStores(BRAND_ID, YESTERDAY, YESTERDAY).orElseThrow())
+                .extracting(StoreRankingDto::getTotalRevenue)
+                .containsExactly(new BigDecimal("340.50"), new BigDecimal("200.00"));
+        // 沒有資料的分店或品牌回傳空結果，不查資料庫
+        assertThat(cache.rankProducts(BRAND_ID, 12L, YESTERDAY, YESTERDAY)).contains(List.of());
+        assertThat(cache.summarize(3L, YESTERDAY, YESTERDAY).orElseThrow().getTotalOrders()).isZero();
+    }
+
+    @Test
+    @DisplayName("查詢 - 尚未載入或區間超出快取範圍時回傳 empty，由呼叫端查詢資料庫")
+    void query_OutsideWindow_ShouldMiss() {
+        assertThat(cache.summarize(BRAND_ID, YESTERDAY, YESTERDAY)).isEmpty();
+        // 第一次載入前，日結後的重新載入不讀取資料
+        cache.reloadDay(YESTERDAY);
+        verifyNoInteractions(analyticsDAO);
+
+        cache.initialLoad();
+
+        assertThat(cache.summarize(BRAND_ID, YESTERDAY, YESTERDAY)).isPresent();
+        assertThat(cache.summarize(BRAND_ID, YESTERDAY.minusDays(30), YESTERDAY)).isEmpty();
+        assertThat(cache.rankStores(BRAND_ID, YESTERDAY, YESTERDAY.plusDays(1))).isEmpty();
+        assertThat(cache.rankProducts(BRAND_ID, STORE_A, YESTERDAY.minusDays(29), YESTERDAY)).isPresent();
+    }
+
+    @Test
+    @DisplayName("排程 - 尚未完成第一次載入時不阻塞排程執行緒，改在背景載入")
+    void refresh_BeforeInitialLoad_ShouldLoadInBackground() {
+        storeRow(YESTERDAY, BRAND_ID, STORE_A, 10, 0, 100_00, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new HashMap<>(fingerprints);
+        }).when(analyticsDAO).findFingerprints(any(), any());
+
+        cache.refresh();
+        // 載入仍卡在資料庫：排程執行緒已返回，查詢改查資料庫；重複觸發不會再啟動一次載入
+        assertThat(cache.summarize(BRAND_ID, YESTERDAY, YESTERDAY)).isEmpty();
+        cache.refresh();
+
+        release.countDown();
+        await().atMost(5, TimeUnit.SECONDS).untilAsserted(() ->
+                assertThat(cache.summarize(BRAND_ID, YESTERDAY, YESTERDAY)).isPresent());
+        verify(analyticsDAO, times(1)).streamStoreStats(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("重新載入 - 日結後只重新讀取該日期，其他日期沿用記憶體資料")
+    void reloadDay_ShouldReplaceOnlyThatDay() {
+        LocalDate twoDaysAgo = YESTERDAY.minusDays(1);
+        storeRow(twoDaysAgo, BRAND_ID, STORE_A, 10, 0, 100_00, 0);
+        storeRow(YESTERDAY, BRAND_ID, STORE_A, 10, 0, 100_00, 0);
+        cache.initialLoad();
+
+        // 補跑昨天：分店 A 的資料被改寫，新增分店 B
+        storeRows.removeIf(row -> row.date().equals(YESTERDAY));
+        storeRow(YESTERDAY, BRAND_ID, STORE_A, 5, 0, 50_00, 0);
+        storeRow(YESTERDAY, BRAND_ID, STORE_B, 8, 0, 80_00, 0);
+        cache.reloadDay(YESTERDAY);
+
+        verify(analyticsDAO).streamStoreStats(eq(YESTERDAY), eq(YESTERDAY), anyHandler());
+        assertThat(cache.summarize(BRAND_ID, twoDaysAgo, YESTERDAY).orElseThrow().getTotalRevenue())
+                .isEqualByComparingTo("230.00");
+        assertThat(cache.rankStores(BRAND_ID, twoDaysAgo, YESTERDAY).orElseThrow())
+                .extracting(StoreRankingDto::getStoreId).containsExactly(STORE_A, STORE_B);
+    }
+
+    @Test
+    @DisplayName("廣播 - 日結後通知其他實例；收到其他實例的廣播時重新載入該日期 (不限最近幾天)，略過自己的廣播")
+    void reloadBroadcast_ShouldReloadOlderDaysOnOtherInstances() {
+        LocalDate tenDaysAgo = YESTERDAY.minusDays(9);
+        storeRow(tenDaysAgo, BRAND_ID, STORE_A, 10, 0, 100_00, 0);
+        cache.initialLoad();
+
+        cache.reloadDay(tenDaysAgo);
+        ArgumentCaptor<ReportAnalyticsCache.ReloadDayMessage> sent =
+                ArgumentCaptor.forClass(ReportAnalyticsCache.ReloadDayMessage.class);
+        verify(rabbitTemplate).convertAndSend(eq(RabbitConfig.REPORT_CACHE_EXCHANGE), eq(""), sent.capture());
+        assertThat(sent.getValue().date()).isEqualTo(tenDaysAgo.toString());
+
+        // 自己的廣播：不重複載入
+        cache.handleReloadBroadcast(sent.getValue());
+        verify(analyticsDAO, times(1)).streamStoreStats(eq(tenDaysAgo), eq(tenDaysAgo), anyHandler());
+
+        // 其他實例補跑了 10 天前的日期 (超出排程比對的最近 3 天)
+        storeRows.clear();
+        storeRow(tenDaysAgo, BRAND_ID, STORE_A, 5, 0, 50_00, 0);
+        cache.handleReloadBroadcast(new ReportAnalyticsCache.ReloadDayMessage(tenDaysAgo.toString(), "other"));
+
+        assertThat(cache.summarize(BRAND_ID, tenDaysAgo, tenDaysAgo).orElseThrow().getTotalRevenue())
+                .isEqualByComparingTo("50.00");
+    }
+
+    @Test
+    @DisplayName("排程 - 只重新載入指紋有變化的日期")
+    void refresh_ShouldReloadChangedDaysOnly() {
+        LocalDate threeDaysAgo = YESTERDAY.minusDays(2);
+        storeRow(threeDaysAgo, BRAND_ID, STORE_A, 10, 0, 100_00, 0);
+        fingerprints.put(threeDaysAgo, new DayFingerprint(1, 0, Instant.EPOCH, null));
+        cache.initialLoad();
+
+        // 指紋沒有變化：不讀取資料
+        cache.refresh();
+        verify(analyticsDAO, times(1)).streamStoreStats(any(), any(), any());
+
+        // 其他節點結算了前天
+        LocalDate twoDaysAgo = YESTERDAY.minusDays(1);
+        storeRow(twoDaysAgo, BRAND_ID, STORE_B, 20, 0, 300_00, 0);
+        fingerprints.put(twoDaysAgo, new DayFingerprint(1, 0, Instant.EPOCH, null));
+        cache.refresh();
+
+        verify(analyticsDAO).streamStoreStats(eq(twoDaysAgo), eq(twoDaysAgo), anyHandler());
+        assertThat(cache.rankStores(BRAND_ID, threeDaysAgo, YESTERDAY).orElseThrow())
+                .extracting(StoreRankingDto::getStoreId).containsExactly(STORE_B, STORE_A);
+    }
+
+    private static ReportAnalyticsDAO.StoreStatsHandler anyHandler() {
+        return any(ReportAnalyticsDAO.StoreStatsHandler.class);
+    }
+
+    private void storeRow(LocalDate date, long brandId, long storeId, int orders, int cancelled, long revenue, long discount) {
+        storeRows.add(new StoreRow(date, brandId, storeId, orders, cancelled, revenue, discount));
+    }
+
+    private void productRow(LocalDate date, long brandId, long storeId, long productId, String name, int quantity, long sales) {
+        productRows.add(new ProductRow(date, brandId, storeId, productId, name, quantity, sales));
+    }
+
+    private record StoreRow(LocalDate date, long brandId, long storeId, int orders, int cancelled,
+                            long revenue, long discount) {}
+
+    private record ProductRow(LocalDate date, long brandId, long storeId, long productId, String productName,
+                              int quantity, long sales) {}
+}
@@ -0,0 +1,104 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import tw.niels.beverage_api_project.modules.report.dao.SettlementCheckpointDAO;
+import tw.niels.beverage_api_project.modules.report.dao.SettlementCheckpointDAO.Checkpoint;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReportBackfillServiceTest {
+
+    private static final LocalDate DAY_1 = LocalDate.of(2025, 1, 1);
+    private static final LocalDate DAY_2 = DAY_1.plusDays(1);
+    private static final LocalDate DAY_3 = DAY_1.plusDays(2);
+
+    @Mock private ReportAggregationService reportAggregationService;
+    @Mock private SettlementCheckpointDAO checkpointDAO;
+
+    private ReportBackfillService backfillService;
+
+    @BeforeEach
+    void setUp() {
+        backfillService = new ReportBackfillService(reportAggregationService, checkpointDAO);
+        ReflectionTestUtils.setField(backfillService, "partitions", 4);
+        ReflectionTestUtils.setField(backfillService, "maxConcurrentDates", 2);
+        ReflectionTestUtils.setField(backfillService, "maxStoresPerDate", 3);
+        ReflectionTestUtils.setField(backfillService, "lookbackDays", 7);
+    }
+
+    @Test
+    @DisplayName("續跑 - 略過已完成的日期與分區，只補跑未完成的分區")
+    void backfill_ShouldSkipCompletedPartitions() {
+        // 第 1 天：凌晨排程已完整結算 (不分區)；第 2 天：補漏到一半 (分區 0、2 完成)；第 3 天：尚未開始
+        when(checkpointDAO.findCompleted(DAY_1, DAY_3)).thenReturn(List.of(
+                new Checkpoint(DAY_1, 1, 0),
+                new Checkpoint(DAY_2, 4, 0),
+                new Checkpoint(DAY_2, 4, 2)));
+        when(reportAggregationService.settlePartition(any(), eq(4), anyInt(), eq(3))).thenReturn(true);
+        // 第 3 天分區 3 有分店失敗
+        when(reportAggregationService.settlePartition(DAY_3, 4, 3, 3)).thenReturn(false);
+
+        ReportBackfillService.BackfillResult result = backfillService.backfill(DAY_1, DAY_3);
+
+        verify(reportAggregationService, never()).settlePartition(eq(DAY_1), anyInt(), anyInt(), anyInt());
+        verify(reportAggregationService).settlePartition(DAY_2, 4, 1, 3);
+        verify(reportAggregationService).settlePartition(DAY_2, 4, 3, 3);
+        verify(reportAggregationService, never()).settlePartition(DAY_2, 4, 0, 3);
+        verify(reportAggregationService, times(4)).settlePartition(eq(DAY_3), eq(4), anyInt(), eq(3));
+        assertThat(result).isEqualTo(new ReportBackfillService.BackfillResult(2, 5, 1, 6));
+    }
+
+    @Test
+    @DisplayName("並行上限 - 同時補跑的日期數不超過設定值")
+    void backfill_ShouldLimitConcurrentDates() {
+        LocalDate end = DAY_1.plusDays(7);
+        when(checkpointDAO.findCompleted(DAY_1, end)).thenReturn(List.of());
+        ReflectionTestUtils.setField(backfillService, "partitions", 1);
+
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        when(reportAggregationService.settlePartition(any(), eq(1), eq(0), eq(3))).thenAnswer(invocation -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            running.decrementAndGet();
+            return true;
+        });
+
+        ReportBackfillService.BackfillResult result = backfillService.backfill(DAY_1, end);
+
+        verify(reportAggregationService, times(8)).settlePartition(any(), eq(1), eq(0), eq(3));
+        assertThat(maxRunning.get()).isBetween(1, 2);
+        assertThat(result.settledPartitions()).isEqualTo(8);
+    }
+
+    @Test
+    @DisplayName("補漏範圍 - 從最後一個檢查點的隔天開始；完全沒有檢查點時只結算昨天")
+    void backfillMissing_ShouldResolveRangeFromCheckpoints() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate latest = yesterday.minusDays(20);
+        when(checkpointDAO.findLatestDate()).thenReturn(latest, (LocalDate) null);
+        when(checkpointDAO.findCompleted(any(), any())).thenReturn(List.of());
+        when(reportAggregationService.settlePartition(any(), anyInt(), anyInt(), anyInt())).thenReturn(true);
+
+        backfillService.backfillMissing();
+        verify(checkpointDAO).findCompleted(latest.plusDays(1), yesterday);
+
+        backfillService.backfillMissing();
+        verify(checkpointDAO).findCompleted(yesterday, yesterday);
+    }
+}
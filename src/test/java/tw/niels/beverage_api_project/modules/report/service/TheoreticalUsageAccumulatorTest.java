@@ -0,0 +1,71 @@
+package tw.niels.beverage_api_project.modules.report.service;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import tw.niels.beverage_api_project.modules.inventory.dao.InventoryUsageDAO.RecipeTuple;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TheoreticalUsageAccumulatorTest {
+
+    private static final long VARIANT_ID = 500L;
+    private static final long OPTION_ID = 600L;
+    private static final long TEA_ID = 100L;
+    private static final long MILK_ID = 101L;
+    private static final long PEARL_ID = 102L;
+
+    // 規格配方：紅茶 0.3、鮮奶 0.1234；加料配方：珍珠 0.05
+    private static final List<RecipeTuple> RECIPES = List.of(
+            new RecipeTuple(VARIANT_ID, null, TEA_ID, new BigDecimal("0.3000")),
+            new RecipeTuple(VARIANT_ID, null, MILK_ID, new BigDecimal("0.1234")),
+            new RecipeTuple(null, OPTION_ID, PEARL_ID, new BigDecimal("0.0500")));
+
+    @Test
+    @DisplayName("累加 - 規格與加料配方乘上數量後依原物料加總，結果保留 4 位小數")
+    void accumulate_ShouldSumScaledUsage() {
+        TheoreticalUsageAccumulator accumulator = TheoreticalUsageAccumulator.of(RECIPES);
+
+        accumulator.addVariantLine(VARIANT_ID, 2);
+        accumulator.addVariantLine(VARIANT_ID, 3);
+        accumulator.addOptionLine(OPTION_ID, 3);
+        // 沒有配方的規格不影響結果
+        accumulator.addVariantLine(999L, 5);
+
+        Map<Long, BigDecimal> usage = accumulator.toUsageMap();
+
+        assertThat(accumulator.getLineCount()).isEqualTo(4);
+        assertThat(usage).containsOnlyKeys(TEA_ID, MILK_ID, PEARL_ID);
+        assertThat(usage.get(TEA_ID)).isEqualTo(new BigDecimal("1.5000"));
+        assertThat(usage.get(MILK_ID)).isEqualTo(new BigDecimal("0.6170"));
+        assertThat(usage.get(PEARL_ID)).isEqualTo(new BigDecimal("0.1500"));
+    }
+
+    @Test
+    @DisplayName("缺少規格 - 記錄筆數，不計入用量")
+    void addVariantLine_MissingVariant_ShouldBeCounted() {
+        TheoreticalUsageAccumulator accumulator = TheoreticalUsageAccumulator.of(RECIPES);
+
+        accumulator.addVariantLine(0L, 1);
+
+        assertThat(accumulator.getMissingVariantLines()).isEqualTo(1);
+        assertThat(accumulator.toUsageMap()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("溢位 - 超出 long 範圍時拋出例外，不回傳錯誤結果")
+    void accumulate_Overflow_ShouldThrow() {
+        TheoreticalUsageAccumulator accumulator = TheoreticalUsageAccumulator.of(List.of(
+                new RecipeTuple(VARIANT_ID, null, TEA_ID, new BigDecimal("999999.9999"))));
+
+        assertThatThrownBy(() -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                accumulator.addVariantLine(VARIANT_ID, Integer.MAX_VALUE);
+            }
+        }).isInstanceOf(ArithmeticException.class);
+    }
+}
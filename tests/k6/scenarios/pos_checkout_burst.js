@@ -0,0 +1,75 @@
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter, Trend } from 'k6/metrics';
+import { login } from '../utils/auth.js';
+import { uuidv4 } from 'https://jslib.k6.io/k6-utils/1.4.0/index.js';
+
+/**
+ * 尖峰時段 POS 結帳壓測：模擬單一分店 40+ 台終端機同時結帳。
+ *
+ * 用來比較「逐筆交易」與「批次結帳管線」的吞吐量：
+ *   1. 後端 app.order.checkout.pipeline.enabled=false 執行一次 (MODE=single)
+ *   2. 後端 app.order.checkout.pipeline.enabled=true  執行一次 (MODE=pipeline)
+ *   比較兩次的 checkout_completed 速率 (iterations/s) 與 checkout_duration p95。
+ *
+ * k6 run -e MODE=pipeline -e TERMINALS=40 -e PRODUCT_ID=1 -e VARIANT_ID=1 tests/k6/scenarios/pos_checkout_burst.js
+ */
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/api/v1';
+const MODE = __ENV.MODE || 'single';
+const TERMINALS = parseInt(__ENV.TERMINALS || '40');
+const PRODUCT_ID = parseInt(__ENV.PRODUCT_ID || '1');
+const VARIANT_ID = parseInt(__ENV.VARIANT_ID || '1');
+
+const checkoutCompleted = new Counter('checkout_completed');
+const checkoutDuration = new Trend('checkout_duration', true);
+
+export const options = {
+    scenarios: {
+        // 每台終端機結帳完立刻下一筆 (沒有思考時間)，量測系統的最大吞吐
+        lunch_peak: {
+            executor: 'constant-vus',
+            vus: TERMINALS,
+            duration: __ENV.DURATION || '1m',
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        checkout_duration: ['p(95)<800'],
+    },
+    tags: { mode: MODE },
+};
+
+export function setup() {
+    const token = login(1, '0911111111', 'password123');
+    if (!token) throw new Error('Login failed, no token received');
+    return { token };
+}
+
+export default function (data) {
+    const payload = JSON.stringify({
+        paymentMethod: 'CASH',
+        pointsToUse: 0,
+        items: [
+            { productId: PRODUCT_ID, variantId: VARIANT_ID, quantity: 1, notes: 'K6 Burst', optionIds: [] },
+            { productId: PRODUCT_ID, variantId: VARIANT_ID, quantity: 2, notes: null, optionIds: [] },
+        ],
+    });
+
+    const res = http.post(`${BASE_URL}/orders/pos-checkout`, payload, {
+        headers: {
+            'Content-Type': 'application/json',
+            'Authorization': `Bearer ${data.token}`,
+            'Idempotency-Key': uuidv4(),
+        },
+        tags: { name: 'PosCheckoutBurst' },
+    });
+
+    const ok = check(res, {
+        'checkout status is 201': (r) => r.status === 201,
+        'order created': (r) => r.json('orderNumber') !== undefined,
+    });
+
+    checkoutDuration.add(res.timings.duration);
+    if (ok) checkoutCompleted.add(1);
+}